@@ -0,0 +1,115 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wildfly.channel.MavenArtifact;
+import org.wildfly.prospero.galleon.ArtifactCache;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of looking up all artifacts recorded in the {@link ArtifactCache} using different
+ * {@link ArtifactCache.ValidationMode}s.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ArtifactCacheBenchmark {
+
+    private static final String GROUP_ID = "org.test";
+    private static final String EXTENSION = "jar";
+    private static final String CLASSIFIER = "";
+    private static final String VERSION = "1.0.0";
+
+    @Param({"HASH", "FILE_ATTRIBUTES"})
+    public ArtifactCache.ValidationMode validationMode;
+
+    @Param({"200"})
+    public int artifactCount;
+
+    @Param({"1048576"})
+    public int artifactSize;
+
+    private Path workDir;
+    private ArtifactCache cache;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("artifact-cache-benchmark");
+        final Path sourceDir = Files.createDirectories(workDir.resolve("source"));
+        final Path installationDir = Files.createDirectories(workDir.resolve("installation"));
+        Files.createDirectories(installationDir.resolve(ArtifactCache.CACHE_FOLDER));
+
+        cache = ArtifactCache.getInstance(installationDir);
+        final Random random = new Random(0);
+        final byte[] buffer = new byte[8192];
+        for (int i = 0; i < artifactCount; i++) {
+            final Path file = sourceDir.resolve(artifactId(i) + "-" + VERSION + "." + EXTENSION);
+            try (OutputStream out = Files.newOutputStream(file)) {
+                for (int written = 0; written < artifactSize; written += buffer.length) {
+                    random.nextBytes(buffer);
+                    out.write(buffer, 0, Math.min(buffer.length, artifactSize - written));
+                }
+            }
+            cache.cache(new MavenArtifact(GROUP_ID, artifactId(i), EXTENSION, CLASSIFIER, VERSION, file.toFile()));
+            if (cache.getArtifact(GROUP_ID, artifactId(i), EXTENSION, CLASSIFIER, VERSION).isEmpty()) {
+                throw new IllegalStateException("Unable to find cached artifact " + artifactId(i));
+            }
+        }
+        cache.setValidationMode(validationMode);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.deleteQuietly(workDir.toFile());
+    }
+
+    @Benchmark
+    public void lookupAllArtifacts(Blackhole blackhole) {
+        for (int i = 0; i < artifactCount; i++) {
+            blackhole.consume(cache.getArtifact(GROUP_ID, artifactId(i), EXTENSION, CLASSIFIER, VERSION));
+        }
+    }
+
+    private static String artifactId(int i) {
+        return "artifact-" + i;
+    }
+}
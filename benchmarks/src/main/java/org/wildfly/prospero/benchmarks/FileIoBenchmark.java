@@ -0,0 +1,157 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.jboss.galleon.util.HashUtils;
+import org.jboss.galleon.util.IoUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wildfly.prospero.utils.NioFileUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Measures the cost of hashing and copying all the files of a WildFly {@code modules} directory using Galleon's
+ * stream-based utilities and {@link NioFileUtils}.
+ *
+ * The {@code modulesDir} parameter can point to the {@code modules} directory of an existing WildFly installation,
+ * e.g. {@code -p modulesDir=/opt/wildfly/modules}. If not set, a directory with a similar number and size of the
+ * module jars is generated.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class FileIoBenchmark {
+
+    private static final int GENERATED_MODULES = 600;
+    private static final int SMALL_JAR_SIZE = 64 * 1024;
+    private static final int LARGE_JAR_SIZE = 4 * 1024 * 1024;
+
+    public enum Implementation { GALLEON, NIO }
+
+    @Param({"GALLEON", "NIO"})
+    public Implementation implementation;
+
+    @Param({""})
+    public String modulesDir;
+
+    private Path workDir;
+    private Path sourceDir;
+    private List<Path> files;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        workDir = Files.createTempDirectory("file-io-benchmark");
+        if (modulesDir.isEmpty()) {
+            sourceDir = generateModules(workDir.resolve("modules"));
+        } else {
+            sourceDir = Path.of(modulesDir);
+        }
+        try (Stream<Path> walk = Files.walk(sourceDir)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.deleteQuietly(workDir.toFile());
+    }
+
+    @TearDown(Level.Invocation)
+    public void removeCopy() {
+        FileUtils.deleteQuietly(workDir.resolve("copy").toFile());
+    }
+
+    @Benchmark
+    public void hashModules(Blackhole blackhole) throws IOException {
+        for (Path file : files) {
+            if (implementation == Implementation.GALLEON) {
+                blackhole.consume(HashUtils.hashPath(file));
+            } else {
+                blackhole.consume(NioFileUtils.hashPath(file));
+            }
+        }
+    }
+
+    @Benchmark
+    public void copyModules() throws IOException {
+        final Path target = workDir.resolve("copy");
+        if (implementation == Implementation.GALLEON) {
+            IoUtils.copy(sourceDir, target);
+        } else {
+            NioFileUtils.copy(sourceDir, target);
+        }
+    }
+
+    @Benchmark
+    public void copyAndHashModules(Blackhole blackhole) throws IOException {
+        final Path target = workDir.resolve("copy");
+        for (Path file : files) {
+            final Path copy = target.resolve(sourceDir.relativize(file).toString());
+            if (implementation == Implementation.GALLEON) {
+                IoUtils.copy(file, copy);
+                blackhole.consume(HashUtils.hashFile(copy));
+            } else {
+                blackhole.consume(NioFileUtils.copyAndHash(file, copy));
+            }
+        }
+    }
+
+    private static Path generateModules(Path modules) throws IOException {
+        final Random random = new Random(0);
+        final byte[] buffer = new byte[8192];
+        for (int i = 0; i < GENERATED_MODULES; i++) {
+            final Path moduleDir = Files.createDirectories(modules.resolve("system/layers/base/org/test/module" + i + "/main"));
+            Files.writeString(moduleDir.resolve("module.xml"), "<module name=\"org.test.module" + i + "\"><resources>"
+                    + "<resource-root path=\"module" + i + "-1.0.0.jar\"/></resources></module>");
+            // most of the module jars are small, with a few large ones
+            final int size = i % 50 == 0 ? LARGE_JAR_SIZE : SMALL_JAR_SIZE;
+            try (OutputStream out = Files.newOutputStream(moduleDir.resolve("module" + i + "-1.0.0.jar"))) {
+                for (int written = 0; written < size; written += buffer.length) {
+                    random.nextBytes(buffer);
+                    out.write(buffer, 0, Math.min(buffer.length, size - written));
+                }
+            }
+        }
+        return modules;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.jboss.galleon.ProvisioningException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.wildfly.prospero.api.MavenOptions;
+import org.wildfly.prospero.wfchannel.MavenSessionManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost of obtaining a repository system and sessions for one operation. Each operation (e.g.
+ * {@code update perform}) used to create a new repository system for every component needing one.
+ *
+ * By default each fork measures a single cold invocation, use {@code -bm avgt -wi 5} to measure a warmed up JVM.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 20)
+@Fork(5)
+public class MavenSessionManagerBenchmark {
+
+    /**
+     * number of components requesting a repository system and a session during one operation
+     */
+    @Param({"5"})
+    public int requests;
+
+    private Path localRepository;
+    private MavenOptions mavenOptions;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        localRepository = Files.createTempDirectory("session-manager-benchmark");
+        mavenOptions = MavenOptions.builder()
+                .setOffline(true)
+                .setLocalCachePath(localRepository)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtils.deleteQuietly(localRepository.toFile());
+    }
+
+    @Benchmark
+    public void newSystemPerRequest(Blackhole blackhole) throws ProvisioningException {
+        final MavenSessionManager msm = new MavenSessionManager(mavenOptions);
+        for (int i = 0; i < requests; i++) {
+            final RepositorySystem system = msm.newRepositorySystem();
+            final DefaultRepositorySystemSession session = msm.newRepositorySystemSession(system);
+            blackhole.consume(session);
+        }
+    }
+
+    @Benchmark
+    public void sharedSystem(Blackhole blackhole) throws ProvisioningException {
+        final MavenSessionManager msm = new MavenSessionManager(mavenOptions);
+        for (int i = 0; i < requests; i++) {
+            final RepositorySystem system = msm.getRepositorySystem();
+            final DefaultRepositorySystemSession session = msm.newRepositorySystemSession(system);
+            blackhole.consume(session);
+        }
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.benchmarks;
+
+import org.apache.commons.io.FileUtils;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.artifact.Artifact;
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.wildfly.channel.Channel;
+import org.wildfly.channel.ChannelManifest;
+import org.wildfly.channel.ChannelManifestMapper;
+import org.wildfly.channel.ChannelSession;
+import org.wildfly.channel.Stream;
+import org.wildfly.channel.maven.VersionResolverFactory;
+import org.wildfly.prospero.api.MavenOptions;
+import org.wildfly.prospero.api.exceptions.ArtifactResolutionException;
+import org.wildfly.prospero.updates.UpdateFinder;
+import org.wildfly.prospero.updates.UpdateSet;
+import org.wildfly.prospero.wfchannel.MavenSessionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Measures the cost of finding updates for an installation provisioned from a manifest the size of a full WildFly
+ * manifest. The channel uses a file-system repository as a stand-in for a remote repository.
+ *
+ * {@code PINNED} streams define the version in the manifest, {@code PATTERN} streams require reading the
+ * {@code maven-metadata.xml} of each artifact from the repository. With {@code useManifests} the finder is given the
+ * channel manifest and answers the pinned streams without querying the channel session.
+ *
+ * {@code UNIFORM} groups contain the same number of artifacts, {@code SKEWED} groups follow the distribution of a real
+ * server manifest, where a few groups (e.g. {@code org.wildfly.core}, {@code io.undertow}) contain most of the artifacts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class UpdateFinderBenchmark {
+
+    private static final String INSTALLED_VERSION = "1.0.0";
+    private static final String LATEST_VERSION = "1.0.1";
+    private static final int ARTIFACTS_PER_GROUP = 10;
+    // share of the artifacts in the largest group of a skewed distribution, the n-th group has 1/n of its size
+    private static final double LARGEST_GROUP_SHARE = 0.3;
+
+    public enum StreamType { PINNED, PATTERN }
+
+    public enum GroupDistribution { UNIFORM, SKEWED }
+
+    @Param({"PINNED", "PATTERN"})
+    public StreamType streamType;
+
+    @Param({"700"})
+    public int streamCount;
+
+    @Param({"UNIFORM", "SKEWED"})
+    public GroupDistribution groupDistribution;
+
+    @Param({"1", "10"})
+    public int parallelism;
+
+    @Param({"false", "true"})
+    public boolean useManifests;
+
+    private Path workDir;
+    private ChannelSession channelSession;
+    private List<ChannelManifest> manifests;
+    private List<Artifact> installedArtifacts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        workDir = Files.createTempDirectory("update-finder-benchmark");
+        final Path repository = Files.createDirectories(workDir.resolve("repository"));
+
+        final List<Stream> streams = new ArrayList<>();
+        installedArtifacts = new ArrayList<>();
+        final List<String> groupIds = groupIds();
+        for (int i = 0; i < streamCount; i++) {
+            final String groupId = groupIds.get(i);
+            final String artifactId = "artifact-" + i;
+            if (streamType == StreamType.PINNED) {
+                streams.add(new Stream(groupId, artifactId, LATEST_VERSION));
+            } else {
+                streams.add(new Stream(groupId, artifactId, Pattern.compile("1\\.0\\..*")));
+                writeMetadata(repository, groupId, artifactId);
+            }
+            installedArtifacts.add(new DefaultArtifact(groupId, artifactId, "jar", INSTALLED_VERSION));
+        }
+        final ChannelManifest channelManifest = new ChannelManifest("test-manifest", null, null, streams);
+        manifests = useManifests ? List.of(channelManifest) : Collections.emptyList();
+        final Path manifest = workDir.resolve("manifest.yaml");
+        Files.writeString(manifest, ChannelManifestMapper.toYaml(channelManifest));
+
+        final Channel channel = new Channel.Builder()
+                .setName("test-channel")
+                .setManifestUrl(manifest.toUri().toURL())
+                .addRepository("test-repo", repository.toUri().toURL().toExternalForm())
+                .build();
+
+        final MavenSessionManager msm = new MavenSessionManager(MavenOptions.builder()
+                .setOffline(true)
+                .setLocalCachePath(workDir.resolve("local-repository"))
+                .build());
+        final RepositorySystem system = msm.getRepositorySystem();
+        channelSession = new ChannelSession(List.of(channel), new VersionResolverFactory(system, msm.newRepositorySystemSession(system)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        channelSession.close();
+        FileUtils.deleteQuietly(workDir.toFile());
+    }
+
+    @Benchmark
+    public UpdateSet findUpdates() throws ArtifactResolutionException {
+        try (UpdateFinder finder = new UpdateFinder(channelSession, manifests, parallelism)) {
+            final UpdateSet updates = finder.findUpdates(installedArtifacts);
+            if (updates.getArtifactUpdates().size() != streamCount) {
+                throw new IllegalStateException("Expected " + streamCount + " updates, found " + updates.getArtifactUpdates().size());
+            }
+            return updates;
+        }
+    }
+
+    /**
+     * @return groupId of each of the {@code streamCount} artifacts
+     */
+    private List<String> groupIds() {
+        final List<String> groupIds = new ArrayList<>(streamCount);
+        if (groupDistribution == GroupDistribution.UNIFORM) {
+            for (int i = 0; i < streamCount; i++) {
+                groupIds.add("org.test.group" + (i / ARTIFACTS_PER_GROUP));
+            }
+            return groupIds;
+        }
+
+        int group = 0;
+        while (groupIds.size() < streamCount) {
+            final int size = Math.max(2, (int) (streamCount * LARGEST_GROUP_SHARE / (group + 1)));
+            for (int i = 0; i < size && groupIds.size() < streamCount; i++) {
+                groupIds.add("org.test.group" + group);
+            }
+            group++;
+        }
+        return groupIds;
+    }
+
+    private static void writeMetadata(Path repository, String groupId, String artifactId) throws Exception {
+        final Path dir = Files.createDirectories(repository.resolve(groupId.replace('.', '/')).resolve(artifactId));
+        Files.writeString(dir.resolve("maven-metadata.xml"),
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<metadata>\n" +
+                "  <groupId>" + groupId + "</groupId>\n" +
+                "  <artifactId>" + artifactId + "</artifactId>\n" +
+                "  <versioning>\n" +
+                "    <latest>" + LATEST_VERSION + "</latest>\n" +
+                "    <release>" + LATEST_VERSION + "</release>\n" +
+                "    <versions>\n" +
+                "      <version>" + INSTALLED_VERSION + "</version>\n" +
+                "      <version>" + LATEST_VERSION + "</version>\n" +
+                "    </versions>\n" +
+                "  </versioning>\n" +
+                "</metadata>\n");
+    }
+}
@@ -24,6 +24,7 @@ import org.jboss.galleon.ProvisioningException;
 import org.wildfly.channel.Repository;
 import org.wildfly.prospero.actions.ApplyCandidateAction;
 import org.wildfly.prospero.actions.FeaturesAddAction;
+import org.wildfly.prospero.actions.FleetUpdateAction;
 import org.wildfly.prospero.actions.SubscribeNewServerAction;
 import org.wildfly.prospero.api.Console;
 import org.wildfly.prospero.actions.InstallationExportAction;
@@ -57,6 +58,11 @@ public class ActionFactory {
         return new ApplyCandidateAction(installationPath, updatePath);
     }
 
+    public FleetUpdateAction fleetUpdate(List<Path> installationPaths, MavenOptions mavenOptions, Console console,
+                                         List<Repository> additionalRepositories) {
+        return new FleetUpdateAction(installationPaths, mavenOptions, console, additionalRepositories);
+    }
+
     public InstallationHistoryAction history(Path targetPath, Console console) {
         return new InstallationHistoryAction(targetPath, console);
     }
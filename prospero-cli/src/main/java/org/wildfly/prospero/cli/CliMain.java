@@ -23,6 +23,7 @@ import org.wildfly.prospero.cli.commands.CliConstants;
 import org.wildfly.prospero.cli.commands.CloneCommand;
 import org.wildfly.prospero.cli.commands.CompletionCommand;
 import org.wildfly.prospero.cli.commands.FeaturesCommand;
+import org.wildfly.prospero.cli.commands.GarbageCollectCommand;
 import org.wildfly.prospero.cli.commands.HistoryCommand;
 import org.wildfly.prospero.cli.commands.InstallCommand;
 import org.wildfly.prospero.cli.commands.MainCommand;
@@ -84,6 +85,7 @@ public class CliMain {
         revertCommand.addSubCommands(commandLine);
         commandLine.addSubcommand(new ChannelCommand(console, actionFactory));
         commandLine.addSubcommand(new CompletionCommand());
+        commandLine.addSubcommand(new GarbageCollectCommand(console, actionFactory));
 
         CommandLine channelCmd = commandLine.getSubcommands().get(CliConstants.Commands.CHANNEL);
         channelCmd.addSubcommand(new ChannelAddCommand(console, actionFactory));
@@ -406,6 +406,11 @@ public interface CliMessages {
                 format(bundle.getString("prospero.general.validation.conflicting_options"), option1, option2));
     }
 
+    default ArgumentParsingException optionRequires(String option, String requiredOption) {
+        return new ArgumentParsingException(
+                format(bundle.getString("prospero.general.validation.option_requires"), option, requiredOption));
+    }
+
     default ArgumentParsingException repositoryIsNotDirectory(Path repo) {
         return new ArgumentParsingException(format(bundle.getString("prospero.general.validation.local_repo.not_directory"), repo));
     }
@@ -414,6 +419,18 @@ public interface CliMessages {
         return new ArgumentParsingException(format(bundle.getString("prospero.general.validation.repo_format"), repoKey));
     }
 
+    default ArgumentParsingException invalidParallelism(int parallelism) {
+        return new ArgumentParsingException(format(bundle.getString("prospero.updates.list.validation.parallelism"), parallelism));
+    }
+
+    default ArgumentParsingException missingArtifactStore(String option, String property) {
+        return new ArgumentParsingException(format(bundle.getString("prospero.garbage_collect.validation.no_store"), option, property));
+    }
+
+    default String artifactStoreCollected(int removed, Path storeDir) {
+        return format(bundle.getString("prospero.garbage_collect.complete"), removed, storeDir);
+    }
+
     default IllegalArgumentException updateCandidateStateNotMatched(Path targetDir, Path updateDir) {
         return new IllegalArgumentException(format(bundle.getString("prospero.updates.apply.validation.candidate.outdated"), targetDir, updateDir));
     }
@@ -468,6 +485,30 @@ public interface CliMessages {
         return format(bundle.getString("prospero.updates.build.candidate.complete"), candidateDirectory.toAbsolutePath());
     }
 
+    default String fleetUpdateHeader(int installationCount) {
+        return format(bundle.getString("prospero.updates.fleet.header"), installationCount);
+    }
+
+    default String fleetInstallationUpdated(Path installationDir) {
+        return format(bundle.getString("prospero.updates.fleet.updated"), installationDir);
+    }
+
+    default String fleetUpdateGroupHeader(String installationDirs) {
+        return format(bundle.getString("prospero.updates.fleet.group.header"), installationDirs);
+    }
+
+    default String fleetInstallationCancelled(Path installationDir) {
+        return format(bundle.getString("prospero.updates.fleet.cancelled"), installationDir);
+    }
+
+    default String fleetInstallationNoUpdates(Path installationDir) {
+        return format(bundle.getString("prospero.updates.fleet.no_updates"), installationDir);
+    }
+
+    default String fleetInstallationFailed(Path installationDir, String reason) {
+        return format(bundle.getString("prospero.updates.fleet.failed"), installationDir, reason);
+    }
+
     default String checkUpdatesHeader(Path installationDir) {
         return format(bundle.getString("prospero.updates.list.header"), installationDir.toAbsolutePath());
     }
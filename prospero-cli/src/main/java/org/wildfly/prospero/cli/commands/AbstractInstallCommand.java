@@ -113,7 +113,7 @@ public abstract class AbstractInstallCommand extends AbstractCommand {
     }
 
     protected static VersionResolverFactory createVersionResolverFactory(MavenSessionManager mavenSessionManager) {
-        final RepositorySystem repositorySystem = mavenSessionManager.newRepositorySystem();
+        final RepositorySystem repositorySystem = mavenSessionManager.getRepositorySystem();
         final DefaultRepositorySystemSession repositorySystemSession = mavenSessionManager.newRepositorySystemSession(
                 repositorySystem);
         return new VersionResolverFactory(repositorySystem, repositorySystemSession);
@@ -59,6 +59,7 @@ public final class CliConstants {
         public static final String APPLY = "apply";
         public static final String PRINT_LICENSES = "print-licenses";
         public static final String SUBSCRIBE = "subscribe";
+        public static final String GARBAGE_COLLECT = "garbage-collect";
     }
 
     // Parameter and option labels:
@@ -80,14 +81,20 @@ public final class CliConstants {
     public static final String SHADE_REPOSITORIES = "--shade-repositories";
     public static final String DEFINITION = "--definition";
     public static final String DIR = "--dir";
+    public static final String DIRS = "--dirs";
+    public static final String DRY_RUN = "--dry-run";
     public static final String FPL = "--fpl";
+    public static final String FROM = "--from";
     public static final String H = "-h";
     public static final String HELP = "--help";
     public static final String LOCAL_CACHE = "--local-cache";
     public static final String NO_LOCAL_MAVEN_CACHE = "--no-resolve-local-cache";
     public static final String OFFLINE = "--offline";
+    public static final String PARALLELISM = "--parallelism";
     public static final String REVISION = "--revision";
     public static final String SELF = "--self";
+    public static final String STORE_DIR = "--store-dir";
+    public static final String TO = "--to";
     public static final String CANDIDATE_DIR = "--candidate-dir";
     public static final String V = "-v";
     public static final String VERSION = "--version";
@@ -76,36 +76,36 @@ public class FeaturesCommand extends AbstractParentCommand {
 
             console.println(CliMessages.MESSAGES.featuresAddHeader(fpl, installationDir));
 
-            final FeaturesAddAction featuresAddAction = actionFactory.featuresAddAction(installationDir, mavenOptions, repositories, console);
-
-            if (!featuresAddAction.isFeaturePackAvailable(fpl)) {
-                console.error(CliMessages.MESSAGES.featurePackNotFound(fpl));
-                return ReturnCodes.INVALID_ARGUMENTS;
-            }
-
-            if (!skipConfirmation) {
-                console.confirm(CliMessages.MESSAGES.featuresAddPrompt(),
-                        CliMessages.MESSAGES.featuresAddPromptAccepted(),
-                        CliMessages.MESSAGES.featuresAddPromptCancelled());
-            } else {
-                console.println(CliMessages.MESSAGES.featuresAddPromptAccepted());
-            }
+            try (FeaturesAddAction featuresAddAction = actionFactory.featuresAddAction(installationDir, mavenOptions, repositories, console)) {
+                if (!featuresAddAction.isFeaturePackAvailable(fpl)) {
+                    console.error(CliMessages.MESSAGES.featurePackNotFound(fpl));
+                    return ReturnCodes.INVALID_ARGUMENTS;
+                }
 
-            try {
-                featuresAddAction.addFeaturePackWithLayers(fpl, layers, parseConfigName(config));
-            } catch (FeaturesAddAction.LayerNotFoundException e) {
-                if (!e.getSupportedLayers().isEmpty()) {
-                    console.error(CliMessages.MESSAGES.layerNotSupported(fpl, e.getLayers(), e.getSupportedLayers()));
+                if (!skipConfirmation) {
+                    console.confirm(CliMessages.MESSAGES.featuresAddPrompt(),
+                            CliMessages.MESSAGES.featuresAddPromptAccepted(),
+                            CliMessages.MESSAGES.featuresAddPromptCancelled());
                 } else {
-                    console.error(CliMessages.MESSAGES.layerNotSupported(fpl));
+                    console.println(CliMessages.MESSAGES.featuresAddPromptAccepted());
+                }
+
+                try {
+                    featuresAddAction.addFeaturePackWithLayers(fpl, layers, parseConfigName(config));
+                } catch (FeaturesAddAction.LayerNotFoundException e) {
+                    if (!e.getSupportedLayers().isEmpty()) {
+                        console.error(CliMessages.MESSAGES.layerNotSupported(fpl, e.getLayers(), e.getSupportedLayers()));
+                    } else {
+                        console.error(CliMessages.MESSAGES.layerNotSupported(fpl));
+                    }
+                    return ReturnCodes.INVALID_ARGUMENTS;
+                } catch (FeaturesAddAction.ModelNotDefinedException e) {
+                    console.error(CliMessages.MESSAGES.modelNotSupported(fpl, e.getModel(), e.getSupportedModels()));
+                    return ReturnCodes.INVALID_ARGUMENTS;
+                } catch (FeaturesAddAction.ConfigurationNotFoundException e) {
+                    console.error(CliMessages.MESSAGES.galleonConfigNotSupported(fpl, e.getModel(), e.getName()));
+                    return ReturnCodes.INVALID_ARGUMENTS;
                 }
-                return ReturnCodes.INVALID_ARGUMENTS;
-            } catch (FeaturesAddAction.ModelNotDefinedException e) {
-                console.error(CliMessages.MESSAGES.modelNotSupported(fpl, e.getModel(), e.getSupportedModels()));
-                return ReturnCodes.INVALID_ARGUMENTS;
-            } catch (FeaturesAddAction.ConfigurationNotFoundException e) {
-                console.error(CliMessages.MESSAGES.galleonConfigNotSupported(fpl, e.getModel(), e.getName()));
-                return ReturnCodes.INVALID_ARGUMENTS;
             }
 
             final float totalTime = (System.currentTimeMillis() - startTime) / 1000f;
@@ -0,0 +1,57 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.cli.commands;
+
+import java.nio.file.Path;
+import java.util.Optional;
+
+import org.wildfly.prospero.cli.ActionFactory;
+import org.wildfly.prospero.cli.CliConsole;
+import org.wildfly.prospero.cli.CliMessages;
+import org.wildfly.prospero.cli.ReturnCodes;
+import org.wildfly.prospero.galleon.SharedArtifactStore;
+import picocli.CommandLine;
+
+@CommandLine.Command(
+        name = CliConstants.Commands.GARBAGE_COLLECT,
+        sortOptions = false
+)
+public class GarbageCollectCommand extends AbstractCommand {
+
+    @CommandLine.Option(names = CliConstants.STORE_DIR)
+    Optional<Path> storeDir;
+
+    public GarbageCollectCommand(CliConsole console, ActionFactory actionFactory) {
+        super(console, actionFactory);
+    }
+
+    @Override
+    public Integer call() throws Exception {
+        final SharedArtifactStore store;
+        if (storeDir.isPresent()) {
+            store = new SharedArtifactStore(storeDir.get());
+        } else {
+            store = SharedArtifactStore.fromSystemProperties()
+                    .orElseThrow(() -> CliMessages.MESSAGES.missingArtifactStore(CliConstants.STORE_DIR, SharedArtifactStore.STORE_PROPERTY));
+        }
+
+        final int removed = store.collectGarbage();
+        console.println(CliMessages.MESSAGES.artifactStoreCollected(removed, store.getStoreDir()));
+        return ReturnCodes.SUCCESS;
+    }
+}
@@ -43,6 +43,17 @@ public class HistoryCommand extends AbstractCommand {
     @CommandLine.Option(names = CliConstants.REVISION)
     Optional<String> revision;
 
+    @CommandLine.ArgGroup(exclusive = false)
+    RangeOptions range;
+
+    static class RangeOptions {
+        @CommandLine.Option(names = CliConstants.FROM, required = true)
+        String from;
+
+        @CommandLine.Option(names = CliConstants.TO, required = true)
+        String to;
+    }
+
     public HistoryCommand(CliConsole console, ActionFactory actionFactory) {
         super(console, actionFactory);
     }
@@ -52,41 +63,50 @@ public class HistoryCommand extends AbstractCommand {
         Path installationDirectory = determineInstallationDirectory(directory);
         InstallationHistoryAction historyAction = actionFactory.history(installationDirectory, console);
 
-        if (revision.isEmpty()) {
+        if (revision.isPresent() && range != null) {
+            throw CliMessages.MESSAGES.exclusiveOptions(CliConstants.REVISION, CliConstants.FROM);
+        }
+
+        if (range != null) {
+            printChanges(historyAction.compare(new SavedState(range.from), new SavedState(range.to)));
+        } else if (revision.isEmpty()) {
             List<SavedState> revisions = historyAction.getRevisions();
             for (SavedState savedState : revisions) {
                 console.println(savedState.shortDescription());
             }
         } else {
-            InstallationChanges changes = historyAction.compare(new SavedState(revision.get()));
-            if (changes.isEmpty()) {
-                console.println(CliMessages.MESSAGES.noChangesFound());
-            } else {
-                final DiffPrinter diffPrinter = new DiffPrinter("  ");
-                boolean needsLineBreak = false;
-                if (!changes.getArtifactChanges().isEmpty()) {
-                    console.println(CliMessages.MESSAGES.diffUpdates()+ ":");
-                    changes.getArtifactChanges().forEach(diffPrinter::print);
-                    needsLineBreak = true;
-                }
-                if (!changes.getChannelChanges().isEmpty()) {
-                    if (needsLineBreak) {
-                        console.println("");
-                    }
-                    console.println(CliMessages.MESSAGES.diffConfigChanges()+ ":");
-                    changes.getChannelChanges().forEach(diffPrinter::print);
-                    needsLineBreak = true;
+            printChanges(historyAction.compare(new SavedState(revision.get())));
+        }
+
+        return ReturnCodes.SUCCESS;
+    }
+
+    private void printChanges(InstallationChanges changes) {
+        if (changes.isEmpty()) {
+            console.println(CliMessages.MESSAGES.noChangesFound());
+        } else {
+            final DiffPrinter diffPrinter = new DiffPrinter("  ");
+            boolean needsLineBreak = false;
+            if (!changes.getArtifactChanges().isEmpty()) {
+                console.println(CliMessages.MESSAGES.diffUpdates()+ ":");
+                changes.getArtifactChanges().forEach(diffPrinter::print);
+                needsLineBreak = true;
+            }
+            if (!changes.getChannelChanges().isEmpty()) {
+                if (needsLineBreak) {
+                    console.println("");
                 }
-                if (!changes.getFeatureChanges().isEmpty()) {
-                    if (needsLineBreak) {
-                        console.println("");
-                    }
-                    console.println(CliMessages.MESSAGES.diffFeaturesChanges() + ":");
-                    changes.getFeatureChanges().forEach(diffPrinter::print);
+                console.println(CliMessages.MESSAGES.diffConfigChanges()+ ":");
+                changes.getChannelChanges().forEach(diffPrinter::print);
+                needsLineBreak = true;
+            }
+            if (!changes.getFeatureChanges().isEmpty()) {
+                if (needsLineBreak) {
+                    console.println("");
                 }
+                console.println(CliMessages.MESSAGES.diffFeaturesChanges() + ":");
+                changes.getFeatureChanges().forEach(diffPrinter::print);
             }
         }
-
-        return ReturnCodes.SUCCESS;
     }
 }
@@ -22,12 +22,13 @@ import java.net.MalformedURLException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.commons.io.FileUtils;
 import org.jboss.galleon.ProvisioningException;
 import org.jboss.galleon.config.ProvisioningConfig;
@@ -42,8 +43,10 @@ import org.wildfly.channel.ChannelManifestCoordinate;
 import org.wildfly.channel.Repository;
 import org.wildfly.prospero.ProsperoLogger;
 import org.wildfly.prospero.actions.ApplyCandidateAction;
+import org.wildfly.prospero.actions.FleetUpdateAction;
 import org.wildfly.prospero.actions.SubscribeNewServerAction;
 import org.wildfly.prospero.actions.UpdateAction;
+import org.wildfly.prospero.api.ApplyPlan;
 import org.wildfly.prospero.api.FileConflict;
 import org.wildfly.prospero.api.InstallationMetadata;
 import org.wildfly.prospero.api.KnownFeaturePacks;
@@ -62,6 +65,7 @@ import org.wildfly.prospero.galleon.GalleonUtils;
 import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
 import org.wildfly.prospero.model.KnownFeaturePack;
 import org.wildfly.prospero.updates.UpdateSet;
+import org.wildfly.prospero.utils.NioFileUtils;
 import picocli.CommandLine;
 
 import javax.xml.stream.XMLStreamException;
@@ -84,6 +88,12 @@ public class UpdateCommand extends AbstractParentCommand {
         @CommandLine.Option(names = CliConstants.SELF)
         boolean self;
 
+        @CommandLine.Option(names = CliConstants.DIRS, split = ",")
+        List<Path> directories = new ArrayList<>();
+
+        @CommandLine.Option(names = CliConstants.PARALLELISM)
+        Optional<Integer> parallelism = Optional.empty();
+
         @CommandLine.Option(names = {CliConstants.Y, CliConstants.YES})
         boolean yes;
 
@@ -96,6 +106,19 @@ public class UpdateCommand extends AbstractParentCommand {
             final long startTime = System.currentTimeMillis();
             final Path installationDir;
 
+            if (!directories.isEmpty()) {
+                if (self) {
+                    throw CliMessages.MESSAGES.exclusiveOptions(CliConstants.SELF, CliConstants.DIRS);
+                }
+                if (directory.isPresent()) {
+                    throw CliMessages.MESSAGES.exclusiveOptions(CliConstants.DIR, CliConstants.DIRS);
+                }
+                return performFleetUpdate(startTime);
+            }
+            if (parallelism.isPresent()) {
+                throw CliMessages.MESSAGES.optionRequires(CliConstants.PARALLELISM, CliConstants.DIRS);
+            }
+
             if (self) {
                 if (directory.isPresent()) {
                     installationDir = directory.get().toAbsolutePath();
@@ -124,6 +147,57 @@ public class UpdateCommand extends AbstractParentCommand {
             return ReturnCodes.SUCCESS;
         }
 
+        private int performFleetUpdate(long startTime) throws ArgumentParsingException, ProvisioningException {
+            if (parallelism.isPresent() && parallelism.get() < 1) {
+                throw CliMessages.MESSAGES.invalidParallelism(parallelism.get());
+            }
+            final List<Path> installationDirs = new ArrayList<>();
+            for (Path dir : directories) {
+                installationDirs.add(determineInstallationDirectory(Optional.of(dir)));
+            }
+
+            final MavenOptions mavenOptions = parseMavenOptions();
+            final List<Repository> repositories = RepositoryDefinition.from(temporaryRepositories);
+
+            log.tracef("Perform update of %d installations", installationDirs.size());
+
+            console.println(CliMessages.MESSAGES.fleetUpdateHeader(installationDirs.size()));
+
+            final FleetUpdateAction fleetUpdateAction = actionFactory.fleetUpdate(installationDirs, mavenOptions, console, repositories);
+            final List<FleetUpdateAction.InstallationResult> results = fleetUpdateAction.performUpdate(
+                    parallelism.orElse(FleetUpdateAction.DEFAULT_PARALLELISM), (dirs, updates) -> {
+                        console.println(CliMessages.MESSAGES.fleetUpdateGroupHeader(
+                                dirs.stream().map(Path::toString).collect(Collectors.joining(", "))));
+                        console.updatesFound(updates.getArtifactUpdates());
+                        return yes || console.confirmUpdates();
+                    });
+
+            boolean failed = false;
+            for (FleetUpdateAction.InstallationResult result : results) {
+                switch (result.getStatus()) {
+                    case UPDATED:
+                        console.println(CliMessages.MESSAGES.fleetInstallationUpdated(result.getInstallationDir()));
+                        FileConflictPrinter.print(result.getConflicts(), console);
+                        break;
+                    case NO_UPDATES:
+                        console.println(CliMessages.MESSAGES.fleetInstallationNoUpdates(result.getInstallationDir()));
+                        break;
+                    case CANCELLED:
+                        console.println(CliMessages.MESSAGES.fleetInstallationCancelled(result.getInstallationDir()));
+                        break;
+                    default:
+                        failed = true;
+                        final String reason = result.getError().map(Exception::getLocalizedMessage).orElse("");
+                        console.getErrOut().println(CliMessages.MESSAGES.fleetInstallationFailed(result.getInstallationDir(), reason));
+                }
+            }
+
+            final float totalTime = (System.currentTimeMillis() - startTime) / 1000f;
+            console.println(CliMessages.MESSAGES.operationCompleted(totalTime));
+
+            return failed ? ReturnCodes.PROCESSING_ERROR : ReturnCodes.SUCCESS;
+        }
+
         private boolean performUpdate(UpdateAction updateAction, boolean yes, CliConsole console, Path installDir) throws OperationException, ProvisioningException {
             Path targetDir = null;
             try {
@@ -215,6 +289,9 @@ public class UpdateCommand extends AbstractParentCommand {
         @CommandLine.Option(names = CliConstants.REMOVE)
         boolean remove;
 
+        @CommandLine.Option(names = CliConstants.DRY_RUN)
+        boolean dryRun;
+
         @CommandLine.Option(names = {CliConstants.Y, CliConstants.YES})
         boolean yes;
 
@@ -230,7 +307,9 @@ public class UpdateCommand extends AbstractParentCommand {
 
             verifyDirectoryContainsInstallation(candidateDir);
 
-            console.println(CliMessages.MESSAGES.updateHeader(installationDir));
+            if (!dryRun) {
+                console.println(CliMessages.MESSAGES.updateHeader(installationDir));
+            }
 
             final ApplyCandidateAction applyCandidateAction = actionFactory.applyUpdate(installationDir.toAbsolutePath(), candidateDir.toAbsolutePath());
 
@@ -243,6 +322,13 @@ public class UpdateCommand extends AbstractParentCommand {
                 throw CliMessages.MESSAGES.notCandidate(candidateDir.toAbsolutePath());
             }
 
+            if (dryRun) {
+                // only the plan is printed, so that the output can be parsed
+                final ApplyPlan plan = applyCandidateAction.getApplyPlan();
+                console.println(new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(plan));
+                return ReturnCodes.SUCCESS;
+            }
+
             console.updatesFound(applyCandidateAction.findUpdates().getArtifactUpdates());
             final List<FileConflict> conflicts = applyCandidateAction.getConflicts();
             FileConflictPrinter.print(conflicts, console);
@@ -269,6 +355,9 @@ public class UpdateCommand extends AbstractParentCommand {
     @CommandLine.Command(name = CliConstants.Commands.LIST, sortOptions = false)
     public static class ListCommand extends AbstractMavenCommand {
 
+        @CommandLine.Option(names = CliConstants.PARALLELISM)
+        Optional<Integer> parallelism = Optional.empty();
+
         public ListCommand(CliConsole console, ActionFactory actionFactory) {
             super(console, actionFactory);
         }
@@ -279,10 +368,18 @@ public class UpdateCommand extends AbstractParentCommand {
 
             final MavenOptions mavenOptions = parseMavenOptions();
             final List<Repository> repositories = RepositoryDefinition.from(temporaryRepositories);
+            if (parallelism.isPresent() && parallelism.get() < 1) {
+                throw CliMessages.MESSAGES.invalidParallelism(parallelism.get());
+            }
 
             console.println(CliMessages.MESSAGES.checkUpdatesHeader(installationDir));
             try (UpdateAction updateAction = actionFactory.update(installationDir, mavenOptions, console, repositories)) {
-                final UpdateSet updateSet = updateAction.findUpdates();
+                final UpdateSet updateSet;
+                if (parallelism.isPresent()) {
+                    updateSet = updateAction.findUpdates(parallelism.get());
+                } else {
+                    updateSet = updateAction.findUpdates();
+                }
                 console.updatesFound(updateSet.getArtifactUpdates());
 
                 final float totalTime = (System.currentTimeMillis() - startTime) / 1000f;
@@ -375,7 +472,7 @@ public class UpdateCommand extends AbstractParentCommand {
             if (!generateResult.isManifestCoordDefined()) {
                 // if manifest is not defined, make a copy of manifest
                 Path manifestPathCopy = manifestPath.getParent().resolve("manifest-" + product + "-" + version + ".yaml");
-                Files.copy(manifestPath, manifestPathCopy, StandardCopyOption.REPLACE_EXISTING);
+                NioFileUtils.copy(manifestPath, manifestPathCopy);
                 channels = channels.stream().map(c -> {
                     try {
                         return new Channel(c.getName(), c.getDescription(), c.getVendor(), c.getRepositories(),
@@ -17,6 +17,8 @@
 
 package org.wildfly.prospero.cli.commands;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Rule;
@@ -25,7 +27,9 @@ import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.wildfly.prospero.ProsperoLogger;
 import org.wildfly.prospero.actions.ApplyCandidateAction;
+import org.wildfly.prospero.api.ApplyPlan;
 import org.wildfly.prospero.api.FileConflict;
 import org.wildfly.prospero.api.exceptions.MetadataException;
 import org.wildfly.prospero.cli.AbstractConsoleTest;
@@ -42,6 +46,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
@@ -188,6 +193,75 @@ public class ApplyUpdateCommandTest extends AbstractConsoleTest {
         assertEquals(1, askedConfirmation);
     }
 
+    @Test
+    public void dryRunPrintsPlanWithoutApplying() throws Exception {
+        final Path updatePath = mockInstallation("update");
+        final Path targetPath = mockInstallation("target");
+        final ApplyPlan.Builder plan = new ApplyPlan.Builder();
+        plan.add(ApplyPlan.OperationType.COPY, "prod1/p1.txt", 10);
+        when(applyCandidateAction.getApplyPlan()).thenReturn(plan.build(Collections.emptyList()));
+
+        int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.APPLY,
+                CliConstants.CANDIDATE_DIR, updatePath.toString(),
+                CliConstants.DIR, targetPath.toString(),
+                CliConstants.DRY_RUN);
+
+        Assert.assertEquals(getErrorOutput(), ReturnCodes.SUCCESS, exitCode);
+        verify(applyCandidateAction, never()).applyUpdate(any());
+        final JsonNode output = new ObjectMapper().readTree(getStandardOutput());
+        assertEquals("prod1/p1.txt", output.get("operations").get(0).get("relativePath").asText());
+        assertEquals(10, output.get("bytesToCopy").asLong());
+        assertEquals(0, askedConfirmation);
+    }
+
+    @Test
+    public void dryRunPrintsConflictsAndCopiedFiles() throws Exception {
+        final Path updatePath = mockInstallation("update");
+        final Path targetPath = mockInstallation("target");
+        final ApplyPlan.Builder plan = new ApplyPlan.Builder();
+        plan.add(ApplyPlan.OperationType.COPY, "prod1/p2.txt", 20);
+        plan.add(ApplyPlan.OperationType.COPY, "prod1/p3.txt", 30);
+        plan.add(ApplyPlan.OperationType.GLNEW, "prod1/p1.txt.glnew", 10);
+        plan.hashed(1000, TimeUnit.SECONDS.toNanos(1));
+        final FileConflict conflict = FileConflict.userModified("prod1/p1.txt").updateModified().userPreserved();
+        when(applyCandidateAction.getApplyPlan()).thenReturn(plan.build(List.of(conflict)));
+
+        int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.APPLY,
+                CliConstants.CANDIDATE_DIR, updatePath.toString(),
+                CliConstants.DIR, targetPath.toString(),
+                CliConstants.DRY_RUN);
+
+        Assert.assertEquals(getErrorOutput(), ReturnCodes.SUCCESS, exitCode);
+        verify(applyCandidateAction, never()).applyUpdate(any());
+        verify(applyCandidateAction, never()).getConflicts();
+        final JsonNode output = new ObjectMapper().readTree(getStandardOutput());
+        assertEquals(1, output.get("conflicts").size());
+        assertEquals("prod1/p1.txt", output.get("conflicts").get(0).get("relativePath").asText());
+        assertEquals(FileConflict.Resolution.USER.name(), output.get("conflicts").get(0).get("resolution").asText());
+        assertEquals(2, output.get("filesToCopy").asLong());
+        assertEquals(60, output.get("bytesToCopy").asLong());
+        assertEquals(1000, output.get("diskThroughput").asLong());
+        assertTrue(output.get("estimatedApplyTimeMillis").asLong() >= 60);
+        assertEquals(0, askedConfirmation);
+    }
+
+    @Test
+    public void dryRunFailsIfInstallationContainsUnfinishedOperation() throws Exception {
+        final Path updatePath = mockInstallation("update");
+        final Path targetPath = mockInstallation("target");
+        when(applyCandidateAction.getApplyPlan()).thenThrow(ProsperoLogger.ROOT_LOGGER.unfinishedApplyPending(targetPath));
+
+        int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.APPLY,
+                CliConstants.CANDIDATE_DIR, updatePath.toString(),
+                CliConstants.DIR, targetPath.toString(),
+                CliConstants.DRY_RUN);
+
+        Assert.assertEquals(ReturnCodes.PROCESSING_ERROR, exitCode);
+        assertTrue(getErrorOutput(), getErrorOutput().contains(
+                ProsperoLogger.ROOT_LOGGER.unfinishedApplyPending(targetPath).getMessage()));
+        verify(applyCandidateAction, never()).applyUpdate(any());
+    }
+
     private Path mockInstallation(String target) throws IOException, MetadataException, XMLStreamException {
         final Path targetPath = temp.newFolder(target).toPath();
         MetadataTestUtils.createInstallationMetadata(targetPath).close();
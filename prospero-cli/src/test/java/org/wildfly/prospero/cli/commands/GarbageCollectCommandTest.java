@@ -0,0 +1,105 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.wildfly.prospero.cli.commands;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.prospero.cli.AbstractConsoleTest;
+import org.wildfly.prospero.cli.CliMessages;
+import org.wildfly.prospero.cli.ReturnCodes;
+import org.wildfly.prospero.galleon.SharedArtifactStore;
+import org.wildfly.prospero.utils.NioFileUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GarbageCollectCommandTest extends AbstractConsoleTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private Path storeDir;
+    private Path blob;
+
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        storeDir = tempFolder.newFolder().toPath();
+        final Path artifact = tempFolder.newFile().toPath();
+        Files.writeString(artifact, "test artifact");
+        // the blob is not referenced by any installation, the installation that added it no longer exists
+        final Path removedInstallation = tempFolder.newFolder().toPath();
+        blob = new SharedArtifactStore(storeDir).add(removedInstallation, artifact, NioFileUtils.hashFile(artifact));
+        Files.delete(removedInstallation);
+    }
+
+    @After
+    public void tearDown() {
+        System.clearProperty(SharedArtifactStore.STORE_PROPERTY);
+    }
+
+    @Test
+    public void removesUnusedArtifactsFromStoreDir() {
+        int exitCode = commandLine.execute(CliConstants.Commands.GARBAGE_COLLECT,
+                CliConstants.STORE_DIR, storeDir.toString());
+
+        assertEquals(ReturnCodes.SUCCESS, exitCode);
+        assertFalse(Files.exists(blob));
+        assertTrue(getStandardOutput().contains(CliMessages.MESSAGES.artifactStoreCollected(1, storeDir.toAbsolutePath())));
+    }
+
+    @Test
+    public void usesStoreFromSystemProperty() {
+        System.setProperty(SharedArtifactStore.STORE_PROPERTY, storeDir.toString());
+
+        int exitCode = commandLine.execute(CliConstants.Commands.GARBAGE_COLLECT);
+
+        assertEquals(ReturnCodes.SUCCESS, exitCode);
+        assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    public void storeDirTakesPrecedenceOverSystemProperty() throws Exception {
+        final Path otherStore = tempFolder.newFolder().toPath();
+        System.setProperty(SharedArtifactStore.STORE_PROPERTY, otherStore.toString());
+
+        int exitCode = commandLine.execute(CliConstants.Commands.GARBAGE_COLLECT,
+                CliConstants.STORE_DIR, storeDir.toString());
+
+        assertEquals(ReturnCodes.SUCCESS, exitCode);
+        assertFalse(Files.exists(blob));
+    }
+
+    @Test
+    public void missingStoreIsRejected() {
+        int exitCode = commandLine.execute(CliConstants.Commands.GARBAGE_COLLECT);
+
+        assertEquals(ReturnCodes.INVALID_ARGUMENTS, exitCode);
+        assertTrue(Files.exists(blob));
+        assertTrue(getErrorOutput().contains(CliMessages.MESSAGES.missingArtifactStore(CliConstants.STORE_DIR,
+                SharedArtifactStore.STORE_PROPERTY).getMessage()));
+    }
+}
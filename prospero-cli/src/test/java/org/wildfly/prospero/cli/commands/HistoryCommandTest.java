@@ -112,4 +112,35 @@ public class HistoryCommandTest extends AbstractConsoleTest {
         verify(historyAction).compare(eq(new SavedState("abcd")));
         assertTrue(getStandardOutput().contains("foo:bar"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void displayChangesBetweenRevisions() throws Exception {
+        final List<ArtifactChange> changes = Arrays.asList(ArtifactChange.updated(
+                new DefaultArtifact("foo", "bar", "jar", "1.1"),
+                new DefaultArtifact("foo", "bar", "jar", "1.3")));
+        when(historyAction.compare(any(), any())).thenReturn(new InstallationChanges(changes, Collections.emptyList(), Collections.emptyList()));
+
+        int exitCode = commandLine.execute(CliConstants.Commands.HISTORY, CliConstants.DIR, installationDir.toString(),
+                CliConstants.FROM, "abcd", CliConstants.TO, "efgh");
+        assertEquals(ReturnCodes.SUCCESS, exitCode);
+        verify(historyAction).compare(eq(new SavedState("abcd")), eq(new SavedState("efgh")));
+        assertTrue(getStandardOutput().contains("foo:bar"));
+    }
+
+    @Test
+    public void fromRequiresTo() throws Exception {
+        int exitCode = commandLine.execute(CliConstants.Commands.HISTORY, CliConstants.DIR, installationDir.toString(),
+                CliConstants.FROM, "abcd");
+        assertEquals(ReturnCodes.INVALID_ARGUMENTS, exitCode);
+        assertTrue(getErrorOutput().contains(CliConstants.TO));
+    }
+
+    @Test
+    public void revisionAndRangeAreExclusive() throws Exception {
+        int exitCode = commandLine.execute(CliConstants.Commands.HISTORY, CliConstants.DIR, installationDir.toString(),
+                CliConstants.REVISION, "abcd", CliConstants.FROM, "abcd", CliConstants.TO, "efgh");
+        assertEquals(ReturnCodes.INVALID_ARGUMENTS, exitCode);
+        assertTrue(getErrorOutput().contains(CliMessages.MESSAGES
+                .exclusiveOptions(CliConstants.REVISION, CliConstants.FROM).getMessage()));
+    }
+}
@@ -37,6 +37,7 @@ import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.wildfly.channel.Repository;
 import org.wildfly.prospero.actions.ApplyCandidateAction;
+import org.wildfly.prospero.actions.FleetUpdateAction;
 import org.wildfly.prospero.actions.UpdateAction;
 import org.wildfly.prospero.api.ArtifactChange;
 import org.wildfly.prospero.api.MavenOptions;
@@ -48,8 +49,10 @@ import org.wildfly.prospero.test.MetadataTestUtils;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.when;
@@ -70,6 +73,9 @@ public class UpdateCommandTest extends AbstractMavenCommandTest {
     @Mock
     private ActionFactory actionFactory;
 
+    @Mock
+    private FleetUpdateAction fleetUpdateAction;
+
     @Captor
     private ArgumentCaptor<MavenOptions> mavenOptions;
 
@@ -123,6 +129,75 @@ public class UpdateCommandTest extends AbstractMavenCommandTest {
         Mockito.verify(applyCandidateAction).applyUpdate(ApplyCandidateAction.Type.UPDATE);
     }
 
+    @Test
+    public void callFleetUpdate() throws Exception {
+        final Path otherInstallationDir = tempFolder.newFolder().toPath();
+        MetadataTestUtils.createInstallationMetadata(otherInstallationDir);
+        MetadataTestUtils.createGalleonProvisionedState(otherInstallationDir, A_PROSPERO_FP);
+        when(actionFactory.fleetUpdate(any(), any(), any(), any())).thenReturn(fleetUpdateAction);
+        when(fleetUpdateAction.performUpdate(anyInt(), any())).thenReturn(Collections.emptyList());
+
+        int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.PERFORM,
+                CliConstants.DIRS, installationDir + "," + otherInstallationDir, CliConstants.PARALLELISM, "2");
+
+        assertEquals(ReturnCodes.SUCCESS, exitCode);
+        Mockito.verify(actionFactory).fleetUpdate(eq(List.of(installationDir.toAbsolutePath(), otherInstallationDir.toAbsolutePath())),
+                any(), any(), any());
+        Mockito.verify(fleetUpdateAction).performUpdate(eq(2), any());
+        Mockito.verify(actionFactory, never()).update(any(), any(), any(), any());
+    }
+
+    @Test
+    public void fleetUpdateAsksForConfirmation() throws Exception {
+        when(actionFactory.fleetUpdate(any(), any(), any(), any())).thenReturn(fleetUpdateAction);
+        when(fleetUpdateAction.performUpdate(anyInt(), any())).thenReturn(Collections.emptyList());
+        this.setDenyConfirm(true);
+
+        int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.PERFORM,
+                CliConstants.DIRS, installationDir.toString());
+
+        assertEquals(ReturnCodes.SUCCESS, exitCode);
+        final ArgumentCaptor<FleetUpdateAction.UpdateConfirmation> confirmation = ArgumentCaptor.forClass(FleetUpdateAction.UpdateConfirmation.class);
+        Mockito.verify(fleetUpdateAction).performUpdate(eq(FleetUpdateAction.DEFAULT_PARALLELISM), confirmation.capture());
+        assertFalse(confirmation.getValue().confirm(List.of(installationDir), new UpdateSet(List.of(change("1.0.0", "1.0.1")))));
+        assertEquals(1, getAskedConfirmation());
+    }
+
+    @Test
+    public void fleetUpdateWithYesDoesNotAskForConfirmation() throws Exception {
+        when(actionFactory.fleetUpdate(any(), any(), any(), any())).thenReturn(fleetUpdateAction);
+        when(fleetUpdateAction.performUpdate(anyInt(), any())).thenReturn(Collections.emptyList());
+
+        int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.PERFORM,
+                CliConstants.DIRS, installationDir.toString(), CliConstants.YES);
+
+        assertEquals(ReturnCodes.SUCCESS, exitCode);
+        final ArgumentCaptor<FleetUpdateAction.UpdateConfirmation> confirmation = ArgumentCaptor.forClass(FleetUpdateAction.UpdateConfirmation.class);
+        Mockito.verify(fleetUpdateAction).performUpdate(anyInt(), confirmation.capture());
+        assertTrue(confirmation.getValue().confirm(List.of(installationDir), new UpdateSet(List.of(change("1.0.0", "1.0.1")))));
+        assertEquals(0, getAskedConfirmation());
+    }
+
+    @Test
+    public void parallelismRequiresDirs() {
+        int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.PERFORM,
+                CliConstants.DIR, installationDir.toString(), CliConstants.PARALLELISM, "2");
+
+        assertEquals(ReturnCodes.INVALID_ARGUMENTS, exitCode);
+        assertTrue(getErrorOutput().contains(CliMessages.MESSAGES
+                .optionRequires(CliConstants.PARALLELISM, CliConstants.DIRS).getMessage()));
+    }
+
+    @Test
+    public void fleetUpdateAndSelfAreExclusive() {
+        int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.PERFORM,
+                CliConstants.DIRS, installationDir.toString(), CliConstants.SELF);
+
+        assertEquals(ReturnCodes.INVALID_ARGUMENTS, exitCode);
+        assertTrue(getErrorOutput().contains(CliMessages.MESSAGES
+                .exclusiveOptions(CliConstants.SELF, CliConstants.DIRS).getMessage()));
+    }
+
     @Test
     public void selfUpdateRequiresModulePathProp() {
         int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.PERFORM, CliConstants.SELF);
@@ -227,6 +302,29 @@ public class UpdateCommandTest extends AbstractMavenCommandTest {
         Mockito.verify(updateAction).findUpdates();
     }
 
+    @Test
+    public void testListPassesParallelism() throws Exception {
+        when(updateAction.findUpdates(4)).thenReturn(new UpdateSet(List.of(change("1.0.0", "1.0.1"))));
+
+        int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.LIST,
+                CliConstants.DIR, installationDir.toAbsolutePath().toString(),
+                CliConstants.PARALLELISM, "4");
+
+        assertEquals(ReturnCodes.SUCCESS, exitCode);
+        Mockito.verify(updateAction).findUpdates(4);
+    }
+
+    @Test
+    public void testListRejectsInvalidParallelism() throws Exception {
+        int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.LIST,
+                CliConstants.DIR, installationDir.toAbsolutePath().toString(),
+                CliConstants.PARALLELISM, "0");
+
+        assertEquals(ReturnCodes.INVALID_ARGUMENTS, exitCode);
+        assertTrue(getErrorOutput().contains(CliMessages.MESSAGES.invalidParallelism(0).getMessage()));
+        Mockito.verify(updateAction, never()).findUpdates(anyInt());
+    }
+
     @Test
     public void testListCurrentDirNotValidInstallation() {
         int exitCode = commandLine.execute(CliConstants.Commands.UPDATE, CliConstants.Commands.LIST);
@@ -162,6 +162,10 @@ public interface ProsperoLogger extends BasicLogger {
     @Message(id = 31, value = "Server provisioned into %s")
     void provisioningComplete(Path installDir);
 
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 32, value = "Getting changes between %s and %s of %s")
+    void historyRangeDetails(String fromStateName, String toStateName, Path path);
+
 
     // 200+ - errors
     @Message(id = 200, value = "Aborting update - the server appears to be running.")
@@ -347,4 +351,41 @@ public interface ProsperoLogger extends BasicLogger {
 
     @Message(id = 259, value = "Requested configuration %s/%s is not available in the feature packs.")
     String galleonConfigNotFound(String model, String name);
+
+    @LogMessage(level = Logger.Level.DEBUG)
+    @Message(id = 260, value = "Building the update candidate incrementally, only changed artifacts are laid out")
+    void incrementalCandidate();
+
+    @Message(id = 261, value = "Unable to lay out the update candidate")
+    ProvisioningException unableToLayoutCandidate(@Cause Throwable t);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 262, value = "Found an interrupted operation in %s, reverting its changes")
+    void rollingBackInterruptedApply(Path installationDir);
+
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 263, value = "Found a completed operation in %s, removing its journal")
+    void rollingForwardInterruptedApply(Path installationDir);
+
+    @Message(id = 264, value = "Unable to recover an interrupted operation in %s")
+    MetadataException unableToRecoverInterruptedApply(Path installationDir, @Cause Throwable t);
+
+    @LogMessage(level = Logger.Level.INFO)
+    @Message(id = 265, value = "Updating %d installations with the same channels and provisioning configuration as %s")
+    void updatingInstallationGroup(int size, Path installationDir);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 266, value = "Unable to update the installation %s")
+    void unableToUpdateInstallation(Path installationDir, @Cause Throwable t);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 267, value = "The operation in %s failed, reverting its changes")
+    void rollingBackFailedApply(Path installationDir);
+
+    @LogMessage(level = Logger.Level.WARN)
+    @Message(id = 268, value = "Unable to record the artifacts used by %s in the shared artifact store %s. The artifacts might be removed from the store by the garbage collection")
+    void unableToRecordSharedStoreReferences(Path installationDir, Path storeDir, @Cause Throwable t);
+
+    @Message(id = 269, value = "The installation %s contains changes of an unfinished operation. The changes cannot be planned until the operation is completed or rolled back")
+    ProvisioningException unfinishedApplyPending(Path installationDir);
 }
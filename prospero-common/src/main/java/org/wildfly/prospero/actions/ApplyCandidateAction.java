@@ -29,17 +29,26 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.eclipse.aether.artifact.Artifact;
 import org.jboss.galleon.Constants;
 import org.jboss.galleon.Errors;
 
 import org.jboss.galleon.ProvisioningManager;
+import org.wildfly.channel.ChannelManifest;
 import org.wildfly.prospero.ProsperoLogger;
+import org.wildfly.prospero.api.ApplyPlan;
 import org.wildfly.prospero.api.ArtifactChange;
 import org.wildfly.prospero.api.FileConflict;
 import org.wildfly.prospero.api.InstallationMetadata;
@@ -61,17 +70,22 @@ import static org.jboss.galleon.diff.FsDiff.REMOVED;
 import static org.jboss.galleon.diff.FsDiff.formatMessage;
 import static org.wildfly.prospero.metadata.ProsperoMetadataUtils.CURRENT_VERSION_FILE;
 
-import org.jboss.galleon.diff.FsEntry;
 import org.jboss.galleon.layout.SystemPaths;
 import org.jboss.galleon.util.HashUtils;
 import org.jboss.galleon.util.IoUtils;
 import org.jboss.galleon.util.PathsUtils;
 import org.wildfly.prospero.galleon.ArtifactCache;
 import org.wildfly.prospero.galleon.GalleonEnvironment;
+import org.wildfly.prospero.galleon.ProvisionedHashIndex;
+import org.wildfly.prospero.galleon.ProvisionedStateDiff;
+import org.wildfly.prospero.galleon.SharedArtifactStore;
 import org.wildfly.prospero.installation.git.GitStorage;
 import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
+import org.wildfly.prospero.updates.ApplyJournal;
 import org.wildfly.prospero.updates.MarkerFile;
 import org.wildfly.prospero.updates.UpdateSet;
+import org.wildfly.prospero.utils.NioFileUtils;
+import org.wildfly.prospero.utils.ParallelExecutor;
 import org.wildfly.prospero.wfchannel.MavenSessionManager;
 
 /**
@@ -81,9 +95,34 @@ import org.wildfly.prospero.wfchannel.MavenSessionManager;
 public class ApplyCandidateAction {
     public static final Path STANDALONE_STARTUP_MARKER = Path.of("standalone", "tmp", "startup-marker");
     public static final Path DOMAIN_STARTUP_MARKER = Path.of("domain", "tmp", "startup-marker");
+    /**
+     * System property defining the number of threads used to hash and copy files when applying the candidate.
+     * Defaults to the number of available processors.
+     */
+    public static final String APPLY_PARALLELISM_PROPERTY = "prospero.apply.parallelism";
     private final Path updateDir;
     private final Path installationDir;
     private final SystemPaths systemPaths;
+    private final int parallelism;
+    private final TransferMode transferMode;
+    private final AtomicBoolean transferSupported = new AtomicBoolean(true);
+    private final SharedArtifactStore sharedStore;
+    // journal of the operation being applied, null if the installation is not being modified
+    private volatile ApplyJournal journal;
+
+    /**
+     * Defines how the updated files are transferred from the candidate into the installation.
+     */
+    public enum TransferMode {
+        /**
+         * the files are copied and the candidate is left unchanged.
+         */
+        COPY,
+        /**
+         * the files are moved from the candidate into the installation. The candidate is not usable after the operation.
+         */
+        MOVE
+    }
 
     public enum Type {
         UPDATE("UPDATE"), REVERT("REVERT"), FEATURE_ADD("FEATURE_ADD");
@@ -114,8 +153,44 @@ public class ApplyCandidateAction {
 
     public ApplyCandidateAction(Path installationDir, Path updateDir)
             throws ProvisioningException, OperationException {
+        this(installationDir, updateDir, TransferMode.COPY);
+    }
+
+    /**
+     * @param transferMode - how the updated files are transferred into the installation. If the candidate and the
+     *                     installation are on different filesystems, or the filesystem doesn't support links,
+     *                     the files are copied.
+     */
+    public ApplyCandidateAction(Path installationDir, Path updateDir, TransferMode transferMode)
+            throws ProvisioningException, OperationException {
+        this(installationDir, updateDir, Integer.getInteger(APPLY_PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()),
+                transferMode);
+    }
+
+    /**
+     * @param parallelism - number of threads used to hash and copy files. The conflict resolution doesn't depend on
+     *                    the number of threads.
+     */
+    public ApplyCandidateAction(Path installationDir, Path updateDir, int parallelism)
+            throws ProvisioningException, OperationException {
+        this(installationDir, updateDir, parallelism, TransferMode.COPY);
+    }
+
+    /**
+     * @param parallelism - number of threads used to hash and copy files.
+     * @param transferMode - how the updated files are transferred into the installation.
+     */
+    public ApplyCandidateAction(Path installationDir, Path updateDir, int parallelism, TransferMode transferMode)
+            throws ProvisioningException, OperationException {
+        Objects.requireNonNull(transferMode);
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism has to be a positive number, was " + parallelism);
+        }
         this.updateDir = updateDir;
         this.installationDir = installationDir;
+        this.parallelism = parallelism;
+        this.transferMode = transferMode;
+        this.sharedStore = SharedArtifactStore.fromSystemProperties().orElse(null);
 
         try {
             this.systemPaths = SystemPaths.load(updateDir);
@@ -134,6 +209,9 @@ public class ApplyCandidateAction {
      * (apart from {@code system-paths}) conflict with user changes, the user changes are preserved and the updated file
      * is added with {@code'.glnew'} suffix.
      *
+     * The changes are recorded in an {@link ApplyJournal} before they are made. If a previous operation was interrupted,
+     * it is rolled back first. If this operation fails, its changes are reverted before the exception is thrown, if it is
+     * interrupted, it is rolled back the next time the installation is used.
      *
      * @return list of solved {@code FileConflict}s
      * @throws ProvisioningException - if unable to apply the changes from {@code updateDir} to {@code installationDir}
@@ -141,6 +219,12 @@ public class ApplyCandidateAction {
      * @throws MetadataException - if unable to read or write the installation of update metadata
      */
     public List<FileConflict> applyUpdate(Type operation) throws ProvisioningException, OperationException {
+        try {
+            ApplyJournal.recover(installationDir);
+        } catch (IOException e) {
+            throw ProsperoLogger.ROOT_LOGGER.unableToRecoverInterruptedApply(installationDir, e);
+        }
+
         if (ValidationResult.OK != verifyCandidate(operation)) {
             final InvalidUpdateCandidateException ex = ProsperoLogger.ROOT_LOGGER.invalidUpdateCandidate(updateDir, installationDir);
             ProsperoLogger.ROOT_LOGGER.warn("", ex);
@@ -153,14 +237,15 @@ public class ApplyCandidateAction {
             throw ex;
         }
 
-        FsDiff diffs = findChanges();
-        try {
+        try (ParallelExecutor executor = new ParallelExecutor(parallelism)) {
+            final UserChanges diffs = findChanges(executor, null);
             ProsperoLogger.ROOT_LOGGER.applyingCandidate(operation.text.toLowerCase(Locale.ROOT), updateDir);
             ProsperoLogger.ROOT_LOGGER.candidateChanges(
                     findUpdates().getArtifactUpdates().stream().map(ArtifactChange::prettyPrint).collect(Collectors.joining("; "))
                     );
 
-            final List<FileConflict> conflicts = doApplyUpdate(diffs);
+            journal = ApplyJournal.begin(installationDir, operation.text, currentRevision());
+            final List<FileConflict> conflicts = doApplyUpdate(diffs, executor, null);
 
             if (conflicts.isEmpty()) {
                 ProsperoLogger.ROOT_LOGGER.noCandidateConflicts();
@@ -174,10 +259,70 @@ public class ApplyCandidateAction {
             }
 
             updateMetadata(operation);
+            journal.commit();
+            journal = null;
             ProsperoLogger.ROOT_LOGGER.candidateApplied(operation.text, installationDir);
             return conflicts;
         } catch (IOException ex) {
-            throw new ProvisioningException(ex);
+            throw rollbackJournal(new ProvisioningException(ex));
+        } catch (ProvisioningException | OperationException | RuntimeException ex) {
+            throw rollbackJournal(ex);
+        }
+    }
+
+    /**
+     * reverts the changes made by the failed operation using the journal. If the changes cannot be reverted, the journal
+     * is kept in the installation and the changes are rolled back the next time the installation is used. Any failure
+     * to roll back is added to the {@code failure} as suppressed, so that the original cause is not lost.
+     *
+     * @return the {@code failure}
+     */
+    private <T extends Exception> T rollbackJournal(T failure) {
+        final ApplyJournal current = journal;
+        journal = null;
+        if (current != null) {
+            try {
+                current.rollback();
+            } catch (IOException | RuntimeException e) {
+                failure.addSuppressed(e);
+                try {
+                    current.close();
+                } catch (IOException closeException) {
+                    failure.addSuppressed(closeException);
+                }
+            }
+        }
+        return failure;
+    }
+
+    /**
+     * records {@code installationFile} in the journal before it is written or deleted. Does nothing if the installation
+     * is not being modified by {@link #applyUpdate(Type)}.
+     */
+    private void prepareWrite(Path installationFile) throws IOException {
+        final ApplyJournal current = journal;
+        if (current != null) {
+            current.beforeWrite(installationDir.relativize(installationFile));
+        }
+    }
+
+    /**
+     * records all the {@code installationFiles} in the journal before they are written, flushing the journal once.
+     * Each file still has to be prepared with {@link #prepareWrite(Path)}, which backs up the existing files.
+     */
+    private void prepareWrites(List<Path> installationFiles) throws IOException {
+        final ApplyJournal current = journal;
+        if (current != null) {
+            current.record(installationFiles.stream().map(installationDir::relativize).collect(Collectors.toList()));
+        }
+    }
+
+    private void delete(Path installationFile) throws IOException {
+        final ApplyJournal current = journal;
+        if (current != null) {
+            current.delete(installationDir.relativize(installationFile));
+        } else {
+            IoUtils.recursiveDelete(installationFile);
         }
     }
 
@@ -186,7 +331,9 @@ public class ApplyCandidateAction {
     }
 
     /**
-     * checks that the candidate is an update of a current state of installation
+     * checks that the candidate is an update of a current state of installation. The candidate is accepted if it was
+     * prepared from the current revision of the installation, or from any installation with the same installed manifest
+     * and provisioning configuration (see {@link MarkerFile#installationState(Path, ChannelManifest)}).
      *
      * @return true if the candidate can be applied to installation
      * @throws InvalidUpdateCandidateException - if the candidate has no marker file
@@ -203,9 +350,9 @@ public class ApplyCandidateAction {
         try {
             final MarkerFile marker = MarkerFile.read(updateDir);
 
-            final String hash = marker.getState();
             try(InstallationMetadata metadata = InstallationMetadata.loadInstallation(installationDir)) {
-                if (!metadata.getRevisions().get(0).getName().equals(hash)) {
+                final String revision = metadata.getLatestRevision().map(SavedState::getName).orElse(null);
+                if (!marker.getState().equals(revision) && !isSameInstallationState(marker, metadata)) {
                     if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
                         ProsperoLogger.ROOT_LOGGER.debugf("The installation state has changed from the candidate [%s].", updateDir);
                     }
@@ -228,6 +375,17 @@ public class ApplyCandidateAction {
         return ValidationResult.OK;
     }
 
+    private boolean isSameInstallationState(MarkerFile marker, InstallationMetadata metadata) throws IOException {
+        if (marker.getInstallationState() == null) {
+            return false;
+        }
+        final boolean sameState = marker.getInstallationState().equals(MarkerFile.installationState(installationDir, metadata.getManifest()));
+        if (sameState && ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
+            ProsperoLogger.ROOT_LOGGER.debugf("The candidate [%s] was prepared from another installation in the same state.", updateDir);
+        }
+        return sameState;
+    }
+
     /**
      * list conflicts between the candidate ({@code installationDir} and target server {@code updateDir}.
      *
@@ -237,8 +395,36 @@ public class ApplyCandidateAction {
      * @throws OperationException
      */
     public List<FileConflict> getConflicts() throws ProvisioningException, OperationException {
-        try {
-            return compareServers(findChanges());
+        try (ParallelExecutor executor = new ParallelExecutor(parallelism)) {
+            return compareServers(findChanges(executor, null), executor, ProvisionedHashIndex.load(updateDir));
+        } catch (IOException ex) {
+            throw new ProvisioningException(ex);
+        }
+    }
+
+    /**
+     * Calculates the changes that {@link #applyUpdate(Type)} would make in the installation without modifying it.
+     * The plan lists the files that would be copied, deleted or stored as {@code .glnew}/{@code .glold}, the conflicts
+     * and the estimated cost of the operation.
+     *
+     * The installation cannot be planned while it contains the journal of an interrupted or running operation, because
+     * its files don't reflect the recorded state until the operation is rolled back.
+     *
+     * @return the plan of applying the candidate
+     * @throws ProvisioningException - if unable to compare the candidate with the installation, or if the installation
+     * contains changes of an unfinished operation
+     */
+    public ApplyPlan getApplyPlan() throws ProvisioningException, OperationException {
+        if (ApplyJournal.exists(installationDir)) {
+            final ProvisioningException ex = ProsperoLogger.ROOT_LOGGER.unfinishedApplyPending(installationDir);
+            ProsperoLogger.ROOT_LOGGER.warn("", ex);
+            throw ex;
+        }
+
+        final ApplyPlan.Builder plan = new ApplyPlan.Builder();
+        try (ParallelExecutor executor = new ParallelExecutor(parallelism)) {
+            final List<FileConflict> conflicts = doApplyUpdate(findChanges(executor, plan), executor, plan);
+            return plan.build(conflicts);
         } catch (IOException ex) {
             throw new ProvisioningException(ex);
         }
@@ -306,7 +492,7 @@ public class ApplyCandidateAction {
      */
     public SavedState getCandidateRevision() throws MetadataException {
         try (InstallationMetadata metadata = InstallationMetadata.loadInstallation(updateDir)) {
-            return metadata.getRevisions().get(0);
+            return metadata.getLatestRevision().orElseThrow();
         }
     }
 
@@ -314,7 +500,22 @@ public class ApplyCandidateAction {
         return Files.exists(installationDir.resolve(STANDALONE_STARTUP_MARKER)) || Files.exists(installationDir.resolve(DOMAIN_STARTUP_MARKER));
     }
 
-    private FsDiff findChanges() throws ProvisioningException, OperationException {
+    /**
+     * finds the changes made by the user in the installation. The installation is compared with the hashes recorded
+     * by Galleon one directory at a time, only the changes are kept in memory.
+     */
+    private UserChanges findChanges(ParallelExecutor executor, ApplyPlan.Builder plan)
+            throws ProvisioningException, OperationException, IOException {
+        final UserChanges changes = new UserChanges(plan);
+        if (ProvisionedStateDiff.hasRecordedState(installationDir)) {
+            ProvisionedStateDiff.compare(installationDir, executor, changes);
+        } else {
+            ProvisionedStateDiff.replay(getGalleonFsDiff(), changes);
+        }
+        return changes;
+    }
+
+    private FsDiff getGalleonFsDiff() throws ProvisioningException, OperationException {
         // offline is enough - we just need to read the configuration
         final MavenOptions mavenOptions = MavenOptions.builder()
                 .setOffline(true)
@@ -334,21 +535,31 @@ public class ApplyCandidateAction {
             copyCurrentVersions();
             Path installationGalleonPath = PathsUtils.getProvisionedStateDir(installationDir);
             Path updateGalleonPath = PathsUtils.getProvisionedStateDir(updateDir);
+            prepareWrite(installationGalleonPath);
             IoUtils.recursiveDelete(installationGalleonPath);
-            IoUtils.copy(updateGalleonPath, installationGalleonPath, true);
+            NioFileUtils.copy(updateGalleonPath, installationGalleonPath, true);
             // after the galleon data is copied, persist a copy of provisioning.xml and record it
+            prepareWrite(installationDir.resolve(ProsperoMetadataUtils.METADATA_DIR).resolve(ProsperoMetadataUtils.PROVISIONING_RECORD_XML));
             ProsperoMetadataUtils.recordProvisioningDefinition(installationDir);
-            writeProsperoMetadata(operation);
             updateInstallationCache();
+            // if the operation is rolled back after the change is recorded, the journal resets the history
+            writeProsperoMetadata(operation);
         } catch (IOException ex) {
             throw new ProvisioningException(ex);
         }
     }
 
+    private String currentRevision() throws MetadataException {
+        try (GitStorage git = new GitStorage(installationDir)) {
+            return git.getLatestRevision().map(SavedState::getName).orElse(null);
+        }
+    }
+
     private void copyCurrentVersions() throws IOException {
         Path sourceVersions = updateDir.resolve(ProsperoMetadataUtils.METADATA_DIR).resolve(CURRENT_VERSION_FILE);
         if (Files.exists(sourceVersions)) {
-            Files.copy(sourceVersions, installationDir.resolve(ProsperoMetadataUtils.METADATA_DIR).resolve(CURRENT_VERSION_FILE), StandardCopyOption.REPLACE_EXISTING);
+            prepareWrite(installationDir.resolve(ProsperoMetadataUtils.METADATA_DIR).resolve(CURRENT_VERSION_FILE));
+            NioFileUtils.copy(sourceVersions, installationDir.resolve(ProsperoMetadataUtils.METADATA_DIR).resolve(CURRENT_VERSION_FILE));
         }
     }
 
@@ -358,7 +569,8 @@ public class ApplyCandidateAction {
 
         Path installationMetadataDir = installationDir.resolve(ProsperoMetadataUtils.METADATA_DIR);
         Path installationManifest = installationMetadataDir.resolve(ProsperoMetadataUtils.MANIFEST_FILE_NAME);
-        IoUtils.copy(updateManifest, installationManifest);
+        prepareWrite(installationManifest);
+        NioFileUtils.copy(updateManifest, installationManifest);
 
         try (GitStorage git = new GitStorage(installationDir)) {
             switch (operation) {
@@ -381,165 +593,340 @@ public class ApplyCandidateAction {
 
         Path installationCacheDir = installationDir.resolve(ArtifactCache.CACHE_FOLDER);
         if (Files.exists(installationCacheDir)) {
+            prepareWrite(installationCacheDir);
             IoUtils.recursiveDelete(installationCacheDir);
         }
         if (Files.exists(updateCacheDir)) {
-            IoUtils.copy(updateCacheDir, installationCacheDir);
+            if (sharedStore == null) {
+                NioFileUtils.copy(updateCacheDir, installationCacheDir);
+            } else {
+                copyCacheWithLinks(updateCacheDir);
+            }
+        }
+
+        if (sharedStore != null) {
+            try {
+                sharedStore.updateReferences(installationDir);
+            } catch (IOException e) {
+                // the installation files are links, so the content is preserved even if the blobs are removed, but
+                // other installations linking the same blobs later would not share them
+                ProsperoLogger.ROOT_LOGGER.unableToRecordSharedStoreReferences(installationDir, sharedStore.getStoreDir(), e);
+            }
         }
     }
 
-    private List<FileConflict> handleRemovedFiles(FsDiff fsDiff) throws IOException {
-        final List<FileConflict> conflictList = new ArrayList<>();
-        if (fsDiff.hasRemovedEntries()) {
-            for (FsEntry removed : fsDiff.getRemovedEntries()) {
-                final Path target = updateDir.resolve(removed.getRelativePath());
-                if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                    ProsperoLogger.ROOT_LOGGER.debug(formatMessage(REMOVED, removed.getRelativePath(), null));
+    /**
+     * copies the candidate's cache into the installation. The cached files that are links to the shared store are
+     * linked to the same blobs instead of being copied.
+     */
+    private void copyCacheWithLinks(Path updateCacheDir) throws IOException {
+        final Map<Path, String> recorded = ArtifactCache.getInstance(updateDir).getRecordedHashes();
+        final List<Path> files;
+        try (Stream<Path> walk = Files.walk(updateCacheDir)) {
+            files = walk.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            final Path relative = updateDir.relativize(file);
+            final Path target = installationDir.resolve(relative);
+            final String hash = recorded.get(relative);
+            if (hash != null && sharedStore.isStored(file, hash)) {
+                try {
+                    sharedStore.link(installationDir, file, hash, target);
+                    continue;
+                } catch (IOException e) {
+                    ProsperoLogger.ROOT_LOGGER.debug("Unable to link " + relative + " to the shared artifact store", e);
                 }
-                if (Files.exists(target)) {
-                    if (systemPaths.isSystemPath(Paths.get(removed.getRelativePath()))) {
-                        conflictList.add(FileConflict.userRemoved(removed.getRelativePath()).updateModified().overwritten());
-                        if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                            ProsperoLogger.ROOT_LOGGER.debug(formatMessage(FORCED, removed.getRelativePath(), HAS_CHANGED_IN_THE_UPDATED_VERSION));
-                        }
-                        Files.createDirectories(installationDir.resolve(removed.getRelativePath()).getParent());
-                        IoUtils.copy(target, installationDir.resolve(removed.getRelativePath()));
-                    }
-                } else {
+            }
+            NioFileUtils.copy(file, target);
+        }
+    }
+
+    private List<FileConflict> handleRemovedFiles(UserChanges changes, ApplyPlan.Builder plan) throws IOException {
+        final List<FileConflict> conflictList = new ArrayList<>();
+        for (String removed : changes.removed) {
+            final Path target = updateDir.resolve(removed);
+            if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
+                ProsperoLogger.ROOT_LOGGER.debug(formatMessage(REMOVED, removed, null));
+            }
+            if (Files.exists(target)) {
+                if (systemPaths.isSystemPath(Paths.get(removed))) {
+                    conflictList.add(FileConflict.userRemoved(removed).updateModified().overwritten());
                     if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                        ProsperoLogger.ROOT_LOGGER.debug(formatMessage(REMOVED, removed.getRelativePath(),
-                                HAS_BEEN_REMOVED_FROM_THE_UPDATED_VERSION));
+                        ProsperoLogger.ROOT_LOGGER.debug(formatMessage(FORCED, removed, HAS_CHANGED_IN_THE_UPDATED_VERSION));
+                    }
+                    if (plan != null) {
+                        plan.add(ApplyPlan.OperationType.COPY, removed, Files.size(target));
+                    } else {
+                        prepareWrite(installationDir.resolve(removed));
+                        Files.createDirectories(installationDir.resolve(removed).getParent());
+                        NioFileUtils.copy(target, installationDir.resolve(removed));
                     }
                 }
+            } else {
+                if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
+                    ProsperoLogger.ROOT_LOGGER.debug(formatMessage(REMOVED, removed,
+                            HAS_BEEN_REMOVED_FROM_THE_UPDATED_VERSION));
+                }
             }
         }
         return conflictList;
     }
 
-    private List<FileConflict> handleAddedFiles(FsDiff fsDiff) throws IOException, ProvisioningException {
+    private List<FileConflict> handleAddedFiles(UserChanges changes, Map<Path, byte[]> candidateHashes, ApplyPlan.Builder plan)
+            throws IOException, ProvisioningException {
         final List<FileConflict> conflictList = new ArrayList<>();
-        if (fsDiff.hasAddedEntries()) {
-            for (FsEntry added : fsDiff.getAddedEntries()) {
-                Path p = Paths.get(added.getRelativePath());
-                // Ignore .installation owned by prospero
-                if (p.getNameCount() > 0 && p.getName(0).toString().equals(ProsperoMetadataUtils.METADATA_DIR)) {
-                    continue;
-                }
-                addFsEntry(updateDir, added, systemPaths, conflictList);
+        for (Map.Entry<String, Boolean> added : changes.added.entrySet()) {
+            if (isMetadataEntry(added.getKey())) {
+                continue;
             }
+            addFsEntry(added.getKey(), added.getValue(), conflictList, candidateHashes, plan);
         }
         return conflictList;
     }
 
-    private void addFsEntry(Path updateDir, FsEntry added, SystemPaths systemPaths, List<FileConflict> conflictList)
-            throws ProvisioningException {
-        final Path target = updateDir.resolve(added.getRelativePath());
+    private static boolean isMetadataEntry(String relativePath) {
+        Path p = Paths.get(relativePath);
+        // Ignore .installation owned by prospero
+        return p.getNameCount() > 0 && p.getName(0).toString().equals(ProsperoMetadataUtils.METADATA_DIR);
+    }
+
+    /**
+     * resolves conflicts of a file or directory added by the user. The content of added directories is read from
+     * the installation only if the candidate contains the same directory.
+     */
+    private void addFsEntry(String added, boolean directory, List<FileConflict> conflictList,
+                            Map<Path, byte[]> candidateHashes, ApplyPlan.Builder plan) throws IOException, ProvisioningException {
+        final Path target = updateDir.resolve(added);
         if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-            ProsperoLogger.ROOT_LOGGER.debug(formatMessage(ADDED, added.getRelativePath(), null));
+            ProsperoLogger.ROOT_LOGGER.debug(formatMessage(ADDED, added, null));
         }
         if (Files.exists(target)) {
-            if (added.isDir()) {
-                for (FsEntry child : added.getChildren()) {
-                    addFsEntry(updateDir, child, systemPaths, conflictList);
+            if (directory) {
+                for (Path child : listAddedChildren(added)) {
+                    final boolean childDirectory = Files.isDirectory(child);
+                    addFsEntry(getFsDiffKey(installationDir.relativize(child), childDirectory), childDirectory, conflictList,
+                            candidateHashes, plan);
                 }
                 return;
             }
-            final byte[] targetHash;
-            try {
-                targetHash = HashUtils.hashPath(target);
-            } catch (IOException e) {
-                throw new ProvisioningException(Errors.hashCalculation(target), e);
-            }
+            final byte[] targetHash = candidateHashes.get(target);
 
-            if (Arrays.equals(added.getHash(), targetHash)) {
+            if (Arrays.equals(hashPath(plan, installationDir.resolve(added)), targetHash)) {
                 if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                    ProsperoLogger.ROOT_LOGGER.debug(formatMessage(ADDED, added.getRelativePath(), "Added file matches the update."));
+                    ProsperoLogger.ROOT_LOGGER.debug(formatMessage(ADDED, added, "Added file matches the update."));
                 }
             } else {
-                if (systemPaths.isSystemPath(Paths.get(added.getRelativePath()))) {
+                if (systemPaths.isSystemPath(Paths.get(added))) {
                     if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                        ProsperoLogger.ROOT_LOGGER.debug(formatMessage(FORCED, added.getRelativePath(), CONFLICTS_WITH_THE_UPDATED_VERSION));
+                        ProsperoLogger.ROOT_LOGGER.debug(formatMessage(FORCED, added, CONFLICTS_WITH_THE_UPDATED_VERSION));
                     }
-                    conflictList.add(FileConflict.userAdded(added.getRelativePath()).updateAdded().overwritten());
-                    glold(installationDir.resolve(added.getRelativePath()), target);
+                    conflictList.add(FileConflict.userAdded(added).updateAdded().overwritten());
+                    glold(installationDir.resolve(added), target, added, plan);
                 } else {
                     if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                        ProsperoLogger.ROOT_LOGGER.debug(formatMessage(CONFLICT, added.getRelativePath(), CONFLICTS_WITH_THE_UPDATED_VERSION));
+                        ProsperoLogger.ROOT_LOGGER.debug(formatMessage(CONFLICT, added, CONFLICTS_WITH_THE_UPDATED_VERSION));
                     }
-                    conflictList.add(FileConflict.userAdded(added.getRelativePath()).updateAdded().userPreserved());
-                    glnew(target, installationDir.resolve(added.getRelativePath()));
+                    conflictList.add(FileConflict.userAdded(added).updateAdded().userPreserved());
+                    glnew(target, installationDir.resolve(added), added, plan);
                 }
             }
         }
     }
 
-    private List<FileConflict> handleModifiedFiles(FsDiff fsDiff) throws IOException, ProvisioningException {
+    private List<Path> listAddedChildren(String addedDir) throws IOException {
+        try (Stream<Path> children = Files.list(installationDir.resolve(addedDir))) {
+            return children
+                    .filter(child -> !ProvisionedStateDiff.isIgnored(installationDir.relativize(child)))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private List<FileConflict> handleModifiedFiles(UserChanges changes, Map<Path, byte[]> candidateHashes, ApplyPlan.Builder plan)
+            throws IOException, ProvisioningException {
         final List<FileConflict> conflictList = new ArrayList<>();
-        if (fsDiff.hasModifiedEntries()) {
-            for (FsEntry[] modified : fsDiff.getModifiedEntries()) {
-                FsEntry installation = modified[1];
-                FsEntry original = modified[0];
-                final Path file = updateDir.resolve(modified[1].getRelativePath());
-                if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                    ProsperoLogger.ROOT_LOGGER.debug(formatMessage(MODIFIED, installation.getRelativePath(), null));
-                }
-                if (Files.exists(file)) {
-                    byte[] updateHash;
-                    try {
-                        updateHash = HashUtils.hashPath(file);
-                    } catch (IOException e) {
-                        throw new ProvisioningException(Errors.hashCalculation(file), e);
+        for (Map.Entry<String, ModifiedFile> modified : changes.modified.entrySet()) {
+            final String relativePath = modified.getKey();
+            final ModifiedFile hashes = modified.getValue();
+            final Path file = updateDir.resolve(relativePath);
+            if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
+                ProsperoLogger.ROOT_LOGGER.debug(formatMessage(MODIFIED, relativePath, null));
+            }
+            if (Files.exists(file)) {
+                byte[] updateHash = candidateHashes.get(file);
+                Path installationFile = installationDir.resolve(relativePath);
+                // Case where the modified file is equal to the hash of the update. Do nothing
+                if (Arrays.equals(hashes.currentHash, updateHash)) {
+                    if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
+                        ProsperoLogger.ROOT_LOGGER.debug(formatMessage(MODIFIED, relativePath, "Modified file matches the update"));
                     }
-                    Path installationFile = installationDir.resolve(modified[1].getRelativePath());
-                    // Case where the modified file is equal to the hash of the update. Do nothing
-                    if (Arrays.equals(installation.getHash(), updateHash)) {
-                        if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                            ProsperoLogger.ROOT_LOGGER.debug(formatMessage(MODIFIED, installation.getRelativePath(), "Modified file matches the update"));
-                        }
-                    } else {
-                        if (!Arrays.equals(original.getHash(), updateHash)) {
-                            if (systemPaths.isSystemPath(Paths.get(installation.getRelativePath()))) {
-                                if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                                    ProsperoLogger.ROOT_LOGGER.debug(formatMessage(FORCED, installation.getRelativePath(), HAS_CHANGED_IN_THE_UPDATED_VERSION));
-                                }
-                                conflictList.add(FileConflict.userModified(installation.getRelativePath()).updateModified().overwritten());
-                                glold(installation.getPath(), file);
-                            } else {
-                                if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                                    ProsperoLogger.ROOT_LOGGER.debug(formatMessage(CONFLICT, installation.getRelativePath(), HAS_CHANGED_IN_THE_UPDATED_VERSION));
-                                }
-                                conflictList.add(FileConflict.userModified(installation.getRelativePath()).updateModified().userPreserved());
-                                glnew(file, installationFile);
+                } else {
+                    if (!Arrays.equals(hashes.recordedHash, updateHash)) {
+                        if (systemPaths.isSystemPath(Paths.get(relativePath))) {
+                            if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
+                                ProsperoLogger.ROOT_LOGGER.debug(formatMessage(FORCED, relativePath, HAS_CHANGED_IN_THE_UPDATED_VERSION));
                             }
+                            conflictList.add(FileConflict.userModified(relativePath).updateModified().overwritten());
+                            glold(installationFile, file, relativePath, plan);
+                        } else {
+                            if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
+                                ProsperoLogger.ROOT_LOGGER.debug(formatMessage(CONFLICT, relativePath, HAS_CHANGED_IN_THE_UPDATED_VERSION));
+                            }
+                            conflictList.add(FileConflict.userModified(relativePath).updateModified().userPreserved());
+                            glnew(file, installationFile, relativePath, plan);
                         }
                     }
-                } else {
-                    // The file doesn't exist in the update, we keep the file in the installation
-                    if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                        ProsperoLogger.ROOT_LOGGER.debug(formatMessage(MODIFIED, installation.getRelativePath(), HAS_BEEN_REMOVED_FROM_THE_UPDATED_VERSION));
-                    }
-                    conflictList.add(FileConflict.userModified(installation.getRelativePath()).updateRemoved().userPreserved());
                 }
+            } else {
+                // The file doesn't exist in the update, we keep the file in the installation
+                if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
+                    ProsperoLogger.ROOT_LOGGER.debug(formatMessage(MODIFIED, relativePath, HAS_BEEN_REMOVED_FROM_THE_UPDATED_VERSION));
+                }
+                conflictList.add(FileConflict.userModified(relativePath).updateRemoved().userPreserved());
             }
         }
         return conflictList;
     }
 
-    private List<FileConflict> compareServers(FsDiff fsDiff) throws IOException, ProvisioningException {
+    private List<FileConflict> compareServers(UserChanges changes, ParallelExecutor executor, ProvisionedHashIndex candidateHashIndex)
+            throws IOException, ProvisioningException {
+        return handleUserChanges(changes, executor, candidateHashIndex, null);
+    }
+
+    /**
+     * Handles user added/removed/modified files. The hashes of the candidate files are calculated in parallel, but
+     * the conflicts are resolved sequentially in the order the changes were found.
+     */
+    private List<FileConflict> handleUserChanges(UserChanges changes, ParallelExecutor executor, ProvisionedHashIndex candidateHashIndex,
+                                                 ApplyPlan.Builder plan) throws IOException, ProvisioningException {
+        final Map<Path, byte[]> candidateHashes = hashCandidateFiles(changes, executor, candidateHashIndex, plan);
+
         List<FileConflict> conflicts = new ArrayList<>();
-        // Handles user added/removed/modified files
-        conflicts.addAll(handleRemovedFiles(fsDiff));
-        conflicts.addAll(handleAddedFiles(fsDiff));
-        conflicts.addAll(handleModifiedFiles(fsDiff));
+        conflicts.addAll(handleRemovedFiles(changes, plan));
+        conflicts.addAll(handleAddedFiles(changes, candidateHashes, plan));
+        conflicts.addAll(handleModifiedFiles(changes, candidateHashes, plan));
         return Collections.unmodifiableList(conflicts);
     }
 
-    private List<FileConflict> doApplyUpdate(FsDiff fsDiff) throws IOException, ProvisioningException {
-        List<FileConflict> conflicts = new ArrayList<>();
-        // Handles user added/removed/modified files
-        conflicts.addAll(handleRemovedFiles(fsDiff));
-        conflicts.addAll(handleAddedFiles(fsDiff));
-        conflicts.addAll(handleModifiedFiles(fsDiff));
+    private Map<Path, byte[]> hashCandidateFiles(UserChanges changes, ParallelExecutor executor, ProvisionedHashIndex candidateHashIndex,
+                                                 ApplyPlan.Builder plan) throws IOException {
+        final List<Path> files = new ArrayList<>();
+        for (Map.Entry<String, Boolean> added : changes.added.entrySet()) {
+            if (!isMetadataEntry(added.getKey())) {
+                collectCandidateFiles(added.getKey(), added.getValue(), files);
+            }
+        }
+        for (String modified : changes.modified.keySet()) {
+            final Path file = updateDir.resolve(modified);
+            if (Files.exists(file)) {
+                files.add(file);
+            }
+        }
+        final List<byte[]> hashes = executor.map(files, file -> hashPath(plan, candidateHashIndex, updateDir.relativize(file), file));
+        final Map<Path, byte[]> candidateHashes = new HashMap<>();
+        for (int i = 0; i < files.size(); i++) {
+            candidateHashes.put(files.get(i), hashes.get(i));
+        }
+        return candidateHashes;
+    }
+
+    private void collectCandidateFiles(String added, boolean directory, List<Path> files) throws IOException {
+        final Path target = updateDir.resolve(added);
+        if (Files.exists(target)) {
+            if (directory) {
+                for (Path child : listAddedChildren(added)) {
+                    final boolean childDirectory = Files.isDirectory(child);
+                    collectCandidateFiles(getFsDiffKey(installationDir.relativize(child), childDirectory), childDirectory, files);
+                }
+            } else {
+                files.add(target);
+            }
+        }
+    }
+
+    /**
+     * calculates the hash of the file. When the update is only being planned, the hash recorded by Galleon is used
+     * instead if the file has not been modified since the hash was recorded. The recorded hash is not used when the
+     * installation is modified, because a change that preserved the timestamp of the file cannot be detected.
+     */
+    private static byte[] hashPath(ApplyPlan.Builder plan, ProvisionedHashIndex hashIndex, Path relative, Path file) throws IOException {
+        if (plan != null) {
+            final byte[] recordedHash = hashIndex.getUnchangedHash(relative, file);
+            if (recordedHash != null) {
+                return recordedHash;
+            }
+        }
+        return hashPath(plan, file);
+    }
+
+    /**
+     * calculates the hash of the file, recording it in the {@code plan} if the update is being planned.
+     */
+    private static byte[] hashPath(ApplyPlan.Builder plan, Path file) throws IOException {
+        final long start = System.nanoTime();
+        try {
+            final byte[] hash = NioFileUtils.hashPath(file);
+            if (plan != null) {
+                plan.hashed(Files.size(file), System.nanoTime() - start);
+            }
+            return hash;
+        } catch (IOException e) {
+            throw new IOException(Errors.hashCalculation(file), e);
+        }
+    }
+
+    /**
+     * transfers the candidate {@code file} to {@code installationFile} using the {@link TransferMode}. If the file
+     * cannot be moved (e.g. the candidate is on a different filesystem), it is copied instead and the remaining
+     * files are copied without re-trying.
+     *
+     * @return {@code true} if the file was moved out of the candidate
+     */
+    private boolean transferFile(Path file, Path installationFile) throws IOException {
+        if (transferMode == TransferMode.MOVE && transferSupported.get()) {
+            try {
+                Files.createDirectories(installationFile.getParent());
+                Files.move(file, installationFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return true;
+            } catch (IOException | UnsupportedOperationException e) {
+                if (transferSupported.compareAndSet(true, false) && ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
+                    ProsperoLogger.ROOT_LOGGER.debug("Unable to " + transferMode.name().toLowerCase(Locale.ROOT) + " " + file
+                            + ", falling back to copying the files", e);
+                }
+            }
+        }
+        NioFileUtils.copy(file, installationFile);
+        return false;
+    }
+
+    /**
+     * replaces {@code installationFile} with a link to the shared store blob of the candidate {@code file}.
+     *
+     * @return {@code false} if the file cannot be linked and has to be transferred
+     */
+    private boolean linkToStore(ProvisionedHashIndex hashIndex, Path relative, Path file, Path installationFile) {
+        try {
+            final String hash = HashUtils.bytesToHexString(hashPath(null, hashIndex, relative, file));
+            sharedStore.link(installationDir, file, hash, installationFile);
+            return true;
+        } catch (IOException e) {
+            if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
+                ProsperoLogger.ROOT_LOGGER.debug("Unable to link " + relative + " to the shared artifact store", e);
+            }
+            return false;
+        }
+    }
+
+    /**
+     * applies the candidate to the installation. If the {@code plan} is not {@code null}, the installation is not
+     * modified and the changes are recorded in the {@code plan} instead.
+     */
+    private List<FileConflict> doApplyUpdate(UserChanges fsDiff, ParallelExecutor executor, ApplyPlan.Builder plan)
+            throws IOException, ProvisioningException {
+        // when planning, the hashes of unmodified files are read from .galleon/hashes instead of being re-calculated
+        final ProvisionedHashIndex candidateHashIndex = ProvisionedHashIndex.load(updateDir);
+        final ProvisionedHashIndex installationHashIndex = ProvisionedHashIndex.load(installationDir);
+        final List<FileConflict> conflicts = handleUserChanges(fsDiff, executor, candidateHashIndex, plan);
 
         // Handles files added/removed/modified in the update.
         Path skipUpdateGalleon = PathsUtils.getProvisionedStateDir(updateDir);
@@ -548,33 +935,31 @@ public class ApplyCandidateAction {
         Path skipInstallationInstallation = installationDir.resolve(ProsperoMetadataUtils.METADATA_DIR);
 
         // Copy the new/modified files that the update brings that are not in the installation and not removed/modified by the user.
+        // The candidate tree is walked first and the files are then hashed and copied in parallel. Each task writes
+        // to a different installation file, so the result doesn't depend on the order of execution.
+        final List<Path> candidateFiles = new ArrayList<>();
+        // artifacts recorded in the candidate's cache are linked to the shared store instead of being transferred
+        final Set<Path> candidateArtifacts = sharedStore == null ? Collections.emptySet()
+                : ArtifactCache.getInstance(updateDir).getRecordedHashes().keySet();
+        // files moved out of the candidate must not be treated as removed by the update
+        final Set<Path> movedFiles = ConcurrentHashMap.newKeySet();
         Files.walkFileTree(updateDir, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
                     throws IOException {
                 Path relative = updateDir.relativize(file);
-                Path installationFile = installationDir.resolve(relative);
                 // Not a file added or modified by the user
                 final String pathKey = getFsDiffKey(relative, false);
-                if (fsDiff.getModifiedEntry(pathKey) == null &&
-                        fsDiff.getAddedEntry(pathKey) == null && !isParentAdded(fsDiff, relative)) {
-                    byte[] updateHash = HashUtils.hashPath(file);
-                    // The file could be new or updated in the installation
-                    if (!Files.exists(installationFile) || !Arrays.equals(updateHash, HashUtils.hashPath(installationFile))) {
-                        if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
-                            ProsperoLogger.ROOT_LOGGER.debug("Copying updated file " + relative + " to the installation");
-                        }
-                        IoUtils.copy(file, installationFile);
-                    }
+                if (!fsDiff.isModified(pathKey) && !fsDiff.isAdded(pathKey) && !isParentAdded(fsDiff, relative)) {
+                    candidateFiles.add(file);
                 }
                 return FileVisitResult.CONTINUE;
             }
 
-            private boolean isParentAdded(FsDiff fsDiff, Path relative) {
+            private boolean isParentAdded(UserChanges fsDiff, Path relative) {
                 Path parent = relative.getParent();
                 while (parent != null) {
-                    // FsDiff always uses UNIX separators
-                    if (fsDiff.getAddedEntry(parent + "/") != null) {
+                    if (fsDiff.isAdded(getFsDiffKey(parent, true))) {
                         return true;
                     }
                     parent = parent.getParent();
@@ -597,9 +982,52 @@ public class ApplyCandidateAction {
                 return FileVisitResult.CONTINUE;
             }
         });
+        // The files are compared first, so that all the files to be written are recorded in the journal together
+        final List<Path> changedFiles = executor.map(candidateFiles, file -> {
+            final Path relative = updateDir.relativize(file);
+            final Path installationFile = installationDir.resolve(relative);
+            // The file could be new or updated in the installation
+            if (!Files.exists(installationFile) || !Arrays.equals(hashPath(plan, candidateHashIndex, relative, file),
+                    hashPath(plan, installationHashIndex, relative, installationFile))) {
+                return file;
+            }
+            return null;
+        }).stream().filter(Objects::nonNull).collect(Collectors.toList());
+        if (plan != null) {
+            // moving the files only changes the filesystem metadata, unless the candidate is on a different filesystem
+            final boolean moved = transferMode == TransferMode.MOVE
+                    && Files.getFileStore(updateDir).equals(Files.getFileStore(installationDir));
+            for (Path file : changedFiles) {
+                final Path relative = updateDir.relativize(file);
+                if (moved && !candidateArtifacts.contains(relative)) {
+                    plan.add(ApplyPlan.OperationType.MOVE, getFsDiffKey(relative, false), 0);
+                } else {
+                    plan.add(ApplyPlan.OperationType.COPY, getFsDiffKey(relative, false), Files.size(file));
+                }
+            }
+        } else {
+            prepareWrites(changedFiles.stream().map(file -> installationDir.resolve(updateDir.relativize(file)))
+                    .collect(Collectors.toList()));
+            executor.forEach(changedFiles, file -> {
+                final Path relative = updateDir.relativize(file);
+                final Path installationFile = installationDir.resolve(relative);
+                if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
+                    ProsperoLogger.ROOT_LOGGER.debug("Copying updated file " + relative + " to the installation");
+                }
+                prepareWrite(installationFile);
+                if (candidateArtifacts.contains(relative) && linkToStore(candidateHashIndex, relative, file, installationFile)) {
+                    return;
+                }
+                if (transferFile(file, installationFile)) {
+                    movedFiles.add(relative);
+                }
+            });
+        }
 
         // Delete the files in the installation that are not present in the update and not added by the user
         // We need to skip .glnew and .glold.
+        // When planning, the files are not deleted, so the directories are checked against the planned deletions
+        final Set<Path> plannedDeletions = new HashSet<>();
         Files.walkFileTree(installationDir, new SimpleFileVisitor<Path>() {
             @Override
             public FileVisitResult visitFile(Path file, BasicFileAttributes attrs)
@@ -607,11 +1035,16 @@ public class ApplyCandidateAction {
                 Path relative = installationDir.relativize(file);
                 Path updateFile = updateDir.resolve(relative);
                 final String fsDiffKey = getFsDiffKey(relative, false);
-                if (isNotAddedOrModified(fsDiffKey, fsDiff) && fileNotPresent(updateFile)) {
+                if (isNotAddedOrModified(fsDiffKey, fsDiff) && fileNotPresent(updateFile) && !movedFiles.contains(relative)) {
+                    if (plan != null) {
+                        plan.add(ApplyPlan.OperationType.DELETE, fsDiffKey, 0);
+                        plannedDeletions.add(file);
+                        return FileVisitResult.CONTINUE;
+                    }
                     if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
                         ProsperoLogger.ROOT_LOGGER.debug("Deleting the file " + relative + " that doesn't exist in the update");
                     }
-                    IoUtils.recursiveDelete(file);
+                    delete(file);
                 }
                 return FileVisitResult.CONTINUE;
             }
@@ -649,11 +1082,16 @@ public class ApplyCandidateAction {
                     Path relative = installationDir.relativize(dir);
                     Path target = updateDir.resolve(relative);
                     String pathKey = getFsDiffKey(relative, true);
-                    if (!isAdded(pathKey, fsDiff) && !Files.exists(target) && isEmpty(dir)) {
+                    if (!isAdded(pathKey, fsDiff) && !Files.exists(target) && isEmpty(dir, plannedDeletions)) {
+                        if (plan != null) {
+                            plan.add(ApplyPlan.OperationType.DELETE, pathKey, 0);
+                            plannedDeletions.add(dir);
+                            return FileVisitResult.CONTINUE;
+                        }
                         if (ProsperoLogger.ROOT_LOGGER.isDebugEnabled()) {
                             ProsperoLogger.ROOT_LOGGER.debug("Deleting the directory " + relative + " that doesn't exist in the update");
                         }
-                        IoUtils.recursiveDelete(dir);
+                        delete(dir);
                         return FileVisitResult.SKIP_SUBTREE;
                     }
                 }
@@ -663,23 +1101,31 @@ public class ApplyCandidateAction {
         return Collections.unmodifiableList(conflicts);
     }
 
-    private static boolean isEmpty(Path dir) {
+    /**
+     * @return {@code true} if the directory is empty, or if all its children are going to be deleted
+     */
+    private static boolean isEmpty(Path dir, Set<Path> plannedDeletions) {
         final String[] children = dir.toFile().list();
         if (children == null) {
             throw new RuntimeException("Unable to list children of " + dir);
         }
-        return children.length == 0;
+        for (String child : children) {
+            if (!plannedDeletions.contains(dir.resolve(child))) {
+                return false;
+            }
+        }
+        return true;
     }
 
-    private static boolean isAdded(String pathKey, FsDiff fsDiff) {
-        return fsDiff.getAddedEntry(pathKey) != null;
+    private static boolean isAdded(String pathKey, UserChanges fsDiff) {
+        return fsDiff.isAdded(pathKey);
     }
 
-    private static boolean isNotAddedOrModified(String fsDiffKey, FsDiff fsDiff) {
-        return !isAdded(fsDiffKey, fsDiff) && fsDiff.getModifiedEntry(fsDiffKey) == null;
+    private static boolean isNotAddedOrModified(String fsDiffKey, UserChanges fsDiff) {
+        return !isAdded(fsDiffKey, fsDiff) && !fsDiff.isModified(fsDiffKey);
     }
 
-    private String getFsDiffKey(Path relative, boolean appendSeparator) {
+    private static String getFsDiffKey(Path relative, boolean appendSeparator) {
         String pathKey = relative.toString().replace(File.separator, "/");
         if (appendSeparator) {
             // FsDiff always uses UNIX separators
@@ -690,20 +1136,89 @@ public class ApplyCandidateAction {
 
 
 
-    private static void glnew(final Path updateFile, Path installationFile) throws ProvisioningException {
+    private void glnew(final Path updateFile, Path installationFile, String relativePath, ApplyPlan.Builder plan)
+            throws ProvisioningException {
         try {
-            IoUtils.copy(updateFile, installationFile.getParent().resolve(installationFile.getFileName() + Constants.DOT_GLNEW));
+            if (plan != null) {
+                plan.add(ApplyPlan.OperationType.GLNEW, relativePath + Constants.DOT_GLNEW, Files.size(updateFile));
+                return;
+            }
+            prepareWrite(installationFile.getParent().resolve(installationFile.getFileName() + Constants.DOT_GLNEW));
+            NioFileUtils.copy(updateFile, installationFile.getParent().resolve(installationFile.getFileName() + Constants.DOT_GLNEW));
         } catch (IOException e) {
             throw new ProvisioningException("Failed to persist " + installationFile.getParent().resolve(installationFile.getFileName() + Constants.DOT_GLNEW), e);
         }
     }
 
-    private static void glold(Path installationFile, final Path target) throws ProvisioningException {
+    private void glold(Path installationFile, final Path target, String relativePath, ApplyPlan.Builder plan)
+            throws ProvisioningException {
         try {
-            IoUtils.copy(installationFile, installationFile.getParent().resolve(installationFile.getFileName() + Constants.DOT_GLOLD));
-            IoUtils.copy(target, installationFile);
+            if (plan != null) {
+                plan.add(ApplyPlan.OperationType.GLOLD, relativePath + Constants.DOT_GLOLD,
+                        Files.size(installationFile) + Files.size(target));
+                return;
+            }
+            prepareWrite(installationFile.getParent().resolve(installationFile.getFileName() + Constants.DOT_GLOLD));
+            NioFileUtils.copy(installationFile, installationFile.getParent().resolve(installationFile.getFileName() + Constants.DOT_GLOLD));
+            prepareWrite(installationFile);
+            NioFileUtils.copy(target, installationFile);
         } catch (IOException e) {
             throw new ProvisioningException("Failed to persist " + target.getParent().resolve(target.getFileName() + Constants.DOT_GLOLD), e);
         }
     }
+
+    /**
+     * Changes made by the user in the installation, keyed by their relative paths using UNIX separators. Directories
+     * end with a separator. Only the changes are kept, not the state of the whole installation.
+     */
+    private static final class UserChanges implements ProvisionedStateDiff.Listener {
+        private final List<String> removed = new ArrayList<>();
+        private final Map<String, Boolean> added = new LinkedHashMap<>();
+        private final Map<String, ModifiedFile> modified = new LinkedHashMap<>();
+        private final ApplyPlan.Builder plan;
+
+        private UserChanges(ApplyPlan.Builder plan) {
+            this.plan = plan;
+        }
+
+        @Override
+        public void hashed(Path relativePath, long size, long nanos) {
+            if (plan != null) {
+                plan.hashed(size, nanos);
+            }
+        }
+
+        @Override
+        public void added(Path relativePath, boolean directory) {
+            added.put(getFsDiffKey(relativePath, directory), directory);
+        }
+
+        @Override
+        public void removed(Path relativePath, boolean directory) {
+            removed.add(getFsDiffKey(relativePath, directory));
+        }
+
+        @Override
+        public void modified(Path relativePath, byte[] recordedHash, byte[] currentHash) {
+            modified.put(getFsDiffKey(relativePath, false), new ModifiedFile(recordedHash, currentHash));
+        }
+
+        boolean isAdded(String pathKey) {
+            return added.containsKey(pathKey);
+        }
+
+        boolean isModified(String pathKey) {
+            return modified.containsKey(pathKey);
+        }
+    }
+
+    private static final class ModifiedFile {
+        private final byte[] recordedHash;
+        private final byte[] currentHash;
+
+        private ModifiedFile(byte[] recordedHash, byte[] currentHash) {
+            this.recordedHash = recordedHash;
+            this.currentHash = currentHash;
+        }
+    }
 }
@@ -30,7 +30,6 @@ import org.jboss.galleon.layout.FeaturePackLayout;
 import org.jboss.galleon.layout.ProvisioningLayout;
 import org.jboss.galleon.layout.ProvisioningLayoutFactory;
 import org.jboss.galleon.universe.FeaturePackLocation;
-import org.jboss.galleon.universe.maven.repo.MavenRepoManager;
 import org.jboss.galleon.util.LayoutUtils;
 import org.wildfly.channel.ArtifactTransferException;
 import org.wildfly.channel.Channel;
@@ -48,7 +47,7 @@ import org.wildfly.prospero.api.exceptions.MetadataException;
 import org.wildfly.prospero.api.exceptions.OperationException;
 import org.wildfly.prospero.galleon.FeaturePackLocationParser;
 import org.wildfly.prospero.galleon.GalleonEnvironment;
-import org.wildfly.prospero.galleon.GalleonUtils;
+import org.wildfly.prospero.galleon.GalleonEnvironmentCache;
 import org.wildfly.prospero.model.ProsperoConfig;
 import org.wildfly.prospero.wfchannel.MavenSessionManager;
 
@@ -69,8 +68,11 @@ import java.util.stream.Stream;
 
 /**
  * Installs a feature pack onto an existing server.
+ *
+ * The Galleon environments of the existing server are shared by all steps of the operation and released when the
+ * feature pack has been installed, or when the action is closed.
  */
-public class FeaturesAddAction {
+public class FeaturesAddAction implements AutoCloseable {
 
     private final MavenSessionManager mavenSessionManager;
     private final Path installDir;
@@ -78,6 +80,7 @@ public class FeaturesAddAction {
     private final ProsperoConfig prosperoConfig;
     private final Console console;
     private final CandidateActionsFactory candidateActionsFactory;
+    private final GalleonEnvironmentCache environments;
 
     public FeaturesAddAction(MavenOptions mavenOptions, Path installDir, List<Repository> repositories, Console console) throws MetadataException, ProvisioningException {
         this(mavenOptions, installDir, repositories, console, new DefaultCandidateActionsFactory(installDir));
@@ -89,6 +92,7 @@ public class FeaturesAddAction {
             throws MetadataException, ProvisioningException {
         this.installDir = installDir;
         this.console = console;
+        this.environments = new GalleonEnvironmentCache(console);
         this.metadata = InstallationMetadata.loadInstallation(installDir);
         this.prosperoConfig = addTemporaryRepositories(repositories);
 
@@ -117,6 +121,15 @@ public class FeaturesAddAction {
         verifyFeaturePackCoord(featurePackCoord);
         Objects.requireNonNull(defaultConfigNames);
 
+        try {
+            doAddFeaturePack(featurePackCoord, defaultConfigNames);
+        } finally {
+            environments.close();
+        }
+    }
+
+    private void doAddFeaturePack(String featurePackCoord, Set<ConfigId> defaultConfigNames)
+            throws ProvisioningException, OperationException {
         FeaturePackLocation fpl = FeaturePackLocationParser.resolveFpl(featurePackCoord);
 
         if (ProsperoLogger.ROOT_LOGGER.isTraceEnabled()) {
@@ -175,6 +188,15 @@ public class FeaturesAddAction {
         }
         verifyFeaturePackCoord(featurePackCoord);
 
+        try {
+            doAddFeaturePackWithLayers(featurePackCoord, layers, configName);
+        } finally {
+            environments.close();
+        }
+    }
+
+    private void doAddFeaturePackWithLayers(String featurePackCoord, Set<String> layers, ConfigId configName)
+            throws ProvisioningException, OperationException {
         FeaturePackLocation fpl = FeaturePackLocationParser.resolveFpl(featurePackCoord);
 
         if (ProsperoLogger.ROOT_LOGGER.isTraceEnabled()) {
@@ -272,9 +294,7 @@ public class FeaturesAddAction {
         if (splitCoordinates.length != 2) {
             throw new IllegalArgumentException("The feature pack coordinate has to consist of <groupId>:<artifactId>");
         }
-        final ChannelSession channelSession = GalleonEnvironment
-                .builder(installDir, prosperoConfig.getChannels(), mavenSessionManager).build()
-                .getChannelSession();
+        final ChannelSession channelSession = getInstallationEnv().getChannelSession();
 
         try {
             if (ProsperoLogger.ROOT_LOGGER.isTraceEnabled()) {
@@ -297,44 +317,42 @@ public class FeaturesAddAction {
         if (!layers.isEmpty() && selectedConfigs.size() > 1) {
             throw new IllegalArgumentException("Only one config can be selected when selecting layers");
         }
-        try (GalleonEnvironment galleonEnv = getGalleonEnv(installDir);
-            ProvisioningManager pm = galleonEnv.getProvisioningManager()) {
+        final ProvisioningManager pm = getInstallationEnv().getProvisioningManager();
 
-            final ProvisioningConfig existingConfig = pm.getProvisioningConfig();
-            final ProvisioningConfig.Builder builder = ProvisioningConfig.builder(existingConfig);
+        final ProvisioningConfig existingConfig = pm.getProvisioningConfig();
+        final ProvisioningConfig.Builder builder = ProvisioningConfig.builder(existingConfig);
 
-            final FeaturePackConfig.Builder fpBuilder = buildFeaturePackConfig(fpl, existingConfig, builder);
+        final FeaturePackConfig.Builder fpBuilder = buildFeaturePackConfig(fpl, existingConfig, builder);
 
-            if (!selectedConfigs.isEmpty()) {
-                fpBuilder.setInheritConfigs(false);
-            }
+        if (!selectedConfigs.isEmpty()) {
+            fpBuilder.setInheritConfigs(false);
+        }
 
-            for (ConfigId selectedConfig : selectedConfigs) {
-                if (selectedConfig != null) {
-                    fpBuilder.setInheritConfigs(false);
-                    if (!layers.isEmpty()) {
-                        final ConfigModel.Builder configBuilder = buildLayerConfig(layers, selectedConfig.getName(), selectedConfig.getModel(), existingConfig, builder);
-                        builder.addConfig(configBuilder.build());
-                    } else {
-                        fpBuilder.includeDefaultConfig(selectedConfig.getModel(), selectedConfig.getName());
-                    }
+        for (ConfigId selectedConfig : selectedConfigs) {
+            if (selectedConfig != null) {
+                fpBuilder.setInheritConfigs(false);
+                if (!layers.isEmpty()) {
+                    final ConfigModel.Builder configBuilder = buildLayerConfig(layers, selectedConfig.getName(), selectedConfig.getModel(), existingConfig, builder);
+                    builder.addConfig(configBuilder.build());
+                } else {
+                    fpBuilder.includeDefaultConfig(selectedConfig.getModel(), selectedConfig.getName());
                 }
             }
+        }
 
-            if (!layers.isEmpty()) {
-                fpBuilder.setInheritPackages(false);
-            }
-
-            final ProvisioningConfig newConfig = builder
-                    .addFeaturePackDep(fpBuilder.build())
-                    .build();
+        if (!layers.isEmpty()) {
+            fpBuilder.setInheritPackages(false);
+        }
 
-            if (newConfig.equals(existingConfig)) {
-                throw ProsperoLogger.ROOT_LOGGER.featurePackAlreadyInstalled(fpl);
-            }
+        final ProvisioningConfig newConfig = builder
+                .addFeaturePackDep(fpBuilder.build())
+                .build();
 
-            return newConfig;
+        if (newConfig.equals(existingConfig)) {
+            throw ProsperoLogger.ROOT_LOGGER.featurePackAlreadyInstalled(fpl);
         }
+
+        return newConfig;
     }
 
     private static FeaturePackConfig.Builder buildFeaturePackConfig(FeaturePackLocation fpl,
@@ -413,14 +431,9 @@ public class FeaturesAddAction {
     }
 
     private void verifyConfigurationsAvailable(ProvisioningConfig config) throws ProvisioningException, OperationException {
-        try( GalleonEnvironment env = GalleonEnvironment
-                .builder(installDir, prosperoConfig.getChannels(), mavenSessionManager).build()) {
-            final MavenRepoManager repositoryManager = env.getRepositoryManager();
-
-            final ProvisioningLayoutFactory layoutFactory = GalleonUtils.getProvisioningLayoutFactory(repositoryManager);
-
-            final ProvisioningLayout<FeaturePackLayout> layout = layoutFactory.newConfigLayout(config);
+        final ProvisioningLayoutFactory layoutFactory = getInstallationEnv().getProvisioningManager().getLayoutFactory();
 
+        try (ProvisioningLayout<FeaturePackLayout> layout = layoutFactory.newConfigLayout(config)) {
             final Stream<ConfigId> configIds = Stream.concat(
                     config.getFeaturePackDeps().stream().flatMap(fd -> fd.getIncludedConfigs().stream()),
                     config.getDefinedConfigs().stream().map(ConfigModel::getId));
@@ -467,6 +480,13 @@ public class FeaturesAddAction {
         return selectedModel;
     }
 
+    /**
+     * environment of the existing server, shared by all the steps of the operation. Must not be closed by the caller.
+     */
+    private GalleonEnvironment getInstallationEnv() throws ProvisioningException, OperationException {
+        return environments.getEnvironment(installDir, prosperoConfig.getChannels(), mavenSessionManager);
+    }
+
     private GalleonEnvironment getGalleonEnv(Path target) throws ProvisioningException, OperationException {
         return GalleonEnvironment
                 .builder(target, prosperoConfig.getChannels(), mavenSessionManager)
@@ -481,32 +501,28 @@ public class FeaturesAddAction {
                 .addFeaturePackDep(FeaturePackConfig.builder(fpl).build())
                 .build();
 
-        final MavenRepoManager repositoryManager = GalleonEnvironment
-                .builder(installDir, prosperoConfig.getChannels(), mavenSessionManager).build()
-                .getRepositoryManager();
-
-        final ProvisioningLayoutFactory layoutFactory = GalleonUtils.getProvisioningLayoutFactory(repositoryManager);
-
-        final ProvisioningLayout<FeaturePackLayout> layout = layoutFactory.newConfigLayout(config);
+        final ProvisioningLayoutFactory layoutFactory = getInstallationEnv().getProvisioningManager().getLayoutFactory();
 
         final Map<String, Set<String>> layersMap = new HashMap<>();
 
-        for (FeaturePackLayout fp : layout.getOrderedFeaturePacks()) {
-            final Set<ConfigId> configIds;
-            try {
-                configIds = fp.loadLayers();
-            } catch (IOException e) {
-                // this should not happen as the code IOException is not actually thrown by loadLayers
-                throw new RuntimeException(e);
-            }
-            for (ConfigId layer : configIds) {
-                final String model = layer.getModel();
-                Set<String> names = layersMap.get(model);
-                if (names == null) {
-                    names = new HashSet<>();
-                    layersMap.put(model, names);
+        try (ProvisioningLayout<FeaturePackLayout> layout = layoutFactory.newConfigLayout(config)) {
+            for (FeaturePackLayout fp : layout.getOrderedFeaturePacks()) {
+                final Set<ConfigId> configIds;
+                try {
+                    configIds = fp.loadLayers();
+                } catch (IOException e) {
+                    // this should not happen as the code IOException is not actually thrown by loadLayers
+                    throw new RuntimeException(e);
+                }
+                for (ConfigId layer : configIds) {
+                    final String model = layer.getModel();
+                    Set<String> names = layersMap.get(model);
+                    if (names == null) {
+                        names = new HashSet<>();
+                        layersMap.put(model, names);
+                    }
+                    names.add(layer.getName());
                 }
-                names.add(layer.getName());
             }
         }
 
@@ -521,6 +537,14 @@ public class FeaturesAddAction {
         return new ProsperoConfig(channels, prosperoConfig.getMavenOptions());
     }
 
+    /**
+     * releases the Galleon environments kept by the action.
+     */
+    @Override
+    public void close() {
+        environments.close();
+    }
+
     /**
      * Thrown if a requested layer cannot be found in a feature pack
      */
@@ -623,7 +647,7 @@ public class FeaturesAddAction {
         @Override
         public ApplyCandidateAction newApplyCandidateActionInstance(Path candidateDir)
                 throws ProvisioningException, OperationException {
-            return new ApplyCandidateAction(installDir, candidateDir);
+            return new ApplyCandidateAction(installDir, candidateDir, ApplyCandidateAction.TransferMode.MOVE);
         }
     }
 }
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.actions;
+
+import org.apache.commons.io.FileUtils;
+import org.jboss.galleon.ProvisioningException;
+import org.jboss.galleon.config.ProvisioningConfig;
+import org.wildfly.channel.ChannelManifestMapper;
+import org.wildfly.channel.ChannelMapper;
+import org.wildfly.channel.Repository;
+import org.wildfly.prospero.ProsperoLogger;
+import org.wildfly.prospero.api.Console;
+import org.wildfly.prospero.api.FileConflict;
+import org.wildfly.prospero.api.InstallationMetadata;
+import org.wildfly.prospero.api.MavenOptions;
+import org.wildfly.prospero.api.exceptions.OperationException;
+import org.wildfly.prospero.updates.UpdateSet;
+import org.wildfly.prospero.utils.ParallelExecutor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Updates several installations provisioned from the same channels.
+ *
+ * The installations are grouped by their channels, provisioning configuration and installed manifest. An update
+ * candidate is built once for each group, using the first installation of the group, and is then applied to all the
+ * installations of the group in parallel. Each installation is compared with the candidate separately, so the
+ * conflicts with the user changes are reported per installation.
+ *
+ * A failure to update one installation doesn't stop the update of the others, it is reported in its
+ * {@link InstallationResult}. The updates found for each group can be confirmed before the candidate is built, see
+ * {@link UpdateConfirmation}.
+ */
+public class FleetUpdateAction {
+
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    public enum Status {
+        /**
+         * the update has been applied to the installation.
+         */
+        UPDATED,
+        /**
+         * no updates are available for the installation.
+         */
+        NO_UPDATES,
+        /**
+         * the updates found for the installation were not confirmed.
+         */
+        CANCELLED,
+        /**
+         * the installation could not be updated, see {@link InstallationResult#getError()}.
+         */
+        FAILED
+    }
+
+    /**
+     * Decides if the updates found for a group of installations are applied.
+     */
+    @FunctionalInterface
+    public interface UpdateConfirmation {
+        /**
+         * @param installationDirs - installations of the group
+         * @param updates - updates found for the installations
+         * @return {@code true} if the updates should be applied to the installations
+         */
+        boolean confirm(List<Path> installationDirs, UpdateSet updates);
+    }
+
+    /**
+     * Creates the {@link UpdateAction} used to find and build the updates of a group.
+     */
+    @FunctionalInterface
+    interface UpdateActionFactory {
+        UpdateAction create(Path installationDir) throws OperationException, ProvisioningException;
+    }
+
+    public static class InstallationResult {
+        private final Path installationDir;
+        private final Status status;
+        private final List<FileConflict> conflicts;
+        private final Exception error;
+
+        private InstallationResult(Path installationDir, Status status, List<FileConflict> conflicts, Exception error) {
+            this.installationDir = installationDir;
+            this.status = status;
+            this.conflicts = conflicts;
+            this.error = error;
+        }
+
+        public Path getInstallationDir() {
+            return installationDir;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        /**
+         * @return conflicts between the user changes in the installation and the update
+         */
+        public List<FileConflict> getConflicts() {
+            return conflicts;
+        }
+
+        public Optional<Exception> getError() {
+            return Optional.ofNullable(error);
+        }
+
+        private static InstallationResult updated(Path installationDir, List<FileConflict> conflicts) {
+            return new InstallationResult(installationDir, Status.UPDATED, conflicts, null);
+        }
+
+        private static InstallationResult noUpdates(Path installationDir) {
+            return new InstallationResult(installationDir, Status.NO_UPDATES, Collections.emptyList(), null);
+        }
+
+        private static InstallationResult cancelled(Path installationDir) {
+            return new InstallationResult(installationDir, Status.CANCELLED, Collections.emptyList(), null);
+        }
+
+        private static InstallationResult failed(Path installationDir, Exception error) {
+            ProsperoLogger.ROOT_LOGGER.unableToUpdateInstallation(installationDir, error);
+            return new InstallationResult(installationDir, Status.FAILED, Collections.emptyList(), error);
+        }
+    }
+
+    private final List<Path> installationDirs;
+    private final UpdateActionFactory updateActionFactory;
+
+    public FleetUpdateAction(List<Path> installationDirs, MavenOptions mavenOptions, Console console,
+                             List<Repository> overrideRepositories) {
+        this(installationDirs, dir -> new UpdateAction(dir, mavenOptions, console, overrideRepositories));
+    }
+
+    FleetUpdateAction(List<Path> installationDirs, UpdateActionFactory updateActionFactory) {
+        Objects.requireNonNull(installationDirs);
+        // the same installation listed twice must not be updated concurrently
+        final Set<Path> normalized = new LinkedHashSet<>();
+        for (Path installationDir : installationDirs) {
+            normalized.add(installationDir.toAbsolutePath().normalize());
+        }
+        this.installationDirs = new ArrayList<>(normalized);
+        this.updateActionFactory = updateActionFactory;
+    }
+
+    /**
+     * updates all the installations, applying the update to at most {@code parallelism} installations at the same time.
+     * All the updates found are applied.
+     *
+     * @param parallelism - number of installations updated concurrently
+     * @return results of the update in the order of the installations
+     * @throws ProvisioningException if unable to create the candidate directory
+     */
+    public List<InstallationResult> performUpdate(int parallelism) throws ProvisioningException {
+        return performUpdate(parallelism, (dirs, updates) -> true);
+    }
+
+    /**
+     * updates all the installations, applying the update to at most {@code parallelism} installations at the same time.
+     * The updates of each group of installations are applied only if accepted by the {@code confirmation}.
+     *
+     * @param parallelism - number of installations updated concurrently
+     * @param confirmation - called with the updates found for each group of installations
+     * @return results of the update in the order of the installations, the installation paths are absolute
+     * @throws ProvisioningException if unable to create the candidate directory
+     */
+    public List<InstallationResult> performUpdate(int parallelism, UpdateConfirmation confirmation) throws ProvisioningException {
+        Objects.requireNonNull(confirmation);
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism has to be a positive number, was " + parallelism);
+        }
+        final Map<Path, InstallationResult> results = new LinkedHashMap<>();
+        for (Path installationDir : installationDirs) {
+            results.put(installationDir, null);
+        }
+
+        final Map<GroupKey, List<Member>> groups = new LinkedHashMap<>();
+        for (Path installationDir : installationDirs) {
+            try {
+                final Member member = Member.load(installationDir);
+                groups.computeIfAbsent(member.key, k -> new ArrayList<>()).add(member);
+            } catch (OperationException e) {
+                results.put(installationDir, InstallationResult.failed(installationDir, e));
+            }
+        }
+
+        for (List<Member> group : groups.values()) {
+            for (InstallationResult result : updateGroup(group, parallelism, confirmation)) {
+                results.put(result.getInstallationDir(), result);
+            }
+        }
+        return new ArrayList<>(results.values());
+    }
+
+    private List<InstallationResult> updateGroup(List<Member> group, int parallelism, UpdateConfirmation confirmation)
+            throws ProvisioningException {
+        final Path leader = group.get(0).installationDir;
+        final List<Path> groupDirs = group.stream().map(m -> m.installationDir).collect(Collectors.toList());
+        ProsperoLogger.ROOT_LOGGER.updatingInstallationGroup(group.size(), leader);
+
+        Path candidateDir = null;
+        try {
+            candidateDir = Files.createTempDirectory("update-candidate");
+            final List<InstallationResult> results = new ArrayList<>();
+            try (UpdateAction updateAction = updateActionFactory.create(leader)) {
+                final UpdateSet updates = updateAction.findUpdates();
+                if (updates.isEmpty()) {
+                    groupDirs.forEach(dir -> results.add(InstallationResult.noUpdates(dir)));
+                    return results;
+                }
+                if (!confirmation.confirm(groupDirs, updates)) {
+                    groupDirs.forEach(dir -> results.add(InstallationResult.cancelled(dir)));
+                    return results;
+                }
+                if (!updateAction.buildUpdate(candidateDir)) {
+                    groupDirs.forEach(dir -> results.add(InstallationResult.noUpdates(dir)));
+                    return results;
+                }
+            } catch (OperationException | ProvisioningException e) {
+                groupDirs.forEach(dir -> results.add(InstallationResult.failed(dir, e)));
+                return results;
+            }
+
+            final int concurrentUpdates = Math.min(parallelism, group.size());
+            // the threads hashing and copying the files are split between the installations updated at the same time
+            final int applyParallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / concurrentUpdates);
+            final Path candidate = candidateDir;
+            try (ParallelExecutor executor = new ParallelExecutor(concurrentUpdates)) {
+                results.addAll(executor.map(group, member -> apply(member, candidate, applyParallelism)));
+            }
+            return results;
+        } catch (IOException e) {
+            throw ProsperoLogger.ROOT_LOGGER.unableToCreateTemporaryDirectory(e);
+        } finally {
+            if (candidateDir != null) {
+                FileUtils.deleteQuietly(candidateDir.toFile());
+            }
+        }
+    }
+
+    private static InstallationResult apply(Member member, Path candidateDir, int parallelism) {
+        try {
+            // the candidate is shared by the installations, it has to be left unchanged. It is accepted by all the
+            // members, because they have the same installation state as the installation it was built from
+            final ApplyCandidateAction applyCandidateAction = new ApplyCandidateAction(member.installationDir, candidateDir,
+                    parallelism, ApplyCandidateAction.TransferMode.COPY);
+            return InstallationResult.updated(member.installationDir, applyCandidateAction.applyUpdate(ApplyCandidateAction.Type.UPDATE));
+        } catch (OperationException | ProvisioningException | RuntimeException e) {
+            return InstallationResult.failed(member.installationDir, e);
+        }
+    }
+
+    private static class Member {
+        private final Path installationDir;
+        private final GroupKey key;
+
+        private Member(Path installationDir, GroupKey key) {
+            this.installationDir = installationDir;
+            this.key = key;
+        }
+
+        static Member load(Path installationDir) throws OperationException {
+            try (InstallationMetadata metadata = InstallationMetadata.loadInstallation(installationDir)) {
+                final String channels = ChannelMapper.toYaml(metadata.getProsperoConfig().getChannels());
+                final String manifest = ChannelManifestMapper.toYaml(metadata.getManifest());
+                final ProvisioningConfig provisioningConfig = metadata.getGalleonProvisioningConfig();
+                return new Member(installationDir, new GroupKey(channels, manifest, provisioningConfig));
+            }
+        }
+    }
+
+    /**
+     * installations with the same key are updated to the same candidate.
+     */
+    private static class GroupKey {
+        private final String channels;
+        private final String manifest;
+        private final ProvisioningConfig provisioningConfig;
+
+        private GroupKey(String channels, String manifest, ProvisioningConfig provisioningConfig) {
+            this.channels = channels;
+            this.manifest = manifest;
+            this.provisioningConfig = provisioningConfig;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            GroupKey groupKey = (GroupKey) o;
+            return Objects.equals(channels, groupKey.channels) && Objects.equals(manifest, groupKey.manifest)
+                    && Objects.equals(provisioningConfig, groupKey.provisioningConfig);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(channels, manifest, provisioningConfig);
+        }
+    }
+}
@@ -41,8 +41,11 @@ import org.jboss.galleon.ProvisioningException;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.wildfly.prospero.galleon.GalleonUtils.MAVEN_REPO_LOCAL;
 
@@ -63,6 +66,53 @@ public class InstallationHistoryAction {
         return installationMetadata.getChangesSince(savedState);
     }
 
+    /**
+     * lists changes between two states of the installation.
+     *
+     * @param from - the base state
+     * @param to - the changed state
+     */
+    public InstallationChanges compare(SavedState from, SavedState to) throws MetadataException {
+        ProsperoLogger.ROOT_LOGGER.historyRangeDetails(from.getName(), to.getName(), installation);
+        try (InstallationMetadata installationMetadata = InstallationMetadata.loadInstallation(installation)) {
+            verifyStateExists(from, installationMetadata);
+            verifyStateExists(to, installationMetadata);
+            return installationMetadata.getChangesBetween(from, to);
+        }
+    }
+
+    /**
+     * lists changes between each consecutive pair of {@code revisions}. The history is opened only once and each
+     * recorded manifest is parsed only once, so it is more efficient than comparing each pair separately.
+     *
+     * @param revisions - states of the installation, ordered from the oldest
+     * @return changes between {@code revisions[i]} and {@code revisions[i+1]}
+     */
+    public List<InstallationChanges> compareRevisions(List<SavedState> revisions) throws MetadataException {
+        final List<InstallationChanges> changes = new ArrayList<>();
+        if (revisions.size() < 2) {
+            return changes;
+        }
+        try (InstallationMetadata installationMetadata = InstallationMetadata.loadInstallation(installation)) {
+            final Set<String> knownStates = installationMetadata.getRevisions().stream()
+                    .map(SavedState::getName)
+                    .collect(Collectors.toSet());
+            for (SavedState revision : revisions) {
+                if (!knownStates.contains(revision.getName())) {
+                    throw ProsperoLogger.ROOT_LOGGER.savedStateNotFound(revision.getName());
+                }
+            }
+
+            for (int i = 0; i < revisions.size() - 1; i++) {
+                final SavedState from = revisions.get(i);
+                final SavedState to = revisions.get(i + 1);
+                ProsperoLogger.ROOT_LOGGER.historyRangeDetails(from.getName(), to.getName(), installation);
+                changes.add(installationMetadata.getChangesBetween(from, to));
+            }
+        }
+        return changes;
+    }
+
     public List<SavedState> getRevisions() throws MetadataException {
         ProsperoLogger.ROOT_LOGGER.listHistory(installation);
         try(InstallationMetadata installationMetadata = InstallationMetadata.loadInstallation(installation)) {
@@ -79,7 +129,7 @@ public class InstallationHistoryAction {
                 ProsperoLogger.ROOT_LOGGER.temporaryCandidateFolder(tempDirectory);
             }
             prepareRevert(savedState, mavenOptions, overrideRepositories, tempDirectory);
-            new ApplyCandidateAction(installation, tempDirectory).applyUpdate(ApplyCandidateAction.Type.REVERT);
+            new ApplyCandidateAction(installation, tempDirectory, ApplyCandidateAction.TransferMode.MOVE).applyUpdate(ApplyCandidateAction.Type.REVERT);
             ProsperoLogger.ROOT_LOGGER.revertCompleted(installation, savedState.getName());
         } catch (IOException e) {
             throw ProsperoLogger.ROOT_LOGGER.unableToCreateTemporaryDirectory(e);
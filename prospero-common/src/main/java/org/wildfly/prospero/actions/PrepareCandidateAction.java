@@ -23,8 +23,10 @@ import org.jboss.galleon.ProvisioningManager;
 import org.jboss.galleon.config.ProvisioningConfig;
 import org.wildfly.channel.Channel;
 import org.wildfly.channel.ChannelManifest;
+import org.wildfly.channel.Stream;
 import org.wildfly.channel.UnresolvedMavenArtifactException;
 import org.wildfly.prospero.ProsperoLogger;
+import org.wildfly.prospero.api.ArtifactChange;
 import org.wildfly.prospero.api.InstallationMetadata;
 import org.wildfly.prospero.api.SavedState;
 import org.wildfly.prospero.api.exceptions.ArtifactResolutionException;
@@ -33,6 +35,7 @@ import org.wildfly.prospero.api.exceptions.OperationException;
 import org.wildfly.prospero.galleon.GalleonEnvironment;
 import org.wildfly.prospero.galleon.GalleonFeaturePackAnalyzer;
 import org.wildfly.prospero.galleon.GalleonUtils;
+import org.wildfly.prospero.galleon.IncrementalLayout;
 import org.wildfly.prospero.metadata.ManifestVersionRecord;
 import org.wildfly.prospero.metadata.ManifestVersionResolver;
 import org.wildfly.prospero.model.ProsperoConfig;
@@ -41,17 +44,22 @@ import org.wildfly.prospero.wfchannel.MavenSessionManager;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 class PrepareCandidateAction implements AutoCloseable{
 
+    private final Path installDir;
     private final InstallationMetadata metadata;
     private final ProsperoConfig prosperoConfig;
     private final MavenSessionManager mavenSessionManager;
 
     PrepareCandidateAction(Path installDir, MavenSessionManager mavenSessionManager, ProsperoConfig prosperoConfig)
             throws OperationException {
+        this.installDir = installDir;
         this.metadata = InstallationMetadata.loadInstallation(installDir);
         this.prosperoConfig = prosperoConfig;
         this.mavenSessionManager = mavenSessionManager;
@@ -61,16 +69,49 @@ class PrepareCandidateAction implements AutoCloseable{
                            ProvisioningConfig config) throws ProvisioningException, OperationException {
         doBuildUpdate(targetDir, galleonEnv, config);
 
+        writeMarkerFile(targetDir, operation);
+
+        return true;
+    }
+
+    /**
+     * builds the candidate re-using the files of the installation, only the artifacts affected by {@code changes} are
+     * resolved and laid out (see {@link IncrementalLayout}). If the candidate cannot be built incrementally, it is
+     * fully provisioned as in {@link #buildCandidate(Path, GalleonEnvironment, ApplyCandidateAction.Type, ProvisioningConfig)}.
+     */
+    boolean buildIncrementalCandidate(Path targetDir, GalleonEnvironment galleonEnv, ApplyCandidateAction.Type operation,
+                                      ProvisioningConfig config, List<ArtifactChange> changes)
+            throws ProvisioningException, OperationException {
+        Optional<IncrementalLayout> layout;
         try {
-            final SavedState savedState = metadata.getRevisions().get(0);
-            new MarkerFile(savedState.getName(), operation).write(targetDir);
+            layout = IncrementalLayout.plan(installDir, changes);
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            ProsperoLogger.ROOT_LOGGER.debug("Unable to analyze the installation, provisioning the full candidate", e);
+            layout = Optional.empty();
+        }
+        if (layout.isEmpty()) {
+            return buildCandidate(targetDir, galleonEnv, operation, config);
         }
 
+        ProsperoLogger.ROOT_LOGGER.incrementalCandidate();
+        doBuildIncrementalUpdate(targetDir, galleonEnv, layout.get(), changes);
+
+        writeMarkerFile(targetDir, operation);
+
         return true;
     }
 
+    private void writeMarkerFile(Path targetDir, ApplyCandidateAction.Type operation) {
+        try {
+            final SavedState savedState = metadata.getLatestRevision().orElseThrow();
+            // the installation state allows the candidate to be applied to other installations with the same content
+            final String installationState = MarkerFile.installationState(installDir, metadata.getManifest());
+            new MarkerFile(savedState.getName(), operation, installationState).write(targetDir);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     private void doBuildUpdate(Path targetDir, GalleonEnvironment galleonEnv, ProvisioningConfig provisioningConfig)
             throws ProvisioningException, OperationException {
         final ProvisioningManager provMgr = galleonEnv.getProvisioningManager();
@@ -85,23 +126,56 @@ class PrepareCandidateAction implements AutoCloseable{
                     e.getAttemptedRepositories(), mavenSessionManager.isOffline());
         }
 
+        writeMetadata(targetDir, galleonEnv, galleonEnv.getChannelSession().getRecordedChannel());
+
+        try {
+            final GalleonFeaturePackAnalyzer galleonFeaturePackAnalyzer = new GalleonFeaturePackAnalyzer(galleonEnv.getChannels(), mavenSessionManager);
+
+            // re-use the environment to avoid resolving the channels and feature packs again
+            galleonFeaturePackAnalyzer.cacheGalleonArtifacts(targetDir, provisioningConfig, galleonEnv);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void doBuildIncrementalUpdate(Path targetDir, GalleonEnvironment galleonEnv, IncrementalLayout layout,
+                                          List<ArtifactChange> changes) throws ProvisioningException, OperationException {
+        try {
+            layout.layout(targetDir, galleonEnv.getChannelSession());
+        } catch (UnresolvedMavenArtifactException e) {
+            throw new ArtifactResolutionException(ProsperoLogger.ROOT_LOGGER.unableToResolve(), e, e.getUnresolvedArtifacts(),
+                    e.getAttemptedRepositories(), mavenSessionManager.isOffline());
+        } catch (IOException e) {
+            throw ProsperoLogger.ROOT_LOGGER.unableToLayoutCandidate(e);
+        }
+
+        // only the changed artifacts are resolved, the manifest has to be based on the installed one
+        writeMetadata(targetDir, galleonEnv, updateManifest(metadata.getManifest(), changes));
+    }
+
+    private void writeMetadata(Path targetDir, GalleonEnvironment galleonEnv, ChannelManifest manifest) throws OperationException {
         try {
             final ManifestVersionRecord manifestRecord =
-                    new ManifestVersionResolver(mavenSessionManager.getProvisioningRepo(), mavenSessionManager.newRepositorySystem())
+                    new ManifestVersionResolver(mavenSessionManager.getProvisioningRepo(), mavenSessionManager.getRepositorySystem())
                             .getCurrentVersions(galleonEnv.getChannels());
-            writeProsperoMetadata(targetDir, galleonEnv.getChannelSession().getRecordedChannel(), prosperoConfig.getChannels(),
-                    manifestRecord);
+            writeProsperoMetadata(targetDir, manifest, prosperoConfig.getChannels(), manifestRecord);
         } catch (IOException ex) {
             throw ProsperoLogger.ROOT_LOGGER.unableToDownloadFile(ex);
         }
+    }
 
-        try {
-            final GalleonFeaturePackAnalyzer galleonFeaturePackAnalyzer = new GalleonFeaturePackAnalyzer(galleonEnv.getChannels(), mavenSessionManager);
-
-            galleonFeaturePackAnalyzer.cacheGalleonArtifacts(targetDir, provisioningConfig);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    private static ChannelManifest updateManifest(ChannelManifest manifest, List<ArtifactChange> changes) {
+        final Map<String, String> versions = new HashMap<>();
+        for (ArtifactChange change : changes) {
+            versions.put(change.getArtifactName(), change.getNewVersion().orElseThrow());
         }
+        final List<Stream> streams = manifest.getStreams().stream()
+                .map(s -> {
+                    final String version = versions.get(s.getGroupId() + ":" + s.getArtifactId());
+                    return version == null ? s : new Stream(s.getGroupId(), s.getArtifactId(), version);
+                })
+                .collect(Collectors.toList());
+        return new ChannelManifest(manifest.getName(), manifest.getId(), manifest.getDescription(), streams);
     }
 
     @Override
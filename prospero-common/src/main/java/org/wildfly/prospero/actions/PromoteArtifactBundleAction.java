@@ -62,7 +62,7 @@ public class PromoteArtifactBundleAction {
                 console.println("  * " + String.format("%s:%s:%s", artifact.getGroupId(), artifact.getArtifactId(), artifact.getVersion()));
             }
             final MavenSessionManager msm = new MavenSessionManager(MavenOptions.OFFLINE_NO_CACHE);
-            final RepositorySystem system = msm.newRepositorySystem();
+            final RepositorySystem system = msm.getRepositorySystem();
             final DefaultRepositorySystemSession session = msm.newRepositorySystemSession(system);
 
             RemoteRepository sourceRepo = new RemoteRepository.Builder("source-repo", "default", extracted.getRepository().toUri().toURL().toString()).build();
@@ -140,7 +140,7 @@ public class ProvisioningAction {
                     ProsperoLogger.ROOT_LOGGER.debug("Resolving installed manifest versions");
                 }
 
-                manifestRecord = new ManifestVersionResolver(mavenSessionManager.getProvisioningRepo(), mavenSessionManager.newRepositorySystem())
+                manifestRecord = new ManifestVersionResolver(mavenSessionManager.getProvisioningRepo(), mavenSessionManager.getRepositorySystem())
                         .getCurrentVersions(channels);
             } catch (IOException e) {
                 throw ProsperoLogger.ROOT_LOGGER.unableToDownloadFile(e);
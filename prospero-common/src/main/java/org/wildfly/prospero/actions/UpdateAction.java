@@ -45,6 +45,12 @@ import org.jboss.galleon.ProvisioningException;
 
 public class UpdateAction implements AutoCloseable {
 
+    /**
+     * System property enabling incremental update candidates. If set to {@code true}, the candidate re-uses the files of
+     * the installation and only the changed artifacts are resolved and laid out, if the update allows it.
+     */
+    public static final String INCREMENTAL_CANDIDATE_PROPERTY = "prospero.update.incremental";
+
     private final InstallationMetadata metadata;
     private final MavenSessionManager mavenSessionManager;
     private final Path installDir;
@@ -80,7 +86,7 @@ public class UpdateAction implements AutoCloseable {
                 ProsperoLogger.ROOT_LOGGER.temporaryCandidateFolder(targetDir);
             }
             if (buildUpdate(targetDir)) {
-                final ApplyCandidateAction applyCandidateAction = new ApplyCandidateAction(installDir, targetDir);
+                final ApplyCandidateAction applyCandidateAction = new ApplyCandidateAction(installDir, targetDir, ApplyCandidateAction.TransferMode.MOVE);
                 return applyCandidateAction.applyUpdate(ApplyCandidateAction.Type.UPDATE);
             } else {
                 return Collections.emptyList();
@@ -104,7 +110,8 @@ public class UpdateAction implements AutoCloseable {
      * @throws OperationException
      */
     public boolean buildUpdate(Path targetDir) throws ProvisioningException, OperationException {
-        if (findUpdates().isEmpty()) {
+        final UpdateSet updates = findUpdates();
+        if (updates.isEmpty()) {
             ProsperoLogger.ROOT_LOGGER.noUpdatesFound(installDir);
             return false;
         }
@@ -114,8 +121,14 @@ public class UpdateAction implements AutoCloseable {
 
             final ProvisioningConfig provisioningConfig = ProvisioningXmlParser.parse(PathsUtils.getProvisioningXml(installDir));
 
-            final boolean result = prepareCandidateAction.buildCandidate(targetDir, galleonEnv,
-                    ApplyCandidateAction.Type.UPDATE, provisioningConfig);
+            final boolean result;
+            if (Boolean.getBoolean(INCREMENTAL_CANDIDATE_PROPERTY)) {
+                result = prepareCandidateAction.buildIncrementalCandidate(targetDir, galleonEnv,
+                        ApplyCandidateAction.Type.UPDATE, provisioningConfig, updates.getArtifactUpdates());
+            } else {
+                result = prepareCandidateAction.buildCandidate(targetDir, galleonEnv,
+                        ApplyCandidateAction.Type.UPDATE, provisioningConfig);
+            }
             ProsperoLogger.ROOT_LOGGER.updateCandidateCompleted(targetDir);
             return result;
         }
@@ -129,9 +142,22 @@ public class UpdateAction implements AutoCloseable {
      * @throws ProvisioningException
      */
     public UpdateSet findUpdates() throws OperationException, ProvisioningException {
+        return findUpdates(UpdateFinder.UPDATES_SEARCH_PARALLELISM);
+    }
+
+    /**
+     * generate a list of updates that can be applied to server at {@code installDir}.
+     *
+     * @param parallelism - maximum number of artifacts queried at the same time
+     * @return
+     * @throws OperationException
+     * @throws ProvisioningException
+     */
+    public UpdateSet findUpdates(int parallelism) throws OperationException, ProvisioningException {
         ProsperoLogger.ROOT_LOGGER.checkingUpdates();
         try (GalleonEnvironment galleonEnv = getGalleonEnv(installDir);
-             UpdateFinder updateFinder = new UpdateFinder(galleonEnv.getChannelSession())) {
+             UpdateFinder updateFinder = new UpdateFinder(galleonEnv.getChannelSession(),
+                     galleonEnv.getChannelManifests().orElse(Collections.emptyList()), parallelism)) {
 
             final UpdateSet updates = updateFinder.findUpdates(metadata.getArtifacts());
             ProsperoLogger.ROOT_LOGGER.updatesFound(updates.getArtifactUpdates().size());
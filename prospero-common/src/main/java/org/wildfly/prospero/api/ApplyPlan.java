@@ -0,0 +1,233 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.api;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Changes that applying a candidate would make in the installation, together with an estimate of the cost of the
+ * operation.
+ *
+ * The estimated time is based on the throughput measured while the files were hashed during the planning. Applying the
+ * candidate hashes the same files as the planning, so the time spent reading the files is expected to be similar.
+ */
+@JsonPropertyOrder({"operations", "conflicts", "filesToCopy", "filesToMove", "filesToDelete", "bytesToCopy", "filesToHash",
+        "bytesToHash", "diskThroughput", "estimatedApplyTimeMillis"})
+public class ApplyPlan {
+
+    public enum OperationType {
+        /**
+         * the candidate file is copied into the installation.
+         */
+        COPY,
+        /**
+         * the candidate file is moved into the installation. Only the filesystem metadata is changed, no bytes are written.
+         */
+        MOVE,
+        /**
+         * the installation file or directory is removed.
+         */
+        DELETE,
+        /**
+         * the candidate file is stored next to the preserved user file with {@code .glnew} suffix.
+         */
+        GLNEW,
+        /**
+         * the user file is stored with {@code .glold} suffix and replaced with the candidate file.
+         */
+        GLOLD
+    }
+
+    public static class FileOperation {
+        private final OperationType type;
+        private final String relativePath;
+        private final long size;
+
+        public FileOperation(OperationType type, String relativePath, long size) {
+            this.type = type;
+            this.relativePath = relativePath;
+            this.size = size;
+        }
+
+        public OperationType getType() {
+            return type;
+        }
+
+        public String getRelativePath() {
+            return relativePath;
+        }
+
+        /**
+         * @return number of bytes written by the operation
+         */
+        public long getSize() {
+            return size;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FileOperation that = (FileOperation) o;
+            return size == that.size && type == that.type && Objects.equals(relativePath, that.relativePath);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(type, relativePath, size);
+        }
+
+        @Override
+        public String toString() {
+            return "FileOperation{" +
+                    "type=" + type +
+                    ", relativePath='" + relativePath + '\'' +
+                    ", size=" + size +
+                    '}';
+        }
+    }
+
+    private final List<FileOperation> operations;
+    private final List<FileConflict> conflicts;
+    private final long filesToHash;
+    private final long bytesToHash;
+    private final long diskThroughput;
+    private final long estimatedApplyTimeMillis;
+
+    private ApplyPlan(List<FileOperation> operations, List<FileConflict> conflicts, long filesToHash, long bytesToHash,
+                      long diskThroughput, long estimatedApplyTimeMillis) {
+        this.operations = operations;
+        this.conflicts = conflicts;
+        this.filesToHash = filesToHash;
+        this.bytesToHash = bytesToHash;
+        this.diskThroughput = diskThroughput;
+        this.estimatedApplyTimeMillis = estimatedApplyTimeMillis;
+    }
+
+    public List<FileOperation> getOperations() {
+        return operations;
+    }
+
+    public List<FileConflict> getConflicts() {
+        return conflicts;
+    }
+
+    public long getFilesToCopy() {
+        return count(OperationType.COPY);
+    }
+
+    public long getFilesToMove() {
+        return count(OperationType.MOVE);
+    }
+
+    public long getFilesToDelete() {
+        return count(OperationType.DELETE);
+    }
+
+    /**
+     * @return number of bytes written to the installation, including the {@code .glnew} and {@code .glold} files
+     */
+    public long getBytesToCopy() {
+        return operations.stream().mapToLong(FileOperation::getSize).sum();
+    }
+
+    /**
+     * @return number of files that have to be hashed, the files with hashes recorded by Galleon are not included
+     */
+    public long getFilesToHash() {
+        return filesToHash;
+    }
+
+    public long getBytesToHash() {
+        return bytesToHash;
+    }
+
+    /**
+     * @return throughput in bytes per second of reading a single file, measured only over the time spent hashing the files,
+     * or 0 if no files were hashed
+     */
+    public long getDiskThroughput() {
+        return diskThroughput;
+    }
+
+    public long getEstimatedApplyTimeMillis() {
+        return estimatedApplyTimeMillis;
+    }
+
+    private long count(OperationType type) {
+        return operations.stream().filter(o -> o.getType() == type).count();
+    }
+
+    /**
+     * Collects the plan while the candidate is compared with the installation. The builder can be used by
+     * concurrent tasks, the operations are sorted by path when the plan is built.
+     */
+    public static class Builder {
+        private final List<FileOperation> operations = Collections.synchronizedList(new ArrayList<>());
+        private final AtomicLong filesToHash = new AtomicLong();
+        private final AtomicLong bytesToHash = new AtomicLong();
+        private final AtomicLong hashingNanos = new AtomicLong();
+        private final long startTime = System.nanoTime();
+
+        public void add(OperationType type, String relativePath, long size) {
+            operations.add(new FileOperation(type, relativePath, size));
+        }
+
+        /**
+         * @param size - size of the hashed file
+         * @param nanos - time spent hashing the file
+         */
+        public void hashed(long size, long nanos) {
+            filesToHash.incrementAndGet();
+            bytesToHash.addAndGet(size);
+            hashingNanos.addAndGet(nanos);
+        }
+
+        /**
+         * @param conflicts - conflicts between the user changes and the candidate
+         * @return the plan with the time estimated from the time elapsed since the builder was created and the throughput
+         * of hashing the files
+         */
+        public ApplyPlan build(List<FileConflict> conflicts) {
+            final long elapsedNanos = System.nanoTime() - startTime;
+            final long hashedBytes = bytesToHash.get();
+            // the time spent walking the trees and comparing the files is not included, it is not spent reading the data
+            final long hashedNanos = hashingNanos.get();
+            final long throughput = hashedNanos > 0 ? (long) (hashedBytes * (double) TimeUnit.SECONDS.toNanos(1) / hashedNanos) : 0;
+
+            final List<FileOperation> sorted = new ArrayList<>(operations);
+            sorted.sort(Comparator.comparing(FileOperation::getRelativePath).thenComparing(FileOperation::getType));
+            final long bytesToCopy = sorted.stream().mapToLong(FileOperation::getSize).sum();
+
+            long estimate = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+            if (throughput > 0) {
+                estimate += (long) (bytesToCopy * 1000d / throughput);
+            }
+            return new ApplyPlan(Collections.unmodifiableList(sorted), Collections.unmodifiableList(new ArrayList<>(conflicts)),
+                    filesToHash.get(), hashedBytes, throughput, estimate);
+        }
+    }
+}
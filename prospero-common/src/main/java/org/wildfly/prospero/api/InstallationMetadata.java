@@ -32,6 +32,7 @@ import org.wildfly.prospero.installation.git.GitStorage;
 import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
 import org.wildfly.prospero.model.ManifestYamlSupport;
 import org.wildfly.prospero.model.ProsperoConfig;
+import org.wildfly.prospero.updates.ApplyJournal;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.jboss.galleon.ProvisioningException;
@@ -72,13 +73,21 @@ public class InstallationMetadata implements AutoCloseable {
     private ChannelManifest manifest;
 
     /**
-     * load the metadata of an existing installation. If the history is not available, it will be started.
+     * load the metadata of an existing installation. If the history is not available, it will be started. If an
+     * operation modifying the installation was interrupted, it is recovered first.
      *
      * @param base
      * @return
      * @throws MetadataException
      */
     public static InstallationMetadata loadInstallation(Path base) throws MetadataException {
+        // an operation interrupted while modifying the installation is recovered before the metadata is read
+        try {
+            ApplyJournal.recover(base);
+        } catch (IOException e) {
+            throw ProsperoLogger.ROOT_LOGGER.unableToRecoverInterruptedApply(base, e);
+        }
+
         final Path manifestFile = base.resolve(ProsperoMetadataUtils.METADATA_DIR).resolve(ProsperoMetadataUtils.MANIFEST_FILE_NAME);
 
         ChannelManifest manifest;
@@ -337,6 +346,23 @@ public class InstallationMetadata implements AutoCloseable {
         return gitStorage.getRevisions();
     }
 
+    /**
+     * lists a page of the recorded states, latest first.
+     *
+     * @param offset - number of the latest states to skip
+     * @param limit - maximum number of states to return
+     */
+    public List<SavedState> getRevisions(int offset, int limit) throws MetadataException {
+        return gitStorage.getRevisions(offset, limit);
+    }
+
+    /**
+     * @return the latest recorded state, or empty if the installation history has not been started
+     */
+    public Optional<SavedState> getLatestRevision() throws MetadataException {
+        return gitStorage.getLatestRevision();
+    }
+
     public InstallationMetadata getSavedState(SavedState savedState) throws MetadataException {
         // checkout previous version
         // record as rollback operation
@@ -361,6 +387,19 @@ public class InstallationMetadata implements AutoCloseable {
                 gitStorage.getFeatureChanges(savedState));
     }
 
+    /**
+     * lists changes between two recorded states of the installation.
+     *
+     * @param from - the base state
+     * @param to - the changed state
+     */
+    public InstallationChanges getChangesBetween(SavedState from, SavedState to) throws MetadataException {
+        return new InstallationChanges(
+                gitStorage.getArtifactChanges(from, to),
+                gitStorage.getChannelChanges(from, to),
+                gitStorage.getFeatureChanges(from, to));
+    }
+
     public void setManifest(ChannelManifest resolvedChannel) {
         manifest = resolvedChannel;
     }
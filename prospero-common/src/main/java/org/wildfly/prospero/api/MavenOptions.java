@@ -18,6 +18,7 @@
 package org.wildfly.prospero.api;
 
 import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
@@ -42,6 +43,8 @@ public class MavenOptions {
     private final Optional<Path> localCache;
     private final Optional<Boolean> offline;
     private final Optional<Boolean> noLocalCache;
+    private final Optional<Long> manifestCacheTtl;
+    private final Optional<Integer> downloadThreads;
 
     public static final MavenOptions DEFAULT_OPTIONS = builder().build();
     public static final MavenOptions OFFLINE_NO_CACHE = builder()
@@ -60,16 +63,24 @@ public class MavenOptions {
     @JsonCreator
     private MavenOptions(@JsonProperty("localCache") Path localCache,
                          @JsonProperty("offline") boolean offline,
-                         @JsonProperty("noLocalCache") boolean noLocalCache) {
+                         @JsonProperty("noLocalCache") boolean noLocalCache,
+                         @JsonProperty("manifestCacheTtl") Long manifestCacheTtl,
+                         @JsonProperty("downloadThreads") Integer downloadThreads) {
         this.localCache = Optional.ofNullable(localCache).map(Path::toAbsolutePath);
         this.noLocalCache = Optional.of(noLocalCache);
         this.offline = Optional.of(offline);
+        // the values read from a file are validated in the same way as the values set with the builder
+        this.manifestCacheTtl = Optional.ofNullable(manifestCacheTtl).map(MavenOptions::validateManifestCacheTtl);
+        this.downloadThreads = Optional.ofNullable(downloadThreads).map(MavenOptions::validateDownloadThreads);
     }
 
-    private MavenOptions(Optional<Path> localCache, Optional<Boolean> offline, Optional<Boolean> noLocalCache) {
+    private MavenOptions(Optional<Path> localCache, Optional<Boolean> offline, Optional<Boolean> noLocalCache,
+                         Optional<Long> manifestCacheTtl, Optional<Integer> downloadThreads) {
         this.localCache = localCache;
         this.noLocalCache = noLocalCache;
         this.offline = offline;
+        this.manifestCacheTtl = manifestCacheTtl;
+        this.downloadThreads = downloadThreads;
     }
 
     public Path getLocalCache() {
@@ -84,6 +95,41 @@ public class MavenOptions {
         return noLocalCache.orElse(false);
     }
 
+    /**
+     * time in seconds for which resolved channel manifests and blocklists are re-used without checking for changes.
+     * After that time, the cached copies are re-used only if the remote content has not changed.
+     *
+     * @return the time in seconds, or {@code null} if the channel metadata should not be cached
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Long getManifestCacheTtl() {
+        return manifestCacheTtl.orElse(null);
+    }
+
+    /**
+     * maximum number of artifacts downloaded from a repository at the same time.
+     *
+     * @return the number of threads, or {@code null} if the Maven resolver default should be used
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public Integer getDownloadThreads() {
+        return downloadThreads.orElse(null);
+    }
+
+
+    private static long validateManifestCacheTtl(long manifestCacheTtl) {
+        if (manifestCacheTtl < 0) {
+            throw new IllegalArgumentException("Manifest cache TTL cannot be negative, was " + manifestCacheTtl);
+        }
+        return manifestCacheTtl;
+    }
+
+    private static int validateDownloadThreads(int downloadThreads) {
+        if (downloadThreads < 1) {
+            throw new IllegalArgumentException("Number of download threads has to be a positive number, was " + downloadThreads);
+        }
+        return downloadThreads;
+    }
 
     public boolean overridesLocalCache() {
         return localCache.isPresent();
@@ -95,6 +141,8 @@ public class MavenOptions {
                 "localCache=" + localCache +
                 ", offline=" + offline +
                 ", noLocalCache=" + noLocalCache +
+                ", manifestCacheTtl=" + manifestCacheTtl +
+                ", downloadThreads=" + downloadThreads +
                 '}';
     }
 
@@ -117,6 +165,18 @@ public class MavenOptions {
         } else if (this.localCache.isPresent()) {
             builder.setLocalCachePath(this.getLocalCache());
         }
+
+        if (override.manifestCacheTtl.isPresent()) {
+            builder.setManifestCacheTtl(override.getManifestCacheTtl());
+        } else if (this.manifestCacheTtl.isPresent()) {
+            builder.setManifestCacheTtl(this.getManifestCacheTtl());
+        }
+
+        if (override.downloadThreads.isPresent()) {
+            builder.setDownloadThreads(override.getDownloadThreads());
+        } else if (this.downloadThreads.isPresent()) {
+            builder.setDownloadThreads(this.getDownloadThreads());
+        }
         return builder.build();
     }
 
@@ -135,12 +195,13 @@ public class MavenOptions {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MavenOptions that = (MavenOptions) o;
-        return Objects.equals(localCache, that.localCache) && Objects.equals(offline, that.offline) && Objects.equals(noLocalCache, that.noLocalCache);
+        return Objects.equals(localCache, that.localCache) && Objects.equals(offline, that.offline) && Objects.equals(noLocalCache, that.noLocalCache)
+                && Objects.equals(manifestCacheTtl, that.manifestCacheTtl) && Objects.equals(downloadThreads, that.downloadThreads);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(localCache, offline, noLocalCache);
+        return Objects.hash(localCache, offline, noLocalCache, manifestCacheTtl, downloadThreads);
     }
 
     public static class Builder {
@@ -148,13 +209,15 @@ public class MavenOptions {
         private Optional<Boolean> offline = Optional.empty();
         private Optional<Boolean> noLocalCache = Optional.empty();
         private Optional<Path> localCachePath = Optional.empty();
+        private Optional<Long> manifestCacheTtl = Optional.empty();
+        private Optional<Integer> downloadThreads = Optional.empty();
 
         private Builder() {
 
         }
 
         public MavenOptions build() {
-            return new MavenOptions(localCachePath, offline, noLocalCache);
+            return new MavenOptions(localCachePath, offline, noLocalCache, manifestCacheTtl, downloadThreads);
         }
 
         public Builder setOffline(boolean offline) {
@@ -171,5 +234,15 @@ public class MavenOptions {
             this.localCachePath = Optional.of(localCachePath);
             return this;
         }
+
+        public Builder setManifestCacheTtl(long manifestCacheTtl) {
+            this.manifestCacheTtl = Optional.of(validateManifestCacheTtl(manifestCacheTtl));
+            return this;
+        }
+
+        public Builder setDownloadThreads(int downloadThreads) {
+            this.downloadThreads = Optional.of(validateDownloadThreads(downloadThreads));
+            return this;
+        }
     }
 }
@@ -18,11 +18,12 @@
 package org.wildfly.prospero.galleon;
 
 import org.jboss.galleon.universe.maven.MavenUniverseException;
-import org.jboss.galleon.util.HashUtils;
-import org.jboss.galleon.util.IoUtils;
 import org.jboss.logging.Logger;
 import org.wildfly.channel.MavenArtifact;
+import org.wildfly.prospero.ProsperoLogger;
 import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
+import org.wildfly.prospero.utils.NioFileUtils;
+import org.wildfly.prospero.utils.ParallelExecutor;
 
 import java.io.BufferedWriter;
 import java.io.File;
@@ -31,11 +32,18 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
 import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -44,28 +52,60 @@ import java.util.concurrent.locks.ReentrantReadWriteLock;
  *
  * Cached artifacts are listed in {@code CACHE_FOLDER}/{@code CACHE_FILENAME}. Each artifact is identified by its {@code GAV}
  * and specifies an SHA-1 hash of the file and a relative path were the artifact can be found within {@code installationDir}.
+ * Artifacts recorded by Prospero additionally store the size, last modified time and file key (inode) of the file. Those
+ * are used to validate the cached file without re-calculating its hash, see {@link ValidationMode}.
  *
  * If the artifact cannot be found within Galleon-provisioned {@code installationDir}, the artifact can be added to the
  * {@code CACHE_FOLDER}.
  *
+ * New records are appended to the cache descriptor. If an artifact is recorded again, a tombstone line
+ * ({@code GAV::-}) marks the previous record as superseded, and the descriptor is compacted once the batch of records
+ * is written.
+ *
  * The cache is rebuild during update and only current artifacts are stored.
+ *
+ * If a {@link SharedArtifactStore} is configured, the cached files are hard links to the blobs in the store, and the
+ * hashes of all recorded artifacts are registered as references of the installation.
  */
 public class ArtifactCache {
     private static final Logger LOG = Logger.getLogger(ArtifactCache.class);
 
     static final String CACHE_LINE_SEPARATOR = "::";
     static final String CACHE_FILENAME = "artifacts.txt";
+    static final String TOMBSTONE = "-";
     public static final Path CACHE_FOLDER = Path.of(ProsperoMetadataUtils.METADATA_DIR, ".cache");
 
     private final Path cacheDir;
     private final Path installationDir;
 
+    // current cache descriptor records in the order they were recorded
+    private final Map<String, String> entries = new LinkedHashMap<>();
     private final Map<String, Path> paths = new HashMap<>();
     private final Map<String, String> hashes = new HashMap<>();
+    // can be refreshed by readers holding only the read lock
+    private final Map<String, FileAttributes> attributes = new ConcurrentHashMap<>();
     private ReadWriteLock lock = new ReentrantReadWriteLock();
 
     private static final HashMap<Path, ArtifactCache> instances = new HashMap<>();
 
+    private volatile ValidationMode validationMode = ValidationMode.FILE_ATTRIBUTES;
+    private volatile SharedArtifactStore sharedStore = SharedArtifactStore.fromSystemProperties().orElse(null);
+
+    /**
+     * Defines how cached files are checked for modifications before they are returned.
+     */
+    public enum ValidationMode {
+        /**
+         * The SHA-1 hash of the cached file is calculated on every lookup and compared to the recorded hash.
+         */
+        HASH,
+        /**
+         * The size, last modified time and file key of the cached file are compared to the recorded values. The hash is
+         * only re-calculated if any of those changed, or if the cache descriptor does not contain them.
+         */
+        FILE_ATTRIBUTES
+    }
+
     /**
      * returns artifact cache located at {@code installationDir}/{code CACHE_FOLDER}
      *
@@ -89,6 +129,49 @@ public class ArtifactCache {
         init();
     }
 
+    public ValidationMode getValidationMode() {
+        return validationMode;
+    }
+
+    public void setValidationMode(ValidationMode validationMode) {
+        this.validationMode = Objects.requireNonNull(validationMode);
+    }
+
+    public Optional<SharedArtifactStore> getSharedStore() {
+        return Optional.ofNullable(sharedStore);
+    }
+
+    /**
+     * @param sharedStore - store the cached files are linked to, or {@code null} to copy the cached files
+     */
+    public void setSharedStore(SharedArtifactStore sharedStore) {
+        this.sharedStore = sharedStore;
+    }
+
+    /**
+     * @return SHA-1 hashes of the recorded artifacts keyed by their location relative to {@code installationDir}
+     */
+    public Map<Path, String> getRecordedHashes() {
+        try {
+            lock.readLock().lock();
+            final Map<Path, String> recorded = new HashMap<>();
+            for (Map.Entry<String, Path> entry : paths.entrySet()) {
+                recorded.put(installationDir.relativize(entry.getValue()), hashes.get(entry.getKey()));
+            }
+            return recorded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * reads the hashes of all artifacts recorded in the cache descriptor of {@code installationDir}, bypassing any
+     * cached instance.
+     */
+    static Collection<String> readRecordedHashes(Path installationDir) throws IOException {
+        return new ArtifactCache(installationDir).hashes.values();
+    }
+
     /**
      * finds a file associated with the {@code GAV} in the local {@code installationDir}. The file is only matched
      * if it's {@code GAV} is recorded in cache descriptor and the file has not been modified since the cache was created.
@@ -107,11 +190,20 @@ public class ArtifactCache {
             if (paths.containsKey(key)) {
                 final Path path = paths.get(key);
                 try {
-                    final String hash = HashUtils.hashFile(path);
+                    if (validationMode == ValidationMode.FILE_ATTRIBUTES && attributesMatch(key, path)) {
+                        return Optional.of(path.toFile());
+                    }
+
+                    final String hash = NioFileUtils.hashFile(path);
                     if (!hash.equals(hashes.get(key))) {
                         LOG.debug("Hashes don't match for " + key);
                         return Optional.empty();
                     }
+                    // the content is verified, remember current attributes to avoid hashing the file on next lookup
+                    final FileAttributes current = FileAttributes.read(path);
+                    if (current != null) {
+                        attributes.put(key, current);
+                    }
                     return Optional.of(path.toFile());
                 } catch (IOException e) {
                     LOG.debug("Unable to calculate cached artifact hash " + key, e);
@@ -124,6 +216,61 @@ public class ArtifactCache {
         }
     }
 
+    /**
+     * lists the artifacts recorded with {@code groupId:artifactId:version}, regardless of their extension and classifier.
+     *
+     * @return recorded artifacts with files pointing to their locations in the installation
+     * @throws IOException if the cache descriptor contains an invalid record
+     */
+    public List<MavenArtifact> getRecordedArtifacts(String groupId, String artifactId, String version) throws IOException {
+        try {
+            lock.readLock().lock();
+            final List<MavenArtifact> recorded = new ArrayList<>();
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                final org.jboss.galleon.universe.maven.MavenArtifact artifact = parseRecord(entry.getValue());
+                if (artifact.getGroupId().equals(groupId) && artifact.getArtifactId().equals(artifactId)
+                        && artifact.getVersion().equals(version)) {
+                    recorded.add(new MavenArtifact(groupId, artifactId, artifact.getExtension(), artifact.getClassifier(),
+                            version, paths.get(entry.getKey()).toFile()));
+                }
+            }
+            return recorded;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * removes the artifact's record from the cache descriptor. The recorded file is not removed.
+     *
+     * @throws IOException
+     */
+    public void remove(String groupId, String artifactId, String extension, String classifier, String version) throws IOException {
+        try {
+            lock.writeLock().lock();
+            String key = null;
+            for (Map.Entry<String, String> entry : entries.entrySet()) {
+                final org.jboss.galleon.universe.maven.MavenArtifact artifact = parseRecord(entry.getValue());
+                if (artifact.getGroupId().equals(groupId) && artifact.getArtifactId().equals(artifactId)
+                        && artifact.getExtension().equals(extension) && artifact.getVersion().equals(version)
+                        && Objects.equals(emptyToNull(artifact.getClassifier()), emptyToNull(classifier))) {
+                    key = entry.getKey();
+                    break;
+                }
+            }
+            if (key == null) {
+                return;
+            }
+            entries.remove(key);
+            paths.remove(key);
+            hashes.remove(key);
+            attributes.remove(key);
+            compact(cacheDir.resolve(CACHE_FILENAME));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
     /**
      * records file in the cache descriptor. The recorded path is relative to {@code installationDir}
      * @param artifact - artifact to be recorded
@@ -131,39 +278,198 @@ public class ArtifactCache {
      * @throws IOException
      */
     public void record(MavenArtifact artifact, Path pathToArtifact) throws IOException {
+        final Map<MavenArtifact, Path> batch = new LinkedHashMap<>();
+        batch.put(artifact, pathToArtifact);
+        recordBatch(batch, hashAll(batch.keySet()));
+    }
+
+    /**
+     * records all the {@code artifacts} in the cache descriptor. Each artifact is recorded at the location of its file,
+     * which has to be within {@code installationDir}.
+     *
+     * The records are appended to the cache descriptor in a single write. If any of the artifacts has already been
+     * recorded, the descriptor is compacted once, after all the records have been written.
+     *
+     * @param artifacts - artifacts to be recorded
+     * @throws IOException
+     */
+    public void recordAll(Collection<MavenArtifact> artifacts) throws IOException {
+        final Map<MavenArtifact, Path> batch = new LinkedHashMap<>();
+        for (MavenArtifact artifact : artifacts) {
+            batch.put(artifact, artifact.getFile().toPath());
+        }
+        recordBatch(batch, hashAll(batch.keySet()));
+    }
+
+    /**
+     * caches the artifact in {@code CACHE_FOLDER}. The cached artifact is then recorded in the cache list.
+     *
+     * @param artifact
+     * @throws IOException
+     */
+    public void cache(MavenArtifact artifact) throws IOException {
+        cacheAll(List.of(artifact));
+    }
+
+    /**
+     * caches all the {@code artifacts} in {@code CACHE_FOLDER}. The cached artifacts are then recorded in the cache list
+     * using {@link #recordAll(Collection)}.
+     *
+     * @param artifacts
+     * @throws IOException
+     */
+    public void cacheAll(Collection<MavenArtifact> artifacts) throws IOException {
+        try (ParallelExecutor executor = new ParallelExecutor(1)) {
+            cacheAll(artifacts, executor);
+        }
+    }
+
+    /**
+     * caches all the {@code artifacts} like {@link #cacheAll(Collection)}, copying the files using the {@code executor}.
+     * The hash of each file is calculated while it is copied, the cache list is written once all the files are copied.
+     *
+     * @param artifacts
+     * @param executor - executor used to copy the files
+     * @return SHA-1 hashes of the cached files keyed by their location in {@code CACHE_FOLDER}
+     * @throws IOException
+     */
+    public Map<Path, String> cacheAll(Collection<MavenArtifact> artifacts, ParallelExecutor executor) throws IOException {
+        final SharedArtifactStore store = sharedStore;
+        final List<MavenArtifact> toCopy = new ArrayList<>(artifacts);
+        final List<String> copiedHashes = executor.map(toCopy, artifact -> {
+            final Path file = artifact.getFile().toPath();
+            final Path target = cacheDir.resolve(artifact.getFile().getName());
+            if (store != null) {
+                // the blob is looked up by the hash, so it has to be known before linking
+                final String hash = NioFileUtils.hashFile(file);
+                if (linkToStore(store, installationDir, file, hash, target)) {
+                    return hash;
+                }
+            }
+            return NioFileUtils.copyAndHash(file, target);
+        });
+
+        final Map<MavenArtifact, Path> batch = new LinkedHashMap<>();
+        final Map<MavenArtifact, String> fileHashes = new HashMap<>();
+        final Map<Path, String> cachedHashes = new LinkedHashMap<>();
+        for (int i = 0; i < toCopy.size(); i++) {
+            final MavenArtifact artifact = toCopy.get(i);
+            final String hash = copiedHashes.get(i);
+            final Path target = cacheDir.resolve(artifact.getFile().getName());
+            final MavenArtifact cached = new MavenArtifact(artifact.getGroupId(), artifact.getArtifactId(), artifact.getExtension(),
+                    artifact.getClassifier(), artifact.getVersion(), target.toFile());
+            batch.put(cached, target);
+            fileHashes.put(cached, hash);
+            cachedHashes.put(target, hash);
+        }
+
+        recordBatch(batch, fileHashes);
+        return cachedHashes;
+    }
+
+    private static Map<MavenArtifact, String> hashAll(Collection<MavenArtifact> artifacts) throws IOException {
+        final Map<MavenArtifact, String> fileHashes = new HashMap<>();
+        for (MavenArtifact artifact : artifacts) {
+            fileHashes.put(artifact, NioFileUtils.hashFile(artifact.getFile().toPath()));
+        }
+        return fileHashes;
+    }
+
+    private void recordBatch(Map<MavenArtifact, Path> batch, Map<MavenArtifact, String> fileHashes) throws IOException {
+        if (batch.isEmpty()) {
+            return;
+        }
         try {
             lock.writeLock().lock();
 
-            final String cacheFileKey = getCacheFileKey(artifact);
-
             final Path cacheList = cacheDir.resolve(CACHE_FILENAME);
+            final StringBuilder journal = new StringBuilder();
+            // the in-memory state is only updated once the records are written, so it doesn't diverge from the descriptor
+            final Map<String, CacheRecord> records = new LinkedHashMap<>();
+            boolean superseded = false;
+            for (Map.Entry<MavenArtifact, Path> entry : batch.entrySet()) {
+                final MavenArtifact artifact = entry.getKey();
+                final Path pathToArtifact = entry.getValue();
+                final String cacheFileKey = getCacheFileKey(artifact);
+                final String key = asKey(artifact.getGroupId(), artifact.getArtifactId(), artifact.getExtension(), artifact.getClassifier(), artifact.getVersion());
+
+                if (entries.containsKey(key) || records.containsKey(key)) {
+                    journal.append(cacheFileKey).append(CACHE_LINE_SEPARATOR).append(TOMBSTONE).append(System.lineSeparator());
+                    superseded = true;
+                }
+
+                // the files are hashed before the lock is acquired
+                final String hash = fileHashes.get(artifact);
+                final Path relativePath = installationDir.relativize(pathToArtifact);
+                final StringBuilder line = new StringBuilder()
+                        .append(cacheFileKey).append(CACHE_LINE_SEPARATOR)
+                        .append(hash).append(CACHE_LINE_SEPARATOR)
+                        .append(relativePath);
+                final FileAttributes fileAttributes = FileAttributes.read(pathToArtifact);
+                if (fileAttributes != null) {
+                    line.append(CACHE_LINE_SEPARATOR).append(fileAttributes.asString());
+                }
+                journal.append(line).append(System.lineSeparator());
+
+                records.remove(key);
+                records.put(key, new CacheRecord(line.toString(), installationDir.resolve(relativePath), hash, fileAttributes));
+            }
 
-            if (paths.containsKey(asKey(artifact.getGroupId(), artifact.getArtifactId(), artifact.getExtension(), artifact.getClassifier(), artifact.getVersion()))) {
-                removeArtifactFromCacheList(cacheFileKey, cacheList);
+            Files.writeString(cacheList, journal, StandardOpenOption.APPEND, StandardOpenOption.CREATE);
+
+            for (Map.Entry<String, CacheRecord> entry : records.entrySet()) {
+                final String key = entry.getKey();
+                final CacheRecord record = entry.getValue();
+                entries.remove(key);
+                entries.put(key, record.line);
+                paths.put(key, record.path);
+                hashes.put(key, record.hash);
+                if (record.attributes != null) {
+                    attributes.put(key, record.attributes);
+                } else {
+                    attributes.remove(key);
+                }
             }
 
-            final String hash = HashUtils.hashFile(artifact.getFile().toPath());
-            Files.writeString(cacheList,
-                    cacheFileKey + CACHE_LINE_SEPARATOR + hash + CACHE_LINE_SEPARATOR +
-                            installationDir.relativize(pathToArtifact) + System.lineSeparator(), StandardOpenOption.APPEND, StandardOpenOption.CREATE);
+            if (superseded) {
+                compact(cacheList);
+            }
 
-            invalidate();
-            init();
+            final SharedArtifactStore store = sharedStore;
+            if (store != null) {
+                try {
+                    store.setReferences(installationDir, hashes.values());
+                } catch (IOException e) {
+                    // the installation files are links, so the content is preserved even if the blobs are removed, but
+                    // other installations linking the same blobs later would not share them
+                    ProsperoLogger.ROOT_LOGGER.unableToRecordSharedStoreReferences(installationDir, store.getStoreDir(), e);
+                }
+            }
         } finally {
             lock.writeLock().unlock();
         }
     }
 
-    /**
-     * caches the artifact in {@code CACHE_FOLDER}. The cached artifact is then recorded in the cache list.
-     *
-     * @param artifact
-     * @throws IOException
-     */
-    public void cache(MavenArtifact artifact) throws IOException {
-        IoUtils.copy(artifact.getFile().toPath(), cacheDir.resolve(artifact.getFile().getName()), false);
+    private static boolean linkToStore(SharedArtifactStore store, Path installationDir, Path file, String hash, Path target) {
+        try {
+            store.link(installationDir, file, hash, target);
+            return true;
+        } catch (IOException e) {
+            LOG.debug("Unable to link " + file + " to the shared artifact store, copying it instead", e);
+            return false;
+        }
+    }
 
-        record(artifact, cacheDir.resolve(artifact.getFile().getName()));
+    private static org.jboss.galleon.universe.maven.MavenArtifact parseRecord(String line) throws IOException {
+        try {
+            return org.jboss.galleon.universe.maven.MavenArtifact.fromString(line.split(CACHE_LINE_SEPARATOR)[0]);
+        } catch (MavenUniverseException e) {
+            throw new IOException("Unable to read cached items.", e);
+        }
+    }
+
+    private static String emptyToNull(String classifier) {
+        return classifier == null || classifier.isEmpty() ? null : classifier;
     }
 
     private static String getCacheFileKey(MavenArtifact artifact) {
@@ -176,17 +482,19 @@ public class ArtifactCache {
         return galleonArtifact.getCoordsAsString();
     }
 
-    private static void removeArtifactFromCacheList(String cacheKey, Path cacheList) throws IOException {
-        final List<String> cacheLines = Files.readAllLines(cacheList);
-        Files.delete(cacheList);
-
-        try (BufferedWriter writer = Files.newBufferedWriter(cacheList, StandardCharsets.UTF_8, StandardOpenOption.CREATE_NEW)) {
-            for (String cacheLine : cacheLines) {
-                if (!cacheLine.split(CACHE_LINE_SEPARATOR)[0].equals(cacheKey)) {
-                    writer.write(cacheLine + System.lineSeparator());
-                }
+    /**
+     * rewrites the cache descriptor with only current records, dropping superseded records and tombstones.
+     * The new descriptor is written to a temporary file first and then moved in place of the old one.
+     */
+    private void compact(Path cacheList) throws IOException {
+        final Path compacted = cacheList.resolveSibling(CACHE_FILENAME + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(compacted, StandardCharsets.UTF_8)) {
+            for (String line : entries.values()) {
+                writer.write(line);
+                writer.write(System.lineSeparator());
             }
         }
+        Files.move(compacted, cacheList, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
     }
 
     private void init() throws IOException {
@@ -196,14 +504,32 @@ public class ArtifactCache {
             try {
                 final List<String> lines = Files.readAllLines(artifactLog);
                 for (String line : lines) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
                     final String[] splitLine = line.split(ArtifactCache.CACHE_LINE_SEPARATOR);
                     String gav = splitLine[0];
-                    String hash = splitLine[1];
-                    Path path = Paths.get(splitLine[2]);
                     final org.jboss.galleon.universe.maven.MavenArtifact mavenArtifact = org.jboss.galleon.universe.maven.MavenArtifact.fromString(gav);
                     final String key = asKey(mavenArtifact.getGroupId(), mavenArtifact.getArtifactId(), mavenArtifact.getExtension(), mavenArtifact.getClassifier(), mavenArtifact.getVersion());
+                    // later records supersede earlier ones, tombstones remove the record altogether
+                    entries.remove(key);
+                    paths.remove(key);
+                    hashes.remove(key);
+                    attributes.remove(key);
+                    if (splitLine.length == 2 && TOMBSTONE.equals(splitLine[1])) {
+                        continue;
+                    }
+
+                    String hash = splitLine[1];
+                    Path path = Paths.get(splitLine[2]);
+                    entries.put(key, line);
                     paths.put(key, installationDir.resolve(path));
                     hashes.put(key, hash);
+                    // lines written by the Galleon plugin don't include file attributes
+                    final FileAttributes fileAttributes = FileAttributes.parse(splitLine, 3);
+                    if (fileAttributes != null) {
+                        attributes.put(key, fileAttributes);
+                    }
                 }
             } catch (MavenUniverseException e) {
                 throw new IOException("Unable to read cached items.", e);
@@ -211,12 +537,95 @@ public class ArtifactCache {
         }
     }
 
-    private void invalidate() {
-        paths.clear();
-        hashes.clear();
+    private boolean attributesMatch(String key, Path path) throws IOException {
+        final FileAttributes recorded = attributes.get(key);
+        if (recorded == null) {
+            return false;
+        }
+        final boolean matches = recorded.equals(FileAttributes.read(path));
+        if (!matches && LOG.isDebugEnabled()) {
+            LOG.debug("File attributes changed for " + key + ", verifying the hash");
+        }
+        return matches;
     }
 
     private static String asKey(String groupId, String artifactId, String extension, String classifier, String version) {
         return String.format("%s:%s:%s:%s:%s", groupId, artifactId, version, classifier, extension);
     }
+
+    /**
+     * Size, last modified time and file key (e.g. inode on Unix systems) of a cached file. If the file key is not
+     * supported by the filesystem, only size and modified time are compared.
+     */
+    private static final class CacheRecord {
+        private final String line;
+        private final Path path;
+        private final String hash;
+        private final FileAttributes attributes;
+
+        private CacheRecord(String line, Path path, String hash, FileAttributes attributes) {
+            this.line = line;
+            this.path = path;
+            this.hash = hash;
+            this.attributes = attributes;
+        }
+    }
+
+    static final class FileAttributes {
+        private static final String NO_FILE_KEY = "-";
+        private final long size;
+        private final long lastModified;
+        private final String fileKey;
+
+        FileAttributes(long size, long lastModified, String fileKey) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+        }
+
+        /**
+         * @return attributes of the file at {@code path} or {@code null} if the file does not exist
+         */
+        static FileAttributes read(Path path) throws IOException {
+            if (!Files.exists(path)) {
+                return null;
+            }
+            final BasicFileAttributes attrs = Files.readAttributes(path, BasicFileAttributes.class);
+            final Object fileKey = attrs.fileKey();
+            return new FileAttributes(attrs.size(), attrs.lastModifiedTime().toMillis(),
+                    fileKey == null ? NO_FILE_KEY : fileKey.toString());
+        }
+
+        /**
+         * @return attributes stored in the cache line starting at {@code offset} or {@code null} if they are not present
+         */
+        static FileAttributes parse(String[] splitLine, int offset) {
+            if (splitLine.length < offset + 3) {
+                return null;
+            }
+            try {
+                return new FileAttributes(Long.parseLong(splitLine[offset]), Long.parseLong(splitLine[offset + 1]), splitLine[offset + 2]);
+            } catch (NumberFormatException e) {
+                LOG.debug("Ignoring malformed file attributes in the cache descriptor", e);
+                return null;
+            }
+        }
+
+        String asString() {
+            return size + CACHE_LINE_SEPARATOR + lastModified + CACHE_LINE_SEPARATOR + fileKey;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            FileAttributes that = (FileAttributes) o;
+            return size == that.size && lastModified == that.lastModified && Objects.equals(fileKey, that.fileKey);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(size, lastModified, fileKey);
+        }
+    }
 }
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.jboss.logging.Logger;
+import org.wildfly.channel.ArtifactCoordinate;
+import org.wildfly.channel.ArtifactTransferException;
+import org.wildfly.channel.ChannelMetadataCoordinate;
+import org.wildfly.channel.Repository;
+import org.wildfly.channel.spi.MavenVersionsResolver;
+import org.wildfly.channel.version.VersionMatcher;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Resolves channel manifests and blocklists using copies stored in {@link ChannelMetadataCache} if they are still
+ * up-to-date. Other requests are passed to the {@code delegate} resolver.
+ *
+ * Only the metadata that can change over time is cached:
+ * <ul>
+ *     <li>Maven coordinates without a version - revalidated by checking the latest available version.</li>
+ *     <li>HTTP(S) URLs - revalidated using conditional requests with the {@code ETag} and {@code Last-Modified} headers.</li>
+ * </ul>
+ * The entries validated within the cache TTL are used without any remote requests.
+ */
+public class CachingChannelMetadataResolver implements MavenVersionsResolver {
+
+    private static final Logger LOG = Logger.getLogger(CachingChannelMetadataResolver.class);
+
+    private final MavenVersionsResolver delegate;
+    private final ChannelMetadataCache cache;
+    private final String repositoriesKey;
+
+    public CachingChannelMetadataResolver(MavenVersionsResolver delegate, ChannelMetadataCache cache, Collection<Repository> repositories) {
+        this.delegate = delegate;
+        this.cache = cache;
+        // the same GA can resolve to different manifests depending on the repositories
+        this.repositoriesKey = repositories.stream()
+                .map(r -> r.getId() + "=" + r.getUrl())
+                .sorted()
+                .collect(Collectors.joining(","));
+    }
+
+    @Override
+    public List<URL> resolveChannelMetadata(List<? extends ChannelMetadataCoordinate> coords) throws ArtifactTransferException {
+        final List<URL> urls = new ArrayList<>(coords.size());
+        for (ChannelMetadataCoordinate coord : coords) {
+            if (coord.getUrl() != null && isHttp(coord.getUrl())) {
+                urls.add(resolveUrl(coord));
+            } else if (coord.getUrl() == null && coord.getVersion() == null) {
+                urls.add(resolveLatest(coord));
+            } else {
+                urls.addAll(delegate.resolveChannelMetadata(List.of(coord)));
+            }
+        }
+        return urls;
+    }
+
+    private URL resolveLatest(ChannelMetadataCoordinate coord) throws ArtifactTransferException {
+        final String key = String.format("maven:%s:%s:%s:%s@%s", coord.getGroupId(), coord.getArtifactId(),
+                coord.getExtension(), coord.getClassifier(), repositoriesKey);
+        final Optional<ChannelMetadataCache.Entry> cached = cache.get(key);
+        try {
+            if (cached.isPresent() && cache.isFresh(cached.get())) {
+                LOG.debugf("Using cached %s", coord);
+                return cached.get().getUrl();
+            }
+
+            final Optional<String> latest = VersionMatcher.getLatestVersion(delegate.getAllVersions(coord.getGroupId(),
+                    coord.getArtifactId(), coord.getExtension(), coord.getClassifier()));
+            if (latest.isEmpty()) {
+                // let the delegate report the missing metadata
+                return delegate.resolveChannelMetadata(List.of(coord)).get(0);
+            }
+
+            if (cached.isPresent() && latest.get().equals(cached.get().getVersion())) {
+                LOG.debugf("Cached %s is up-to-date", coord);
+                cache.markValidated(cached.get());
+                return cached.get().getUrl();
+            }
+
+            final File file = delegate.resolveArtifact(coord.getGroupId(), coord.getArtifactId(), coord.getExtension(),
+                    coord.getClassifier(), latest.get());
+            try (InputStream content = Files.newInputStream(file.toPath())) {
+                return cache.put(key, content, latest.get(), null, null).getUrl();
+            }
+        } catch (IOException e) {
+            LOG.debugf(e, "Unable to use channel metadata cache for %s", coord);
+            return delegate.resolveChannelMetadata(List.of(coord)).get(0);
+        }
+    }
+
+    private URL resolveUrl(ChannelMetadataCoordinate coord) {
+        final URL url = coord.getUrl();
+        final String key = "url:" + url.toExternalForm();
+        final Optional<ChannelMetadataCache.Entry> cached = cache.get(key);
+        HttpURLConnection httpConnection = null;
+        try {
+            if (cached.isPresent() && cache.isFresh(cached.get())) {
+                LOG.debugf("Using cached %s", url);
+                return cached.get().getUrl();
+            }
+
+            final URLConnection connection = url.openConnection();
+            if (!(connection instanceof HttpURLConnection)) {
+                // connections through a configured proxy don't support conditional requests
+                try (InputStream content = connection.getInputStream()) {
+                    return cache.put(key, content, null, null, null).getUrl();
+                }
+            }
+
+            httpConnection = (HttpURLConnection) connection;
+            if (cached.isPresent()) {
+                if (cached.get().getEtag() != null) {
+                    httpConnection.setRequestProperty("If-None-Match", cached.get().getEtag());
+                }
+                if (cached.get().getLastModified() != null) {
+                    httpConnection.setRequestProperty("If-Modified-Since", cached.get().getLastModified());
+                }
+            }
+
+            final int responseCode = httpConnection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && cached.isPresent()) {
+                LOG.debugf("Cached %s is up-to-date", url);
+                cache.markValidated(cached.get());
+                return cached.get().getUrl();
+            } else if (responseCode == HttpURLConnection.HTTP_OK) {
+                try (InputStream content = httpConnection.getInputStream()) {
+                    return cache.put(key, content, null, httpConnection.getHeaderField("ETag"),
+                            httpConnection.getHeaderField("Last-Modified")).getUrl();
+                }
+            } else {
+                LOG.debugf("Unexpected response %d when revalidating %s", responseCode, url);
+            }
+        } catch (IOException e) {
+            LOG.debugf(e, "Unable to use channel metadata cache for %s", url);
+        } finally {
+            if (httpConnection != null) {
+                httpConnection.disconnect();
+            }
+        }
+        // fall back to reading the URL directly, reporting any errors as if there was no cache
+        return url;
+    }
+
+    private static boolean isHttp(URL url) {
+        return "http".equals(url.getProtocol()) || "https".equals(url.getProtocol());
+    }
+
+    @Override
+    public Set<String> getAllVersions(String groupId, String artifactId, String extension, String classifier) {
+        return delegate.getAllVersions(groupId, artifactId, extension, classifier);
+    }
+
+    @Override
+    public File resolveArtifact(String groupId, String artifactId, String extension, String classifier, String version) throws ArtifactTransferException {
+        return delegate.resolveArtifact(groupId, artifactId, extension, classifier, version);
+    }
+
+    @Override
+    public List<File> resolveArtifacts(List<ArtifactCoordinate> coordinates) throws ArtifactTransferException {
+        return delegate.resolveArtifacts(coordinates);
+    }
+
+    @Override
+    public String getMetadataReleaseVersion(String groupId, String artifactId) {
+        return delegate.getMetadataReleaseVersion(groupId, artifactId);
+    }
+
+    @Override
+    public String getMetadataLatestVersion(String groupId, String artifactId) {
+        return delegate.getMetadataLatestVersion(groupId, artifactId);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    public static class Factory implements MavenVersionsResolver.Factory {
+
+        private final MavenVersionsResolver.Factory delegate;
+        private final ChannelMetadataCache cache;
+
+        public Factory(MavenVersionsResolver.Factory delegate, ChannelMetadataCache cache) {
+            this.delegate = delegate;
+            this.cache = cache;
+        }
+
+        @Override
+        public MavenVersionsResolver create(Collection<Repository> repositories) {
+            return new CachingChannelMetadataResolver(delegate.create(repositories), cache, repositories);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
@@ -41,9 +41,11 @@ import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -51,6 +53,8 @@ public class ChannelMavenArtifactRepositoryManager implements MavenRepoManager,
     private static final String REQUIRE_CHANNEL_FOR_ALL_ARTIFACT = "org.wildfly.plugins.galleon.all.artifact.requires.channel.resolution";
     private final ChannelSession channelSession;
     private final ChannelManifest manifest;
+    // results of reading wildfly-channel.properties, keyed by the feature pack coordinates
+    private final Map<String, Boolean> fpRequireChannelCache = new ConcurrentHashMap<>();
 
     public ChannelMavenArtifactRepositoryManager(ChannelSession channelSession) {
         this.channelSession = channelSession;
@@ -107,31 +111,43 @@ public class ChannelMavenArtifactRepositoryManager implements MavenRepoManager,
                 return true;
             }
 
-            org.wildfly.channel.MavenArtifact mavenArtifact = channelSession.
-                    resolveDirectMavenArtifact(artifact.getGroupId(),
-                            artifact.getArtifactId(),
-                            artifact.getExtension(),
-                            artifact.getClassifier(),
-                            artifact.getVersion());
-            try {
-                FeaturePackDescriber.readSpec(mavenArtifact.getFile().toPath());
-            } catch(ProvisioningException ex) {
-                // Not a feature-pack
-                return requireChannel;
+            final String key = artifact.getCoordsAsString();
+            final Boolean cached = fpRequireChannelCache.get(key);
+            if (cached != null) {
+                return cached;
             }
-            try (FileSystem fs = ZipUtils.newFileSystem(mavenArtifact.getFile().toPath())) {
-                Path resPath = fs.getPath("resources");
-                final Path wfRes = resPath.resolve("wildfly");
-                final Path channelPropsPath = wfRes.resolve("wildfly-channel.properties");
-                if (Files.exists(channelPropsPath)) {
-                    Properties props = new Properties();
-                    try(BufferedReader reader = Files.newBufferedReader(channelPropsPath)) {
-                        props.load(reader);
-                    }
-                    String resolution = props.getProperty("resolution");
-                    if (resolution != null) {
-                        requireChannel = "REQUIRED".equals(resolution) || "REQUIRED_FP_ONLY".equals(resolution);
-                    }
+            requireChannel = readFpRequireChannel(artifact);
+            fpRequireChannelCache.put(key, requireChannel);
+        }
+        return requireChannel;
+    }
+
+    private boolean readFpRequireChannel(MavenArtifact artifact) throws Exception {
+        boolean requireChannel = false;
+        org.wildfly.channel.MavenArtifact mavenArtifact = channelSession.
+                resolveDirectMavenArtifact(artifact.getGroupId(),
+                        artifact.getArtifactId(),
+                        artifact.getExtension(),
+                        artifact.getClassifier(),
+                        artifact.getVersion());
+        try {
+            FeaturePackDescriber.readSpec(mavenArtifact.getFile().toPath());
+        } catch(ProvisioningException ex) {
+            // Not a feature-pack
+            return requireChannel;
+        }
+        try (FileSystem fs = ZipUtils.newFileSystem(mavenArtifact.getFile().toPath())) {
+            Path resPath = fs.getPath("resources");
+            final Path wfRes = resPath.resolve("wildfly");
+            final Path channelPropsPath = wfRes.resolve("wildfly-channel.properties");
+            if (Files.exists(channelPropsPath)) {
+                Properties props = new Properties();
+                try(BufferedReader reader = Files.newBufferedReader(channelPropsPath)) {
+                    props.load(reader);
+                }
+                String resolution = props.getProperty("resolution");
+                if (resolution != null) {
+                    requireChannel = "REQUIRED".equals(resolution) || "REQUIRED_FP_ONLY".equals(resolution);
                 }
             }
         }
@@ -172,12 +188,10 @@ public class ChannelMavenArtifactRepositoryManager implements MavenRepoManager,
 
         if (manifest == null) {
             // split the artifacts into requiring channels and not requiring channels
-            final List<MavenArtifact> artifactsRequiringChannels = artifacts.stream()
-                    .filter(a -> requiresChannel(a))
-                    .collect(Collectors.toList());
-            final List<MavenArtifact> artifactsNotRequiringChannels = artifacts.stream()
-                    .filter(a -> !requiresChannel(a))
-                    .collect(Collectors.toList());
+            final Map<Boolean, List<MavenArtifact>> partitioned = artifacts.stream()
+                    .collect(Collectors.partitioningBy(this::requiresChannel));
+            final List<MavenArtifact> artifactsRequiringChannels = partitioned.get(true);
+            final List<MavenArtifact> artifactsNotRequiringChannels = partitioned.get(false);
             // bulk resolve artifacts requiring channels - if any fail, throw exception
             MavenArtifactMapper mapper = new MavenArtifactMapper(artifactsRequiringChannels);
             List<org.wildfly.channel.MavenArtifact> channelArtifacts = channelSession.resolveMavenArtifacts(mapper.toChannelArtifacts());
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.jboss.galleon.util.HashUtils;
+import org.jboss.logging.Logger;
+import org.wildfly.prospero.utils.NioFileUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Clock;
+import java.util.Optional;
+import java.util.Properties;
+
+/**
+ * Disk-backed cache of resolved channel metadata (manifests and blocklists), shared by all installations using the same
+ * local repository.
+ *
+ * Each entry consists of the cached content and a record describing where the content came from (the resolved version,
+ * or the HTTP {@code ETag} and {@code Last-Modified} headers), its SHA-1 hash and when it was last validated. Both files
+ * are named after the hash of the entry key.
+ *
+ * Entries validated within the TTL can be used without checking for changes. Older entries have to be revalidated by
+ * the caller using the recorded information.
+ */
+public class ChannelMetadataCache {
+
+    /**
+     * location of the cache relative to the local maven repository
+     */
+    public static final Path CACHE_FOLDER = Path.of(".cache", "prospero", "channel-metadata");
+
+    private static final Logger LOG = Logger.getLogger(ChannelMetadataCache.class);
+
+    private static final String CONTENT_SUFFIX = ".yaml";
+    private static final String RECORD_SUFFIX = ".properties";
+    private static final String KEY = "key";
+    private static final String VERSION = "version";
+    private static final String ETAG = "etag";
+    private static final String LAST_MODIFIED = "last-modified";
+    private static final String HASH = "sha1";
+    private static final String VALIDATED = "validated";
+
+    private final Path cacheDir;
+    private final long ttlMillis;
+    private final Clock clock;
+
+    /**
+     * @param cacheDir - directory to store the cached metadata in
+     * @param ttlSeconds - time in seconds for which an entry is considered fresh after it has been validated
+     */
+    public ChannelMetadataCache(Path cacheDir, long ttlSeconds) {
+        this(cacheDir, ttlSeconds, Clock.systemUTC());
+    }
+
+    // used in tests
+    ChannelMetadataCache(Path cacheDir, long ttlSeconds, Clock clock) {
+        this.cacheDir = cacheDir;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.clock = clock;
+    }
+
+    /**
+     * finds a cached entry. Entries with missing or modified content are ignored.
+     *
+     * @param key - unique identifier of the metadata
+     * @return the cached entry or empty if the metadata is not cached
+     */
+    public Optional<Entry> get(String key) {
+        final String name = fileName(key);
+        final Path recordFile = cacheDir.resolve(name + RECORD_SUFFIX);
+        final Path contentFile = cacheDir.resolve(name + CONTENT_SUFFIX);
+        if (!Files.exists(recordFile) || !Files.exists(contentFile)) {
+            return Optional.empty();
+        }
+
+        try {
+            final Properties record = new Properties();
+            try (Reader reader = Files.newBufferedReader(recordFile, StandardCharsets.UTF_8)) {
+                record.load(reader);
+            }
+            if (!key.equals(record.getProperty(KEY)) || !NioFileUtils.hashFile(contentFile).equals(record.getProperty(HASH))) {
+                LOG.debugf("Ignoring invalid channel metadata cache entry for %s", key);
+                return Optional.empty();
+            }
+            final Entry entry = new Entry(key, contentFile, record);
+            // verify the record is readable
+            entry.getValidatedAt();
+            return Optional.of(entry);
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.debugf(e, "Unable to read channel metadata cache entry for %s", key);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * stores {@code content} in the cache, replacing any existing entry for the {@code key}.
+     *
+     * @param key - unique identifier of the metadata
+     * @param content - the metadata content
+     * @param version - resolved version of the metadata, or {@code null}
+     * @param etag - {@code ETag} of the metadata, or {@code null}
+     * @param lastModified - {@code Last-Modified} of the metadata, or {@code null}
+     * @return the cached entry
+     * @throws IOException - if unable to write the cache files
+     */
+    public Entry put(String key, InputStream content, String version, String etag, String lastModified) throws IOException {
+        Files.createDirectories(cacheDir);
+        final String name = fileName(key);
+        final Path contentFile = cacheDir.resolve(name + CONTENT_SUFFIX);
+
+        final Path tempFile = Files.createTempFile(cacheDir, name, CONTENT_SUFFIX);
+        try {
+            Files.copy(content, tempFile, StandardCopyOption.REPLACE_EXISTING);
+            final Properties record = new Properties();
+            record.setProperty(KEY, key);
+            record.setProperty(HASH, NioFileUtils.hashFile(tempFile));
+            setIfPresent(record, VERSION, version);
+            setIfPresent(record, ETAG, etag);
+            setIfPresent(record, LAST_MODIFIED, lastModified);
+            record.setProperty(VALIDATED, Long.toString(clock.millis()));
+
+            Files.move(tempFile, contentFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writeRecord(name, record);
+            return new Entry(key, contentFile, record);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    /**
+     * records that the {@code entry} has been checked and is still up-to-date.
+     *
+     * @param entry - the revalidated entry
+     * @throws IOException - if unable to write the cache files
+     */
+    public void markValidated(Entry entry) throws IOException {
+        entry.record.setProperty(VALIDATED, Long.toString(clock.millis()));
+        writeRecord(fileName(entry.key), entry.record);
+    }
+
+    /**
+     * @param entry - cached entry
+     * @return true if the {@code entry} has been validated within the TTL
+     */
+    public boolean isFresh(Entry entry) {
+        return clock.millis() - entry.getValidatedAt() < ttlMillis;
+    }
+
+    private void writeRecord(String name, Properties record) throws IOException {
+        final Path tempFile = Files.createTempFile(cacheDir, name, RECORD_SUFFIX);
+        try {
+            try (Writer writer = Files.newBufferedWriter(tempFile, StandardCharsets.UTF_8)) {
+                record.store(writer, null);
+            }
+            Files.move(tempFile, cacheDir.resolve(name + RECORD_SUFFIX), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    private static void setIfPresent(Properties record, String name, String value) {
+        if (value != null) {
+            record.setProperty(name, value);
+        }
+    }
+
+    private static String fileName(String key) {
+        try {
+            return HashUtils.hash(key);
+        } catch (IOException e) {
+            // hashing a String doesn't perform any I/O
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static class Entry {
+        private final String key;
+        private final Path file;
+        private final Properties record;
+
+        private Entry(String key, Path file, Properties record) {
+            this.key = key;
+            this.file = file;
+            this.record = record;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public URL getUrl() throws MalformedURLException {
+            return file.toUri().toURL();
+        }
+
+        public String getVersion() {
+            return record.getProperty(VERSION);
+        }
+
+        public String getEtag() {
+            return record.getProperty(ETAG);
+        }
+
+        public String getLastModified() {
+            return record.getProperty(LAST_MODIFIED);
+        }
+
+        public String getHash() {
+            return record.getProperty(HASH);
+        }
+
+        long getValidatedAt() {
+            return Long.parseLong(record.getProperty(VALIDATED, "0"));
+        }
+    }
+}
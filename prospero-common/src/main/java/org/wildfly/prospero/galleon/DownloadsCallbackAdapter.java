@@ -36,7 +36,7 @@ import static org.wildfly.prospero.galleon.GalleonEnvironment.TRACK_RESOLVING_VE
  * Adapter combining Galleon ProgressCallback and Maven TransferListener to track number of already downloaded artifacts.
  *
  * It uses Galleon's TRACK_JB_ARTIFACTS_RESOLVE event to find number of artifacts and Maven's transferSucceeded to update completed
- * count.
+ * count. The artifacts can be downloaded in parallel, so the transfer events are processed one at a time.
  *
  * TODO: the total includes artifacts cached locally - find a way to exclude those or update when they are resolved.
  */
@@ -54,7 +54,7 @@ class DownloadsCallbackAdapter extends AbstractTransferListener implements Progr
     }
 
     @Override
-    public void starting(ProgressTracker<MavenArtifact> tracker) {
+    public synchronized void starting(ProgressTracker<MavenArtifact> tracker) {
         this.totalVolume = tracker.getTotalVolume();
         this.processed = 0;
         this.currentPhase = true;
@@ -73,7 +73,7 @@ class DownloadsCallbackAdapter extends AbstractTransferListener implements Progr
     }
 
     @Override
-    public void complete(ProgressTracker<MavenArtifact> tracker) {
+    public synchronized void complete(ProgressTracker<MavenArtifact> tracker) {
         final ProvisioningProgressEvent progress = new ProvisioningProgressEvent(TRACK_JB_ARTIFACTS_RESOLVE, ProvisioningProgressEvent.EventType.COMPLETED,
                 tracker.getProcessedVolume(), tracker.getTotalVolume());
         if (console != null) {
@@ -87,7 +87,7 @@ class DownloadsCallbackAdapter extends AbstractTransferListener implements Progr
     }
 
     @Override
-    public void transferSucceeded(TransferEvent event) {
+    public synchronized void transferSucceeded(TransferEvent event) {
         if (!currentPhase) {
             return;
         }
@@ -66,6 +66,7 @@ public class GalleonEnvironment implements AutoCloseable {
     private final MavenRepoManager repositoryManager;
     private final ChannelSession channelSession;
     private final List<Channel> channels;
+    private final ManifestRecordingResolver.Factory manifestRecorder;
 
     private GalleonEnvironment(Builder builder) throws ProvisioningException, MetadataException, ChannelDefinitionException, UnresolvedChannelMetadataException {
         Optional<Console> console = Optional.ofNullable(builder.console);
@@ -78,7 +79,7 @@ public class GalleonEnvironment implements AutoCloseable {
             substitutedChannels.add(substitutor.substitute(channel));
         }
 
-        final RepositorySystem system = builder.mavenSessionManager.newRepositorySystem();
+        final RepositorySystem system = builder.mavenSessionManager.getRepositorySystem();
         final DefaultRepositorySystemSession session = builder.mavenSessionManager.newRepositorySystemSession(system);
         final Path sourceServerPath = builder.sourceServerPath == null? builder.installDir:builder.sourceServerPath;
         MavenVersionsResolver.Factory factory;
@@ -88,7 +89,13 @@ public class GalleonEnvironment implements AutoCloseable {
             ProsperoLogger.ROOT_LOGGER.debug("Unable to read artifact cache, falling back to Maven resolver.", e);
             factory = new VersionResolverFactory(system, session, MavenProxyHandler::addProxySettings);
         }
-        channelSession = initChannelSession(session, factory);
+        final Optional<Long> manifestCacheTtl = builder.mavenSessionManager.getManifestCacheTtl();
+        if (manifestCacheTtl.isPresent() && !session.isOffline()) {
+            final Path cacheDir = builder.mavenSessionManager.getProvisioningRepo().resolve(ChannelMetadataCache.CACHE_FOLDER);
+            factory = new CachingChannelMetadataResolver.Factory(factory, new ChannelMetadataCache(cacheDir, manifestCacheTtl.get()));
+        }
+        manifestRecorder = new ManifestRecordingResolver.Factory(factory);
+        channelSession = initChannelSession(session, manifestRecorder);
 
         if (builder.artifactDirectResolve) {
             repositoryManager = new MavenArtifactDirectResolverRepositoryManager(channelSession);
@@ -156,6 +163,14 @@ public class GalleonEnvironment implements AutoCloseable {
         return channels;
     }
 
+    /**
+     * @return manifests used by the channel session in the same order as {@link #getChannels()}, or empty if any of
+     *         the manifests is not available
+     */
+    public Optional<List<ChannelManifest>> getChannelManifests() {
+        return manifestRecorder.getManifests(channels);
+    }
+
     @Override
     public void close() {
         provisioningManager.close();
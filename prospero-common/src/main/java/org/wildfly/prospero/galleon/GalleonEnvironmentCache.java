@@ -0,0 +1,140 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.jboss.galleon.ProvisioningException;
+import org.wildfly.channel.Channel;
+import org.wildfly.channel.ChannelMapper;
+import org.wildfly.prospero.ProsperoLogger;
+import org.wildfly.prospero.api.Console;
+import org.wildfly.prospero.api.exceptions.OperationException;
+import org.wildfly.prospero.wfchannel.MavenSessionManager;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Keeps {@link GalleonEnvironment}s used during a single operation, so that the channel manifests are resolved and
+ * the Maven and Galleon stacks are created only once for each installation.
+ *
+ * The environments are keyed by the installation directory, the channels and the Maven options (offline mode and local
+ * repository) of the {@link MavenSessionManager}. The environments are owned by the cache - callers must not close
+ * them or their {@code ProvisioningManager}, they are closed when the cache is closed.
+ *
+ * The environments are configured like the environments created for a single step of an operation: the progress is
+ * reported to the {@code console} of the cache and the installation is used as the source server, so the artifact
+ * versions recorded in the installation are preferred when resolving.
+ */
+public class GalleonEnvironmentCache implements AutoCloseable {
+
+    private final Map<Key, GalleonEnvironment> environments = new LinkedHashMap<>();
+    private final Console console;
+
+    public GalleonEnvironmentCache() {
+        this(null);
+    }
+
+    /**
+     * @param console - console used to report progress of the environments, can be {@code null}
+     */
+    public GalleonEnvironmentCache(Console console) {
+        this.console = console;
+    }
+
+    /**
+     * returns an environment for {@code installDir} using {@code channels}. If a matching environment has been requested
+     * before, it is re-used, otherwise a new environment is created.
+     *
+     * @param installDir - path of the installation
+     * @param channels - channels used to resolve artifacts
+     * @param mavenSessionManager - session manager used to resolve artifacts
+     * @return {@code GalleonEnvironment} owned by this cache
+     */
+    public synchronized GalleonEnvironment getEnvironment(Path installDir, List<Channel> channels,
+                                                          MavenSessionManager mavenSessionManager)
+            throws ProvisioningException, OperationException {
+        final Key key = new Key(installDir, channels, mavenSessionManager);
+        GalleonEnvironment environment = environments.get(key);
+        if (environment == null) {
+            environment = GalleonEnvironment
+                    .builder(installDir, channels, mavenSessionManager)
+                    .setSourceServerPath(installDir)
+                    .setConsole(console)
+                    .build();
+            environments.put(key, environment);
+        } else if (ProsperoLogger.ROOT_LOGGER.isTraceEnabled()) {
+            ProsperoLogger.ROOT_LOGGER.trace("Re-using Galleon environment for " + installDir);
+        }
+        return environment;
+    }
+
+    /**
+     * closes all the environments created by this cache. The cache can still be used afterwards, creating new environments.
+     */
+    @Override
+    public synchronized void close() {
+        final List<GalleonEnvironment> toClose = new ArrayList<>(environments.values());
+        environments.clear();
+        for (GalleonEnvironment environment : toClose) {
+            environment.close();
+        }
+    }
+
+    private static final class Key {
+        private final Path installDir;
+        private final Object channels;
+        private final boolean offline;
+        private final Path localRepository;
+
+        private Key(Path installDir, List<Channel> channels, MavenSessionManager mavenSessionManager) {
+            this.installDir = installDir.toAbsolutePath().normalize();
+            this.channels = channelsKey(channels);
+            this.offline = mavenSessionManager.isOffline();
+            this.localRepository = mavenSessionManager.getProvisioningRepo().toAbsolutePath().normalize();
+        }
+
+        private static Object channelsKey(List<Channel> channels) {
+            // Channel doesn't implement equals, use the serialized form to compare equivalent definitions
+            try {
+                return ChannelMapper.toYaml(channels);
+            } catch (IOException e) {
+                ProsperoLogger.ROOT_LOGGER.debug("Unable to serialize channels, comparing by instance", e);
+                return channels;
+            }
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            Key key = (Key) o;
+            return offline == key.offline && installDir.equals(key.installDir) && channels.equals(key.channels)
+                    && localRepository.equals(key.localRepository);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(installDir, channels, offline, localRepository);
+        }
+    }
+}
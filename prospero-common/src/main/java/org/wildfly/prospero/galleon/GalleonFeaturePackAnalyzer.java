@@ -25,13 +25,19 @@ import org.jboss.galleon.config.ProvisioningConfig;
 import org.jboss.galleon.layout.FeaturePackLayout;
 import org.jboss.galleon.layout.ProvisioningLayout;
 import org.jboss.galleon.layout.ProvisioningLayoutFactory;
+import org.jboss.galleon.progresstracking.ProgressTracker;
 import org.jboss.galleon.spec.FeaturePackPlugin;
-import org.jboss.galleon.util.HashUtils;
 import org.jboss.logging.Logger;
+import org.wildfly.channel.ArtifactCoordinate;
 import org.wildfly.channel.Channel;
+import org.wildfly.channel.ChannelManifest;
+import org.wildfly.channel.ChannelSession;
 import org.wildfly.channel.MavenArtifact;
+import org.wildfly.channel.Stream;
 import org.wildfly.channel.UnresolvedMavenArtifactException;
 import org.wildfly.prospero.api.exceptions.OperationException;
+import org.wildfly.prospero.utils.NioFileUtils;
+import org.wildfly.prospero.utils.ParallelExecutor;
 import org.wildfly.prospero.wfchannel.MavenSessionManager;
 
 import java.io.File;
@@ -39,13 +45,20 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
 
 public class GalleonFeaturePackAnalyzer {
 
     private static final Logger LOG = Logger.getLogger(GalleonFeaturePackAnalyzer.class.getName());
+    private static final String CONFIG_GEN_GROUP_ID = "org.wildfly.galleon-plugins";
+    private static final String CONFIG_GEN_ARTIFACT_ID = "wildfly-config-gen";
+    private static final int CACHE_PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
 
     private final List<Channel> channels;
     private final MavenSessionManager mavenSessionManager;
@@ -68,80 +81,158 @@ public class GalleonFeaturePackAnalyzer {
     public void cacheGalleonArtifacts(Path installedDir, ProvisioningConfig provisioningConfig) throws Exception {
         // no data will be actually written out, but we need a path to init the Galleon
         final Path tempInstallationPath = Files.createTempDirectory("temp");
-        final List<String> fps = new ArrayList<>();
-
-        GalleonEnvironment galleonEnv = null;
-        ProvisioningLayoutFactory layoutFactory = null;
-        ProvisioningLayout<FeaturePackLayout> layout = null;
-        try {
-            galleonEnv = galleonEnvWithFpMapper(tempInstallationPath, fps);
-            final ProvisioningManager pm = galleonEnv.getProvisioningManager();
 
+        try (GalleonEnvironment galleonEnv = GalleonEnvironment
+                .builder(tempInstallationPath, channels, mavenSessionManager)
+                .setConsole(null)
+                .build()) {
+            cacheGalleonArtifacts(installedDir, provisioningConfig, galleonEnv);
+        } finally {
+            FileUtils.deleteQuietly(tempInstallationPath.toFile());
+        }
+    }
 
-            layoutFactory = pm.getLayoutFactory();
-            layout = layoutFactory.newConfigLayout(provisioningConfig);
-
+    /**
+     * Analyzes provisioning information like {@link #cacheGalleonArtifacts(Path, ProvisioningConfig)}, re-using an
+     * existing {@code galleonEnv} instead of creating a new one. The feature packs already opened by the environment
+     * (e.g. when provisioning the server) don't need to be resolved and extracted again.
+     *
+     * The artifacts already cached by the provisioning in the versions recorded by the {@code galleonEnv} are not
+     * cached again. The remaining artifacts are resolved in a single request and copied to the cache concurrently.
+     *
+     * @param installedDir - path to the installation. Used to access the cache
+     * @param provisioningConfig - Galleon configuration to analyze
+     * @param galleonEnv - environment used to resolve the artifacts. The environment is not closed.
+     */
+    public void cacheGalleonArtifacts(Path installedDir, ProvisioningConfig provisioningConfig, GalleonEnvironment galleonEnv) throws Exception {
+        final ProvisioningLayoutFactory layoutFactory = galleonEnv.getProvisioningManager().getLayoutFactory();
 
+        // the environment might report the progress to the user, but the analysis is an internal step
+        final ProgressTracker<Object> layoutTracker = layoutFactory.getProgressTracker(ProvisioningLayoutFactory.TRACK_LAYOUT_BUILD);
+        layoutFactory.setProgressTracker(ProvisioningLayoutFactory.TRACK_LAYOUT_BUILD, ProvisioningLayoutFactory.getNoOpProgressTracker());
+        try (ProvisioningLayout<FeaturePackLayout> layout = layoutFactory.newConfigLayout(provisioningConfig)) {
             Set<String> pluginGavs = new HashSet<>();
+            final List<String> fps = new ArrayList<>();
             for (FeaturePackLayout fp : layout.getOrderedFeaturePacks()) {
                 for (FeaturePackPlugin plugin : fp.getSpec().getPlugins().values()) {
                     pluginGavs.add(plugin.getLocation());
                 }
+                if (fp.getFPID().getLocation().isMavenCoordinates()) {
+                    final String[] split = fp.getFPID().getProducer().getName().split(":");
+                    fps.add(split[0] + ":" + split[1]);
+                }
             }
 
-            final ArtifactCache artifactCache = ArtifactCache.getInstance(installedDir);
+            final List<ArtifactCoordinate> coordinates = new ArrayList<>();
             for (String pluginGav : pluginGavs) {
                 final String[] pluginLoc = pluginGav.split(":");
-                final MavenArtifact jar = galleonEnv.getChannelSession().resolveMavenArtifact(pluginLoc[0], pluginLoc[1], "jar", null, null);
-                artifactCache.cache(jar);
+                coordinates.add(new ArtifactCoordinate(pluginLoc[0], pluginLoc[1], "jar", null, null));
             }
-
             for (String fp : fps) {
-                // resolve the artifact
                 final String[] fpLoc = fp.split(":");
-                final MavenArtifact mavenArtifact = galleonEnv.getChannelSession().resolveMavenArtifact(fpLoc[0], fpLoc[1], "zip", null, null);
-                // cache it in the
-                artifactCache.cache(mavenArtifact);
+                coordinates.add(new ArtifactCoordinate(fpLoc[0], fpLoc[1], "zip", null, null));
             }
 
-            try {
-                // cache wildfly-config-gen as it's not added in galleon-plugin - TODO: remove when fixed in galleon-plugins
-                final MavenArtifact mavenArtifact = galleonEnv.getChannelSession().resolveMavenArtifact("org.wildfly.galleon-plugins", "wildfly-config-gen", "jar", null, null);
-                artifactCache.cache(mavenArtifact);
-            } catch (UnresolvedMavenArtifactException e) {
-                // ignore - wildfly-config-gen has not been defined
-                LOG.isDebugEnabled();
-                LOG.debug("Unable to find wildfly-config-get artifact", e);
+            final ArtifactCache artifactCache = ArtifactCache.getInstance(installedDir);
+            final ChannelManifest recordedManifest = galleonEnv.getChannelSession().getRecordedChannel();
+            final List<ArtifactCoordinate> unresolved = new ArrayList<>();
+            for (ArtifactCoordinate coordinate : coordinates) {
+                if (!isRecorded(artifactCache, recordedManifest, coordinate)) {
+                    unresolved.add(coordinate);
+                }
             }
 
-            updateHashes(installedDir);
-        } finally {
-            if (layout != null) {
-                layout.close();
-            }
-            if (layoutFactory != null) {
-                layoutFactory.close();
-            }
-            if (galleonEnv != null) {
-                galleonEnv.close();
+            final List<MavenArtifact> artifacts = resolveAll(galleonEnv.getChannelSession(), unresolved);
+
+            try (ParallelExecutor executor = new ParallelExecutor(CACHE_PARALLELISM)) {
+                // record all the artifacts in one batch to avoid re-writing the cache descriptor for each of them
+                final Map<Path, String> cachedHashes = artifactCache.cacheAll(artifacts, executor);
+
+                // the files copied to the cache have been hashed during the copy
+                updateHashes(installedDir, cachedHashes, executor);
             }
-            FileUtils.deleteQuietly(tempInstallationPath.toFile());
+        } finally {
+            layoutFactory.setProgressTracker(ProvisioningLayoutFactory.TRACK_LAYOUT_BUILD, layoutTracker);
         }
     }
 
-    private void updateHashes(Path installedDir) throws IOException {
+    static void updateHashes(Path installedDir) throws IOException {
+        try (ParallelExecutor executor = new ParallelExecutor(CACHE_PARALLELISM)) {
+            updateHashes(installedDir, Collections.emptyMap(), executor);
+        }
+    }
+
+    /**
+     * records the hashes of files in the cache folder in the Galleon provisioned state. The files with a hash in
+     * {@code knownHashes} are not read again.
+     */
+    private static void updateHashes(Path installedDir, Map<Path, String> knownHashes, ParallelExecutor executor) throws IOException {
         final Path hashesFile = installedDir.resolve(Constants.PROVISIONED_STATE_DIR).resolve(Constants.HASHES)
                 .resolve(ArtifactCache.CACHE_FOLDER).resolve(Constants.HASHES);
         final Path cachesDir = installedDir.resolve(ArtifactCache.CACHE_FOLDER);
 
+        final Map<Path, String> known = new HashMap<>();
+        for (Map.Entry<Path, String> entry : knownHashes.entrySet()) {
+            known.put(entry.getKey().toAbsolutePath().normalize(), entry.getValue());
+        }
+        final List<File> files = List.of(cachesDir.toFile().listFiles());
+        final List<String> fileHashes = executor.map(files, file -> {
+            final String knownHash = known.get(file.toPath().toAbsolutePath().normalize());
+            return knownHash != null ? knownHash : NioFileUtils.hashFile(file.toPath());
+        });
         StringBuilder sb = new StringBuilder();
-        for (File file : cachesDir.toFile().listFiles()) {
-            sb.append(file.getName()).append(System.lineSeparator());
-            sb.append(HashUtils.bytesToHexString(HashUtils.hashPath(file.toPath()))).append(System.lineSeparator());
+        for (int i = 0; i < files.size(); i++) {
+            sb.append(files.get(i).getName()).append(System.lineSeparator());
+            sb.append(fileHashes.get(i)).append(System.lineSeparator());
         }
         Files.writeString(hashesFile, sb.toString());
     }
 
+    /**
+     * checks if the artifact resolved by the provisioning has been already recorded in the cache, e.g. by the Galleon
+     * plugin storing the resolved artifacts.
+     */
+    private static boolean isRecorded(ArtifactCache artifactCache, ChannelManifest recordedManifest, ArtifactCoordinate coordinate) {
+        if (recordedManifest == null) {
+            return false;
+        }
+        final Optional<Stream> stream = recordedManifest.findStreamFor(coordinate.getGroupId(), coordinate.getArtifactId());
+        return stream.isPresent() && stream.get().getVersion() != null && artifactCache.getArtifact(coordinate.getGroupId(),
+                coordinate.getArtifactId(), coordinate.getExtension(), coordinate.getClassifier(), stream.get().getVersion()).isPresent();
+    }
+
+    private static List<MavenArtifact> resolveAll(ChannelSession channelSession, List<ArtifactCoordinate> coordinates) {
+        final List<ArtifactCoordinate> requests = new ArrayList<>(coordinates);
+        // cache wildfly-config-gen as it's not added in galleon-plugin - TODO: remove when fixed in galleon-plugins
+        final ArtifactCoordinate configGen = new ArtifactCoordinate(CONFIG_GEN_GROUP_ID, CONFIG_GEN_ARTIFACT_ID, "jar", null, null);
+        requests.add(configGen);
+        try {
+            return channelSession.resolveMavenArtifacts(requests);
+        } catch (UnresolvedMavenArtifactException e) {
+            if (!isOnlyConfigGen(e.getUnresolvedArtifacts())) {
+                throw e;
+            }
+            // ignore - wildfly-config-gen has not been defined
+            LOG.debug("Unable to find wildfly-config-get artifact", e);
+        }
+        if (coordinates.isEmpty()) {
+            return Collections.emptyList();
+        }
+        return channelSession.resolveMavenArtifacts(coordinates);
+    }
+
+    private static boolean isOnlyConfigGen(Set<ArtifactCoordinate> unresolved) {
+        if (unresolved == null || unresolved.isEmpty()) {
+            return false;
+        }
+        for (ArtifactCoordinate coordinate : unresolved) {
+            if (!CONFIG_GEN_GROUP_ID.equals(coordinate.getGroupId()) || !CONFIG_GEN_ARTIFACT_ID.equals(coordinate.getArtifactId())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * lists maven coordinates (groupId:artifactId) of FeaturePacks included in the {@code provisioningConfig}. Includes transitive dependencies.
      *
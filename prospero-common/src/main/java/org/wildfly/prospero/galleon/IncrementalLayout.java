@@ -0,0 +1,401 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.jboss.galleon.Constants;
+import org.jboss.logging.Logger;
+import org.wildfly.channel.ArtifactCoordinate;
+import org.wildfly.channel.ChannelSession;
+import org.wildfly.channel.MavenArtifact;
+import org.wildfly.channel.UnresolvedMavenArtifactException;
+import org.wildfly.prospero.api.ArtifactChange;
+import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
+import org.wildfly.prospero.utils.NioFileUtils;
+import org.wildfly.prospero.utils.ParallelExecutor;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Lays out an update candidate re-using the files of an existing installation and replacing only the changed artifacts.
+ *
+ * Galleon always provisions a complete server, even if the update changes a single artifact. If the update only changes
+ * versions of artifacts laid out in the server (e.g. module jars), the affected directories are the only part of
+ * the candidate that differs from the installation. The candidate is created by copying the files recorded in the
+ * installation's {@code .galleon/hashes}, replacing the changed artifacts in the affected directories and updating
+ * the {@code module.xml} references, the Galleon hash records and the {@link ArtifactCache} of the candidate.
+ *
+ * The result has to match a fully provisioned candidate, so {@link #plan(Path, List)} only accepts updates where:
+ * <ul>
+ *     <li>all the changes are version updates of artifacts recorded in the {@link ArtifactCache},</li>
+ *     <li>none of the changed artifacts is a feature pack or a Galleon plugin,</li>
+ *     <li>no provisioned file has been modified by the user,</li>
+ *     <li>the file names of the changed artifacts are either not versioned or referenced only by {@code module.xml},</li>
+ *     <li>no provisioned file has been removed from the installation.</li>
+ * </ul>
+ * The provisioned files are compared with their recorded hashes by content. The timestamps of the hash records are not
+ * used, because they cannot tell the user changes apart from files restored with their original timestamps.
+ */
+public class IncrementalLayout {
+
+    private static final Logger LOG = Logger.getLogger(IncrementalLayout.class);
+    private static final int HASH_PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    static final String MODULE_XML = "module.xml";
+
+    private final Path installationDir;
+    private final Map<Path, List<Replacement>> replacements;
+    private final List<Path> provisionedDirs;
+    private final List<Path> provisionedFiles;
+
+    private IncrementalLayout(Path installationDir, Map<Path, List<Replacement>> replacements, List<Path> provisionedDirs,
+                              List<Path> provisionedFiles) {
+        this.installationDir = installationDir;
+        this.replacements = replacements;
+        this.provisionedDirs = provisionedDirs;
+        this.provisionedFiles = provisionedFiles;
+    }
+
+    /**
+     * checks if the candidate with {@code changes} can be laid out incrementally.
+     *
+     * @param installationDir - installation being updated
+     * @param changes - changes in the update
+     * @return the layout or empty {@code Optional} if the candidate has to be fully provisioned
+     * @throws IOException if unable to read the installation files
+     */
+    public static Optional<IncrementalLayout> plan(Path installationPath, List<ArtifactChange> changes) throws IOException {
+        final Path installationDir = installationPath.toAbsolutePath().normalize();
+        final ArtifactCache cache = ArtifactCache.getInstance(installationDir);
+        final ProvisionedHashIndex hashIndex = ProvisionedHashIndex.load(installationDir);
+
+        final Map<Path, List<Replacement>> replacements = new LinkedHashMap<>();
+        for (ArtifactChange change : changes) {
+            final String[] ga = change.getArtifactName().split(":");
+            if (!change.isUpdated() || ga.length != 2) {
+                return notPossible("%s is not a version update", change.getArtifactName());
+            }
+            final String oldVersion = change.getOldVersion().get();
+            final List<MavenArtifact> recorded = cache.getRecordedArtifacts(ga[0], ga[1], oldVersion);
+            if (recorded.isEmpty()) {
+                return notPossible("%s:%s is not recorded in the installation", change.getArtifactName(), oldVersion);
+            }
+            for (MavenArtifact artifact : recorded) {
+                final Path relative = installationDir.relativize(artifact.getFile().toPath().toAbsolutePath().normalize());
+                if (relative.startsWith(ProsperoMetadataUtils.METADATA_DIR) || relative.getParent() == null) {
+                    return notPossible("%s is not a server artifact", relative);
+                }
+                replacements.computeIfAbsent(relative.getParent(), d -> new ArrayList<>())
+                        .add(new Replacement(artifact, relative, change.getNewVersion().get()));
+            }
+        }
+
+        for (Map.Entry<Path, List<Replacement>> entry : replacements.entrySet()) {
+            final Optional<String> reason = checkAffectedDirectory(installationDir, hashIndex, entry.getKey(), entry.getValue());
+            if (reason.isPresent()) {
+                return notPossible("%s", reason.get());
+            }
+        }
+
+        // collect all the provisioned files, apart from those replaced or re-written in the affected directories
+        final Path hashesDir = installationDir.resolve(Constants.PROVISIONED_STATE_DIR).resolve(Constants.HASHES);
+        final List<Path> provisionedDirs;
+        try (Stream<Path> dirs = Files.walk(hashesDir)) {
+            provisionedDirs = dirs.filter(Files::isDirectory)
+                    .map(hashesDir::relativize)
+                    .filter(d -> !d.startsWith(ProsperoMetadataUtils.METADATA_DIR))
+                    .collect(Collectors.toList());
+        }
+        final Map<Path, byte[]> recordedHashes = new LinkedHashMap<>();
+        final List<Path> provisionedFiles = new ArrayList<>();
+        for (Path dir : provisionedDirs) {
+            final List<Replacement> dirReplacements = replacements.getOrDefault(dir, List.of());
+            for (Map.Entry<String, byte[]> recorded : hashIndex.getDirectoryHashes(dir).entrySet()) {
+                final String name = recorded.getKey();
+                final Path file = dir.resolve(name);
+                if (!Files.isRegularFile(installationDir.resolve(file))) {
+                    return notPossible("provisioned file %s has been removed", file);
+                }
+                recordedHashes.put(file, recorded.getValue());
+                if (!dirReplacements.isEmpty() && (name.equals(MODULE_XML)
+                        || dirReplacements.stream().anyMatch(r -> r.oldPath.equals(file)))) {
+                    continue;
+                }
+                provisionedFiles.add(file);
+            }
+        }
+
+        // any user change would be carried over into the candidate, so all the provisioned files have to be unchanged
+        final List<Path> files = new ArrayList<>(recordedHashes.keySet());
+        final List<byte[]> currentHashes;
+        try (ParallelExecutor executor = new ParallelExecutor(HASH_PARALLELISM)) {
+            currentHashes = executor.map(files, file -> NioFileUtils.hashPath(installationDir.resolve(file)));
+        }
+        for (int i = 0; i < files.size(); i++) {
+            if (!Arrays.equals(recordedHashes.get(files.get(i)), currentHashes.get(i))) {
+                return notPossible("provisioned file %s has been modified", files.get(i));
+            }
+        }
+
+        return Optional.of(new IncrementalLayout(installationDir, replacements, provisionedDirs, provisionedFiles));
+    }
+
+    private static Optional<String> checkAffectedDirectory(Path installationDir, ProvisionedHashIndex hashIndex,
+                                                           Path dir, List<Replacement> dirReplacements) throws IOException {
+        final Map<String, byte[]> recorded = hashIndex.getDirectoryHashes(dir);
+        for (Map.Entry<String, byte[]> file : recorded.entrySet()) {
+            final Path relative = dir.resolve(file.getKey());
+            final Path path = installationDir.resolve(relative);
+            if (!Files.isRegularFile(path)) {
+                return Optional.of(relative + " has been removed");
+            }
+        }
+
+        final String moduleXml = recorded.containsKey(MODULE_XML)
+                ? Files.readString(installationDir.resolve(dir).resolve(MODULE_XML), StandardCharsets.UTF_8)
+                : null;
+        for (Replacement replacement : dirReplacements) {
+            if (!recorded.containsKey(replacement.oldName())) {
+                return Optional.of(replacement.oldPath + " is not a provisioned file");
+            }
+            if (replacement.oldName().equals(replacement.newName())) {
+                // the file name doesn't follow the Maven naming, the new name cannot be determined
+                if (replacement.oldName().contains(replacement.artifact.getVersion())) {
+                    return Optional.of(replacement.oldPath + " has a non-standard versioned name");
+                }
+                continue;
+            }
+            // the renamed artifact has to be referenced exactly once by the module descriptor, and by nothing else
+            if (moduleXml == null || countReferences(moduleXml, replacement.oldName()) != 1) {
+                return Optional.of(replacement.oldPath + " is not referenced by a module descriptor");
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * lays out the candidate in {@code targetDir}. The new versions of the artifacts are resolved using
+     * {@code channelSession}.
+     *
+     * @throws IOException if unable to create the candidate files
+     * @throws UnresolvedMavenArtifactException if unable to resolve the new artifacts
+     */
+    public void layout(Path targetDir, ChannelSession channelSession) throws IOException {
+        // resolve the artifacts first, so that nothing is written if they are not available
+        final Map<String, MavenArtifact> resolved = resolve(channelSession);
+
+        Files.createDirectories(targetDir);
+        for (Path dir : provisionedDirs) {
+            Files.createDirectories(targetDir.resolve(dir));
+        }
+        // the files are copied rather than linked, so that changes made later in the installation don't affect the candidate
+        for (Path file : provisionedFiles) {
+            NioFileUtils.copyWithTimestamp(installationDir.resolve(file), targetDir.resolve(file));
+        }
+
+        final Path cacheDir = installationDir.resolve(ArtifactCache.CACHE_FOLDER);
+        final Path targetCacheDir = targetDir.resolve(ArtifactCache.CACHE_FOLDER);
+        Files.createDirectories(targetCacheDir);
+        if (Files.exists(cacheDir)) {
+            try (Stream<Path> files = Files.list(cacheDir)) {
+                for (Path file : files.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                    NioFileUtils.copyWithTimestamp(file, targetCacheDir.resolve(file.getFileName().toString()));
+                }
+            }
+        }
+        // the timestamps of the hash records are used to detect modified files, they need to be preserved
+        copyTree(installationDir.resolve(Constants.PROVISIONED_STATE_DIR), targetDir.resolve(Constants.PROVISIONED_STATE_DIR));
+
+        final List<MavenArtifact> newArtifacts = new ArrayList<>();
+        for (Map.Entry<Path, List<Replacement>> entry : replacements.entrySet()) {
+            newArtifacts.addAll(replaceArtifacts(targetDir, entry.getKey(), entry.getValue(), resolved));
+        }
+
+        final ArtifactCache candidateCache = ArtifactCache.getInstance(targetDir);
+        for (List<Replacement> dirReplacements : replacements.values()) {
+            for (Replacement replacement : dirReplacements) {
+                final MavenArtifact old = replacement.artifact;
+                candidateCache.remove(old.getGroupId(), old.getArtifactId(), old.getExtension(), old.getClassifier(), old.getVersion());
+            }
+        }
+        candidateCache.recordAll(newArtifacts);
+        Files.createDirectories(hashesDir(targetDir, ArtifactCache.CACHE_FOLDER));
+        GalleonFeaturePackAnalyzer.updateHashes(targetDir);
+    }
+
+    private List<MavenArtifact> replaceArtifacts(Path targetDir, Path dir, List<Replacement> dirReplacements,
+                                                 Map<String, MavenArtifact> resolved) throws IOException {
+        final Path hashesFile = hashesDir(targetDir, dir).resolve(Constants.HASHES);
+        final Map<String, String> hashes = readHashes(hashesFile);
+        final Path sourceModuleXml = installationDir.resolve(dir).resolve(MODULE_XML);
+        String moduleXml = hashes.containsKey(MODULE_XML) ? Files.readString(sourceModuleXml, StandardCharsets.UTF_8) : null;
+
+        final List<MavenArtifact> newArtifacts = new ArrayList<>();
+        for (Replacement replacement : dirReplacements) {
+            final MavenArtifact artifact = resolved.get(replacement.key());
+            final Path target = targetDir.resolve(dir).resolve(replacement.newName());
+            final String hash = NioFileUtils.copyAndHash(artifact.getFile().toPath(), target);
+
+            hashes.remove(replacement.oldName());
+            hashes.put(replacement.newName(), hash);
+            if (moduleXml != null) {
+                moduleXml = moduleXml.replace(quoted(replacement.oldName()), quoted(replacement.newName()));
+            }
+            newArtifacts.add(new MavenArtifact(artifact.getGroupId(), artifact.getArtifactId(), artifact.getExtension(),
+                    artifact.getClassifier(), artifact.getVersion(), target.toFile()));
+        }
+        if (moduleXml != null) {
+            final Path targetModuleXml = targetDir.resolve(dir).resolve(MODULE_XML);
+            Files.writeString(targetModuleXml, moduleXml, StandardCharsets.UTF_8);
+            hashes.put(MODULE_XML, NioFileUtils.hashFile(targetModuleXml));
+        }
+        // the record is written after the files, so that they are not considered modified
+        writeHashes(hashesFile, hashes);
+        return newArtifacts;
+    }
+
+    private Map<String, MavenArtifact> resolve(ChannelSession channelSession) {
+        final List<ArtifactCoordinate> coordinates = new ArrayList<>();
+        for (List<Replacement> dirReplacements : replacements.values()) {
+            for (Replacement replacement : dirReplacements) {
+                final MavenArtifact old = replacement.artifact;
+                coordinates.add(new ArtifactCoordinate(old.getGroupId(), old.getArtifactId(), old.getExtension(),
+                        replacement.classifier(), replacement.newVersion));
+            }
+        }
+        final Map<String, MavenArtifact> resolved = new HashMap<>();
+        for (MavenArtifact artifact : channelSession.resolveDirectMavenArtifacts(coordinates)) {
+            resolved.put(key(artifact.getGroupId(), artifact.getArtifactId(), artifact.getExtension(), artifact.getClassifier()), artifact);
+        }
+        return resolved;
+    }
+
+    private static void copyTree(Path source, Path target) throws IOException {
+        final List<Path> files;
+        try (Stream<Path> walk = Files.walk(source)) {
+            files = walk.collect(Collectors.toList());
+        }
+        for (Path file : files) {
+            final Path copy = target.resolve(source.relativize(file).toString());
+            if (Files.isDirectory(file)) {
+                Files.createDirectories(copy);
+            } else {
+                NioFileUtils.copyWithTimestamp(file, copy);
+            }
+        }
+    }
+
+    private static Path hashesDir(Path installationDir, Path relativeDir) {
+        return installationDir.resolve(Constants.PROVISIONED_STATE_DIR).resolve(Constants.HASHES).resolve(relativeDir.toString());
+    }
+
+    private static Map<String, String> readHashes(Path hashesFile) throws IOException {
+        final Map<String, String> hashes = new LinkedHashMap<>();
+        if (Files.exists(hashesFile)) {
+            final List<String> lines = Files.readAllLines(hashesFile, StandardCharsets.UTF_8);
+            for (int i = 0; i + 1 < lines.size(); i += 2) {
+                hashes.put(lines.get(i), lines.get(i + 1));
+            }
+        }
+        return hashes;
+    }
+
+    private static void writeHashes(Path hashesFile, Map<String, String> hashes) throws IOException {
+        final StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, String> entry : hashes.entrySet()) {
+            sb.append(entry.getKey()).append(System.lineSeparator());
+            sb.append(entry.getValue()).append(System.lineSeparator());
+        }
+        Files.writeString(hashesFile, sb.toString(), StandardCharsets.UTF_8);
+    }
+
+    private static int countReferences(String moduleXml, String name) {
+        final String quoted = quoted(name);
+        int count = 0;
+        for (int i = moduleXml.indexOf(quoted); i >= 0; i = moduleXml.indexOf(quoted, i + quoted.length())) {
+            count++;
+        }
+        return count;
+    }
+
+    private static String quoted(String name) {
+        return "\"" + name + "\"";
+    }
+
+    private static String key(String groupId, String artifactId, String extension, String classifier) {
+        return String.format("%s:%s:%s:%s", groupId, artifactId, extension, classifier == null ? "" : classifier);
+    }
+
+    private static Optional<IncrementalLayout> notPossible(String reason, Object... args) {
+        if (LOG.isDebugEnabled()) {
+            LOG.debugf("Unable to lay out the update candidate incrementally: " + reason, args);
+        }
+        return Optional.empty();
+    }
+
+    private static final class Replacement {
+        private final MavenArtifact artifact;
+        private final Path oldPath;
+        private final String newVersion;
+
+        private Replacement(MavenArtifact artifact, Path oldPath, String newVersion) {
+            this.artifact = artifact;
+            this.oldPath = oldPath;
+            this.newVersion = newVersion;
+        }
+
+        private String oldName() {
+            return oldPath.getFileName().toString();
+        }
+
+        /**
+         * artifacts laid out with Maven file names are renamed to the new version, other names are kept unchanged
+         */
+        private String newName() {
+            final String oldName = oldName();
+            if (oldName.equals(fileName(artifact.getVersion()))) {
+                return fileName(newVersion);
+            }
+            return oldName;
+        }
+
+        private String fileName(String version) {
+            final String classifier = classifier();
+            return artifact.getArtifactId() + "-" + version + (classifier == null ? "" : "-" + classifier) + "." + artifact.getExtension();
+        }
+
+        private String classifier() {
+            return artifact.getClassifier() == null || artifact.getClassifier().isEmpty() ? null : artifact.getClassifier();
+        }
+
+        private String key() {
+            return IncrementalLayout.key(artifact.getGroupId(), artifact.getArtifactId(), artifact.getExtension(), classifier());
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.jboss.logging.Logger;
+import org.wildfly.channel.ArtifactCoordinate;
+import org.wildfly.channel.ArtifactTransferException;
+import org.wildfly.channel.Channel;
+import org.wildfly.channel.ChannelManifest;
+import org.wildfly.channel.ChannelManifestMapper;
+import org.wildfly.channel.ChannelMetadataCoordinate;
+import org.wildfly.channel.InvalidChannelMetadataException;
+import org.wildfly.channel.Repository;
+import org.wildfly.channel.spi.MavenVersionsResolver;
+
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records the location of channel metadata resolved by the {@code delegate} resolver, so that the manifests used by
+ * a {@code ChannelSession} can be read again without resolving them.
+ */
+public class ManifestRecordingResolver implements MavenVersionsResolver {
+
+    private static final Logger LOG = Logger.getLogger(ManifestRecordingResolver.class);
+
+    private final MavenVersionsResolver delegate;
+    private final Map<String, URL> resolved;
+
+    private ManifestRecordingResolver(MavenVersionsResolver delegate, Map<String, URL> resolved) {
+        this.delegate = delegate;
+        this.resolved = resolved;
+    }
+
+    @Override
+    public List<URL> resolveChannelMetadata(List<? extends ChannelMetadataCoordinate> coords) throws ArtifactTransferException {
+        final List<URL> urls = delegate.resolveChannelMetadata(coords);
+        if (urls.size() == coords.size()) {
+            for (int i = 0; i < coords.size(); i++) {
+                resolved.put(key(coords.get(i)), urls.get(i));
+            }
+        }
+        return urls;
+    }
+
+    @Override
+    public Set<String> getAllVersions(String groupId, String artifactId, String extension, String classifier) {
+        return delegate.getAllVersions(groupId, artifactId, extension, classifier);
+    }
+
+    @Override
+    public File resolveArtifact(String groupId, String artifactId, String extension, String classifier, String version) throws ArtifactTransferException {
+        return delegate.resolveArtifact(groupId, artifactId, extension, classifier, version);
+    }
+
+    @Override
+    public List<File> resolveArtifacts(List<ArtifactCoordinate> coordinates) throws ArtifactTransferException {
+        return delegate.resolveArtifacts(coordinates);
+    }
+
+    @Override
+    public String getMetadataReleaseVersion(String groupId, String artifactId) {
+        return delegate.getMetadataReleaseVersion(groupId, artifactId);
+    }
+
+    @Override
+    public String getMetadataLatestVersion(String groupId, String artifactId) {
+        return delegate.getMetadataLatestVersion(groupId, artifactId);
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private static String key(ChannelMetadataCoordinate coord) {
+        if (coord.getUrl() != null) {
+            return "url:" + coord.getUrl().toExternalForm();
+        } else {
+            return String.format("maven:%s:%s:%s", coord.getGroupId(), coord.getArtifactId(), coord.getVersion());
+        }
+    }
+
+    public static class Factory implements MavenVersionsResolver.Factory {
+
+        private final MavenVersionsResolver.Factory delegate;
+        private final Map<String, URL> resolved = new ConcurrentHashMap<>();
+
+        public Factory(MavenVersionsResolver.Factory delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public MavenVersionsResolver create(Collection<Repository> repositories) {
+            return new ManifestRecordingResolver(delegate.create(repositories), resolved);
+        }
+
+        /**
+         * reads the manifests of {@code channels} recorded while creating a {@code ChannelSession}.
+         *
+         * @param channels - channels used to create the {@code ChannelSession}
+         * @return manifests in the same order as {@code channels}, or empty if any of the manifests is not available
+         */
+        public Optional<List<ChannelManifest>> getManifests(List<Channel> channels) {
+            final List<ChannelManifest> manifests = new ArrayList<>(channels.size());
+            for (Channel channel : channels) {
+                if (channel.getManifestCoordinate() == null) {
+                    return Optional.empty();
+                }
+                final URL url = resolved.get(key(channel.getManifestCoordinate()));
+                if (url == null) {
+                    return Optional.empty();
+                }
+                try {
+                    manifests.add(ChannelManifestMapper.from(url));
+                } catch (InvalidChannelMetadataException e) {
+                    LOG.debugf(e, "Unable to read recorded manifest %s", url);
+                    return Optional.empty();
+                }
+            }
+            return Optional.of(manifests);
+        }
+
+        @Override
+        public void close() {
+            delegate.close();
+        }
+    }
+}
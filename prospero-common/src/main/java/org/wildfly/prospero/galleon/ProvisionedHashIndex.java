@@ -0,0 +1,164 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.jboss.galleon.Constants;
+import org.jboss.galleon.util.HashUtils;
+import org.jboss.logging.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of file hashes recorded by Galleon in {@code .galleon/hashes} when the server was provisioned.
+ *
+ * Each directory of the provisioned server has a matching directory in {@code .galleon/hashes} with a {@code hashes}
+ * file listing names of the files and their SHA-1 hashes. The records are read lazily, one directory at a time, when
+ * a file in that directory is first requested.
+ *
+ * Galleon doesn't record file sizes or timestamps, but the {@code hashes} files are written after the provisioned files.
+ * A recorded hash is considered valid only if the file has not been modified after its {@code hashes} record was written.
+ * A change that preserves the timestamp of the file (e.g. {@code cp -p}, {@code rsync -t} or restoring a backup) is not
+ * detected, so {@link #getUnchangedHash(Path, Path)} can only be used where a wrong result doesn't modify the
+ * installation, e.g. to estimate the cost of an update.
+ *
+ * The index is safe to use from multiple threads.
+ */
+public class ProvisionedHashIndex {
+
+    private static final Logger LOG = Logger.getLogger(ProvisionedHashIndex.class);
+
+    private static final DirRecord NO_RECORD = new DirRecord(Collections.emptyMap(), Long.MIN_VALUE);
+
+    private final Path hashesDir;
+    private final Map<String, DirRecord> records = new ConcurrentHashMap<>();
+
+    private ProvisionedHashIndex(Path hashesDir) {
+        this.hashesDir = hashesDir;
+    }
+
+    /**
+     * creates index of the hashes recorded in {@code installationDir}. If the server doesn't have any recorded hashes,
+     * the index is empty.
+     */
+    public static ProvisionedHashIndex load(Path installationDir) {
+        return new ProvisionedHashIndex(installationDir.resolve(Constants.PROVISIONED_STATE_DIR).resolve(Constants.HASHES));
+    }
+
+    /**
+     * @param relativePath - path relative to the installation root
+     * @return hash recorded by Galleon or {@code null} if the file was not recorded
+     */
+    public byte[] getRecordedHash(Path relativePath) {
+        final String fileName = relativePath.getFileName().toString();
+        return getDirRecord(relativePath.getParent()).hashes.get(fileName);
+    }
+
+    /**
+     * returns the recorded hash of {@code file} if the file has not been modified since it was recorded. This doesn't
+     * read the content of the file, only its attributes, so the result must not be used to decide which files are
+     * written or linked.
+     *
+     * @param relativePath - path relative to the installation root
+     * @param file - the file in the installation
+     * @return hash recorded by Galleon or {@code null} if the file was not recorded, or was modified after the hash was recorded
+     * @throws IOException - if unable to read the file attributes
+     */
+    public byte[] getUnchangedHash(Path relativePath, Path file) throws IOException {
+        final DirRecord dirRecord = getDirRecord(relativePath.getParent());
+        final byte[] hash = dirRecord.hashes.get(relativePath.getFileName().toString());
+        if (hash == null) {
+            return null;
+        }
+        final BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+        if (!attrs.isRegularFile() || attrs.lastModifiedTime().toMillis() > dirRecord.recordedAt) {
+            return null;
+        }
+        return hash;
+    }
+
+    /**
+     * @param relativeDir - directory relative to the installation root, or {@code null} for the root itself
+     * @return names of the files recorded by Galleon in the directory mapped to their hashes
+     */
+    public Map<String, byte[]> getDirectoryHashes(Path relativeDir) {
+        return Collections.unmodifiableMap(getDirRecord(relativeDir).hashes);
+    }
+
+    private DirRecord getDirRecord(Path relativeDir) {
+        final String key = relativeDir == null ? "" : relativeDir.toString();
+        try {
+            return records.computeIfAbsent(key, k -> {
+                try {
+                    return readDirRecord(k.isEmpty() ? hashesDir : hashesDir.resolve(k));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            LOG.debug("Unable to read recorded hashes for " + relativeDir, e);
+            return NO_RECORD;
+        }
+    }
+
+    private static DirRecord readDirRecord(Path dir) throws IOException {
+        final Path hashesFile = dir.resolve(Constants.HASHES);
+        if (!Files.isRegularFile(hashesFile)) {
+            return NO_RECORD;
+        }
+        final long recordedAt = Files.getLastModifiedTime(hashesFile).toMillis();
+        return new DirRecord(readHashes(dir), recordedAt);
+    }
+
+    /**
+     * reads the hashes recorded in a single directory of {@code .galleon/hashes}.
+     *
+     * @param recordDir - directory in {@code .galleon/hashes}
+     * @return names of the recorded files mapped to their hashes, or an empty map if the directory has no record
+     */
+    static Map<String, byte[]> readHashes(Path recordDir) throws IOException {
+        final Path hashesFile = recordDir.resolve(Constants.HASHES);
+        if (!Files.isRegularFile(hashesFile)) {
+            return Collections.emptyMap();
+        }
+        final List<String> lines = Files.readAllLines(hashesFile);
+        final Map<String, byte[]> hashes = new HashMap<>();
+        for (int i = 0; i + 1 < lines.size(); i += 2) {
+            hashes.put(lines.get(i), HashUtils.hexStringToByteArray(lines.get(i + 1)));
+        }
+        return hashes;
+    }
+
+    private static final class DirRecord {
+        private final Map<String, byte[]> hashes;
+        private final long recordedAt;
+
+        private DirRecord(Map<String, byte[]> hashes, long recordedAt) {
+            this.hashes = hashes;
+            this.recordedAt = recordedAt;
+        }
+    }
+}
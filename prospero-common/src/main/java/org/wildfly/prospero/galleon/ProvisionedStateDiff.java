@@ -0,0 +1,227 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.jboss.galleon.Constants;
+import org.jboss.galleon.Errors;
+import org.jboss.galleon.diff.FsDiff;
+import org.jboss.galleon.diff.FsEntry;
+import org.wildfly.prospero.utils.NioFileUtils;
+import org.wildfly.prospero.utils.ParallelExecutor;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Compares an installation with the state recorded by Galleon in {@code .galleon/hashes}, reporting the changes made
+ * by the user as they are found.
+ *
+ * Unlike {@code ProvisioningManager#getFsDiff()}, the comparison doesn't build the trees of the recorded and current
+ * state in memory. The installation is walked one directory at a time and only the hashes recorded for the current
+ * directory are held. The changes are reported in the same form as in {@link FsDiff}: a directory that was added or
+ * removed is reported once, without its content; a recorded file with different content is reported as modified.
+ *
+ * The {@code .galleon} directory and the {@code .glnew}/{@code .glold} files are not compared.
+ */
+public class ProvisionedStateDiff {
+
+    /**
+     * Receives the changes found in the installation. The paths are relative to the installation root.
+     */
+    public interface Listener {
+        void added(Path relativePath, boolean directory) throws IOException;
+
+        void removed(Path relativePath, boolean directory) throws IOException;
+
+        void modified(Path relativePath, byte[] recordedHash, byte[] currentHash) throws IOException;
+
+        /**
+         * called for each file whose current content has been hashed to compare it with the recorded hash.
+         *
+         * @param size - size of the file
+         * @param nanos - time spent hashing the file
+         */
+        default void hashed(Path relativePath, long size, long nanos) throws IOException {
+        }
+    }
+
+    private final Path installationDir;
+    private final Path hashesDir;
+    private final ParallelExecutor executor;
+    private final Listener listener;
+
+    private ProvisionedStateDiff(Path installationDir, ParallelExecutor executor, Listener listener) {
+        this.installationDir = installationDir;
+        this.hashesDir = installationDir.resolve(Constants.PROVISIONED_STATE_DIR).resolve(Constants.HASHES);
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    /**
+     * @return {@code true} if Galleon recorded the provisioned state of the installation
+     */
+    public static boolean hasRecordedState(Path installationDir) {
+        return Files.isDirectory(installationDir.resolve(Constants.PROVISIONED_STATE_DIR).resolve(Constants.HASHES));
+    }
+
+    /**
+     * compares {@code installationDir} with its recorded state and reports the differences to the {@code listener}.
+     * The hashes of the files in each directory are calculated using the {@code executor}.
+     *
+     * @throws IOException if unable to read the installation or the recorded state
+     */
+    public static void compare(Path installationDir, ParallelExecutor executor, Listener listener) throws IOException {
+        new ProvisionedStateDiff(installationDir, executor, listener).compareDir(Path.of(""));
+    }
+
+    /**
+     * reports the changes found by Galleon to the {@code listener}. Used when the installation has no recorded state
+     * and Galleon has to re-create it to compare the installation.
+     */
+    public static void replay(FsDiff fsDiff, Listener listener) throws IOException {
+        if (fsDiff.hasRemovedEntries()) {
+            for (FsEntry removed : fsDiff.getRemovedEntries()) {
+                listener.removed(Path.of(removed.getRelativePath()), removed.isDir());
+            }
+        }
+        if (fsDiff.hasAddedEntries()) {
+            for (FsEntry added : fsDiff.getAddedEntries()) {
+                listener.added(Path.of(added.getRelativePath()), added.isDir());
+            }
+        }
+        if (fsDiff.hasModifiedEntries()) {
+            for (FsEntry[] modified : fsDiff.getModifiedEntries()) {
+                listener.modified(Path.of(modified[1].getRelativePath()), modified[0].getHash(), modified[1].getHash());
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the file is not compared with the recorded state
+     */
+    public static boolean isIgnored(Path relativePath) {
+        final String name = relativePath.getFileName().toString();
+        return relativePath.equals(Path.of(Constants.PROVISIONED_STATE_DIR))
+                || name.endsWith(Constants.DOT_GLNEW) || name.endsWith(Constants.DOT_GLOLD);
+    }
+
+    private void compareDir(Path relativeDir) throws IOException {
+        final Path recordDir = hashesDir.resolve(relativeDir.toString());
+        final Map<String, byte[]> recordedFiles = new TreeMap<>(ProvisionedHashIndex.readHashes(recordDir));
+        final TreeSet<String> recordedDirs = listDirectories(recordDir);
+
+        // names of the current entries mapped to whether the entry is a directory
+        final Map<String, Boolean> current = new TreeMap<>();
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(installationDir.resolve(relativeDir.toString()))) {
+            for (Path entry : entries) {
+                final Path relative = relativeDir.resolve(entry.getFileName().toString());
+                if (!isIgnored(relative)) {
+                    current.put(entry.getFileName().toString(), Files.isDirectory(entry));
+                }
+            }
+        }
+
+        final List<String> existingFiles = new ArrayList<>();
+        for (String name : recordedFiles.keySet()) {
+            if (Boolean.FALSE.equals(current.get(name))) {
+                existingFiles.add(name);
+            } else {
+                listener.removed(relativeDir.resolve(name), false);
+            }
+        }
+        final List<HashedFile> currentHashes = executor.map(existingFiles,
+                name -> HashedFile.hash(installationDir.resolve(relativeDir.toString()).resolve(name)));
+        for (int i = 0; i < existingFiles.size(); i++) {
+            final String name = existingFiles.get(i);
+            final Path relative = relativeDir.resolve(name);
+            final HashedFile hashed = currentHashes.get(i);
+            listener.hashed(relative, hashed.size, hashed.nanos);
+            final byte[] recordedHash = recordedFiles.get(name);
+            if (!Arrays.equals(recordedHash, hashed.hash)) {
+                listener.modified(relative, recordedHash, hashed.hash);
+            }
+        }
+
+        for (Map.Entry<String, Boolean> entry : current.entrySet()) {
+            final boolean directory = entry.getValue();
+            final boolean recorded = directory ? recordedDirs.contains(entry.getKey()) : recordedFiles.containsKey(entry.getKey());
+            if (!recorded) {
+                listener.added(relativeDir.resolve(entry.getKey()), directory);
+            }
+        }
+
+        final List<String> existingDirs = new ArrayList<>();
+        for (String name : recordedDirs) {
+            if (Boolean.TRUE.equals(current.get(name))) {
+                existingDirs.add(name);
+            } else {
+                listener.removed(relativeDir.resolve(name), true);
+            }
+        }
+        // release the records of this directory before descending
+        recordedFiles.clear();
+        current.clear();
+
+        for (String name : existingDirs) {
+            compareDir(relativeDir.resolve(name));
+        }
+    }
+
+    private static TreeSet<String> listDirectories(Path recordDir) throws IOException {
+        final TreeSet<String> dirs = new TreeSet<>();
+        if (!Files.isDirectory(recordDir)) {
+            return dirs;
+        }
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(recordDir, Files::isDirectory)) {
+            for (Path entry : entries) {
+                dirs.add(entry.getFileName().toString());
+            }
+        }
+        return dirs;
+    }
+
+    private static final class HashedFile {
+        private final byte[] hash;
+        private final long size;
+        private final long nanos;
+
+        private HashedFile(byte[] hash, long size, long nanos) {
+            this.hash = hash;
+            this.size = size;
+            this.nanos = nanos;
+        }
+
+        private static HashedFile hash(Path file) throws IOException {
+            final long start = System.nanoTime();
+            try {
+                final byte[] hash = NioFileUtils.hashPath(file);
+                return new HashedFile(hash, Files.size(file), System.nanoTime() - start);
+            } catch (IOException e) {
+                throw new IOException(Errors.hashCalculation(file), e);
+            }
+        }
+    }
+}
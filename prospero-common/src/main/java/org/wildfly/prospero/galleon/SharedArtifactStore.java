@@ -0,0 +1,354 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.jboss.logging.Logger;
+import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
+import org.wildfly.prospero.utils.NioFileUtils;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Content-addressable store of artifacts shared by all the installations on a host.
+ *
+ * The artifacts are stored in {@code BLOBS_FOLDER} under their SHA-1 hash and the installations contain hard links to
+ * those blobs instead of their own copies. Each installation records the hashes it references in a file in
+ * {@code REFS_FOLDER}, together with the installation path. {@link #collectGarbage()} removes the blobs not referenced
+ * by any existing installation.
+ *
+ * Blobs linked into an installation are recorded as its pending references until the installation records its
+ * references, so that they are not removed by a garbage collection running at the same time.
+ *
+ * Removing a blob doesn't affect the installations linking to it, the content is only released by the filesystem
+ * once all the links are removed. The files in the store must never be modified in place, so only artifacts
+ * (e.g. module jars) are added to the store, not configuration files, and the blobs are read-only.
+ *
+ * The store is used only if its location is set with the {@code STORE_PROPERTY} system property.
+ */
+public class SharedArtifactStore {
+
+    private static final Logger LOG = Logger.getLogger(SharedArtifactStore.class);
+
+    /**
+     * System property defining the location of the shared store. If not set, the installations keep their own copies.
+     */
+    public static final String STORE_PROPERTY = "prospero.artifact.store";
+    static final String BLOBS_FOLDER = "blobs";
+    static final String REFS_FOLDER = "refs";
+    private static final String LOCK_FILE = ".lock";
+    private static final String REFS_SUFFIX = ".txt";
+    private static final String PENDING_SUFFIX = ".pending";
+    private static final String TEMP_SUFFIX = ".tmp";
+    // file locks are held by the whole JVM, concurrent operations within the JVM have to be serialized separately
+    private static final Object JVM_LOCK = new Object();
+
+    private final Path storeDir;
+
+    /**
+     * @return store located at the path defined by {@code STORE_PROPERTY}, or empty if the property is not set
+     */
+    public static Optional<SharedArtifactStore> fromSystemProperties() {
+        final String location = System.getProperty(STORE_PROPERTY);
+        if (location == null || location.isBlank()) {
+            return Optional.empty();
+        }
+        return Optional.of(new SharedArtifactStore(Paths.get(location)));
+    }
+
+    public SharedArtifactStore(Path storeDir) {
+        this.storeDir = storeDir.toAbsolutePath();
+    }
+
+    public Path getStoreDir() {
+        return storeDir;
+    }
+
+    /**
+     * adds a copy of {@code file} to the store, unless a blob with the same {@code hash} already exists. The blob is
+     * recorded as a pending reference of the {@code installationDir}, so it is not removed by a concurrent
+     * {@link #collectGarbage()} before the installation records its references with {@link #setReferences(Path, Collection)}.
+     *
+     * The content of a new blob is verified against the {@code hash} before the blob is stored, and the blob is made
+     * read-only, so that it is not modified through the installations linking to it.
+     *
+     * @param installationDir - installation that is going to reference the blob
+     * @param file - file to be stored
+     * @param hash - SHA-1 hash of the {@code file}
+     * @return location of the blob
+     * @throws IOException if the blob cannot be stored or the content of the {@code file} doesn't match the {@code hash}
+     */
+    public Path add(Path installationDir, Path file, String hash) throws IOException {
+        final Path blob = getBlob(hash);
+        Path temp = null;
+        try {
+            if (!Files.exists(blob)) {
+                Files.createDirectories(blob.getParent());
+                // the blob is copied under a temporary name and renamed, so partially written blobs are never linked.
+                // The copy is made outside of the lock, only the rename is serialized with the garbage collection
+                temp = Files.createTempFile(blob.getParent(), hash, TEMP_SUFFIX);
+                final String copiedHash = NioFileUtils.copyAndHash(file, temp);
+                if (!copiedHash.equals(hash)) {
+                    throw new IOException(String.format("Content of %s doesn't match the hash %s", file, hash));
+                }
+                temp.toFile().setReadOnly();
+            }
+            final Path copy = temp;
+            locked(() -> {
+                addPendingReference(installationDir, hash);
+                if (copy != null && !Files.exists(blob)) {
+                    Files.move(copy, blob, StandardCopyOption.ATOMIC_MOVE);
+                } else if (copy != null) {
+                    // stored concurrently by another installation
+                    LOG.debugf("Blob %s has been already stored", hash);
+                }
+                return null;
+            });
+        } finally {
+            if (temp != null && Files.exists(temp)) {
+                temp.toFile().setWritable(true);
+                Files.deleteIfExists(temp);
+            }
+        }
+        return blob;
+    }
+
+    /**
+     * replaces {@code target} with a hard link to the blob of {@code file}. The blob is added to the store if needed,
+     * see {@link #add(Path, Path, String)}.
+     *
+     * @param installationDir - installation containing the {@code target}
+     * @param file - file to be stored
+     * @param hash - SHA-1 hash of the {@code file}
+     * @param target - location of the link
+     * @throws IOException if the blob cannot be stored or linked, e.g. because the store is on a different filesystem
+     */
+    public void link(Path installationDir, Path file, String hash, Path target) throws IOException {
+        final Path blob = add(installationDir, file, hash);
+        Files.createDirectories(target.getParent());
+        // the link is created next to the target and renamed, so the target is replaced atomically
+        final Path tempLink = target.resolveSibling(target.getFileName() + ".prospero-link");
+        try {
+            Files.deleteIfExists(tempLink);
+            Files.createLink(tempLink, blob);
+            Files.move(tempLink, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | UnsupportedOperationException e) {
+            Files.deleteIfExists(tempLink);
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+    }
+
+    /**
+     * checks if {@code file} is a link to the blob with {@code hash}.
+     */
+    public boolean isStored(Path file, String hash) {
+        final Path blob = getBlob(hash);
+        try {
+            return Files.exists(blob) && Files.isSameFile(file, blob);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * records the blobs referenced by the installation, replacing any previously recorded references. The recorded
+     * blobs are no longer kept as pending references of the installation.
+     *
+     * @param installationDir - installation referencing the blobs
+     * @param hashes - SHA-1 hashes of all the artifacts used by the installation
+     * @throws IOException
+     */
+    public void setReferences(Path installationDir, Collection<String> hashes) throws IOException {
+        final Path installation = installationDir.toAbsolutePath().normalize();
+        final Path refsFile = getRefsFile(installation, REFS_SUFFIX);
+        Files.createDirectories(refsFile.getParent());
+
+        final List<String> lines = new ArrayList<>(hashes.size() + 1);
+        lines.add(installation.toString());
+        lines.addAll(new TreeSet<>(hashes));
+
+        final Path temp = Files.createTempFile(refsFile.getParent(), refsFile.getFileName().toString(), TEMP_SUFFIX);
+        try {
+            Files.write(temp, lines, StandardCharsets.UTF_8);
+            locked(() -> {
+                Files.move(temp, refsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                removePendingReferences(installation, hashes);
+                return null;
+            });
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * records all the artifacts listed in the artifact cache of the installation as referenced by the installation.
+     *
+     * @param installationDir - installation referencing the blobs
+     * @throws IOException
+     */
+    public void updateReferences(Path installationDir) throws IOException {
+        setReferences(installationDir, ArtifactCache.readRecordedHashes(installationDir));
+    }
+
+    /**
+     * removes the blobs that are not referenced by any installation. References of installations that no longer exist
+     * are removed first.
+     *
+     * @return number of removed blobs
+     * @throws IOException
+     */
+    public int collectGarbage() throws IOException {
+        final Path blobsDir = storeDir.resolve(BLOBS_FOLDER);
+        if (!Files.exists(blobsDir)) {
+            return 0;
+        }
+
+        return locked(() -> {
+            final Set<String> referenced = readLiveReferences();
+            final List<Path> blobs;
+            try (Stream<Path> files = Files.walk(blobsDir)) {
+                blobs = files.filter(Files::isRegularFile).collect(Collectors.toList());
+            }
+            int removed = 0;
+            for (Path blob : blobs) {
+                final String name = blob.getFileName().toString();
+                // skip temporary files of blobs being stored
+                if (name.endsWith(TEMP_SUFFIX) || referenced.contains(name)) {
+                    continue;
+                }
+                LOG.debugf("Removing unreferenced blob %s", name);
+                // the blobs are read-only, which prevents deleting them on some platforms
+                blob.toFile().setWritable(true);
+                Files.delete(blob);
+                removed++;
+            }
+            return removed;
+        });
+    }
+
+    private Set<String> readLiveReferences() throws IOException {
+        final Set<String> referenced = new HashSet<>();
+        final Path refsDir = storeDir.resolve(REFS_FOLDER);
+        if (!Files.exists(refsDir)) {
+            return referenced;
+        }
+        try (DirectoryStream<Path> refsFiles = Files.newDirectoryStream(refsDir, "*" + REFS_SUFFIX)) {
+            for (Path refsFile : refsFiles) {
+                final List<String> lines = Files.readAllLines(refsFile, StandardCharsets.UTF_8);
+                if (lines.isEmpty() || !Files.exists(Paths.get(lines.get(0)).resolve(ProsperoMetadataUtils.METADATA_DIR))) {
+                    LOG.debugf("Removing references of a deleted installation %s", refsFile);
+                    Files.delete(refsFile);
+                    continue;
+                }
+                referenced.addAll(lines.subList(1, lines.size()));
+            }
+        }
+        // the installation might still be provisioned, so its metadata doesn't have to exist yet
+        try (DirectoryStream<Path> pendingFiles = Files.newDirectoryStream(refsDir, "*" + PENDING_SUFFIX)) {
+            for (Path pendingFile : pendingFiles) {
+                final List<String> lines = Files.readAllLines(pendingFile, StandardCharsets.UTF_8);
+                if (lines.isEmpty() || !Files.exists(Paths.get(lines.get(0)))) {
+                    LOG.debugf("Removing pending references of a deleted installation %s", pendingFile);
+                    Files.delete(pendingFile);
+                    continue;
+                }
+                referenced.addAll(lines.subList(1, lines.size()));
+            }
+        }
+        return referenced;
+    }
+
+    /*
+     * has to be called holding the lock of the store
+     */
+    private void addPendingReference(Path installationDir, String hash) throws IOException {
+        final Path installation = installationDir.toAbsolutePath().normalize();
+        final Path pendingFile = getRefsFile(installation, PENDING_SUFFIX);
+        Files.createDirectories(pendingFile.getParent());
+        final List<String> lines = new ArrayList<>();
+        if (!Files.exists(pendingFile)) {
+            lines.add(installation.toString());
+        }
+        lines.add(hash);
+        Files.write(pendingFile, lines, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /*
+     * has to be called holding the lock of the store
+     */
+    private void removePendingReferences(Path installation, Collection<String> hashes) throws IOException {
+        final Path pendingFile = getRefsFile(installation, PENDING_SUFFIX);
+        if (!Files.exists(pendingFile)) {
+            return;
+        }
+        final List<String> lines = Files.readAllLines(pendingFile, StandardCharsets.UTF_8);
+        final Set<String> recorded = new HashSet<>(hashes);
+        // blobs linked by another operation on the installation since the references were collected stay pending
+        final List<String> pending = lines.stream().skip(1).filter(h -> !recorded.contains(h)).collect(Collectors.toList());
+        if (pending.isEmpty()) {
+            Files.delete(pendingFile);
+        } else {
+            pending.add(0, installation.toString());
+            Files.write(pendingFile, pending, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * runs the {@code operation} holding an exclusive lock of the store, both within this JVM and across processes.
+     */
+    private <T> T locked(LockedOperation<T> operation) throws IOException {
+        Files.createDirectories(storeDir);
+        synchronized (JVM_LOCK) {
+            try (FileChannel channel = FileChannel.open(storeDir.resolve(LOCK_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                 FileLock ignored = channel.lock()) {
+                return operation.run();
+            }
+        }
+    }
+
+    Path getBlob(String hash) {
+        return storeDir.resolve(BLOBS_FOLDER).resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private Path getRefsFile(Path installation, String suffix) {
+        final UUID id = UUID.nameUUIDFromBytes(installation.toString().getBytes(StandardCharsets.UTF_8));
+        return storeDir.resolve(REFS_FOLDER).resolve(id + suffix);
+    }
+
+    private interface LockedOperation<T> {
+        T run() throws IOException;
+    }
+}
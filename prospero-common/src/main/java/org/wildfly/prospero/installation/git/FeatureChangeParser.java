@@ -18,7 +18,7 @@
 package org.wildfly.prospero.installation.git;
 
 import org.apache.commons.lang3.StringUtils;
-import org.jboss.galleon.ProvisioningException;
+import org.jboss.galleon.ProvisioningDescriptionException;
 import org.jboss.galleon.config.ConfigId;
 import org.jboss.galleon.config.ConfigModel;
 import org.jboss.galleon.config.ProvisioningConfig;
@@ -29,8 +29,9 @@ import org.wildfly.prospero.api.FeatureChange;
 import org.wildfly.prospero.api.exceptions.MetadataException;
 import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
 
+import javax.xml.stream.XMLStreamException;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.io.StringReader;
 import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -49,15 +50,16 @@ import static org.wildfly.prospero.api.FeatureChange.Type.CONFIG;
  */
 class FeatureChangeParser implements GitStorage.Parser<FeatureChange> {
     @Override
-    public List<FeatureChange> parse(Path changed, Path base) throws IOException, MetadataException {
+    public List<FeatureChange> parse(String changed, String base) throws IOException, MetadataException {
         final List<FeatureChange> featureChanges = new ArrayList<>();
         final ProvisioningConfig newConfig;
         final ProvisioningConfig oldConfig;
         try {
             newConfig = parseProvisioningConfig(changed);
             oldConfig = parseProvisioningConfig(base);
-        } catch (ProvisioningException e) {
-            throw ProsperoLogger.ROOT_LOGGER.unableToParseConfiguration(changed.resolve(ProsperoMetadataUtils.PROVISIONING_RECORD_XML), e);
+        } catch (XMLStreamException | ProvisioningDescriptionException e) {
+            throw ProsperoLogger.ROOT_LOGGER.unableToParseConfiguration(
+                    Path.of(ProsperoMetadataUtils.METADATA_DIR, ProsperoMetadataUtils.PROVISIONING_RECORD_XML), e);
         }
 
         final Set<String> oldFeatureNames = oldConfig.getFeaturePackDeps().stream().map(c -> c.getLocation().toString()).collect(Collectors.toSet());
@@ -102,11 +104,11 @@ class FeatureChangeParser implements GitStorage.Parser<FeatureChange> {
         return featureChanges;
     }
 
-    private static ProvisioningConfig parseProvisioningConfig(Path changed) throws ProvisioningException {
-        if (changed == null || !Files.exists(changed.resolve(ProsperoMetadataUtils.PROVISIONING_RECORD_XML))) {
+    private static ProvisioningConfig parseProvisioningConfig(String content) throws XMLStreamException, ProvisioningDescriptionException {
+        if (content == null) {
             return ProvisioningConfig.builder().build();
         } else {
-            return ProvisioningXmlParser.parse(changed.resolve(ProsperoMetadataUtils.PROVISIONING_RECORD_XML));
+            return ProvisioningXmlParser.getInstance().parse(new StringReader(content));
         }
     }
 
@@ -19,6 +19,13 @@ package org.wildfly.prospero.installation.git;
 
 import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.wildfly.channel.ChannelManifestMapper;
+import org.wildfly.channel.ChannelMapper;
+import org.wildfly.channel.InvalidChannelMetadataException;
 import org.eclipse.jgit.lib.StoredConfig;
 import org.wildfly.channel.Channel;
 import org.wildfly.channel.ChannelManifest;
@@ -30,8 +37,6 @@ import org.wildfly.prospero.api.exceptions.MetadataException;
 import org.wildfly.prospero.api.SavedState;
 import org.wildfly.prospero.api.ArtifactChange;
 import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
-import org.wildfly.prospero.model.ManifestYamlSupport;
-import org.apache.commons.io.FileUtils;
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
 import org.eclipse.jgit.api.Git;
@@ -40,9 +45,9 @@ import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.PersonIdent;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.wildfly.channel.Stream;
-import org.wildfly.prospero.model.ProsperoConfig;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.attribute.BasicFileAttributes;
@@ -56,6 +61,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 import static org.wildfly.prospero.metadata.ProsperoMetadataUtils.CURRENT_VERSION_FILE;
@@ -64,6 +70,8 @@ public class GitStorage implements AutoCloseable {
 
     public static final String GIT_HISTORY_USER = "Wildfly Installer";
     private final Git git;
+    private final RevisionIndex revisionIndex;
+    private final Map<ObjectId, ChannelManifest> manifestCache = new HashMap<>();
     private Path base;
 
     public GitStorage(Path base) throws MetadataException {
@@ -73,41 +81,169 @@ public class GitStorage implements AutoCloseable {
         } catch (GitAPIException | IOException e) {
             throw ProsperoLogger.ROOT_LOGGER.unableToCreateHistoryStorage(base, e);
         }
+        this.revisionIndex = new RevisionIndex(this.base.resolve(Constants.DOT_GIT).resolve(RevisionIndex.INDEX_FILE_NAME));
     }
 
+    /**
+     * lists all recorded states, latest first.
+     */
     public List<SavedState> getRevisions() throws MetadataException {
-        try {
-            final Iterable<RevCommit> call = git.log().call();
-            List<SavedState> history = new ArrayList<>();
-            for (RevCommit revCommit : call) {
-                final String shortMessage = revCommit.getShortMessage().trim();
-                final int endOfTypeIndex = shortMessage.indexOf(' ');
-                final String type;
-                String msg;
-                if (endOfTypeIndex < 0) {
-                    type = shortMessage;
-                    msg = "";
-                } else {
-                    type = shortMessage.substring(0, endOfTypeIndex).trim();
-                    msg = shortMessage.substring(endOfTypeIndex + 1).trim();
+        return getRevisions(0, Integer.MAX_VALUE);
+    }
 
-                }
-                final SavedState.Type recordType = SavedState.Type.fromText(type.toUpperCase(Locale.ROOT));
-                if (recordType == SavedState.Type.INTERNAL_UPDATE) {
-                    // hide internal records
-                    continue;
-                }
-                if (recordType == SavedState.Type.UNKNOWN) {
-                    msg = shortMessage;
-                }
-                history.add(new SavedState(revCommit.getName().substring(0,8),
-                        Instant.ofEpochSecond(revCommit.getCommitTime()),
-                        recordType, msg));
+    /**
+     * lists a page of recorded states, latest first.
+     *
+     * @param offset - number of the latest states to skip
+     * @param limit - maximum number of states to return
+     */
+    public List<SavedState> getRevisions(int offset, int limit) throws MetadataException {
+        try {
+            syncRevisionIndex();
+            try {
+                return readRevisions(offset, limit);
+            } catch (IOException e) {
+                ProsperoLogger.ROOT_LOGGER.debug("Unable to read the revision index, re-building it", e);
+                rebuildRevisionIndex();
+                return readRevisions(offset, limit);
             }
+        } catch (IOException | GitAPIException e) {
+            throw ProsperoLogger.ROOT_LOGGER.unableToAccessHistoryStorage(base, e);
+        }
+    }
+
+    /**
+     * finds the latest recorded state without listing the whole history.
+     *
+     * @return the latest state or empty if no states were recorded yet
+     */
+    public Optional<SavedState> getLatestRevision() throws MetadataException {
+        final List<SavedState> revisions = getRevisions(0, 1);
+        return revisions.isEmpty() ? Optional.empty() : Optional.of(revisions.get(0));
+    }
 
+    private List<SavedState> readRevisions(int offset, int limit) throws IOException {
+        final List<SavedState> history = new ArrayList<>();
+        if (limit <= 0) {
             return history;
-        } catch (GitAPIException e) {
-            throw ProsperoLogger.ROOT_LOGGER.unableToAccessHistoryStorage(base, e);
+        }
+        final int[] skipped = {0};
+        revisionIndex.visitFromLatest(entry -> {
+            final SavedState savedState = toSavedState(entry);
+            if (savedState == null) {
+                return true;
+            }
+            if (skipped[0] < offset) {
+                skipped[0]++;
+                return true;
+            }
+            history.add(savedState);
+            return history.size() < limit;
+        });
+        return history;
+    }
+
+    /*
+     * returns null if the entry is an internal record that should not be visible in the history
+     */
+    private static SavedState toSavedState(RevisionIndex.Entry entry) {
+        final String shortMessage = entry.getShortMessage();
+        final int endOfTypeIndex = shortMessage.indexOf(' ');
+        final String type;
+        String msg;
+        if (endOfTypeIndex < 0) {
+            type = shortMessage;
+            msg = "";
+        } else {
+            type = shortMessage.substring(0, endOfTypeIndex).trim();
+            msg = shortMessage.substring(endOfTypeIndex + 1).trim();
+
+        }
+        final SavedState.Type recordType = SavedState.Type.fromText(type.toUpperCase(Locale.ROOT));
+        if (recordType == SavedState.Type.INTERNAL_UPDATE) {
+            // hide internal records
+            return null;
+        }
+        if (recordType == SavedState.Type.UNKNOWN) {
+            msg = shortMessage;
+        }
+        return new SavedState(entry.getCommitId().substring(0,8),
+                Instant.ofEpochSecond(entry.getCommitTime()),
+                recordType, msg);
+    }
+
+    private static RevisionIndex.Entry toIndexEntry(RevCommit revCommit) {
+        return new RevisionIndex.Entry(revCommit.getName(), revCommit.getCommitTime(), revCommit.getShortMessage());
+    }
+
+    /*
+     * makes sure the revision index includes all commits up to HEAD. If the index is behind HEAD, only the missing
+     * commits are added, otherwise (e.g. the index doesn't exist yet) the index is re-built from the whole history.
+     */
+    private void syncRevisionIndex() throws IOException, GitAPIException {
+        final ObjectId head = git.getRepository().resolve(Constants.HEAD);
+        Optional<String> indexedHead;
+        try {
+            indexedHead = revisionIndex.getHeadId();
+        } catch (IOException e) {
+            ProsperoLogger.ROOT_LOGGER.debug("Unable to read the revision index, re-building it", e);
+            indexedHead = Optional.empty();
+        }
+        if (head == null) {
+            if (indexedHead.isPresent()) {
+                revisionIndex.rewrite(Collections.emptyList());
+            }
+            return;
+        }
+        if (indexedHead.isPresent() && indexedHead.get().equals(head.getName())) {
+            return;
+        }
+
+        final List<RevisionIndex.Entry> missingEntries = new ArrayList<>();
+        boolean foundIndexedHead = false;
+        for (RevCommit revCommit : git.log().call()) {
+            if (indexedHead.isPresent() && indexedHead.get().equals(revCommit.getName())) {
+                foundIndexedHead = true;
+                break;
+            }
+            missingEntries.add(toIndexEntry(revCommit));
+        }
+        Collections.reverse(missingEntries);
+        if (foundIndexedHead) {
+            revisionIndex.append(missingEntries);
+        } else {
+            revisionIndex.rewrite(missingEntries);
+        }
+    }
+
+    private void rebuildRevisionIndex() throws IOException, GitAPIException {
+        final List<RevisionIndex.Entry> entries = new ArrayList<>();
+        if (!isRepositoryEmpty(git)) {
+            for (RevCommit revCommit : git.log().call()) {
+                entries.add(toIndexEntry(revCommit));
+            }
+        }
+        Collections.reverse(entries);
+        revisionIndex.rewrite(entries);
+    }
+
+    /*
+     * adds a new commit to the revision index. Failing to update the index is not fatal - the index is synchronized
+     * with the repository next time it is read.
+     */
+    private void indexCommit(RevCommit revCommit) {
+        try {
+            final Optional<String> indexedHead = revisionIndex.getHeadId();
+            final boolean isNextCommit = revCommit.getParentCount() == 0
+                    ? indexedHead.isEmpty()
+                    : indexedHead.isPresent() && indexedHead.get().equals(revCommit.getParent(0).getName());
+            if (isNextCommit) {
+                revisionIndex.append(List.of(toIndexEntry(revCommit)));
+            } else {
+                syncRevisionIndex();
+            }
+        } catch (IOException | GitAPIException e) {
+            ProsperoLogger.ROOT_LOGGER.debug("Unable to update the revision index", e);
         }
     }
 
@@ -123,11 +259,12 @@ public class GitStorage implements AutoCloseable {
                 git.add().addFilepattern(CURRENT_VERSION_FILE).call();
                 git.add().addFilepattern(ProsperoMetadataUtils.PROVISIONING_RECORD_XML).call();
                 // adjust the date so that when taking over a non-prosper installation date matches creation
-                git.commit()
+                final RevCommit revCommit = git.commit()
                         .setAuthor(author)
                         .setCommitter(author)
                         .setMessage(commitType.name() + (msg==null ? "" : " " + msg))
                         .call();
+                indexCommit(revCommit);
             } else {
                 recordChange(SavedState.Type.UPDATE);
             }
@@ -166,11 +303,12 @@ public class GitStorage implements AutoCloseable {
 
             String msg = readCommitMessage();
 
-            git.commit()
+            final RevCommit revCommit = git.commit()
                     .setAuthor(author)
                     .setCommitter(author)
                     .setMessage(commitType.name()+ (msg==null? "" : " " + msg ))
                     .call();
+            indexCommit(revCommit);
 
         } catch (IOException | GitAPIException e) {
             throw ProsperoLogger.ROOT_LOGGER.unableToAccessHistoryStorage(base, e);
@@ -193,11 +331,12 @@ public class GitStorage implements AutoCloseable {
         try {
             git.add().addFilepattern(ProsperoMetadataUtils.INSTALLER_CHANNELS_FILE_NAME).call();
             final PersonIdent author = getCommitter();
-            git.commit()
+            final RevCommit revCommit = git.commit()
                     .setAuthor(author)
                     .setCommitter(author)
                     .setMessage(SavedState.Type.CONFIG_CHANGE.name())
                     .call();
+            indexCommit(revCommit);
         } catch (GitAPIException e) {
             throw ProsperoLogger.ROOT_LOGGER.unableToAccessHistoryStorage(base, e);
         }
@@ -242,6 +381,23 @@ public class GitStorage implements AutoCloseable {
         }
     }
 
+    /**
+     * moves the history back to {@code revision}, discarding the states recorded after it. The files in the metadata
+     * directory are not changed.
+     *
+     * @param revision - name of the recorded state
+     */
+    public void resetTo(String revision) throws MetadataException {
+        try {
+            git.reset()
+                    .setRef(revision)
+                    .setMode(ResetCommand.ResetType.MIXED)
+                    .call();
+        } catch (GitAPIException e) {
+            throw ProsperoLogger.ROOT_LOGGER.unableToAccessHistoryStorage(base, e);
+        }
+    }
+
     public void reset() throws MetadataException {
         try {
             git.reset()
@@ -254,42 +410,73 @@ public class GitStorage implements AutoCloseable {
     }
 
     public List<ArtifactChange> getArtifactChanges(SavedState savedState) throws MetadataException {
-        Parser<ArtifactChange> parser = (changed, base) -> {
-            final Map<String, Artifact> oldArtifacts;
-            if (base != null ) {
-                final ChannelManifest parseOld = ManifestYamlSupport.parse(base.resolve(ProsperoMetadataUtils.MANIFEST_FILE_NAME).toFile());
-                oldArtifacts = toMap(parseOld.getStreams());
-            } else {
-                oldArtifacts = Collections.emptyMap();
-            }
+        return getChanges(null, savedState, ProsperoMetadataUtils.MANIFEST_FILE_NAME, this::diffManifests);
+    }
 
-            final ChannelManifest parseCurrent = ManifestYamlSupport.parse(changed.resolve(ProsperoMetadataUtils.MANIFEST_FILE_NAME).toFile());
-            final Map<String, Artifact> currentArtifacts = toMap(parseCurrent.getStreams());
+    /**
+     * lists artifacts changed between two recorded states.
+     *
+     * @param from - the base state
+     * @param to - the changed state
+     */
+    public List<ArtifactChange> getArtifactChanges(SavedState from, SavedState to) throws MetadataException {
+        Objects.requireNonNull(from);
+        return getChanges(from, to, ProsperoMetadataUtils.MANIFEST_FILE_NAME, this::diffManifests);
+    }
 
-            final ArrayList<ArtifactChange> artifactChanges = new ArrayList<>();
-            for (String ga : currentArtifacts.keySet()) {
-                if (!oldArtifacts.containsKey(ga)) {
-                    artifactChanges.add(ArtifactChange.added(currentArtifacts.get(ga)));
-                } else if (!currentArtifacts.get(ga).getVersion().equals(oldArtifacts.get(ga).getVersion())) {
-                    artifactChanges.add(ArtifactChange.updated(oldArtifacts.get(ga), currentArtifacts.get(ga)));
-                }
+    private List<ArtifactChange> diffManifests(ObjectId changed, ObjectId base) throws IOException, MetadataException {
+        final Map<String, Artifact> oldArtifacts = base == null ? Collections.emptyMap() : toMap(getManifest(base).getStreams());
+        final Map<String, Artifact> currentArtifacts = changed == null ? Collections.emptyMap() : toMap(getManifest(changed).getStreams());
+
+        final ArrayList<ArtifactChange> artifactChanges = new ArrayList<>();
+        for (String ga : currentArtifacts.keySet()) {
+            if (!oldArtifacts.containsKey(ga)) {
+                artifactChanges.add(ArtifactChange.added(currentArtifacts.get(ga)));
+            } else if (!currentArtifacts.get(ga).getVersion().equals(oldArtifacts.get(ga).getVersion())) {
+                artifactChanges.add(ArtifactChange.updated(oldArtifacts.get(ga), currentArtifacts.get(ga)));
             }
-            for (String ga : oldArtifacts.keySet()) {
-                if (!currentArtifacts.containsKey(ga)) {
-                    artifactChanges.add(ArtifactChange.removed(oldArtifacts.get(ga)));
-                }
+        }
+        for (String ga : oldArtifacts.keySet()) {
+            if (!currentArtifacts.containsKey(ga)) {
+                artifactChanges.add(ArtifactChange.removed(oldArtifacts.get(ga)));
             }
+        }
 
-            return artifactChanges;
-        };
+        return artifactChanges;
+    }
 
-        return getChanges(savedState, ProsperoMetadataUtils.MANIFEST_FILE_NAME, parser);
+    /*
+     * the same manifest is often recorded in many revisions (e.g. configuration changes), the parsed manifests are
+     * cached by the id of the stored object.
+     */
+    private ChannelManifest getManifest(ObjectId blobId) throws IOException, MetadataException {
+        ChannelManifest manifest = manifestCache.get(blobId);
+        if (manifest == null) {
+            manifest = parseManifest(readBlob(blobId));
+            manifestCache.put(blobId, manifest);
+        }
+        return manifest;
     }
 
     public List<ChannelChange> getChannelChanges(SavedState savedState) throws MetadataException {
-        Parser<ChannelChange> parser = (changed, base) -> {
-            final List<Channel> oldChannels = base == null?Collections.emptyList():ProsperoConfig.readConfig(base).getChannels();
-            final List<Channel> currentChannels = ProsperoConfig.readConfig(changed).getChannels();
+        return getChanges(null, savedState, ProsperoMetadataUtils.INSTALLER_CHANNELS_FILE_NAME, parse(channelChangeParser()));
+    }
+
+    /**
+     * lists channel changes between two recorded states.
+     *
+     * @param from - the base state
+     * @param to - the changed state
+     */
+    public List<ChannelChange> getChannelChanges(SavedState from, SavedState to) throws MetadataException {
+        Objects.requireNonNull(from);
+        return getChanges(from, to, ProsperoMetadataUtils.INSTALLER_CHANNELS_FILE_NAME, parse(channelChangeParser()));
+    }
+
+    private Parser<ChannelChange> channelChangeParser() {
+        return (changed, base) -> {
+            final List<Channel> oldChannels = parseChannels(base);
+            final List<Channel> currentChannels = parseChannels(changed);
 
             final ArrayList<ChannelChange> channelChanges = new ArrayList<>();
 
@@ -318,41 +505,94 @@ public class GitStorage implements AutoCloseable {
 
             return channelChanges;
         };
-
-        return getChanges(savedState, ProsperoMetadataUtils.INSTALLER_CHANNELS_FILE_NAME, parser);
     }
 
     public List<FeatureChange> getFeatureChanges(SavedState latestState) throws MetadataException {
-        return getChanges(latestState, ProsperoMetadataUtils.PROVISIONING_RECORD_XML, new FeatureChangeParser());
+        return getChanges(null, latestState, ProsperoMetadataUtils.PROVISIONING_RECORD_XML, parse(new FeatureChangeParser()));
     }
 
-    private <T> List<T> getChanges(SavedState savedState, String manifestFileName, Parser<T> parser) throws MetadataException {
-        Path change = null;
-        Path base = null;
-        try {
-            final ObjectId parentRef = git.getRepository().resolve(savedState.getName() + "^");
-            change = checkoutPastState(savedState, manifestFileName);
+    /**
+     * lists provisioning changes between two recorded states.
+     *
+     * @param from - the base state
+     * @param to - the changed state
+     */
+    public List<FeatureChange> getFeatureChanges(SavedState from, SavedState to) throws MetadataException {
+        Objects.requireNonNull(from);
+        return getChanges(from, to, ProsperoMetadataUtils.PROVISIONING_RECORD_XML, parse(new FeatureChangeParser()));
+    }
 
-            if (parentRef != null) {
-                base = checkoutPastState(new SavedState(parentRef.getName()), manifestFileName);
+    /*
+     * finds the recorded file in the {@code to} revision and the {@code from} revision (or the parent of {@code to}
+     * if {@code from} is null) directly in the repository objects
+     */
+    private <T> List<T> getChanges(SavedState from, SavedState to, String fileName, ChangesReader<T> reader) throws MetadataException {
+        final Repository repository = git.getRepository();
+        try (RevWalk revWalk = new RevWalk(repository)) {
+            final RevCommit changedCommit = resolveCommit(revWalk, to);
+            final RevCommit baseCommit;
+            if (from != null) {
+                baseCommit = resolveCommit(revWalk, from);
+            } else if (changedCommit.getParentCount() > 0) {
+                baseCommit = revWalk.parseCommit(changedCommit.getParent(0));
+            } else {
+                baseCommit = null;
             }
 
-            return parser.parse(change, base);
-        } catch (GitAPIException e) {
-            throw new RuntimeException(e);
+            final ObjectId changed = findBlob(repository, changedCommit, fileName);
+            final ObjectId base = baseCommit == null ? null : findBlob(repository, baseCommit, fileName);
+            return reader.read(changed, base);
         } catch (IOException e) {
-            throw ProsperoLogger.ROOT_LOGGER.unableToParseConfiguration(change, e);
-        } finally {
-            try {
-                if (change != null) {
-                    FileUtils.deleteDirectory(change.toFile());
-                }
-                if (base != null) {
-                    FileUtils.deleteDirectory(base.toFile());
-                }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            throw ProsperoLogger.ROOT_LOGGER.unableToParseConfiguration(base.resolve(fileName), e);
+        }
+    }
+
+    private RevCommit resolveCommit(RevWalk revWalk, SavedState savedState) throws IOException, MetadataException {
+        final ObjectId commitId = git.getRepository().resolve(savedState.getName());
+        if (commitId == null) {
+            throw ProsperoLogger.ROOT_LOGGER.unableToAccessHistoryStorage(base,
+                    new IOException("Unable to find revision " + savedState.getName()));
+        }
+        return revWalk.parseCommit(commitId);
+    }
+
+    /*
+     * returns null if the file was not recorded in the revision
+     */
+    private static ObjectId findBlob(Repository repository, RevCommit revCommit, String fileName) throws IOException {
+        try (TreeWalk treeWalk = TreeWalk.forPath(repository, fileName, revCommit.getTree())) {
+            return treeWalk == null ? null : treeWalk.getObjectId(0);
+        }
+    }
+
+    private String readBlob(ObjectId blobId) throws IOException {
+        if (blobId == null) {
+            return null;
+        }
+        final ObjectLoader loader = git.getRepository().open(blobId, Constants.OBJ_BLOB);
+        return new String(loader.getBytes(), StandardCharsets.UTF_8);
+    }
+
+    private <T> ChangesReader<T> parse(Parser<T> parser) {
+        return (changed, base) -> parser.parse(readBlob(changed), readBlob(base));
+    }
+
+    private ChannelManifest parseManifest(String content) throws MetadataException {
+        try {
+            return ChannelManifestMapper.fromString(content);
+        } catch (InvalidChannelMetadataException e) {
+            throw ProsperoLogger.ROOT_LOGGER.unableToParseConfiguration(base.resolve(ProsperoMetadataUtils.MANIFEST_FILE_NAME), e.getCause());
+        }
+    }
+
+    private List<Channel> parseChannels(String content) throws MetadataException {
+        if (content == null || content.isBlank()) {
+            return Collections.emptyList();
+        }
+        try {
+            return ChannelMapper.fromString(content.trim());
+        } catch (InvalidChannelMetadataException e) {
+            throw ProsperoLogger.ROOT_LOGGER.unableToParseConfiguration(base.resolve(ProsperoMetadataUtils.INSTALLER_CHANNELS_FILE_NAME), e.getCause());
         }
     }
 
@@ -395,23 +635,19 @@ public class GitStorage implements AutoCloseable {
         return !isRepositoryEmpty(git);
     }
 
-    private Path checkoutPastState(SavedState savedState, String fileName) throws GitAPIException, IOException {
-        Path hist = Files.createTempDirectory("hist");
-        try (Git temp =  Git.cloneRepository()
-                    .setDirectory(hist.toFile())
-                    .setRemote("origin")
-                    .setURI(base.toUri().toString())
-                    .call()) {
-            temp.checkout()
-                    .setStartPoint(savedState.getName())
-                    .addPath(fileName)
-                    .call();
-            return hist;
-        }
+    /*
+     * parses the content of a recorded file in a revision ({@code changed}) and its parent revision ({@code base}).
+     * The content is {@code null} if the file was not recorded in the revision.
+     */
+    interface Parser<T> {
+        List<T> parse(String changed, String base) throws IOException, MetadataException;
     }
 
-    interface Parser<T> {
-        List<T> parse(Path changedPath, Path basePath) throws IOException, MetadataException;
+    /*
+     * compares objects recorded for a file in two revisions. The object id is {@code null} if the file was not recorded.
+     */
+    private interface ChangesReader<T> {
+        List<T> read(ObjectId changed, ObjectId base) throws IOException, MetadataException;
     }
 
 }
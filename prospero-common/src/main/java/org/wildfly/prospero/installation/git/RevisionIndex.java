@@ -0,0 +1,191 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.installation.git;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Append-only index of the commits in the history repository.
+ *
+ * Each line records a commit, oldest first, as {@code <commit id> <commit time in seconds> <short message>}. The last line
+ * always describes the commit the index is up-to-date with, so that changes made outside of {@link GitStorage}
+ * can be detected. The file is read from the end, so finding the latest records doesn't depend on the size of the history.
+ */
+class RevisionIndex {
+
+    static final String INDEX_FILE_NAME = "prospero-revisions";
+    private static final int CHUNK_SIZE = 8192;
+    private static final byte NEW_LINE = '\n';
+
+    private final Path indexFile;
+
+    RevisionIndex(Path indexFile) {
+        this.indexFile = indexFile;
+    }
+
+    static class Entry {
+        private final String commitId;
+        private final long commitTime;
+        private final String shortMessage;
+
+        Entry(String commitId, long commitTime, String shortMessage) {
+            this.commitId = commitId;
+            this.commitTime = commitTime;
+            // the index is line based, the message cannot contain line breaks
+            this.shortMessage = shortMessage.replace('\n', ' ').replace('\r', ' ').trim();
+        }
+
+        String getCommitId() {
+            return commitId;
+        }
+
+        long getCommitTime() {
+            return commitTime;
+        }
+
+        String getShortMessage() {
+            return shortMessage;
+        }
+
+        private String asString() {
+            return commitId + " " + commitTime + " " + shortMessage;
+        }
+
+        private static Entry parse(String line) throws IOException {
+            final String[] parts = line.split(" ", 3);
+            if (parts.length < 2) {
+                throw new IOException("Invalid revision index record: " + line);
+            }
+            try {
+                return new Entry(parts[0], Long.parseLong(parts[1]), parts.length == 3 ? parts[2] : "");
+            } catch (NumberFormatException e) {
+                throw new IOException("Invalid revision index record: " + line, e);
+            }
+        }
+    }
+
+    interface EntryVisitor {
+        /**
+         * @return {@code false} if no more entries should be visited
+         */
+        boolean visit(Entry entry) throws IOException;
+    }
+
+    /**
+     * @return the id of the latest indexed commit, or empty if the index doesn't exist
+     */
+    Optional<String> getHeadId() throws IOException {
+        final Entry[] head = new Entry[1];
+        visitFromLatest(entry -> {
+            head[0] = entry;
+            return false;
+        });
+        return head[0] == null ? Optional.empty() : Optional.of(head[0].getCommitId());
+    }
+
+    /**
+     * appends {@code entries}, ordered from the oldest, to the index.
+     */
+    void append(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        Files.writeString(indexFile, toText(entries), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * replaces the content of the index with {@code entries}, ordered from the oldest.
+     */
+    void rewrite(List<Entry> entries) throws IOException {
+        final Path tempFile = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        Files.writeString(tempFile, toText(entries), StandardCharsets.UTF_8);
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * visits the indexed entries starting with the latest one, until {@code visitor} returns {@code false}.
+     */
+    void visitFromLatest(EntryVisitor visitor) throws IOException {
+        if (!Files.exists(indexFile)) {
+            return;
+        }
+        try (RandomAccessFile file = new RandomAccessFile(indexFile.toFile(), "r")) {
+            long position = file.length();
+            // bytes of the line that started in the previous (earlier in the file) chunk
+            byte[] pending = new byte[0];
+            while (position > 0) {
+                final int size = (int) Math.min(CHUNK_SIZE, position);
+                position -= size;
+                final byte[] data = new byte[size + pending.length];
+                file.seek(position);
+                file.readFully(data, 0, size);
+                System.arraycopy(pending, 0, data, size, pending.length);
+
+                int end = data.length;
+                for (int i = data.length - 1; i >= 0; i--) {
+                    if (data[i] == NEW_LINE) {
+                        if (!visitLine(data, i + 1, end, visitor)) {
+                            return;
+                        }
+                        end = i;
+                    }
+                }
+                pending = Arrays.copyOf(data, end);
+            }
+            visitLine(pending, 0, pending.length, visitor);
+        }
+    }
+
+    /**
+     * lists all entries, latest first.
+     */
+    List<Entry> readAll() throws IOException {
+        final List<Entry> entries = new ArrayList<>();
+        visitFromLatest(entry -> entries.add(entry));
+        return entries;
+    }
+
+    private static boolean visitLine(byte[] data, int start, int end, EntryVisitor visitor) throws IOException {
+        if (end <= start) {
+            return true;
+        }
+        final String line = new String(data, start, end - start, StandardCharsets.UTF_8);
+        if (line.isBlank()) {
+            return true;
+        }
+        return visitor.visit(Entry.parse(line));
+    }
+
+    private static String toText(List<Entry> entries) {
+        final StringBuilder sb = new StringBuilder();
+        for (Entry entry : entries) {
+            sb.append(entry.asString()).append('\n');
+        }
+        return sb.toString();
+    }
+}
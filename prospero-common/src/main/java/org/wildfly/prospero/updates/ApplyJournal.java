@@ -0,0 +1,415 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.updates;
+
+import org.jboss.galleon.util.IoUtils;
+import org.wildfly.prospero.ProsperoLogger;
+import org.wildfly.prospero.api.SavedState;
+import org.wildfly.prospero.api.exceptions.MetadataException;
+import org.wildfly.prospero.installation.git.GitStorage;
+import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Write-ahead journal of the changes made in the installation while a candidate is applied.
+ *
+ * Before an installation file is overwritten or deleted, it is moved into the {@code backup} directory of the journal.
+ * Before a new file or directory is created, its path is recorded in the journal file and the record is flushed to
+ * the disk. The files planned by an operation can be recorded together, with a single flush, see
+ * {@link #record(Collection)}. Once the operation is finished, a commit record is written and the journal is discarded.
+ *
+ * If the operation is interrupted, the journal is left in the installation and {@link #recover(Path)} either rolls the
+ * changes back, restoring the backed up files and removing the created ones, or, if the operation was committed, rolls
+ * it forward by discarding the journal. The revision of the installation history is recorded when the operation begins
+ * and the history is reset to it when the operation is rolled back, so that it doesn't keep a state that was not applied. The journal file is locked while the operation is running, so that a journal
+ * of an operation running in another process is not recovered.
+ */
+public class ApplyJournal implements Closeable {
+
+    public static final Path JOURNAL_DIR = Path.of(ProsperoMetadataUtils.METADATA_DIR, ".apply-journal");
+    static final String JOURNAL_FILE = "journal";
+    static final String BACKUP_DIR = "backup";
+    private static final String BEGIN = "BEGIN";
+    private static final String CREATE = "CREATE";
+    private static final String COMMIT = "COMMIT";
+    private static final String SEPARATOR = "\t";
+    // journals of the operations running in this JVM. Closing any channel of a locked file can release the lock held
+    // by the JVM, so these journals are not opened by the recovery at all
+    private static final Set<Path> RUNNING = ConcurrentHashMap.newKeySet();
+
+    private final Path installationDir;
+    private final Path journalDir;
+    private final Path backupDir;
+    private final FileChannel journal;
+    private final FileLock lock;
+    // paths created or backed up by this operation, only the changes are tracked
+    private final Set<Path> created = new HashSet<>();
+    private final Set<Path> backedUp = new HashSet<>();
+
+    private ApplyJournal(Path installationDir) throws IOException {
+        this.installationDir = installationDir;
+        this.journalDir = installationDir.toAbsolutePath().normalize().resolve(JOURNAL_DIR);
+        this.backupDir = journalDir.resolve(BACKUP_DIR);
+        Files.createDirectories(backupDir);
+        this.journal = FileChannel.open(journalDir.resolve(JOURNAL_FILE), StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.lock = journal.lock();
+        RUNNING.add(journalDir);
+    }
+
+    /**
+     * starts a journal of a new operation. Any interrupted operation is recovered first.
+     *
+     * @param installationDir - installation being modified
+     * @param operation - name of the operation, recorded for diagnostics
+     * @return the journal of the operation
+     * @throws IOException if unable to recover the previous operation or to create the journal
+     */
+    public static ApplyJournal begin(Path installationDir, String operation) throws IOException {
+        return begin(installationDir, operation, null);
+    }
+
+    /**
+     * starts a journal of a new operation. Any interrupted operation is recovered first.
+     *
+     * @param installationDir - installation being modified
+     * @param operation - name of the operation, recorded for diagnostics
+     * @param historyRevision - latest revision of the installation history, the history is reset to it if the operation
+     *                        is rolled back. Can be {@code null} if the installation has no history.
+     * @return the journal of the operation
+     * @throws IOException if unable to recover the previous operation or to create the journal
+     */
+    public static ApplyJournal begin(Path installationDir, String operation, String historyRevision) throws IOException {
+        recover(installationDir);
+        final ApplyJournal journal = new ApplyJournal(installationDir);
+        journal.append(List.of(BEGIN + SEPARATOR + operation + (historyRevision == null ? "" : SEPARATOR + historyRevision)));
+        return journal;
+    }
+
+    /**
+     * @return {@code true} if the installation contains a journal of an interrupted operation
+     */
+    public static boolean exists(Path installationDir) {
+        return Files.exists(installationDir.resolve(JOURNAL_DIR));
+    }
+
+    /**
+     * records the installation files at {@code relativePaths} that are going to be written. The highest parent
+     * directory of each file that doesn't exist yet is recorded as created. All the records are flushed to the disk
+     * together, so recording the files planned by an operation before writing them avoids flushing the journal for
+     * every file. The existing files are backed up by {@link #beforeWrite(Path)}.
+     *
+     * @param relativePaths - paths relative to the installation root
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void record(Collection<Path> relativePaths) throws IOException {
+        final List<String> records = new ArrayList<>();
+        for (Path relativePath : relativePaths) {
+            recordCreated(relativePath, records);
+        }
+        append(records);
+    }
+
+    /**
+     * records that the installation file at {@code relativePath} is going to be written. An existing file is moved to
+     * the backup, otherwise the highest parent directory that doesn't exist yet is recorded as created.
+     *
+     * Unless the file has been already written by this operation, it doesn't exist after the method returns. The
+     * journal is locked only while the records are written, the file is backed up outside the lock, so different files
+     * can be backed up concurrently.
+     *
+     * @param relativePath - path relative to the installation root
+     * @throws IOException if the record cannot be written or the file cannot be backed up
+     */
+    public void beforeWrite(Path relativePath) throws IOException {
+        final boolean backUp;
+        synchronized (this) {
+            final List<String> records = new ArrayList<>();
+            if (recordCreated(relativePath, records)) {
+                append(records);
+                return;
+            }
+            backUp = backedUp.add(relativePath);
+            if (backUp && Files.isDirectory(installationDir.resolve(relativePath), LinkOption.NOFOLLOW_LINKS)) {
+                // the directory written in place of the backed up one has to be removed before it is restored
+                records.add(CREATE + SEPARATOR + toRecord(relativePath));
+                created.add(relativePath);
+            }
+            append(records);
+        }
+
+        if (backUp) {
+            final Path backup = backupDir.resolve(relativePath.toString());
+            Files.createDirectories(backup.getParent());
+            Files.move(installationDir.resolve(relativePath), backup, StandardCopyOption.ATOMIC_MOVE);
+        } else {
+            // the original has been backed up already, the current file was written by this operation
+            IoUtils.recursiveDelete(installationDir.resolve(relativePath));
+        }
+    }
+
+    /*
+     * adds a CREATE record of the highest parent of relativePath that doesn't exist yet. Has to be called holding the
+     * lock of the journal.
+     *
+     * returns true if the path is created by this operation, false if it exists already and has to be backed up
+     */
+    private boolean recordCreated(Path relativePath, List<String> records) {
+        Path path = null;
+        for (Path segment : relativePath) {
+            path = path == null ? segment : path.resolve(segment);
+            if (created.contains(path)) {
+                // the file is within a directory created by this operation
+                return true;
+            }
+            if (!Files.exists(installationDir.resolve(path), LinkOption.NOFOLLOW_LINKS)) {
+                records.add(CREATE + SEPARATOR + toRecord(path));
+                created.add(path);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * removes the installation file or empty directory at {@code relativePath}, keeping a backup if needed.
+     *
+     * @param relativePath - path relative to the installation root
+     * @throws IOException if the file cannot be backed up or deleted
+     */
+    public void delete(Path relativePath) throws IOException {
+        final Path path = installationDir.resolve(relativePath);
+        if (Files.isDirectory(path)) {
+            // files of the directory might have been backed up already, only an empty directory is needed to restore it
+            Files.createDirectories(backupDir.resolve(relativePath.toString()));
+            Files.delete(path);
+        } else {
+            beforeWrite(relativePath);
+            IoUtils.recursiveDelete(path);
+        }
+    }
+
+    /**
+     * marks the operation as completed and discards the journal. The backed up files are removed.
+     *
+     * @throws IOException if the commit record cannot be written
+     */
+    public synchronized void commit() throws IOException {
+        append(List.of(COMMIT));
+        close();
+        IoUtils.recursiveDelete(journalDir);
+    }
+
+    /**
+     * reverts the changes made by the operation and discards the journal. Used when the operation fails in this process,
+     * so that the installation is not left partially modified until the next recovery.
+     *
+     * @throws IOException if unable to restore the installation. The journal is kept and the installation is recovered
+     *                     the next time it is used.
+     */
+    public synchronized void rollback() throws IOException {
+        if (!journal.isOpen()) {
+            throw new IllegalStateException("The journal of " + installationDir + " has been closed already");
+        }
+        final List<String> records = readRecords(journal);
+        if (records.contains(COMMIT)) {
+            // the commit record was written, only the removal of the journal failed
+            ProsperoLogger.ROOT_LOGGER.rollingForwardInterruptedApply(installationDir);
+        } else {
+            ProsperoLogger.ROOT_LOGGER.rollingBackFailedApply(installationDir);
+            rollBack(installationDir, journalDir, records);
+            resetHistory(installationDir, records);
+        }
+        close();
+        IoUtils.recursiveDelete(journalDir);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (journal.isOpen()) {
+            RUNNING.remove(journalDir);
+            lock.release();
+            journal.close();
+        }
+    }
+
+    /**
+     * recovers an operation interrupted in the {@code installationDir}. If the operation was committed, the journal is
+     * discarded, otherwise all the changes recorded in the journal are reverted.
+     *
+     * @return {@code true} if an interrupted operation was found
+     * @throws IOException if unable to restore the installation
+     */
+    public static boolean recover(Path installationDir) throws IOException {
+        final Path journalDir = installationDir.toAbsolutePath().normalize().resolve(JOURNAL_DIR);
+        final Path journalFile = journalDir.resolve(JOURNAL_FILE);
+        if (!Files.exists(journalDir) || RUNNING.contains(journalDir)) {
+            return false;
+        }
+
+        if (Files.exists(journalFile)) {
+            try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                final FileLock recoveryLock = channel.tryLock();
+                if (recoveryLock == null) {
+                    // the operation is still running in another process
+                    return false;
+                }
+                try {
+                    recover(installationDir, journalDir, readRecords(channel));
+                } finally {
+                    recoveryLock.release();
+                }
+            }
+        } else {
+            // interrupted before the journal file was created, nothing has been changed yet
+            recover(installationDir, journalDir, Collections.emptyList());
+        }
+        IoUtils.recursiveDelete(journalDir);
+        return true;
+    }
+
+    private static void recover(Path installationDir, Path journalDir, List<String> records) throws IOException {
+        if (records.contains(COMMIT)) {
+            ProsperoLogger.ROOT_LOGGER.rollingForwardInterruptedApply(installationDir);
+        } else {
+            ProsperoLogger.ROOT_LOGGER.rollingBackInterruptedApply(installationDir);
+            rollBack(installationDir, journalDir, records);
+            resetHistory(installationDir, records);
+        }
+    }
+
+    /*
+     * the history might have been recorded before the operation was interrupted. The metadata files have been restored
+     * already, only the history needs to be moved back to the revision recorded at the beginning of the operation.
+     */
+    private static void resetHistory(Path installationDir, List<String> records) throws IOException {
+        if (records.isEmpty() || !records.get(0).startsWith(BEGIN + SEPARATOR)) {
+            return;
+        }
+        final String[] begin = records.get(0).split(SEPARATOR);
+        if (begin.length < 3) {
+            return;
+        }
+        try (GitStorage git = new GitStorage(installationDir)) {
+            final Optional<SavedState> latest = git.getLatestRevision();
+            if (latest.isPresent() && !latest.get().getName().equals(begin[2])) {
+                git.resetTo(begin[2]);
+            }
+        } catch (MetadataException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private static void rollBack(Path installationDir, Path journalDir, List<String> records) throws IOException {
+        final List<Path> createdPaths = new ArrayList<>();
+        for (String record : records) {
+            if (record.startsWith(CREATE + SEPARATOR)) {
+                createdPaths.add(fromRecord(record.substring(CREATE.length() + SEPARATOR.length())));
+            }
+        }
+        Collections.reverse(createdPaths);
+        for (Path createdPath : createdPaths) {
+            IoUtils.recursiveDelete(installationDir.resolve(createdPath.toString()));
+        }
+
+        final Path backupDir = journalDir.resolve(BACKUP_DIR);
+        if (!Files.exists(backupDir)) {
+            return;
+        }
+        Files.walkFileTree(backupDir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(installationDir.resolve(backupDir.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                final Path target = installationDir.resolve(backupDir.relativize(file).toString());
+                Files.move(file, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static List<String> readRecords(FileChannel channel) throws IOException {
+        // the records are read through the locked channel, other handles might not be able to read a locked file
+        final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        int read = 0;
+        while (buffer.hasRemaining() && read >= 0) {
+            read = channel.read(buffer, buffer.position());
+        }
+        // the last record might be incomplete if the process was killed while writing it
+        final String content = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        final List<String> records = new ArrayList<>();
+        int start = 0;
+        int end;
+        while ((end = content.indexOf('\n', start)) >= 0) {
+            records.add(content.substring(start, end));
+            start = end + 1;
+        }
+        return records;
+    }
+
+    private void append(List<String> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        final StringBuilder content = new StringBuilder();
+        for (String record : records) {
+            content.append(record).append('\n');
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(content.toString().getBytes(StandardCharsets.UTF_8));
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        // the records have to be persisted before the changes they describe
+        journal.force(false);
+    }
+
+    private static String toRecord(Path relativePath) {
+        return relativePath.toString().replace(File.separatorChar, '/');
+    }
+
+    private static Path fromRecord(String record) {
+        return Path.of(record.replace('/', File.separatorChar));
+    }
+}
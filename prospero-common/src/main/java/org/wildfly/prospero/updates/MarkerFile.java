@@ -17,6 +17,10 @@
 
 package org.wildfly.prospero.updates;
 
+import org.jboss.galleon.Constants;
+import org.jboss.galleon.util.HashUtils;
+import org.wildfly.channel.ChannelManifest;
+import org.wildfly.channel.ChannelManifestMapper;
 import org.wildfly.prospero.ProsperoLogger;
 import org.wildfly.prospero.actions.ApplyCandidateAction;
 import org.wildfly.prospero.api.exceptions.MetadataException;
@@ -25,20 +29,36 @@ import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Objects;
 import java.util.Properties;
 
+/**
+ * Identifies the installation state a candidate was prepared from.
+ *
+ * The {@code state} is the revision of the installation the candidate was built from and ties the candidate to that
+ * installation. The {@code installation-state} is a hash of the installed manifest and the Galleon provisioning
+ * configuration, which is the same for all installations provisioned with the same content. A candidate with the
+ * installation state can be applied to any installation in the same state, see {@link #installationState(Path, ChannelManifest)}.
+ */
 public class MarkerFile {
     public static final Path UPDATE_MARKER_FILE = Path.of(ProsperoMetadataUtils.METADATA_DIR, ".candidate.txt");
     private static final String STATE_PROPERTY = "state";
     private static final String OPERATION_PROPERTY = "operation";
+    private static final String INSTALLATION_STATE_PROPERTY = "installation-state";
     private final String state;
     private final ApplyCandidateAction.Type operation;
+    private final String installationState;
 
     public MarkerFile(String state, ApplyCandidateAction.Type operation) {
+        this(state, operation, null);
+    }
+
+    public MarkerFile(String state, ApplyCandidateAction.Type operation, String installationState) {
         this.state = state;
         this.operation = operation;
+        this.installationState = installationState;
     }
 
     public String getState() {
@@ -49,6 +69,30 @@ public class MarkerFile {
         return operation;
     }
 
+    /**
+     * @return hash of the installed manifest and provisioning configuration, or {@code null} if the candidate was
+     * prepared without it
+     */
+    public String getInstallationState() {
+        return installationState;
+    }
+
+    /**
+     * calculates the hash identifying the content of the installation at {@code serverPath}. The installations with
+     * the same installed {@code manifest} and Galleon provisioning configuration have the same hash.
+     *
+     * @param serverPath - root of the installation
+     * @param manifest - manifest installed in the installation
+     * @return hex-encoded hash of the installation state
+     * @throws IOException if unable to read the provisioning configuration
+     */
+    public static String installationState(Path serverPath, ChannelManifest manifest) throws IOException {
+        final Path provisioningXml = serverPath.resolve(Constants.PROVISIONED_STATE_DIR).resolve(Constants.PROVISIONING_XML);
+        // the line separators depend on the platform the installation was provisioned on
+        final String content = ChannelManifestMapper.toYaml(manifest) + "\n" + Files.readString(provisioningXml);
+        return HashUtils.hash(content.replace("\r\n", "\n"));
+    }
+
     public static MarkerFile read(Path serverPath) throws IOException, MetadataException {
         final Properties properties = new Properties();
         try (FileInputStream fis = new FileInputStream(serverPath.resolve(UPDATE_MARKER_FILE).toFile())) {
@@ -58,7 +102,8 @@ public class MarkerFile {
         final String stateValue = getProperty(properties, STATE_PROPERTY, serverPath);
 
         final ApplyCandidateAction.Type type = ApplyCandidateAction.Type.from(operationValue);
-        return new MarkerFile(stateValue, type);
+        // candidates prepared by older versions don't record the installation state
+        return new MarkerFile(stateValue, type, properties.getProperty(INSTALLATION_STATE_PROPERTY));
     }
 
     private static String getProperty(Properties properties, String operationProperty, Path serverPath) throws MetadataException {
@@ -73,6 +118,9 @@ public class MarkerFile {
         final Properties properties = new Properties();
         properties.setProperty(STATE_PROPERTY, state);
         properties.setProperty(OPERATION_PROPERTY, operation.getText());
+        if (installationState != null) {
+            properties.setProperty(INSTALLATION_STATE_PROPERTY, installationState);
+        }
         try (FileOutputStream fos = new FileOutputStream(targetPath.resolve(UPDATE_MARKER_FILE).toFile())) {
             properties.store(fos, null);
         }
@@ -83,12 +131,13 @@ public class MarkerFile {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         MarkerFile that = (MarkerFile) o;
-        return Objects.equals(state, that.state) && Objects.equals(operation, that.operation);
+        return Objects.equals(state, that.state) && Objects.equals(operation, that.operation)
+                && Objects.equals(installationState, that.installationState);
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(state, operation);
+        return Objects.hash(state, operation, installationState);
     }
 
     @Override
@@ -96,6 +145,7 @@ public class MarkerFile {
         return "MarkerFile{" +
                 "state='" + state + '\'' +
                 ", operation='" + operation + '\'' +
+                ", installationState='" + installationState + '\'' +
                 '}';
     }
 
@@ -19,51 +19,184 @@ package org.wildfly.prospero.updates;
 
 import org.eclipse.aether.artifact.Artifact;
 import org.eclipse.aether.artifact.DefaultArtifact;
+import org.wildfly.channel.ChannelManifest;
 import org.wildfly.channel.ChannelSession;
+import org.wildfly.channel.Stream;
 import org.wildfly.channel.UnresolvedMavenArtifactException;
+import org.wildfly.channel.VersionResult;
+import org.wildfly.channel.version.VersionMatcher;
 import org.wildfly.prospero.api.ArtifactChange;
 import org.wildfly.prospero.api.exceptions.ArtifactResolutionException;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.stream.Collectors;
 
+/**
+ * Finds the latest versions of installed artifacts available in the channels.
+ *
+ * If the manifests of the channels are provided, artifacts pinned to a version by the manifest of every channel are
+ * answered from the manifests without querying the channel session.
+ *
+ * The lookups are performed in parallel using either a private thread pool or an {@code Executor} provided by the caller.
+ * Each distinct artifact (groupId, artifactId, extension and classifier) is looked up once in its own task, and at most
+ * {@code parallelism} lookups are submitted at the same time. Each lookup queries all the repositories defined in the channels, so this also limits
+ * the number of concurrent requests sent to each repository. If any lookup fails, the remaining artifacts are not queried.
+ */
 public class UpdateFinder implements AutoCloseable {
 
     public static final int UPDATES_SEARCH_PARALLELISM = 10;
 
     private final ChannelSession channelSession;
-    private final ExecutorService executorService;
+    private final Executor executor;
+    private final ExecutorService ownedExecutor;
+    private final int parallelism;
+    private final Map<String, String> pinnedVersions;
 
     public UpdateFinder(ChannelSession channelSession) {
+        this(channelSession, UPDATES_SEARCH_PARALLELISM);
+    }
+
+    /**
+     * @param channelSession - session used to resolve the latest versions
+     * @param parallelism - maximum number of concurrent lookups
+     */
+    public UpdateFinder(ChannelSession channelSession, int parallelism) {
+        this(channelSession, Collections.emptyList(), Executors.newWorkStealingPool(parallelism), parallelism, true);
+    }
+
+    /**
+     * @param channelSession - session used to resolve the latest versions
+     * @param manifests - manifests of all the channels in the {@code channelSession}, or empty list if not known
+     * @param parallelism - maximum number of concurrent lookups
+     */
+    public UpdateFinder(ChannelSession channelSession, List<ChannelManifest> manifests, int parallelism) {
+        this(channelSession, manifests, Executors.newWorkStealingPool(parallelism), parallelism, true);
+    }
+
+    /**
+     * creates a finder using a shared {@code executor}. The {@code executor} is not shut down when the finder is closed.
+     *
+     * @param channelSession - session used to resolve the latest versions
+     * @param executor - executor used to run the lookups
+     * @param parallelism - maximum number of concurrent lookups submitted to the {@code executor}
+     */
+    public UpdateFinder(ChannelSession channelSession, Executor executor, int parallelism) {
+        this(channelSession, Collections.emptyList(), executor, parallelism, false);
+    }
+
+    private UpdateFinder(ChannelSession channelSession, List<ChannelManifest> manifests, Executor executor,
+                         int parallelism, boolean owned) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism has to be a positive number: " + parallelism);
+        }
         this.channelSession = channelSession;
-        this.executorService = Executors.newWorkStealingPool(UPDATES_SEARCH_PARALLELISM);
+        this.executor = executor;
+        this.ownedExecutor = owned ? (ExecutorService) executor : null;
+        this.parallelism = parallelism;
+        this.pinnedVersions = findPinnedVersions(manifests);
+    }
+
+    /**
+     * finds the streams that have a fixed version in every manifest. The latest version of those streams is the highest
+     * pinned version and doesn't require any repository metadata. Streams missing from any of the manifests are not
+     * included, as they might be provided by required manifests or the channel's no-stream strategy.
+     */
+    private static Map<String, String> findPinnedVersions(List<ChannelManifest> manifests) {
+        if (manifests.isEmpty()) {
+            return Collections.emptyMap();
+        }
+
+        final Map<String, Set<String>> versions = new HashMap<>();
+        final Map<String, Integer> occurrences = new HashMap<>();
+        for (ChannelManifest manifest : manifests) {
+            final Map<String, String> manifestVersions = new HashMap<>();
+            for (Stream stream : manifest.getStreams()) {
+                if (stream.getVersion() != null && !"*".equals(stream.getGroupId()) && !"*".equals(stream.getArtifactId())) {
+                    // only the first matching stream is used by the channel
+                    manifestVersions.putIfAbsent(stream.getGroupId() + ":" + stream.getArtifactId(), stream.getVersion());
+                }
+            }
+            manifestVersions.forEach((ga, version) -> {
+                versions.computeIfAbsent(ga, k -> new HashSet<>()).add(version);
+                occurrences.merge(ga, 1, Integer::sum);
+            });
+        }
+
+        final Map<String, String> pinned = new HashMap<>();
+        occurrences.forEach((ga, count) -> {
+            if (count == manifests.size()) {
+                VersionMatcher.getLatestVersion(versions.get(ga)).ifPresent(v -> pinned.put(ga, v));
+            }
+        });
+        return pinned;
+    }
+
+    public int getParallelism() {
+        return parallelism;
     }
 
     public UpdateSet findUpdates(List<Artifact> artifacts) throws ArtifactResolutionException {
+        final ArtifactChange[] changes = new ArtifactChange[artifacts.size()];
+        // the latest version doesn't depend on the installed version, so artifacts that differ only in the version are
+        // looked up once. Each lookup is a separate task, so that large groups don't serialize their lookups
+        final Map<String, List<Integer>> lookups = new LinkedHashMap<>();
+        for (int i = 0; i < artifacts.size(); i++) {
+            final Artifact artifact = artifacts.get(i);
+            final String pinnedVersion = pinnedVersions.get(artifact.getGroupId() + ":" + artifact.getArtifactId());
+            if (pinnedVersion != null) {
+                changes[i] = toChange(artifact, pinnedVersion).orElse(null);
+            } else {
+                final String key = artifact.getGroupId() + ":" + artifact.getArtifactId() + ":" + artifact.getExtension()
+                        + ":" + artifact.getClassifier();
+                lookups.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+            }
+        }
+
         // use parallel executor to speed up the artifact resolution
-        List<CompletableFuture<Optional<ArtifactChange>>> allPackages = new ArrayList<>();
-        for (Artifact artifact : artifacts) {
-            final CompletableFuture<Optional<ArtifactChange>> cf = new CompletableFuture<>();
-            executorService.submit(() -> {
+        final Semaphore permits = new Semaphore(parallelism);
+        final CompletableFuture<Void> failed = new CompletableFuture<>();
+        final List<CompletableFuture<Void>> allLookups = new ArrayList<>();
+        for (List<Integer> lookup : lookups.values()) {
+            // don't queue more lookups than can be executed at the same time
+            permits.acquireUninterruptibly();
+            if (failed.isDone()) {
+                permits.release();
+                break;
+            }
+
+            allLookups.add(CompletableFuture.runAsync(() -> {
                 try {
-                    final Optional<ArtifactChange> found = findUpdates(artifact);
-                    cf.complete(found);
+                    findUpdates(artifacts, lookup, changes, failed);
                 } catch (Exception e) {
-                    cf.completeExceptionally(e);
+                    failed.completeExceptionally(e);
+                    throw new CompletionException(e);
+                } finally {
+                    permits.release();
                 }
-            });
-            allPackages.add(cf);
+            }, executor));
         }
 
         try {
-            CompletableFuture.allOf(allPackages.toArray(new CompletableFuture[]{})).join();
+            // return as soon as any of the lookups fails
+            CompletableFuture.anyOf(failed, CompletableFuture.allOf(allLookups.toArray(new CompletableFuture[]{}))).join();
         } catch (CompletionException e) {
+            allLookups.forEach(cf -> cf.cancel(false));
             if (e.getCause() instanceof ArtifactResolutionException) {
                 throw (ArtifactResolutionException) e.getCause();
             } else {
@@ -71,36 +204,58 @@ public class UpdateFinder implements AutoCloseable {
             }
         }
 
-        final List<ArtifactChange> updates = allPackages.stream()
-                .map(cf ->cf.getNow(Optional.empty()))
-                .flatMap(Optional::stream)
+        final List<ArtifactChange> updates = Arrays.stream(changes)
+                .filter(Objects::nonNull)
                 .collect(Collectors.toList());
 
         return new UpdateSet(updates);
     }
 
-    private Optional<ArtifactChange> findUpdates(Artifact artifact) throws ArtifactResolutionException {
+    /**
+     * looks up the latest version of the artifacts at {@code indexes}, which differ only in their installed versions.
+     */
+    private void findUpdates(List<Artifact> artifacts, List<Integer> indexes, ArtifactChange[] changes,
+                             CompletableFuture<Void> failed) throws ArtifactResolutionException {
+        if (failed.isDone()) {
+            return;
+        }
+        final Optional<VersionResult> latestVersion = findLatestVersion(artifacts.get(indexes.get(0)));
+        for (int i : indexes) {
+            final Artifact artifact = artifacts.get(i);
+            if (latestVersion.isEmpty()) {
+                changes[i] = ArtifactChange.removed(artifact);
+            } else {
+                changes[i] = toChange(artifact, latestVersion.get().getVersion()).orElse(null);
+            }
+        }
+    }
 
-        final String latestVersion;
+    /**
+     * @return the latest version available in the channels, or empty if the artifact is no longer provided by the channels
+     */
+    private Optional<VersionResult> findLatestVersion(Artifact artifact) throws ArtifactResolutionException {
         try {
-            latestVersion = channelSession.findLatestMavenArtifactVersion(artifact.getGroupId(),
-                    artifact.getArtifactId(), artifact.getExtension(), artifact.getClassifier(), null)
-                    .getVersion();
+            return Optional.of(channelSession.findLatestMavenArtifactVersion(artifact.getGroupId(),
+                    artifact.getArtifactId(), artifact.getExtension(), artifact.getClassifier(), null));
         } catch (UnresolvedMavenArtifactException e) {
-            return Optional.of(ArtifactChange.removed(artifact));
+            return Optional.empty();
         }
-        final Artifact latest = new DefaultArtifact(artifact.getGroupId(), artifact.getArtifactId(), artifact.getExtension(), latestVersion);
+    }
 
-        if (latestVersion == null || latest.getVersion().equals(artifact.getVersion())) {
+    private static Optional<ArtifactChange> toChange(Artifact artifact, String version) {
+        if (version == null || version.equals(artifact.getVersion())) {
             return Optional.empty();
         } else {
+            final Artifact latest = new DefaultArtifact(artifact.getGroupId(), artifact.getArtifactId(), artifact.getExtension(), version);
             return Optional.of(ArtifactChange.updated(artifact, latest));
         }
     }
 
     @Override
     public void close() {
-        this.executorService.shutdown();
+        if (ownedExecutor != null) {
+            ownedExecutor.shutdown();
+        }
     }
 
 }
@@ -0,0 +1,249 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.utils;
+
+import org.jboss.galleon.util.HashUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributeView;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.EnumSet;
+import java.util.Locale;
+
+/**
+ * File hashing and copying based on {@link FileChannel}s.
+ *
+ * Files larger than {@link #MAP_THRESHOLD} are hashed through memory mapped buffers, smaller files are read into a
+ * direct buffer reused by the calling thread. Files are copied with {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}, so that the content doesn't have to pass through the heap.
+ *
+ * The hashes are SHA-1 digests of the file content, the same as calculated by Galleon's {@link HashUtils}.
+ * Directories are hashed using {@link HashUtils#hashPath(Path)}.
+ */
+public final class NioFileUtils {
+
+    /**
+     * size of files above which the files are memory mapped to be hashed.
+     */
+    public static final long MAP_THRESHOLD = 1024 * 1024;
+    private static final long MAP_CHUNK_SIZE = 64 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String SHA_1 = "SHA-1";
+    // a mapped file cannot be deleted on Windows until the buffer is garbage collected, the installation files are
+    // moved and removed after being hashed
+    private static final boolean MAP_SUPPORTED = !System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+
+    private static final ThreadLocal<ByteBuffer> BUFFERS = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+    private static final ThreadLocal<MessageDigest> DIGESTS = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance(SHA_1);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is not supported", e);
+        }
+    });
+
+    private NioFileUtils() {
+    }
+
+    /**
+     * @return SHA-1 hash of the file, or of the directory tree if {@code path} is a directory
+     * @throws IOException if the file cannot be read
+     */
+    public static byte[] hashPath(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            return HashUtils.hashPath(path);
+        }
+        final MessageDigest digest = digest();
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (MAP_SUPPORTED && size > MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAP_CHUNK_SIZE) {
+                    digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK_SIZE, size - position)));
+                }
+            } else {
+                final ByteBuffer buffer = buffer();
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        return digest.digest();
+    }
+
+    /**
+     * @return SHA-1 hash of the file as a hex string
+     * @throws IOException if the file cannot be read
+     */
+    public static String hashFile(Path file) throws IOException {
+        return HashUtils.bytesToHexString(hashPath(file));
+    }
+
+    /**
+     * copies {@code source} file or directory to {@code target}, replacing existing files. The parent directories of
+     * {@code target} are created if needed.
+     *
+     * @throws IOException if the files cannot be copied
+     */
+    public static void copy(Path source, Path target) throws IOException {
+        copy(source, target, false);
+    }
+
+    /**
+     * copies {@code source} file or directory to {@code target}. The parent directories of {@code target} are created
+     * if needed.
+     *
+     * @param skipExisting - if {@code true}, files already present in the {@code target} are not replaced
+     * @throws IOException if the files cannot be copied
+     */
+    public static void copy(Path source, Path target, boolean skipExisting) throws IOException {
+        if (!Files.isDirectory(source)) {
+            if (!skipExisting || !Files.exists(target, LinkOption.NOFOLLOW_LINKS)) {
+                createParent(target);
+                copyFile(source, target);
+            }
+            return;
+        }
+        Files.walkFileTree(source, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                final Path copy = target.resolve(source.relativize(file).toString());
+                if (!skipExisting || !Files.exists(copy, LinkOption.NOFOLLOW_LINKS)) {
+                    copyFile(file, copy);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    /**
+     * copies {@code source} file to {@code target} like {@link #copy(Path, Path)}, preserving also the last modified
+     * time of the file.
+     *
+     * @throws IOException if the file cannot be copied
+     */
+    public static void copyWithTimestamp(Path source, Path target) throws IOException {
+        copy(source, target);
+        Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+    }
+
+    /**
+     * copies {@code source} file to {@code target}, replacing an existing file, and calculates the SHA-1 hash of the
+     * content while it is copied. The content is read only once.
+     *
+     * @return SHA-1 hash of the copied content as a hex string
+     * @throws IOException if the file cannot be copied
+     */
+    public static String copyAndHash(Path source, Path target) throws IOException {
+        createParent(target);
+        Files.deleteIfExists(target);
+        final MessageDigest digest = digest();
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            final long size = in.size();
+            if (MAP_SUPPORTED && size > MAP_THRESHOLD) {
+                for (long position = 0; position < size; position += MAP_CHUNK_SIZE) {
+                    final MappedByteBuffer chunk = in.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAP_CHUNK_SIZE, size - position));
+                    digest.update(chunk.duplicate());
+                    writeFully(out, chunk);
+                }
+            } else {
+                final ByteBuffer buffer = buffer();
+                while (in.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer.duplicate());
+                    writeFully(out, buffer);
+                    buffer.clear();
+                }
+            }
+        }
+        copyPermissions(source, target);
+        return HashUtils.bytesToHexString(digest.digest());
+    }
+
+    private static void copyFile(Path source, Path target) throws IOException {
+        // the target might be a link to a shared file, it is replaced rather than written through
+        Files.deleteIfExists(target);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            final long size = in.size();
+            long position = 0;
+            while (position < size) {
+                final long transferred = in.transferTo(position, size - position, out);
+                if (transferred <= 0) {
+                    // the file has been truncated while being copied
+                    break;
+                }
+                position += transferred;
+            }
+        }
+        copyPermissions(source, target);
+    }
+
+    private static void copyPermissions(Path source, Path target) throws IOException {
+        final PosixFileAttributeView view = Files.getFileAttributeView(target, PosixFileAttributeView.class);
+        if (view != null) {
+            view.setPermissions(Files.getPosixFilePermissions(source));
+        }
+    }
+
+    private static void writeFully(FileChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+
+    private static void createParent(Path target) throws IOException {
+        final Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+    }
+
+    private static MessageDigest digest() {
+        final MessageDigest digest = DIGESTS.get();
+        // a previous calculation might have failed before the digest was completed
+        digest.reset();
+        return digest;
+    }
+
+    private static ByteBuffer buffer() {
+        final ByteBuffer buffer = BUFFERS.get();
+        buffer.clear();
+        return buffer;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.utils;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs I/O tasks (e.g. hashing or copying files) on a bounded pool of threads.
+ *
+ * The results are always returned in the order of the submitted items, so that callers can process them
+ * deterministically. If any of the tasks fails, the remaining tasks are cancelled and the first failure (in the order
+ * of submitted items) is re-thrown.
+ */
+public class ParallelExecutor implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface IoFunction<T, R> {
+        R apply(T item) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface IoConsumer<T> {
+        void accept(T item) throws IOException;
+    }
+
+    private final int parallelism;
+    private ExecutorService executorService;
+
+    /**
+     * @param parallelism - maximum number of tasks executed concurrently. If {@code 1}, the tasks are executed in the
+     *                    calling thread.
+     */
+    public ParallelExecutor(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism has to be a positive number, was " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * applies {@code function} to all the {@code items}. The {@code function} is applied to every item, including
+     * duplicate items.
+     *
+     * @return results of the {@code function}, the n-th result belongs to the n-th item of {@code items}
+     * @throws IOException - the first exception thrown by the {@code function}
+     */
+    public <T, R> List<R> map(Collection<T> items, IoFunction<T, R> function) throws IOException {
+        final List<R> results = new ArrayList<>(items.size());
+        if (parallelism == 1 || items.size() < 2) {
+            for (T item : items) {
+                results.add(function.apply(item));
+            }
+            return results;
+        }
+
+        final List<Future<R>> futures = new ArrayList<>(items.size());
+        for (T item : items) {
+            futures.add(getExecutorService().submit(() -> function.apply(item)));
+        }
+
+        try {
+            for (Future<R> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for tasks to complete");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        } finally {
+            for (Future<R> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * executes {@code consumer} on all the {@code items}.
+     *
+     * @throws IOException - the first exception thrown by the {@code consumer}
+     */
+    public <T> void forEach(Collection<T> items, IoConsumer<T> consumer) throws IOException {
+        map(items, item -> {
+            consumer.accept(item);
+            return Boolean.TRUE;
+        });
+    }
+
+    private synchronized ExecutorService getExecutorService() {
+        if (executorService == null) {
+            final AtomicInteger counter = new AtomicInteger();
+            executorService = Executors.newFixedThreadPool(parallelism, r -> {
+                final Thread thread = new Thread(r, "prospero-worker-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return executorService;
+    }
+
+    /**
+     * stops the worker threads, waiting for the running tasks to finish, so that the files they were writing are not
+     * modified after the executor is closed.
+     */
+    @Override
+    public synchronized void close() {
+        if (executorService != null) {
+            executorService.shutdownNow();
+            try {
+                // the tasks are cancelled, but an uninterruptible I/O operation has to complete first
+                boolean terminated = false;
+                while (!terminated) {
+                    terminated = executorService.awaitTermination(1, TimeUnit.SECONDS);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            executorService = null;
+        }
+    }
+}
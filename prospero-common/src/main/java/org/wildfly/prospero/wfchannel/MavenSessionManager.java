@@ -21,7 +21,10 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
 
 import org.apache.commons.io.FileUtils;
 import org.eclipse.aether.repository.LocalRepository;
@@ -50,14 +53,26 @@ public class MavenSessionManager {
     public static final Path LOCAL_MAVEN_REPO = Paths.get(System.getProperty("user.home"), ".m2", "repository");
     private static final String AETHER_OFFLINE_PROTOCOLS_PROPERTY = "aether.offline.protocols";
     public static final String AETHER_OFFLINE_PROTOCOLS_VALUE = "file";
+    // number of artifacts the basic connector downloads in parallel from one repository
+    private static final String AETHER_CONNECTOR_THREADS_PROPERTY = "aether.connector.basic.threads";
+    private static final String AETHER_HTTP_REUSE_CONNECTIONS_PROPERTY = "aether.connector.http.reuseConnections";
+    private static final String AETHER_HTTP_MAX_CONNECTIONS_PER_ROUTE_PROPERTY = "aether.connector.http.maxConnectionsPerRoute";
     private final Path provisioningRepo;
     private boolean offline;
+    private final Long manifestCacheTtl;
+    private final Integer downloadThreads;
+    // shared by all copies of the manager created during one operation
+    private final SharedState sharedState;
 
     public MavenSessionManager(MavenOptions mavenOptions) throws ProvisioningException {
         Objects.requireNonNull(mavenOptions);
 
         this.offline = mavenOptions.isOffline();
 
+        // the channel metadata is cached in the local repository, there's no point caching it in a temporary one
+        this.manifestCacheTtl = mavenOptions.isNoLocalCache() ? null : mavenOptions.getManifestCacheTtl();
+        this.downloadThreads = mavenOptions.getDownloadThreads();
+
         if (mavenOptions.isNoLocalCache()) {
             // generate temp folder
             try {
@@ -77,17 +92,45 @@ public class MavenSessionManager {
             System.setProperty(AETHER_OFFLINE_PROTOCOLS_PROPERTY, AETHER_OFFLINE_PROTOCOLS_VALUE);
             Runtime.getRuntime().addShutdownHook(new Thread(()-> System.clearProperty(AETHER_OFFLINE_PROTOCOLS_PROPERTY)));
         }
+        this.sharedState = new SharedState();
     }
 
     public MavenSessionManager(MavenSessionManager base) {
         this.offline = base.isOffline();
         this.provisioningRepo = base.provisioningRepo;
+        this.manifestCacheTtl = base.manifestCacheTtl;
+        this.downloadThreads = base.downloadThreads;
+        this.sharedState = base.sharedState;
     }
 
     public MavenSessionManager() throws ProvisioningException {
         this(MavenOptions.DEFAULT_OPTIONS);
     }
 
+    /**
+     * returns a {@code RepositorySystem} shared by this manager and its copies. Creating the system is expensive,
+     * so it is created only once for the operation, when it is first requested.
+     *
+     * @return shared {@code RepositorySystem}
+     */
+    public RepositorySystem getRepositorySystem() {
+        synchronized (sharedState) {
+            if (sharedState.repositorySystem == null) {
+                final long start = System.currentTimeMillis();
+                sharedState.repositorySystem = newRepositorySystem();
+                if (logger.isDebugEnabled()) {
+                    logger.debugf("Initialized repository system in %d ms", System.currentTimeMillis() - start);
+                }
+            }
+            return sharedState.repositorySystem;
+        }
+    }
+
+    /**
+     * creates a new {@code RepositorySystem}. Prefer {@link #getRepositorySystem()} unless an independent system is needed.
+     *
+     * @return new {@code RepositorySystem}
+     */
     public RepositorySystem newRepositorySystem() {
         final DefaultServiceLocator locator = MavenRepositorySystemUtils.newServiceLocator();
         locator.addService(RepositoryConnectorFactory.class, BasicRepositoryConnectorFactory.class);
@@ -108,20 +151,49 @@ public class MavenSessionManager {
 
     public DefaultRepositorySystemSession newRepositorySystemSession(RepositorySystem system,
                                                                      boolean resolveLocalCache) {
-        DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
-
         Path location;
         if (resolveLocalCache) {
             location = LOCAL_MAVEN_REPO;
         } else {
             location = provisioningRepo.toAbsolutePath();
         }
-        LocalRepository localRepo = new LocalRepository(location.toFile());
+
+        final DefaultRepositorySystemSession session;
+        if (system == sharedState.repositorySystem) {
+            session = new DefaultRepositorySystemSession(getSessionTemplate(system, location));
+        } else {
+            session = newConfiguredSession(system, location, offline);
+        }
         if (resolveLocalCache) {
             copyResolvedArtifactsToProvisiongRepository(session);
         }
+        return session;
+    }
+
+    /*
+     * Sessions created with the shared repository system are copied from a pooled template. The copies share
+     * the local repository manager and the session data (e.g. update checks already performed in this operation),
+     * but each copy can be configured independently (e.g. with its own listeners).
+     */
+    private DefaultRepositorySystemSession getSessionTemplate(RepositorySystem system, Path location) {
+        final SessionKey key = new SessionKey(offline, location);
+        synchronized (sharedState) {
+            return sharedState.sessionTemplates.computeIfAbsent(key, k -> newConfiguredSession(system, k.localRepository, k.offline));
+        }
+    }
+
+    private DefaultRepositorySystemSession newConfiguredSession(RepositorySystem system, Path location, boolean offline) {
+        final DefaultRepositorySystemSession session = MavenRepositorySystemUtils.newSession();
+        final LocalRepository localRepo = new LocalRepository(location.toFile());
         session.setLocalRepositoryManager(system.newLocalRepositoryManager(session, localRepo));
         session.setOffline(offline);
+        // bulk resolution requests are downloaded by the connector in parallel, keep the HTTP connections
+        // open between the downloads instead of re-connecting for each artifact
+        session.setConfigProperty(AETHER_HTTP_REUSE_CONNECTIONS_PROPERTY, true);
+        if (downloadThreads != null) {
+            session.setConfigProperty(AETHER_CONNECTOR_THREADS_PROPERTY, downloadThreads);
+            session.setConfigProperty(AETHER_HTTP_MAX_CONNECTIONS_PER_ROUTE_PROPERTY, downloadThreads);
+        }
         return session;
     }
 
@@ -130,7 +202,7 @@ public class MavenSessionManager {
         // whenever an artifact is resolved by a repository using LOCAL_MAVE_REPO,
         // install the artifact into a temporary provisioningRepo. The provisioningRepo then is used
         // by Galleon to start thin server.
-        final RepositorySystem localCacheBuilder = newRepositorySystem();
+        final RepositorySystem localCacheBuilder = getRepositorySystem();
         final DefaultRepositorySystemSession localCacheBuilderSession = newRepositorySystemSession(localCacheBuilder, false);
         session.setRepositoryListener(new AbstractRepositoryListener() {
             @Override
@@ -161,4 +233,47 @@ public class MavenSessionManager {
     public boolean isOffline() {
         return offline;
     }
+
+    /**
+     * @return time in seconds for which the resolved channel metadata can be re-used without checking for changes,
+     *         or empty if the channel metadata should not be cached
+     */
+    public Optional<Long> getManifestCacheTtl() {
+        return Optional.ofNullable(manifestCacheTtl);
+    }
+
+    /**
+     * @return maximum number of artifacts downloaded in parallel, or empty if the Maven resolver default is used
+     */
+    public Optional<Integer> getDownloadThreads() {
+        return Optional.ofNullable(downloadThreads);
+    }
+
+    private static final class SharedState {
+        private volatile RepositorySystem repositorySystem;
+        private final Map<SessionKey, DefaultRepositorySystemSession> sessionTemplates = new HashMap<>();
+    }
+
+    private static final class SessionKey {
+        private final boolean offline;
+        private final Path localRepository;
+
+        private SessionKey(boolean offline, Path localRepository) {
+            this.offline = offline;
+            this.localRepository = localRepository;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            SessionKey that = (SessionKey) o;
+            return offline == that.offline && Objects.equals(localRepository, that.localRepository);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(offline, localRepository);
+        }
+    }
 }
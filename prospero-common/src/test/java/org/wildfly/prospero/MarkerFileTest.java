@@ -28,6 +28,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 
 public class MarkerFileTest {
 
@@ -44,4 +45,25 @@ public class MarkerFileTest {
         final MarkerFile readMarker = MarkerFile.read(testFile);
         assertEquals(originalMarker, readMarker);
     }
+
+    @Test
+    public void installationStateIsRecorded() throws Exception {
+        final Path testFile = temp.newFolder().toPath();
+        Files.createDirectory(testFile.resolve(ProsperoMetadataUtils.METADATA_DIR));
+        final MarkerFile originalMarker = new MarkerFile("abcd12344", ApplyCandidateAction.Type.UPDATE, "efgh5678");
+        originalMarker.write(testFile);
+
+        final MarkerFile readMarker = MarkerFile.read(testFile);
+        assertEquals(originalMarker, readMarker);
+        assertEquals("efgh5678", readMarker.getInstallationState());
+    }
+
+    @Test
+    public void markerWithoutInstallationState() throws Exception {
+        final Path testFile = temp.newFolder().toPath();
+        Files.createDirectory(testFile.resolve(ProsperoMetadataUtils.METADATA_DIR));
+        new MarkerFile("abcd12344", ApplyCandidateAction.Type.UPDATE).write(testFile);
+
+        assertNull(MarkerFile.read(testFile).getInstallationState());
+    }
 }
@@ -22,6 +22,7 @@ import org.jboss.galleon.Constants;
 import org.jboss.galleon.ProvisioningException;
 import org.jboss.galleon.ProvisioningManager;
 import org.jboss.galleon.creator.FeaturePackCreator;
+import org.jboss.galleon.creator.PackageBuilder;
 import org.jboss.galleon.repo.RepositoryArtifactResolver;
 import org.jboss.galleon.universe.FeaturePackLocation;
 import org.jboss.galleon.universe.maven.repo.SimplisticMavenRepoManager;
@@ -37,14 +38,17 @@ import org.wildfly.channel.ChannelManifestMapper;
 import org.wildfly.channel.ChannelMapper;
 import org.wildfly.channel.Repository;
 import org.wildfly.channel.Stream;
+import org.wildfly.prospero.api.ApplyPlan;
 import org.wildfly.prospero.api.ArtifactChange;
 import org.wildfly.prospero.api.FileConflict;
+import org.wildfly.prospero.api.InstallationMetadata;
 import org.wildfly.prospero.api.SavedState;
 import org.wildfly.prospero.api.exceptions.InvalidUpdateCandidateException;
 import org.wildfly.prospero.galleon.ArtifactCache;
 import org.wildfly.prospero.installation.git.GitStorage;
 import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
 import org.wildfly.prospero.metadata.ManifestVersionRecord;
+import org.wildfly.prospero.updates.ApplyJournal;
 import org.wildfly.prospero.updates.MarkerFile;
 import org.wildfly.prospero.utils.filestate.DirState;
 
@@ -52,6 +56,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -390,6 +395,38 @@ public class ApplyCandidateActionTest {
         assertEquals(ApplyCandidateAction.ValidationResult.STALE, validationResult);
     }
 
+    @Test
+    public void verifyCandidateFromInstallationInSameState() throws Exception {
+        createSimpleFeaturePacks();
+        final ApplyCandidateAction applyCandidateAction = new ApplyCandidateAction(installationPath, updatePath);
+
+        install(installationPath, FPL_100);
+        final Path otherInstallationPath = temp.newFolder().toPath();
+        install(otherInstallationPath, FPL_100);
+        prepareSharedUpdate(updatePath, otherInstallationPath, FPL_101);
+
+        final ApplyCandidateAction.ValidationResult validationResult = applyCandidateAction
+                .verifyCandidate(ApplyCandidateAction.Type.UPDATE);
+
+        assertEquals(ApplyCandidateAction.ValidationResult.OK, validationResult);
+    }
+
+    @Test
+    public void verifyCandidateFromInstallationInDifferentState() throws Exception {
+        createSimpleFeaturePacks();
+        final ApplyCandidateAction applyCandidateAction = new ApplyCandidateAction(installationPath, updatePath);
+
+        install(installationPath, FPL_100);
+        final Path otherInstallationPath = temp.newFolder().toPath();
+        install(otherInstallationPath, FPL_101);
+        prepareSharedUpdate(updatePath, otherInstallationPath, FPL_101);
+
+        final ApplyCandidateAction.ValidationResult validationResult = applyCandidateAction
+                .verifyCandidate(ApplyCandidateAction.Type.UPDATE);
+
+        assertEquals(ApplyCandidateAction.ValidationResult.STALE, validationResult);
+    }
+
     @Test
     public void verifyCandidateValidMarker() throws Exception {
         createSimpleFeaturePacks();
@@ -479,6 +516,197 @@ public class ApplyCandidateActionTest {
         Assert.assertFalse(Files.exists(updatePath));
     }
 
+    @Test
+    public void testUpdateWithMultipleThreads() throws Exception {
+        final DirState.DirBuilder expectedStateBuilder = dirBuilder
+                .addFile("prod1/p1.txt", "user prod1/p1")
+                .addFile("prod1/p1.txt.glnew", "prod1/p1 1.0.1");
+
+        final PackageBuilder basePkg = creator.newFeaturePack(FeaturePackLocation.fromString(FPL_100).getFPID())
+                .newPackage("p1", true)
+                .writeContent("prod1/p1.txt", "prod1/p1 1.0.0");
+        final PackageBuilder updatePkg = creator.newFeaturePack(FeaturePackLocation.fromString(FPL_101).getFPID())
+                .newPackage("p1", true)
+                .writeContent("prod1/p1.txt", "prod1/p1 1.0.1");
+        for (int i = 0; i < 50; i++) {
+            basePkg.writeContent("modules/m" + i + "/file.txt", "m" + i + " 1.0.0");
+            updatePkg.writeContent("modules/m" + i + "/file.txt", "m" + i + (i % 2 == 0 ? " 1.0.1" : " 1.0.0"));
+            expectedStateBuilder.addFile("modules/m" + i + "/file.txt", "m" + i + (i % 2 == 0 ? " 1.0.1" : " 1.0.0"));
+        }
+        creator.install();
+
+        install(installationPath, FPL_100);
+        writeContent("prod1/p1.txt", "user prod1/p1");
+        prepareUpdate(updatePath, installationPath, FPL_101);
+        final List<FileConflict> conflicts = new ApplyCandidateAction(installationPath, updatePath, 4).applyUpdate(ApplyCandidateAction.Type.UPDATE);
+
+        expectedStateBuilder.build().assertState(installationPath);
+        assertThat(conflicts).containsExactly(
+                FileConflict.userModified("prod1/p1.txt").updateModified().userPreserved()
+        );
+    }
+
+    @Test
+    public void testUpdateWithCandidateFileModifiedAfterProvisioning() throws Exception {
+        final DirState expectedState = dirBuilder
+                .addFile("prod1/p1.txt", "modified p1 1.0.1")
+                .build();
+
+        createSimpleFeaturePacks();
+
+        install(installationPath, FPL_100);
+        prepareUpdate(updatePath, installationPath, FPL_101);
+        // the recorded hash of the candidate file is no longer valid and has to be re-calculated
+        final Path candidateFile = updatePath.resolve("prod1").resolve("p1.txt");
+        Files.writeString(candidateFile, "modified p1 1.0.1");
+        Files.setLastModifiedTime(candidateFile, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+        final List<FileConflict> conflicts = new ApplyCandidateAction(installationPath, updatePath).applyUpdate(ApplyCandidateAction.Type.UPDATE);
+
+        expectedState.assertState(installationPath);
+        assertThat(conflicts).isEmpty();
+    }
+
+    @Test
+    public void testUpdateWithCandidateFileModifiedPreservingTimestamp() throws Exception {
+        final DirState expectedState = dirBuilder
+                .addFile("prod1/p1.txt", "modified p1 1.0.0")
+                .build();
+
+        createSimpleFeaturePacks();
+
+        install(installationPath, FPL_100);
+        prepareUpdate(updatePath, installationPath, FPL_100);
+        // the recorded hash matches the installation file, but the candidate file has been changed with its
+        // timestamp preserved (e.g. cp -p), so the recorded hash cannot be trusted when the update is applied
+        final Path candidateFile = updatePath.resolve("prod1").resolve("p1.txt");
+        final FileTime lastModified = Files.getLastModifiedTime(candidateFile);
+        Files.writeString(candidateFile, "modified p1 1.0.0");
+        Files.setLastModifiedTime(candidateFile, lastModified);
+        final List<FileConflict> conflicts = new ApplyCandidateAction(installationPath, updatePath).applyUpdate(ApplyCandidateAction.Type.UPDATE);
+
+        expectedState.assertState(installationPath);
+        assertThat(conflicts).isEmpty();
+    }
+
+    @Test
+    public void testUpdateMovingCandidateFiles() throws Exception {
+        final DirState expectedState = createFeaturePacksWithAddedAndRemovedFiles();
+
+        install(installationPath, FPL_100);
+        prepareUpdate(updatePath, installationPath, FPL_101);
+        final List<FileConflict> conflicts = new ApplyCandidateAction(installationPath, updatePath,
+                ApplyCandidateAction.TransferMode.MOVE).applyUpdate(ApplyCandidateAction.Type.UPDATE);
+
+        expectedState.assertState(installationPath);
+        assertThat(conflicts).isEmpty();
+        assertThat(updatePath.resolve("prod1").resolve("p1.txt")).doesNotExist();
+        assertThat(updatePath.resolve("prod1").resolve("added.txt")).doesNotExist();
+    }
+
+    @Test
+    public void failedUpdateIsRolledBack() throws Exception {
+        createSimpleFeaturePacks();
+        install(installationPath, FPL_100);
+        // the conflicting change makes the update write a .glnew file before it fails
+        writeContent("prod1/p1.txt", "user prod1/p1");
+        prepareUpdate(updatePath, installationPath, FPL_101);
+        Files.createSymbolicLink(updatePath.resolve("prod1").resolve("broken.txt"), updatePath.resolve("does-not-exist"));
+        final int revisions;
+        try (GitStorage gitStorage = new GitStorage(installationPath)) {
+            revisions = gitStorage.getRevisions().size();
+        }
+
+        assertThrows(ProvisioningException.class, () -> new ApplyCandidateAction(installationPath, updatePath,
+                ApplyCandidateAction.TransferMode.COPY).applyUpdate(ApplyCandidateAction.Type.UPDATE));
+
+        assertEquals("user prod1/p1", Files.readString(installationPath.resolve("prod1/p1.txt")));
+        assertThat(installationPath.resolve("prod1/p1.txt" + Constants.DOT_GLNEW)).doesNotExist();
+        assertThat(installationPath.resolve("prod1/broken.txt")).doesNotExist();
+        assertFalse(ApplyJournal.exists(installationPath));
+        try (GitStorage gitStorage = new GitStorage(installationPath)) {
+            assertEquals(revisions, gitStorage.getRevisions().size());
+        }
+    }
+
+    @Test
+    public void planDoesNotModifyInstallation() throws Exception {
+        createFeaturePacksWithAddedAndRemovedFiles();
+
+        install(installationPath, FPL_100);
+        writeContent("prod1/p1.txt", "user p1");
+        prepareUpdate(updatePath, installationPath, FPL_101);
+        final ApplyPlan plan = new ApplyCandidateAction(installationPath, updatePath).getApplyPlan();
+
+        assertThat(plan.getOperations()).contains(
+                new ApplyPlan.FileOperation(ApplyPlan.OperationType.COPY, "prod1/added.txt", "added".length()),
+                new ApplyPlan.FileOperation(ApplyPlan.OperationType.DELETE, "prod1/removed.txt", 0),
+                new ApplyPlan.FileOperation(ApplyPlan.OperationType.GLNEW, "prod1/p1.txt.glnew", "p1 1.0.1".length()));
+        assertThat(plan.getConflicts()).containsExactly(
+                FileConflict.userModified("prod1/p1.txt").updateModified().userPreserved());
+        assertThat(plan.getFilesToHash()).isPositive();
+
+        assertEquals("user p1", Files.readString(installationPath.resolve("prod1").resolve("p1.txt")));
+        assertThat(installationPath.resolve("prod1").resolve("removed.txt")).exists();
+        assertThat(installationPath.resolve("prod1").resolve("added.txt")).doesNotExist();
+        assertThat(installationPath.resolve("prod1").resolve("p1.txt.glnew")).doesNotExist();
+    }
+
+    @Test
+    public void planOfMovedCandidateFilesDoesNotCopyData() throws Exception {
+        createFeaturePacksWithAddedAndRemovedFiles();
+
+        install(installationPath, FPL_100);
+        writeContent("prod1/p1.txt", "user p1");
+        prepareUpdate(updatePath, installationPath, FPL_101);
+        final ApplyPlan plan = new ApplyCandidateAction(installationPath, updatePath,
+                ApplyCandidateAction.TransferMode.MOVE).getApplyPlan();
+
+        assertThat(plan.getOperations()).contains(
+                new ApplyPlan.FileOperation(ApplyPlan.OperationType.MOVE, "prod1/added.txt", 0),
+                new ApplyPlan.FileOperation(ApplyPlan.OperationType.GLNEW, "prod1/p1.txt.glnew", "p1 1.0.1".length()));
+        assertEquals(1, plan.getFilesToMove());
+        assertEquals("p1 1.0.1".length(), plan.getBytesToCopy());
+        assertThat(updatePath.resolve("prod1").resolve("added.txt")).exists();
+    }
+
+    @Test
+    public void planFailsIfInstallationContainsUnfinishedOperation() throws Exception {
+        createSimpleFeaturePacks();
+        install(installationPath, FPL_100);
+        prepareUpdate(updatePath, installationPath, FPL_101);
+        Files.createDirectories(installationPath.resolve(ApplyJournal.JOURNAL_DIR));
+
+        assertThrows(ProvisioningException.class, () -> new ApplyCandidateAction(installationPath, updatePath).getApplyPlan());
+        assertTrue(ApplyJournal.exists(installationPath));
+    }
+
+    @Test
+    public void parallelismHasToBePositive() throws Exception {
+        assertThrows(IllegalArgumentException.class, () -> new ApplyCandidateAction(installationPath, updatePath, 0));
+    }
+
+    private DirState createFeaturePacksWithAddedAndRemovedFiles() throws ProvisioningException {
+        creator.newFeaturePack(FeaturePackLocation.fromString(FPL_100).getFPID())
+                .newPackage("p1", true)
+                .writeContent("prod1/p1.txt", "p1 1.0.0")
+                .writeContent("prod1/unchanged.txt", "unchanged")
+                .writeContent("prod1/removed.txt", "removed")
+                .getFeaturePack();
+        creator.newFeaturePack(FeaturePackLocation.fromString(FPL_101).getFPID())
+                .newPackage("p1", true)
+                .writeContent("prod1/p1.txt", "p1 1.0.1")
+                .writeContent("prod1/unchanged.txt", "unchanged")
+                .writeContent("prod1/added.txt", "added")
+                .getFeaturePack();
+        creator.install();
+
+        return dirBuilder
+                .addFile("prod1/p1.txt", "p1 1.0.1")
+                .addFile("prod1/unchanged.txt", "unchanged")
+                .addFile("prod1/added.txt", "added")
+                .build();
+    }
+
     private void createSimpleFeaturePacks() throws ProvisioningException {
         creator.newFeaturePack(FeaturePackLocation.fromString(FPL_100).getFPID())
                 .newPackage("p1", true)
@@ -561,6 +789,16 @@ public class ApplyCandidateActionTest {
         }
     }
 
+    private void prepareSharedUpdate(Path updatePath, Path basePath, String fpl) throws Exception {
+        install(updatePath, fpl);
+
+        // create update marker file with a revision unknown to the installation being updated
+        try (InstallationMetadata metadata = InstallationMetadata.loadInstallation(basePath)) {
+            final String installationState = MarkerFile.installationState(basePath, metadata.getManifest());
+            new MarkerFile("abcd1234", ApplyCandidateAction.Type.UPDATE, installationState).write(updatePath);
+        }
+    }
+
     protected RepositoryArtifactResolver initRepoManager(Path repoHome) {
         return SimplisticMavenRepoManager.getInstance(repoHome);
     }
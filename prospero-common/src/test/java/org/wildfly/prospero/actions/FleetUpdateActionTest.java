@@ -0,0 +1,237 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.actions;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.jboss.galleon.Constants;
+import org.jboss.galleon.ProvisioningManager;
+import org.jboss.galleon.creator.FeaturePackCreator;
+import org.jboss.galleon.repo.RepositoryArtifactResolver;
+import org.jboss.galleon.universe.FeaturePackLocation;
+import org.jboss.galleon.universe.maven.repo.SimplisticMavenRepoManager;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.channel.Channel;
+import org.wildfly.channel.ChannelManifest;
+import org.wildfly.channel.ChannelManifestCoordinate;
+import org.wildfly.channel.ChannelManifestMapper;
+import org.wildfly.channel.ChannelMapper;
+import org.wildfly.channel.Repository;
+import org.wildfly.prospero.api.ArtifactChange;
+import org.wildfly.prospero.api.FileConflict;
+import org.wildfly.prospero.api.InstallationMetadata;
+import org.wildfly.prospero.galleon.ArtifactCache;
+import org.wildfly.prospero.installation.git.GitStorage;
+import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
+import org.wildfly.prospero.updates.MarkerFile;
+import org.wildfly.prospero.updates.UpdateSet;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.wildfly.prospero.metadata.ProsperoMetadataUtils.METADATA_DIR;
+
+public class FleetUpdateActionTest {
+
+    private static final String FPL_100 = "org.test:pack-one:1.0.0:zip";
+    private static final String FPL_101 = "org.test:pack-one:1.0.1:zip";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+    private RepositoryArtifactResolver repo;
+    // update actions created for the leaders of the groups
+    private final Map<Path, UpdateAction> updateActions = new HashMap<>();
+    private final List<Path> leaders = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        repo = SimplisticMavenRepoManager.getInstance(temp.newFolder().toPath());
+        final FeaturePackCreator creator = FeaturePackCreator.getInstance().addArtifactResolver(repo);
+        creator.newFeaturePack(FeaturePackLocation.fromString(FPL_100).getFPID())
+                .newPackage("p1", true)
+                .writeContent("prod1/p1.txt", "p1 1.0.0")
+                .getFeaturePack();
+        creator.newFeaturePack(FeaturePackLocation.fromString(FPL_101).getFPID())
+                .newPackage("p1", true)
+                .writeContent("prod1/p1.txt", "p1 1.0.1")
+                .getFeaturePack();
+        creator.install();
+    }
+
+    @Test
+    public void installationsInSameStateShareCandidate() throws Exception {
+        final Path first = install(FPL_100);
+        final Path second = install(FPL_100);
+        final Path updated = install(FPL_101);
+
+        final List<FleetUpdateAction.InstallationResult> results = fleetUpdate(first, second, updated).performUpdate(2);
+
+        assertThat(leaders).containsExactly(first, updated);
+        verify(updateActions.get(first)).buildUpdate(any());
+        verify(updateActions.get(updated), never()).buildUpdate(any());
+        assertStatus(results, FleetUpdateAction.Status.UPDATED, FleetUpdateAction.Status.UPDATED, FleetUpdateAction.Status.NO_UPDATES);
+        assertEquals("p1 1.0.1", Files.readString(first.resolve("prod1/p1.txt")));
+        assertEquals("p1 1.0.1", Files.readString(second.resolve("prod1/p1.txt")));
+    }
+
+    @Test
+    public void conflictsAreReportedPerInstallation() throws Exception {
+        final Path first = install(FPL_100);
+        final Path second = install(FPL_100);
+        Files.writeString(second.resolve("prod1/p1.txt"), "user p1");
+
+        final List<FleetUpdateAction.InstallationResult> results = fleetUpdate(first, second).performUpdate(2);
+
+        assertStatus(results, FleetUpdateAction.Status.UPDATED, FleetUpdateAction.Status.UPDATED);
+        assertThat(results.get(0).getConflicts()).isEmpty();
+        assertThat(results.get(1).getConflicts()).containsExactly(
+                FileConflict.userModified("prod1/p1.txt").updateModified().userPreserved());
+        assertEquals("p1 1.0.1", Files.readString(first.resolve("prod1/p1.txt")));
+        assertEquals("user p1", Files.readString(second.resolve("prod1/p1.txt")));
+    }
+
+    @Test
+    public void failureToLoadInstallationDoesNotAffectOthers() throws Exception {
+        final Path notInstallation = temp.newFolder().toPath();
+        final Path installation = install(FPL_100);
+
+        final List<FleetUpdateAction.InstallationResult> results = fleetUpdate(notInstallation, installation).performUpdate(1);
+
+        assertStatus(results, FleetUpdateAction.Status.FAILED, FleetUpdateAction.Status.UPDATED);
+        assertTrue(results.get(0).getError().isPresent());
+        assertThat(leaders).containsExactly(installation);
+        assertEquals("p1 1.0.1", Files.readString(installation.resolve("prod1/p1.txt")));
+    }
+
+    @Test
+    public void notConfirmedUpdatesAreNotApplied() throws Exception {
+        final Path first = install(FPL_100);
+        final Path second = install(FPL_100);
+
+        final List<FleetUpdateAction.InstallationResult> results = fleetUpdate(first, second)
+                .performUpdate(2, (dirs, updates) -> false);
+
+        assertStatus(results, FleetUpdateAction.Status.CANCELLED, FleetUpdateAction.Status.CANCELLED);
+        verify(updateActions.get(first), never()).buildUpdate(any());
+        assertEquals("p1 1.0.0", Files.readString(first.resolve("prod1/p1.txt")));
+        assertEquals("p1 1.0.0", Files.readString(second.resolve("prod1/p1.txt")));
+    }
+
+    @Test
+    public void duplicatedInstallationIsUpdatedOnce() throws Exception {
+        final Path installation = install(FPL_100);
+
+        final List<FleetUpdateAction.InstallationResult> results = fleetUpdate(installation,
+                installation.resolve(".").resolve("prod1").resolve("..")).performUpdate(2);
+
+        assertThat(results).hasSize(1);
+        assertEquals(installation.toAbsolutePath().normalize(), results.get(0).getInstallationDir());
+        assertEquals(FleetUpdateAction.Status.UPDATED, results.get(0).getStatus());
+    }
+
+    private FleetUpdateAction fleetUpdate(Path... installationDirs) {
+        return new FleetUpdateAction(List.of(installationDirs), leader -> {
+            leaders.add(leader);
+            final UpdateAction updateAction = mock(UpdateAction.class);
+            if (isInstalled(leader, FPL_101)) {
+                when(updateAction.findUpdates()).thenReturn(new UpdateSet(Collections.emptyList()));
+            } else {
+                when(updateAction.findUpdates()).thenReturn(new UpdateSet(List.of(ArtifactChange.updated(
+                        new DefaultArtifact("org.test", "pack-one", "zip", "1.0.0"),
+                        new DefaultArtifact("org.test", "pack-one", "zip", "1.0.1")))));
+                when(updateAction.buildUpdate(any())).thenAnswer(invocation -> {
+                    prepareCandidate(invocation.getArgument(0), leader);
+                    return true;
+                });
+            }
+            updateActions.put(leader, updateAction);
+            return updateAction;
+        });
+    }
+
+    private static void assertStatus(List<FleetUpdateAction.InstallationResult> results, FleetUpdateAction.Status... statuses) {
+        assertThat(results).extracting(FleetUpdateAction.InstallationResult::getStatus).containsExactly(statuses);
+    }
+
+    private boolean isInstalled(Path installationDir, String fpl) {
+        try {
+            return Files.readString(installationDir.resolve(METADATA_DIR).resolve(ProsperoMetadataUtils.MANIFEST_FILE_NAME))
+                    .contains(fpl);
+        } catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void prepareCandidate(Path candidateDir, Path baseDir) throws Exception {
+        install(candidateDir, FPL_101);
+        try (InstallationMetadata metadata = InstallationMetadata.loadInstallation(baseDir);
+             GitStorage gitStorage = new GitStorage(baseDir)) {
+            final String revision = gitStorage.getRevisions().get(0).getName();
+            new MarkerFile(revision, ApplyCandidateAction.Type.UPDATE,
+                    MarkerFile.installationState(baseDir, metadata.getManifest())).write(candidateDir);
+        }
+    }
+
+    private Path install(String fpl) throws Exception {
+        final Path path = temp.newFolder().toPath();
+        install(path, fpl);
+        return path;
+    }
+
+    private void install(Path path, String fpl) throws Exception {
+        final HashMap<String, String> options = new HashMap<>();
+        options.put(Constants.EXPORT_SYSTEM_PATHS, "true");
+        ProvisioningManager.builder()
+                .addArtifactResolver(repo)
+                .setInstallationHome(path)
+                .setRecordState(true)
+                .build()
+                .install(FeaturePackLocation.fromString(fpl), options);
+        // mock the installation metadata
+        final Path metadataPath = path.resolve(METADATA_DIR);
+        Files.createDirectory(metadataPath);
+        Files.writeString(metadataPath.resolve(ProsperoMetadataUtils.MANIFEST_FILE_NAME),
+                ChannelManifestMapper.toYaml(new ChannelManifest("manifest " + fpl, null, null, Collections.emptyList())));
+        Files.writeString(metadataPath.resolve(ProsperoMetadataUtils.INSTALLER_CHANNELS_FILE_NAME),
+                ChannelMapper.toYaml(new Channel("channels", null, null,
+                        List.of(new Repository("foo", "http://foo.bar")),
+                        new ChannelManifestCoordinate("foo", "bar"),
+                        null, null)));
+        try (GitStorage gitStorage = new GitStorage(path)) {
+            gitStorage.record();
+        }
+
+        Files.createDirectory(path.resolve(ArtifactCache.CACHE_FOLDER));
+        Files.writeString(path.resolve(ArtifactCache.CACHE_FOLDER).resolve("artifacts.txt"), fpl + "::abcd::foo/bar");
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.api;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ApplyPlanTest {
+
+    @Test
+    public void throughputIsMeasuredOverHashingTime() throws Exception {
+        final ApplyPlan.Builder builder = new ApplyPlan.Builder();
+        builder.hashed(1000, TimeUnit.MILLISECONDS.toNanos(500));
+        builder.hashed(1000, TimeUnit.MILLISECONDS.toNanos(500));
+        // time spent outside of hashing doesn't lower the throughput
+        Thread.sleep(50);
+
+        final ApplyPlan plan = builder.build(Collections.emptyList());
+
+        assertEquals(2, plan.getFilesToHash());
+        assertEquals(2000, plan.getBytesToHash());
+        assertEquals(2000, plan.getDiskThroughput());
+    }
+
+    @Test
+    public void noThroughputWithoutHashedFiles() {
+        final ApplyPlan plan = new ApplyPlan.Builder().build(Collections.emptyList());
+
+        assertEquals(0, plan.getDiskThroughput());
+    }
+
+    @Test
+    public void movedFilesAreNotCopied() {
+        final ApplyPlan.Builder builder = new ApplyPlan.Builder();
+        builder.add(ApplyPlan.OperationType.MOVE, "prod1/moved.txt", 0);
+        builder.add(ApplyPlan.OperationType.COPY, "prod1/copied.txt", 100);
+        builder.hashed(1000, TimeUnit.SECONDS.toNanos(1));
+
+        final ApplyPlan plan = builder.build(Collections.emptyList());
+
+        assertEquals(1, plan.getFilesToMove());
+        assertEquals(1, plan.getFilesToCopy());
+        assertEquals(100, plan.getBytesToCopy());
+        // copying 100 bytes at 1000 bytes per second
+        assertTrue(plan.getEstimatedApplyTimeMillis() >= 100);
+    }
+}
@@ -17,14 +17,18 @@
 
 package org.wildfly.prospero.api;
 
+import com.fasterxml.jackson.databind.JsonMappingException;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 public class MavenOptionsTest {
@@ -156,4 +160,65 @@ public class MavenOptionsTest {
         assertEquals(base, MavenOptions.read(target));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void readWriteManifestCacheTtl() throws Exception {
+        Path target = temp.newFile().toPath();
+        MavenOptions.DEFAULT_OPTIONS.write(target);
+        assertNull(MavenOptions.read(target).getManifestCacheTtl());
+        assertFalse(Files.readString(target).contains("manifestCacheTtl"));
+
+        final MavenOptions base = MavenOptions.builder()
+                .setNoLocalCache(false)
+                .setOffline(false)
+                .setManifestCacheTtl(3600)
+                .build();
+        base.write(target);
+        assertEquals(base, MavenOptions.read(target));
+    }
+
+    @Test
+    public void mergeManifestCacheTtl() throws Exception {
+        final MavenOptions base = MavenOptions.builder().setManifestCacheTtl(3600).build();
+
+        assertEquals(Long.valueOf(3600), base.merge(MavenOptions.DEFAULT_OPTIONS).getManifestCacheTtl());
+        assertEquals(Long.valueOf(0), base.merge(MavenOptions.builder().setManifestCacheTtl(0).build()).getManifestCacheTtl());
+    }
+
+    @Test
+    public void readWriteDownloadThreads() throws Exception {
+        Path target = temp.newFile().toPath();
+        MavenOptions.DEFAULT_OPTIONS.write(target);
+        assertNull(MavenOptions.read(target).getDownloadThreads());
+        assertFalse(Files.readString(target).contains("downloadThreads"));
+
+        final MavenOptions base = MavenOptions.builder()
+                .setNoLocalCache(false)
+                .setOffline(false)
+                .setDownloadThreads(8)
+                .build();
+        base.write(target);
+        assertEquals(base, MavenOptions.read(target));
+    }
+
+    @Test
+    public void mergeDownloadThreads() throws Exception {
+        final MavenOptions base = MavenOptions.builder().setDownloadThreads(8).build();
+
+        assertEquals(Integer.valueOf(8), base.merge(MavenOptions.DEFAULT_OPTIONS).getDownloadThreads());
+        assertEquals(Integer.valueOf(2), base.merge(MavenOptions.builder().setDownloadThreads(2).build()).getDownloadThreads());
+    }
+
+    @Test
+    public void readInvalidValuesFails() throws Exception {
+        Path target = temp.newFile().toPath();
+
+        Files.writeString(target, "downloadThreads: 0\n");
+        JsonMappingException e = assertThrows(JsonMappingException.class, () -> MavenOptions.read(target));
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+
+        Files.writeString(target, "manifestCacheTtl: -1\n");
+        e = assertThrows(JsonMappingException.class, () -> MavenOptions.read(target));
+        assertTrue(e.getCause() instanceof IllegalArgumentException);
+    }
+
+}
@@ -22,15 +22,20 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 import org.wildfly.channel.MavenArtifact;
+import org.wildfly.prospero.utils.ParallelExecutor;
 
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
 import java.util.Optional;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 
 public class ArtifactCacheTest {
@@ -93,6 +98,17 @@ public class ArtifactCacheTest {
                 .doesNotHaveDuplicates();
     }
 
+    @Test
+    public void failedRecordDoesntChangeCachedArtifacts() throws Exception {
+        // the cache descriptor cannot be written
+        Files.createDirectory(installationDir.resolve(ArtifactCache.CACHE_FOLDER).resolve(ArtifactCache.CACHE_FILENAME));
+
+        assertThrows(IOException.class, () -> cache.record(anArtifact, installationDir.resolve("target.jar")));
+
+        assertEquals(Optional.empty(), cache.getArtifact(GROUP_ID, ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION));
+        assertThat(cache.getRecordedHashes()).isEmpty();
+    }
+
     @Test
     public void cacheAddsArtifactToCacheFolderAndRecordsIt() throws Exception {
         cache.cache(anArtifact);
@@ -135,4 +151,173 @@ public class ArtifactCacheTest {
 
         assertEquals(Optional.empty(), cachedArtifact);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void recordStoresFileAttributesOfCachedFile() throws Exception {
+        cache.cache(anArtifact);
+
+        final List<String> lines = Files.readAllLines(installationDir.resolve(ArtifactCache.CACHE_FOLDER).resolve(ArtifactCache.CACHE_FILENAME));
+        final String[] splitLine = lines.get(0).split(ArtifactCache.CACHE_LINE_SEPARATOR);
+        assertEquals(ArtifactCache.FileAttributes.read(installationDir.resolve(ArtifactCache.CACHE_FOLDER).resolve(anArtifact.getFile().getName())),
+                ArtifactCache.FileAttributes.parse(splitLine, 3));
+    }
+
+    @Test
+    public void getArtifactReturnsFileRecordedWithoutAttributes() throws Exception {
+        // the Galleon plugin records artifacts without the file attributes
+        final Path legacyInstallation = installationWithoutFileAttributes();
+
+        final Optional<File> cachedArtifact = ArtifactCache.getInstance(legacyInstallation)
+                .getArtifact(GROUP_ID, ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION);
+
+        assertTrue(cachedArtifact.isPresent());
+    }
+
+    @Test
+    public void getArtifactRecordedWithoutAttributesDoesntReturnArtifactIfTheHashIsDifferent() throws Exception {
+        final Path legacyInstallation = installationWithoutFileAttributes();
+        Files.writeString(legacyInstallation.resolve(ArtifactCache.CACHE_FOLDER).resolve(anArtifact.getFile().getName()), "newchange");
+
+        final Optional<File> cachedArtifact = ArtifactCache.getInstance(legacyInstallation)
+                .getArtifact(GROUP_ID, ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION);
+
+        assertEquals(Optional.empty(), cachedArtifact);
+    }
+
+    @Test
+    public void getArtifactDoesntRehashFileIfAttributesAreUnchanged() throws Exception {
+        final Path cachedFile = installationDir.resolve(ArtifactCache.CACHE_FOLDER).resolve(anArtifact.getFile().getName());
+        Files.writeString(anArtifact.getFile().toPath(), "test");
+        cache.cache(anArtifact);
+        // change the content, but keep the same size and modification time
+        final FileTime lastModified = Files.getLastModifiedTime(cachedFile);
+        Files.writeString(cachedFile, "abcd");
+        Files.setLastModifiedTime(cachedFile, lastModified);
+
+        assertTrue(cache.getArtifact(GROUP_ID, ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION).isPresent());
+
+        cache.setValidationMode(ArtifactCache.ValidationMode.HASH);
+        assertFalse(cache.getArtifact(GROUP_ID, ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION).isPresent());
+    }
+
+    @Test
+    public void getArtifactVerifiesHashIfModificationTimeChanged() throws Exception {
+        final Path cachedFile = installationDir.resolve(ArtifactCache.CACHE_FOLDER).resolve(anArtifact.getFile().getName());
+        Files.writeString(anArtifact.getFile().toPath(), "test");
+        cache.cache(anArtifact);
+        final FileTime lastModified = Files.getLastModifiedTime(cachedFile);
+        Files.setLastModifiedTime(cachedFile, FileTime.fromMillis(lastModified.toMillis() + 10_000));
+
+        // same content - still valid
+        assertTrue(cache.getArtifact(GROUP_ID, ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION).isPresent());
+
+        Files.writeString(cachedFile, "abcd");
+        Files.setLastModifiedTime(cachedFile, FileTime.fromMillis(lastModified.toMillis() + 20_000));
+        assertFalse(cache.getArtifact(GROUP_ID, ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION).isPresent());
+    }
+
+    @Test
+    public void recordAllAppendsAllArtifacts() throws Exception {
+        cache.record(anArtifact, installationDir.resolve("target.jar"));
+        final MavenArtifact thirdArtifact = new MavenArtifact(GROUP_ID + "Three", ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION,
+                Files.writeString(installationDir.resolve("target3.jar"), "test").toFile());
+        final MavenArtifact installedArtifact = new MavenArtifact(GROUP_ID + "Two", ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION,
+                Files.writeString(installationDir.resolve("target2.jar"), "test").toFile());
+
+        cache.recordAll(List.of(installedArtifact, thirdArtifact));
+
+        final List<String> lines = Files.readAllLines(installationDir.resolve(ArtifactCache.CACHE_FOLDER).resolve(ArtifactCache.CACHE_FILENAME));
+        assertEquals(3, lines.size());
+        assertThat(lines.get(0)).startsWith(GROUP_ID + ":").contains("target.jar");
+        assertThat(lines.get(1)).startsWith(GROUP_ID + "Two:").contains("target2.jar");
+        assertThat(lines.get(2)).startsWith(GROUP_ID + "Three:").contains("target3.jar");
+        assertTrue(cache.getArtifact(GROUP_ID + "Two", ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION).isPresent());
+        assertTrue(cache.getArtifact(GROUP_ID + "Three", ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION).isPresent());
+    }
+
+    @Test
+    public void recordAllCompactsSupersededRecords() throws Exception {
+        cache.cacheAll(List.of(anArtifact, otherArtifact));
+        Files.writeString(anArtifact.getFile().toPath(), "changed");
+
+        cache.cacheAll(List.of(anArtifact));
+
+        final List<String> lines = Files.readAllLines(installationDir.resolve(ArtifactCache.CACHE_FOLDER).resolve(ArtifactCache.CACHE_FILENAME));
+        assertEquals(2, lines.size());
+        assertThat(lines.get(0)).startsWith(GROUP_ID + "Two:");
+        assertThat(lines.get(1)).startsWith(GROUP_ID + ":");
+        assertThat(lines).noneMatch(l -> l.endsWith(ArtifactCache.CACHE_LINE_SEPARATOR + ArtifactCache.TOMBSTONE));
+        assertThat(cache.getArtifact(GROUP_ID, ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION).get())
+                .hasContent("changed");
+    }
+
+    @Test
+    public void cacheAllCopiesArtifactsToCacheFolder() throws Exception {
+        cache.cacheAll(List.of(anArtifact, otherArtifact));
+
+        final Path cacheDir = installationDir.resolve(ArtifactCache.CACHE_FOLDER);
+        assertThat(cacheDir.resolve(anArtifact.getFile().getName())).hasSameBinaryContentAs(anArtifact.getFile().toPath());
+        assertThat(cacheDir.resolve(otherArtifact.getFile().getName())).hasSameBinaryContentAs(otherArtifact.getFile().toPath());
+        assertThat(Files.readAllLines(cacheDir.resolve(ArtifactCache.CACHE_FILENAME)))
+                .hasSize(2)
+                .allMatch(l -> l.contains(ArtifactCache.CACHE_FOLDER.toString()));
+    }
+
+    @Test
+    public void cacheAllWithExecutorRecordsArtifactsInOrder() throws Exception {
+        Files.writeString(anArtifact.getFile().toPath(), "one");
+        Files.writeString(otherArtifact.getFile().toPath(), "two");
+        try (ParallelExecutor executor = new ParallelExecutor(2)) {
+            cache.cacheAll(List.of(anArtifact, otherArtifact), executor);
+        }
+
+        final Path cacheDir = installationDir.resolve(ArtifactCache.CACHE_FOLDER);
+        assertThat(cacheDir.resolve(otherArtifact.getFile().getName())).hasSameBinaryContentAs(otherArtifact.getFile().toPath());
+        final List<String> lines = Files.readAllLines(cacheDir.resolve(ArtifactCache.CACHE_FILENAME));
+        assertThat(lines).hasSize(2);
+        assertThat(lines.get(0)).startsWith(GROUP_ID + ":" + ARTIFACT_ID);
+        assertThat(lines.get(1)).startsWith(GROUP_ID + "Two" + ":" + ARTIFACT_ID);
+        assertEquals(Optional.of(cacheDir.resolve(anArtifact.getFile().getName()).toFile()),
+                cache.getArtifact(GROUP_ID, ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION));
+    }
+
+    @Test
+    public void readCacheDescriptorWithTombstones() throws Exception {
+        final Path cacheDir = installationDir.resolve(ArtifactCache.CACHE_FOLDER);
+        cache.cacheAll(List.of(anArtifact, otherArtifact));
+        final List<String> lines = Files.readAllLines(cacheDir.resolve(ArtifactCache.CACHE_FILENAME));
+        // simulate a journal that was not compacted
+        final String anArtifactGav = lines.get(0).split(ArtifactCache.CACHE_LINE_SEPARATOR)[0];
+        final String otherArtifactGav = lines.get(1).split(ArtifactCache.CACHE_LINE_SEPARATOR)[0];
+        final Path otherInstallation = temp.newFolder().toPath();
+        Files.createDirectories(otherInstallation.resolve(ArtifactCache.CACHE_FOLDER));
+        Files.copy(cacheDir.resolve(anArtifact.getFile().getName()), otherInstallation.resolve(ArtifactCache.CACHE_FOLDER).resolve(anArtifact.getFile().getName()));
+        Files.write(otherInstallation.resolve(ArtifactCache.CACHE_FOLDER).resolve(ArtifactCache.CACHE_FILENAME), List.of(
+                anArtifactGav + ArtifactCache.CACHE_LINE_SEPARATOR + "abcd" + ArtifactCache.CACHE_LINE_SEPARATOR + "foo/bar",
+                lines.get(1),
+                anArtifactGav + ArtifactCache.CACHE_LINE_SEPARATOR + ArtifactCache.TOMBSTONE,
+                lines.get(0),
+                otherArtifactGav + ArtifactCache.CACHE_LINE_SEPARATOR + ArtifactCache.TOMBSTONE));
+
+        final ArtifactCache otherCache = ArtifactCache.getInstance(otherInstallation);
+
+        assertTrue(otherCache.getArtifact(GROUP_ID, ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION).isPresent());
+        assertFalse(otherCache.getArtifact(GROUP_ID + "Two", ARTIFACT_ID, EXTENSION, CLASSIFIER, VERSION).isPresent());
+    }
+
+    private Path installationWithoutFileAttributes() throws Exception {
+        Files.writeString(anArtifact.getFile().toPath(), "test");
+        cache.cache(anArtifact);
+        final Path cacheDir = installationDir.resolve(ArtifactCache.CACHE_FOLDER);
+        final String[] splitLine = Files.readAllLines(cacheDir.resolve(ArtifactCache.CACHE_FILENAME)).get(0)
+                .split(ArtifactCache.CACHE_LINE_SEPARATOR);
+
+        final Path legacyInstallation = temp.newFolder().toPath();
+        final Path legacyCacheDir = legacyInstallation.resolve(ArtifactCache.CACHE_FOLDER);
+        Files.createDirectories(legacyCacheDir);
+        Files.copy(cacheDir.resolve(anArtifact.getFile().getName()), legacyCacheDir.resolve(anArtifact.getFile().getName()));
+        Files.writeString(legacyCacheDir.resolve(ArtifactCache.CACHE_FILENAME),
+                String.join(ArtifactCache.CACHE_LINE_SEPARATOR, splitLine[0], splitLine[1], splitLine[2]) + System.lineSeparator());
+        return legacyInstallation;
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.wildfly.channel.ChannelManifestCoordinate;
+import org.wildfly.channel.Repository;
+import org.wildfly.channel.spi.MavenVersionsResolver;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CachingChannelMetadataResolverTest {
+
+    private static final List<Repository> REPOSITORIES = List.of(new Repository("test-repo", "http://test.te/repo"));
+    private static final ChannelManifestCoordinate MANIFEST = new ChannelManifestCoordinate("org.test", "test-manifest");
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Mock
+    private MavenVersionsResolver delegate;
+
+    private Path cacheDir;
+    private HttpServer server;
+    private final List<String> receivedEtags = new ArrayList<>();
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = temp.newFolder("cache").toPath();
+    }
+
+    @After
+    public void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    public void latestManifestIsReusedWithinTtl() throws Exception {
+        when(delegate.getAllVersions("org.test", "test-manifest", "yaml", "manifest")).thenReturn(Set.of("1.0.0", "1.0.1"));
+        when(delegate.resolveArtifact("org.test", "test-manifest", "yaml", "manifest", "1.0.1")).thenReturn(manifestFile("1.0.1"));
+
+        final URL first = resolver(3600).resolveChannelMetadata(List.of(MANIFEST)).get(0);
+        final URL second = resolver(3600).resolveChannelMetadata(List.of(MANIFEST)).get(0);
+
+        assertThat(Path.of(second.toURI())).hasContent("# 1.0.1");
+        assertThat(second).isEqualTo(first);
+        verify(delegate, times(1)).getAllVersions(any(), any(), any(), any());
+        verify(delegate, times(1)).resolveArtifact(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void unchangedManifestIsRevalidatedAfterTtl() throws Exception {
+        when(delegate.getAllVersions("org.test", "test-manifest", "yaml", "manifest")).thenReturn(Set.of("1.0.0", "1.0.1"));
+        when(delegate.resolveArtifact("org.test", "test-manifest", "yaml", "manifest", "1.0.1")).thenReturn(manifestFile("1.0.1"));
+
+        resolver(0).resolveChannelMetadata(List.of(MANIFEST));
+        final URL url = resolver(0).resolveChannelMetadata(List.of(MANIFEST)).get(0);
+
+        assertThat(Path.of(url.toURI())).hasContent("# 1.0.1");
+        verify(delegate, times(2)).getAllVersions(any(), any(), any(), any());
+        verify(delegate, times(1)).resolveArtifact(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void newManifestVersionReplacesCachedCopy() throws Exception {
+        when(delegate.getAllVersions("org.test", "test-manifest", "yaml", "manifest"))
+                .thenReturn(Set.of("1.0.0"))
+                .thenReturn(Set.of("1.0.0", "1.0.1"));
+        when(delegate.resolveArtifact("org.test", "test-manifest", "yaml", "manifest", "1.0.0")).thenReturn(manifestFile("1.0.0"));
+        when(delegate.resolveArtifact("org.test", "test-manifest", "yaml", "manifest", "1.0.1")).thenReturn(manifestFile("1.0.1"));
+
+        resolver(0).resolveChannelMetadata(List.of(MANIFEST));
+        final URL url = resolver(0).resolveChannelMetadata(List.of(MANIFEST)).get(0);
+
+        assertThat(Path.of(url.toURI())).hasContent("# 1.0.1");
+    }
+
+    @Test
+    public void manifestsFromDifferentRepositoriesAreCachedSeparately() throws Exception {
+        when(delegate.getAllVersions("org.test", "test-manifest", "yaml", "manifest")).thenReturn(Set.of("1.0.0"));
+        when(delegate.resolveArtifact("org.test", "test-manifest", "yaml", "manifest", "1.0.0")).thenReturn(manifestFile("1.0.0"));
+
+        resolver(3600).resolveChannelMetadata(List.of(MANIFEST));
+        new CachingChannelMetadataResolver(delegate, new ChannelMetadataCache(cacheDir, 3600),
+                List.of(new Repository("other-repo", "http://other.te/repo"))).resolveChannelMetadata(List.of(MANIFEST));
+
+        verify(delegate, times(2)).getAllVersions(any(), any(), any(), any());
+    }
+
+    @Test
+    public void versionedAndFileCoordinatesAreNotCached() throws Exception {
+        final ChannelManifestCoordinate versioned = new ChannelManifestCoordinate("org.test", "test-manifest", "1.0.0");
+        final ChannelManifestCoordinate file = new ChannelManifestCoordinate(manifestFile("1.0.0").toURI().toURL());
+        when(delegate.resolveChannelMetadata(any())).thenReturn(List.of(new URL("file:/test")));
+
+        resolver(3600).resolveChannelMetadata(List.of(versioned, file));
+
+        verify(delegate).resolveChannelMetadata(List.of(versioned));
+        verify(delegate).resolveChannelMetadata(List.of(file));
+        assertThat(cacheDir).isEmptyDirectory();
+    }
+
+    @Test
+    public void urlManifestIsRevalidatedWithEtag() throws Exception {
+        final URL url = startServer("schemaVersion: 1.0.0\n", "\"v1\"");
+        // conditional requests are not possible if the proxy URL handler from wildfly-channel has been registered
+        Assume.assumeTrue(url.openConnection() instanceof HttpURLConnection);
+
+        final URL first = resolver(0).resolveChannelMetadata(List.of(new ChannelManifestCoordinate(url))).get(0);
+        final URL second = resolver(0).resolveChannelMetadata(List.of(new ChannelManifestCoordinate(url))).get(0);
+
+        assertThat(first.getProtocol()).isEqualTo("file");
+        assertThat(Path.of(second.toURI())).hasContent("schemaVersion: 1.0.0\n");
+        // the second request asks if the content has changed
+        assertThat(receivedEtags).containsExactly(null, "\"v1\"");
+    }
+
+    @Test
+    public void urlManifestIsReusedWithinTtl() throws Exception {
+        final URL url = startServer("schemaVersion: 1.0.0\n", "\"v1\"");
+
+        resolver(3600).resolveChannelMetadata(List.of(new ChannelManifestCoordinate(url)));
+        resolver(3600).resolveChannelMetadata(List.of(new ChannelManifestCoordinate(url)));
+
+        assertThat(receivedEtags).hasSize(1);
+    }
+
+    @Test
+    public void unreachableUrlIsPassedThrough() throws Exception {
+        final URL url = new URL("http://localhost:1/manifest.yaml");
+
+        final URL resolved = resolver(3600).resolveChannelMetadata(List.of(new ChannelManifestCoordinate(url))).get(0);
+
+        assertThat(resolved).isEqualTo(url);
+        verify(delegate, never()).resolveChannelMetadata(any());
+    }
+
+    private CachingChannelMetadataResolver resolver(long ttl) {
+        return new CachingChannelMetadataResolver(delegate, new ChannelMetadataCache(cacheDir, ttl), REPOSITORIES);
+    }
+
+    private File manifestFile(String version) throws Exception {
+        final File file = temp.newFile("manifest-" + version + ".yaml");
+        Files.writeString(file.toPath(), "# " + version);
+        return file;
+    }
+
+    private URL startServer(String content, String etag) throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/manifest.yaml", exchange -> {
+            final String requestEtag = exchange.getRequestHeaders().getFirst("If-None-Match");
+            receivedEtags.add(requestEtag);
+            if (etag.equals(requestEtag)) {
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                final byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("ETag", etag);
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+        return new URL("http://localhost:" + server.getAddress().getPort() + "/manifest.yaml");
+    }
+}
@@ -20,19 +20,34 @@ package org.wildfly.prospero.galleon;
 import org.jboss.galleon.universe.maven.MavenArtifact;
 import org.jboss.galleon.universe.maven.MavenUniverseException;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.wildfly.channel.ArtifactTransferException;
 import org.wildfly.channel.ChannelSession;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ChannelMavenArtifactRepositoryManagerTest {
 
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
     @Mock
     private ChannelSession session;
 
@@ -57,4 +72,35 @@ public class ChannelMavenArtifactRepositoryManagerTest {
         artifact.setExtension("zip");
         assertThrows(MavenUniverseException.class, ()->repositoryManager.resolve(artifact));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testZipArtifactIsInspectedOnceAcrossResolveCalls() throws Exception {
+        final File zip = temp.newFile("bar-1.0.0.zip");
+        try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip))) {
+            out.putNextEntry(new ZipEntry("readme.txt"));
+            out.closeEntry();
+        }
+        final org.wildfly.channel.MavenArtifact resolved = new org.wildfly.channel.MavenArtifact("foo", "bar", "zip", "", "1.0.0", zip);
+        when(session.resolveDirectMavenArtifact("foo", "bar", "zip", "", "1.0.0")).thenReturn(resolved);
+        when(session.resolveMavenArtifacts(any())).thenAnswer(inv ->
+                ((List<?>) inv.getArgument(0)).isEmpty() ? List.of() : List.of(resolved));
+
+        for (int i = 0; i < 2; i++) {
+            final MavenArtifact artifact = zipArtifact();
+            repositoryManager.resolveAll(List.of(artifact));
+            assertEquals(zip.toPath(), artifact.getPath());
+        }
+
+        verify(session, times(1)).resolveDirectMavenArtifact("foo", "bar", "zip", "", "1.0.0");
+    }
+
+    private static MavenArtifact zipArtifact() {
+        final MavenArtifact artifact = new MavenArtifact();
+        artifact.setGroupId("foo");
+        artifact.setArtifactId("bar");
+        artifact.setExtension("zip");
+        artifact.setClassifier("");
+        artifact.setVersion("1.0.0");
+        return artifact;
+    }
+}
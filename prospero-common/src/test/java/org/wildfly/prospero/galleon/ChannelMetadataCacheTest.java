@@ -0,0 +1,130 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ChannelMetadataCacheTest {
+
+    private static final String KEY = "maven:org.test:test-manifest:yaml:manifest@repo=http://test.te";
+    private static final String CONTENT = "schemaVersion: 1.0.0\n";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private Path cacheDir;
+    private Clock clock;
+
+    @Before
+    public void setUp() throws Exception {
+        cacheDir = temp.newFolder().toPath();
+        clock = Clock.fixed(Instant.parse("2023-01-01T10:00:00Z"), ZoneOffset.UTC);
+    }
+
+    @Test
+    public void missingEntryIsEmpty() {
+        final ChannelMetadataCache cache = new ChannelMetadataCache(cacheDir, 60, clock);
+
+        assertThat(cache.get(KEY)).isEmpty();
+    }
+
+    @Test
+    public void storedEntryCanBeReadBack() throws Exception {
+        new ChannelMetadataCache(cacheDir, 60, clock).put(KEY, content(), "1.0.1", "\"abc\"", null);
+
+        final ChannelMetadataCache.Entry entry = new ChannelMetadataCache(cacheDir, 60, clock).get(KEY).get();
+
+        assertThat(entry.getFile()).hasContent(CONTENT);
+        assertThat(entry.getVersion()).isEqualTo("1.0.1");
+        assertThat(entry.getEtag()).isEqualTo("\"abc\"");
+        assertThat(entry.getLastModified()).isNull();
+    }
+
+    @Test
+    public void entryIsFreshWithinTtl() throws Exception {
+        final ChannelMetadataCache cache = new ChannelMetadataCache(cacheDir, 60, clock);
+        cache.put(KEY, content(), "1.0.1", null, null);
+
+        assertThat(cache.isFresh(cache.get(KEY).get())).isTrue();
+        assertThat(after(Duration.ofSeconds(61)).isFresh(cache.get(KEY).get())).isFalse();
+    }
+
+    @Test
+    public void zeroTtlRequiresRevalidation() throws Exception {
+        final ChannelMetadataCache cache = new ChannelMetadataCache(cacheDir, 0, clock);
+        cache.put(KEY, content(), "1.0.1", null, null);
+
+        assertThat(cache.isFresh(cache.get(KEY).get())).isFalse();
+    }
+
+    @Test
+    public void markValidatedRenewsEntry() throws Exception {
+        new ChannelMetadataCache(cacheDir, 60, clock).put(KEY, content(), "1.0.1", null, null);
+        final ChannelMetadataCache later = after(Duration.ofSeconds(61));
+
+        later.markValidated(later.get(KEY).get());
+
+        assertThat(later.isFresh(later.get(KEY).get())).isTrue();
+    }
+
+    @Test
+    public void modifiedContentIsIgnored() throws Exception {
+        final ChannelMetadataCache cache = new ChannelMetadataCache(cacheDir, 60, clock);
+        final ChannelMetadataCache.Entry entry = cache.put(KEY, content(), "1.0.1", null, null);
+
+        Files.writeString(entry.getFile(), "schemaVersion: 1.0.0\nstreams: []\n");
+
+        assertThat(cache.get(KEY)).isEmpty();
+    }
+
+    @Test
+    public void putReplacesExistingEntry() throws Exception {
+        final ChannelMetadataCache cache = new ChannelMetadataCache(cacheDir, 60, clock);
+        cache.put(KEY, content(), "1.0.1", null, null);
+
+        cache.put(KEY, new ByteArrayInputStream("updated".getBytes(StandardCharsets.UTF_8)), "1.0.2", null, null);
+
+        assertThat(cache.get(KEY).get().getVersion()).isEqualTo("1.0.2");
+        assertThat(cache.get(KEY).get().getFile()).hasContent("updated");
+        try (var files = Files.list(cacheDir)) {
+            assertThat(files).hasSize(2);
+        }
+    }
+
+    private ChannelMetadataCache after(Duration duration) {
+        return new ChannelMetadataCache(cacheDir, 60, Clock.offset(clock, duration));
+    }
+
+    private static ByteArrayInputStream content() {
+        return new ByteArrayInputStream(CONTENT.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.channel.Channel;
+import org.wildfly.prospero.api.MavenOptions;
+import org.wildfly.prospero.wfchannel.MavenSessionManager;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class GalleonEnvironmentCacheTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    private final GalleonEnvironmentCache cache = new GalleonEnvironmentCache();
+    private Path installDir;
+    private Path localRepository;
+    private File manifest;
+
+    @Before
+    public void setUp() throws Exception {
+        installDir = temp.newFolder("installation").toPath();
+        localRepository = temp.newFolder("repository").toPath();
+        manifest = temp.newFile("manifest.yaml");
+        Files.writeString(manifest.toPath(), "schemaVersion: 1.0.0\n");
+    }
+
+    @After
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    public void equivalentRequestsReuseEnvironment() throws Exception {
+        final MavenSessionManager msm = sessionManager(true);
+
+        final GalleonEnvironment first = cache.getEnvironment(installDir, channels(), msm);
+        final GalleonEnvironment second = cache.getEnvironment(installDir, channels(), new MavenSessionManager(msm));
+
+        assertThat(second).isSameAs(first);
+    }
+
+    @Test
+    public void differentInstallationsUseDifferentEnvironments() throws Exception {
+        final MavenSessionManager msm = sessionManager(true);
+
+        final GalleonEnvironment first = cache.getEnvironment(installDir, channels(), msm);
+        final GalleonEnvironment second = cache.getEnvironment(temp.newFolder().toPath(), channels(), msm);
+
+        assertThat(second).isNotSameAs(first);
+    }
+
+    @Test
+    public void differentMavenOptionsUseDifferentEnvironments() throws Exception {
+        final GalleonEnvironment first = cache.getEnvironment(installDir, channels(), sessionManager(true));
+        final GalleonEnvironment second = cache.getEnvironment(installDir, channels(), sessionManager(false));
+
+        assertThat(second).isNotSameAs(first);
+    }
+
+    @Test
+    public void closedCacheCreatesNewEnvironments() throws Exception {
+        final MavenSessionManager msm = sessionManager(true);
+
+        final GalleonEnvironment first = cache.getEnvironment(installDir, channels(), msm);
+        cache.close();
+        final GalleonEnvironment second = cache.getEnvironment(installDir, channels(), msm);
+
+        assertThat(second).isNotSameAs(first);
+    }
+
+    private MavenSessionManager sessionManager(boolean offline) throws Exception {
+        return new MavenSessionManager(MavenOptions.builder()
+                .setOffline(offline)
+                .setLocalCachePath(localRepository)
+                .build());
+    }
+
+    private List<Channel> channels() throws Exception {
+        return List.of(new Channel.Builder()
+                .setName("test-channel")
+                .setManifestUrl(manifest.toURI().toURL())
+                .build());
+    }
+}
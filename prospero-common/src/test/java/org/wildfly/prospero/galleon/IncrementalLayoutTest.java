@@ -0,0 +1,193 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.eclipse.aether.artifact.DefaultArtifact;
+import org.jboss.galleon.Constants;
+import org.jboss.galleon.util.HashUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.wildfly.channel.ChannelSession;
+import org.wildfly.channel.MavenArtifact;
+import org.wildfly.prospero.api.ArtifactChange;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class IncrementalLayoutTest {
+
+    private static final String MODULE_DIR = "modules/org/foo/main";
+    private static final String MODULE_XML = "<module name=\"org.foo\"><resources><resource-root path=\"foo-1.0.0.jar\"/></resources></module>";
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+    @Mock
+    private ChannelSession channelSession;
+    private Path installationDir;
+    private Path candidateDir;
+    private Path hashesDir;
+
+    @Before
+    public void setUp() throws Exception {
+        installationDir = temp.newFolder("installation").toPath();
+        candidateDir = temp.newFolder("candidate").toPath();
+        hashesDir = installationDir.resolve(Constants.PROVISIONED_STATE_DIR).resolve(Constants.HASHES);
+
+        writeFile(MODULE_DIR + "/foo-1.0.0.jar", "foo 1.0.0");
+        writeFile(MODULE_DIR + "/module.xml", MODULE_XML);
+        writeFile("bin/standalone.sh", "script");
+        recordHashes(MODULE_DIR, "foo-1.0.0.jar", "module.xml");
+        recordHashes("bin", "standalone.sh");
+
+        Files.createDirectories(installationDir.resolve(ArtifactCache.CACHE_FOLDER));
+        final Path jar = installationDir.resolve(MODULE_DIR).resolve("foo-1.0.0.jar");
+        ArtifactCache.getInstance(installationDir).record(
+                new MavenArtifact("org.foo", "foo", "jar", null, "1.0.0", jar.toFile()), jar);
+    }
+
+    @Test
+    public void layoutReplacesChangedArtifact() throws Exception {
+        final Path newJar = temp.newFile("foo-1.0.1.jar").toPath();
+        Files.writeString(newJar, "foo 1.0.1");
+        when(channelSession.resolveDirectMavenArtifacts(any())).thenReturn(List.of(
+                new MavenArtifact("org.foo", "foo", "jar", null, "1.0.1", newJar.toFile())));
+
+        final Optional<IncrementalLayout> layout = IncrementalLayout.plan(installationDir, List.of(update("1.0.0", "1.0.1")));
+        assertTrue(layout.isPresent());
+        layout.get().layout(candidateDir, channelSession);
+
+        final Path moduleDir = candidateDir.resolve(MODULE_DIR);
+        assertFalse(Files.exists(moduleDir.resolve("foo-1.0.0.jar")));
+        assertEquals("foo 1.0.1", Files.readString(moduleDir.resolve("foo-1.0.1.jar")));
+        assertThat(Files.readString(moduleDir.resolve("module.xml")))
+                .contains("path=\"foo-1.0.1.jar\"")
+                .doesNotContain("foo-1.0.0.jar");
+        assertEquals("script", Files.readString(candidateDir.resolve("bin/standalone.sh")));
+        // the candidate must not share the files with the installation
+        assertFalse(Files.isSameFile(installationDir.resolve("bin/standalone.sh"), candidateDir.resolve("bin/standalone.sh")));
+
+        final ProvisionedHashIndex candidateHashes = ProvisionedHashIndex.load(candidateDir);
+        final Path newJarPath = Path.of(MODULE_DIR, "foo-1.0.1.jar");
+        assertArrayEquals(HashUtils.hashPath(newJar), candidateHashes.getRecordedHash(newJarPath));
+        assertArrayEquals(HashUtils.hashPath(moduleDir.resolve("module.xml")),
+                candidateHashes.getRecordedHash(Path.of(MODULE_DIR, "module.xml")));
+        assertThat(candidateHashes.getDirectoryHashes(Path.of(MODULE_DIR))).doesNotContainKey("foo-1.0.0.jar");
+
+        final ArtifactCache candidateCache = ArtifactCache.getInstance(candidateDir);
+        assertEquals(Optional.of(moduleDir.resolve("foo-1.0.1.jar").toFile()),
+                candidateCache.getArtifact("org.foo", "foo", "jar", null, "1.0.1"));
+        assertThat(candidateCache.getRecordedArtifacts("org.foo", "foo", "1.0.0")).isEmpty();
+    }
+
+    @Test
+    public void installationIsNotModifiedByLayout() throws Exception {
+        final Path newJar = temp.newFile("foo-1.0.1.jar").toPath();
+        Files.writeString(newJar, "foo 1.0.1");
+        when(channelSession.resolveDirectMavenArtifacts(any())).thenReturn(List.of(
+                new MavenArtifact("org.foo", "foo", "jar", null, "1.0.1", newJar.toFile())));
+
+        IncrementalLayout.plan(installationDir, List.of(update("1.0.0", "1.0.1"))).orElseThrow()
+                .layout(candidateDir, channelSession);
+
+        assertEquals(MODULE_XML, Files.readString(installationDir.resolve(MODULE_DIR).resolve("module.xml")));
+        assertEquals("foo 1.0.0", Files.readString(installationDir.resolve(MODULE_DIR).resolve("foo-1.0.0.jar")));
+        assertThat(ArtifactCache.getInstance(installationDir).getRecordedArtifacts("org.foo", "foo", "1.0.0")).hasSize(1);
+    }
+
+    @Test
+    public void modifiedModuleRequiresFullProvisioning() throws Exception {
+        final Path moduleXml = writeFile(MODULE_DIR + "/module.xml", MODULE_XML + "<!-- changed -->");
+        final FileTime recordedAt = Files.getLastModifiedTime(hashesDir.resolve(MODULE_DIR).resolve(Constants.HASHES));
+        Files.setLastModifiedTime(moduleXml, FileTime.fromMillis(recordedAt.toMillis() + 1000));
+
+        assertEquals(Optional.empty(), IncrementalLayout.plan(installationDir, List.of(update("1.0.0", "1.0.1"))));
+    }
+
+    @Test
+    public void modifiedFileOutsideAffectedDirectoryRequiresFullProvisioning() throws Exception {
+        final FileTime originalTime = Files.getLastModifiedTime(installationDir.resolve("bin/standalone.sh"));
+        final Path script = writeFile("bin/standalone.sh", "edited script");
+        // the file is restored with its original timestamp, e.g. by a backup tool
+        Files.setLastModifiedTime(script, originalTime);
+
+        assertEquals(Optional.empty(), IncrementalLayout.plan(installationDir, List.of(update("1.0.0", "1.0.1"))));
+    }
+
+    @Test
+    public void removedProvisionedFileRequiresFullProvisioning() throws Exception {
+        Files.delete(installationDir.resolve("bin/standalone.sh"));
+
+        assertEquals(Optional.empty(), IncrementalLayout.plan(installationDir, List.of(update("1.0.0", "1.0.1"))));
+    }
+
+    @Test
+    public void addedArtifactRequiresFullProvisioning() throws Exception {
+        final ArtifactChange added = ArtifactChange.added(new DefaultArtifact("org.bar", "bar", "jar", "1.0.0"));
+
+        assertEquals(Optional.empty(), IncrementalLayout.plan(installationDir, List.of(added)));
+    }
+
+    @Test
+    public void unrecordedArtifactRequiresFullProvisioning() throws Exception {
+        final ArtifactChange updated = ArtifactChange.updated(new DefaultArtifact("org.bar", "bar", "jar", "1.0.0"),
+                new DefaultArtifact("org.bar", "bar", "jar", "1.0.1"));
+
+        assertEquals(Optional.empty(), IncrementalLayout.plan(installationDir, List.of(updated)));
+    }
+
+    private static ArtifactChange update(String oldVersion, String newVersion) {
+        return ArtifactChange.updated(new DefaultArtifact("org.foo", "foo", "jar", oldVersion),
+                new DefaultArtifact("org.foo", "foo", "jar", newVersion));
+    }
+
+    private Path writeFile(String path, String content) throws Exception {
+        final Path file = installationDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private void recordHashes(String dir, String... files) throws Exception {
+        final Path recordDir = hashesDir.resolve(dir);
+        Files.createDirectories(recordDir);
+        final StringBuilder sb = new StringBuilder();
+        for (String file : files) {
+            sb.append(file).append(System.lineSeparator())
+                    .append(HashUtils.bytesToHexString(HashUtils.hashPath(installationDir.resolve(dir).resolve(file))))
+                    .append(System.lineSeparator());
+        }
+        Files.writeString(recordDir.resolve(Constants.HASHES), sb.toString());
+    }
+}
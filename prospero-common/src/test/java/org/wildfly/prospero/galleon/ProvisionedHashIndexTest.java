@@ -0,0 +1,113 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.jboss.galleon.Constants;
+import org.jboss.galleon.util.HashUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+public class ProvisionedHashIndexTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+    private Path installationDir;
+    private Path hashesDir;
+
+    @Before
+    public void setUp() throws Exception {
+        installationDir = temp.newFolder().toPath();
+        hashesDir = installationDir.resolve(Constants.PROVISIONED_STATE_DIR).resolve(Constants.HASHES);
+    }
+
+    @Test
+    public void readRecordedHashes() throws Exception {
+        writeFile("root.txt", "root");
+        writeFile("a/b/test.txt", "test");
+        recordHashes("", "root.txt");
+        recordHashes("a/b", "test.txt");
+
+        final ProvisionedHashIndex index = ProvisionedHashIndex.load(installationDir);
+
+        assertArrayEquals(HashUtils.hashPath(installationDir.resolve("root.txt")), index.getRecordedHash(Path.of("root.txt")));
+        assertArrayEquals(HashUtils.hashPath(installationDir.resolve("a/b/test.txt")), index.getRecordedHash(Path.of("a", "b", "test.txt")));
+        assertNull(index.getRecordedHash(Path.of("a", "b", "missing.txt")));
+        assertNull(index.getRecordedHash(Path.of("c", "missing.txt")));
+    }
+
+    @Test
+    public void noRecordedHashes() throws Exception {
+        writeFile("root.txt", "root");
+
+        final ProvisionedHashIndex index = ProvisionedHashIndex.load(installationDir);
+
+        assertNull(index.getRecordedHash(Path.of("root.txt")));
+        assertNull(index.getUnchangedHash(Path.of("root.txt"), installationDir.resolve("root.txt")));
+    }
+
+    @Test
+    public void unchangedHashIsReturnedIfFileWasNotModified() throws Exception {
+        final Path file = writeFile("a/test.txt", "test");
+        recordHashes("a", "test.txt");
+
+        final ProvisionedHashIndex index = ProvisionedHashIndex.load(installationDir);
+
+        assertArrayEquals(HashUtils.hashPath(file), index.getUnchangedHash(Path.of("a", "test.txt"), file));
+    }
+
+    @Test
+    public void unchangedHashIsNotReturnedIfFileWasModifiedAfterRecording() throws Exception {
+        final Path file = writeFile("a/test.txt", "test");
+        recordHashes("a", "test.txt");
+        final FileTime recordedAt = Files.getLastModifiedTime(hashesDir.resolve("a").resolve(Constants.HASHES));
+        Files.writeString(file, "changed");
+        Files.setLastModifiedTime(file, FileTime.fromMillis(recordedAt.toMillis() + 1000));
+
+        final ProvisionedHashIndex index = ProvisionedHashIndex.load(installationDir);
+
+        assertNull(index.getUnchangedHash(Path.of("a", "test.txt"), file));
+    }
+
+    private Path writeFile(String path, String content) throws Exception {
+        final Path file = installationDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private void recordHashes(String dir, String... files) throws Exception {
+        final Path recordDir = dir.isEmpty() ? hashesDir : hashesDir.resolve(dir);
+        Files.createDirectories(recordDir);
+        final StringBuilder sb = new StringBuilder();
+        for (String file : files) {
+            final Path path = dir.isEmpty() ? installationDir.resolve(file) : installationDir.resolve(dir).resolve(file);
+            sb.append(file).append(System.lineSeparator())
+                    .append(HashUtils.bytesToHexString(HashUtils.hashPath(path))).append(System.lineSeparator());
+        }
+        Files.writeString(recordDir.resolve(Constants.HASHES), sb.toString());
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.jboss.galleon.Constants;
+import org.jboss.galleon.util.HashUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.prospero.utils.ParallelExecutor;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ProvisionedStateDiffTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+    private Path installationDir;
+    private Path hashesDir;
+    private ParallelExecutor executor;
+    private final RecordingListener listener = new RecordingListener();
+
+    @Before
+    public void setUp() throws Exception {
+        installationDir = temp.newFolder("installation").toPath();
+        hashesDir = installationDir.resolve(Constants.PROVISIONED_STATE_DIR).resolve(Constants.HASHES);
+        executor = new ParallelExecutor(2);
+
+        writeFile("bin/standalone.sh", "script");
+        writeFile("modules/org/foo/main/foo.jar", "foo");
+        writeFile("modules/org/foo/main/module.xml", "module");
+        recordHashes("bin", "standalone.sh");
+        recordHashes("modules/org/foo/main", "foo.jar", "module.xml");
+    }
+
+    @After
+    public void tearDown() {
+        executor.close();
+    }
+
+    @Test
+    public void unchangedInstallationHasNoChanges() throws Exception {
+        ProvisionedStateDiff.compare(installationDir, executor, listener);
+
+        assertThat(listener.events).isEmpty();
+    }
+
+    @Test
+    public void reportsModifiedFile() throws Exception {
+        final byte[] recorded = HashUtils.hashPath(installationDir.resolve("bin/standalone.sh"));
+        writeFile("bin/standalone.sh", "changed");
+
+        ProvisionedStateDiff.compare(installationDir, executor, listener);
+
+        assertThat(listener.events).containsExactly("modified bin/standalone.sh");
+        assertArrayEquals(recorded, listener.recordedHash);
+        assertArrayEquals(HashUtils.hashPath(installationDir.resolve("bin/standalone.sh")), listener.currentHash);
+    }
+
+    @Test
+    public void reportsRemovedFileAndDirectory() throws Exception {
+        Files.delete(installationDir.resolve("bin/standalone.sh"));
+        Files.delete(installationDir.resolve("modules/org/foo/main/foo.jar"));
+        Files.delete(installationDir.resolve("modules/org/foo/main/module.xml"));
+        Files.delete(installationDir.resolve("modules/org/foo/main"));
+
+        ProvisionedStateDiff.compare(installationDir, executor, listener);
+
+        assertThat(listener.events).containsExactlyInAnyOrder(
+                "removed bin/standalone.sh",
+                "removed dir modules/org/foo/main");
+    }
+
+    @Test
+    public void reportsOnlyTopLevelAddedDirectory() throws Exception {
+        writeFile("bin/custom.sh", "custom");
+        writeFile("modules/org/bar/main/bar.jar", "bar");
+
+        ProvisionedStateDiff.compare(installationDir, executor, listener);
+
+        assertThat(listener.events).containsExactlyInAnyOrder(
+                "added bin/custom.sh",
+                "added dir modules/org/bar");
+    }
+
+    @Test
+    public void ignoresProvisioningStateAndConflictFiles() throws Exception {
+        writeFile("bin/standalone.sh.glnew", "new");
+        writeFile("bin/standalone.sh.glold", "old");
+
+        ProvisionedStateDiff.compare(installationDir, executor, listener);
+
+        assertThat(listener.events).isEmpty();
+    }
+
+    @Test
+    public void hasRecordedState() throws Exception {
+        assertTrue(ProvisionedStateDiff.hasRecordedState(installationDir));
+        assertFalse(ProvisionedStateDiff.hasRecordedState(temp.newFolder().toPath()));
+    }
+
+    private void writeFile(String path, String content) throws Exception {
+        final Path file = installationDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+
+    private void recordHashes(String dir, String... files) throws Exception {
+        final Path recordDir = hashesDir.resolve(dir);
+        Files.createDirectories(recordDir);
+        final StringBuilder sb = new StringBuilder();
+        for (String file : files) {
+            sb.append(file).append(System.lineSeparator())
+                    .append(HashUtils.bytesToHexString(HashUtils.hashPath(installationDir.resolve(dir).resolve(file))))
+                    .append(System.lineSeparator());
+        }
+        Files.writeString(recordDir.resolve(Constants.HASHES), sb.toString());
+    }
+
+    private static class RecordingListener implements ProvisionedStateDiff.Listener {
+        private final List<String> events = new ArrayList<>();
+        private byte[] recordedHash;
+        private byte[] currentHash;
+
+        @Override
+        public void added(Path relativePath, boolean directory) {
+            events.add("added " + (directory ? "dir " : "") + toKey(relativePath));
+        }
+
+        @Override
+        public void removed(Path relativePath, boolean directory) {
+            events.add("removed " + (directory ? "dir " : "") + toKey(relativePath));
+        }
+
+        @Override
+        public void modified(Path relativePath, byte[] recordedHash, byte[] currentHash) {
+            events.add("modified " + toKey(relativePath));
+            this.recordedHash = recordedHash;
+            this.currentHash = currentHash;
+        }
+
+        private static String toKey(Path relativePath) {
+            return relativePath.toString().replace(relativePath.getFileSystem().getSeparator(), "/");
+        }
+    }
+}
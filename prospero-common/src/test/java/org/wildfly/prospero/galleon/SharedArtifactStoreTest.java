@@ -0,0 +1,184 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.galleon;
+
+import org.jboss.galleon.util.HashUtils;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.channel.MavenArtifact;
+import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class SharedArtifactStoreTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+    private SharedArtifactStore store;
+    private Path installationOne;
+    private Path installationTwo;
+    private Path artifact;
+    private String hash;
+
+    @Before
+    public void setUp() throws Exception {
+        store = new SharedArtifactStore(temp.newFolder("store").toPath());
+        installationOne = createInstallation("one");
+        installationTwo = createInstallation("two");
+        artifact = temp.newFile("artifact.jar").toPath();
+        Files.writeString(artifact, "artifact content");
+        hash = HashUtils.hashFile(artifact);
+    }
+
+    @Test
+    public void linkReplacesTargetWithStoredBlob() throws Exception {
+        final Path target = installationOne.resolve("modules").resolve("artifact.jar");
+        Files.createDirectories(target.getParent());
+        Files.writeString(target, "old content");
+
+        store.link(installationOne, artifact, hash, target);
+
+        assertEquals("artifact content", Files.readString(target));
+        assertTrue(Files.isSameFile(target, store.getBlob(hash)));
+        assertTrue(store.isStored(target, hash));
+        assertFalse(store.isStored(artifact, hash));
+    }
+
+    @Test
+    public void installationsShareTheSameBlob() throws Exception {
+        final Path targetOne = installationOne.resolve("artifact.jar");
+        final Path targetTwo = installationTwo.resolve("artifact.jar");
+
+        store.link(installationOne, artifact, hash, targetOne);
+        store.link(installationTwo, artifact, hash, targetTwo);
+
+        assertTrue(Files.isSameFile(targetOne, targetTwo));
+    }
+
+    @Test
+    public void collectGarbageKeepsReferencedBlobs() throws Exception {
+        store.link(installationOne, artifact, hash, installationOne.resolve("artifact.jar"));
+        store.setReferences(installationOne, List.of(hash));
+
+        assertEquals(0, store.collectGarbage());
+        assertTrue(Files.exists(store.getBlob(hash)));
+    }
+
+    @Test
+    public void collectGarbageRemovesUnreferencedBlobs() throws Exception {
+        store.link(installationOne, artifact, hash, installationOne.resolve("artifact.jar"));
+        store.setReferences(installationOne, List.of(hash));
+        store.setReferences(installationOne, List.of());
+
+        assertEquals(1, store.collectGarbage());
+        assertFalse(Files.exists(store.getBlob(hash)));
+        // the installation keeps its own link to the content
+        assertEquals("artifact content", Files.readString(installationOne.resolve("artifact.jar")));
+    }
+
+    @Test
+    public void collectGarbageDropsReferencesOfRemovedInstallations() throws Exception {
+        store.link(installationOne, artifact, hash, installationOne.resolve("artifact.jar"));
+        store.setReferences(installationOne, List.of(hash));
+        store.setReferences(installationTwo, List.of(hash));
+
+        Files.delete(installationOne.resolve(ProsperoMetadataUtils.METADATA_DIR));
+        assertEquals(0, store.collectGarbage());
+        assertThat(store.getStoreDir().resolve(SharedArtifactStore.REFS_FOLDER)).isDirectoryContaining(p -> true);
+
+        Files.delete(installationTwo.resolve(ProsperoMetadataUtils.METADATA_DIR));
+        assertEquals(1, store.collectGarbage());
+        assertThat(store.getStoreDir().resolve(SharedArtifactStore.REFS_FOLDER)).isEmptyDirectory();
+    }
+
+    @Test
+    public void pendingReferencesKeepBlobsUntilReferencesAreRecorded() throws Exception {
+        store.link(installationOne, artifact, hash, installationOne.resolve("artifact.jar"));
+
+        // the installation has not recorded its references yet
+        assertEquals(0, store.collectGarbage());
+        assertTrue(Files.exists(store.getBlob(hash)));
+
+        store.setReferences(installationOne, List.of());
+        assertEquals(1, store.collectGarbage());
+    }
+
+    @Test
+    public void pendingReferencesOfRemovedInstallationsAreDropped() throws Exception {
+        final Path removedInstallation = temp.newFolder("removed").toPath();
+        store.add(removedInstallation, artifact, hash);
+        Files.delete(removedInstallation);
+
+        assertEquals(1, store.collectGarbage());
+        assertThat(store.getStoreDir().resolve(SharedArtifactStore.REFS_FOLDER)).isEmptyDirectory();
+    }
+
+    @Test
+    public void contentNotMatchingHashIsRejected() throws Exception {
+        final String wrongHash = HashUtils.hash("other content");
+
+        assertThrows(IOException.class, () -> store.add(installationOne, artifact, wrongHash));
+
+        assertFalse(Files.exists(store.getBlob(wrongHash)));
+        assertThat(store.getBlob(wrongHash).getParent()).isEmptyDirectory();
+    }
+
+    @Test
+    public void storedBlobsAreReadOnly() throws Exception {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+
+        final Path blob = store.add(installationOne, artifact, hash);
+
+        assertThat(Files.getPosixFilePermissions(blob)).doesNotContain(PosixFilePermission.OWNER_WRITE,
+                PosixFilePermission.GROUP_WRITE, PosixFilePermission.OTHERS_WRITE);
+    }
+
+    @Test
+    public void updateReferencesReadsArtifactCache() throws Exception {
+        final Path target = installationOne.resolve("artifact.jar");
+        store.link(installationOne, artifact, hash, target);
+        Files.createDirectories(installationOne.resolve(ArtifactCache.CACHE_FOLDER));
+        final ArtifactCache cache = ArtifactCache.getInstance(installationOne);
+        cache.record(new MavenArtifact("group", "artifact", "jar", null, "1.0.0", target.toFile()), target);
+
+        store.updateReferences(installationOne);
+
+        assertEquals(0, store.collectGarbage());
+        assertTrue(Files.exists(store.getBlob(hash)));
+    }
+
+    private Path createInstallation(String name) throws Exception {
+        final Path installation = temp.newFolder(name).toPath();
+        Files.createDirectories(installation.resolve(ProsperoMetadataUtils.METADATA_DIR));
+        return installation;
+    }
+}
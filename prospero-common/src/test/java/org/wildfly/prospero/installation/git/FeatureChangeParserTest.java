@@ -28,6 +28,7 @@ import org.wildfly.prospero.api.Diff;
 import org.wildfly.prospero.api.FeatureChange;
 import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
 
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.List;
 
@@ -52,7 +53,8 @@ public class FeatureChangeParserTest {
                         .build())
                 .build();
         ProvisioningXmlWriter.getInstance().write(config, oldConfigDir.resolve(ProsperoMetadataUtils.PROVISIONING_RECORD_XML));
-        final List<FeatureChange> changes = new FeatureChangeParser().parse(null, oldConfigDir);
+        final List<FeatureChange> changes = new FeatureChangeParser().parse(null,
+                Files.readString(oldConfigDir.resolve(ProsperoMetadataUtils.PROVISIONING_RECORD_XML)));
 
         assertThat(changes)
                 .containsOnly(
@@ -72,7 +74,8 @@ public class FeatureChangeParserTest {
                         .build())
                 .build();
         ProvisioningXmlWriter.getInstance().write(config, newConfigDir.resolve(ProsperoMetadataUtils.PROVISIONING_RECORD_XML));
-        final List<FeatureChange> changes = new FeatureChangeParser().parse(newConfigDir, null);
+        final List<FeatureChange> changes = new FeatureChangeParser().parse(
+                Files.readString(newConfigDir.resolve(ProsperoMetadataUtils.PROVISIONING_RECORD_XML)), null);
 
         assertThat(changes)
                 .containsOnly(
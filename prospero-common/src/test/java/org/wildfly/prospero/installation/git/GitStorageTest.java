@@ -38,6 +38,7 @@ import org.wildfly.prospero.metadata.ManifestVersionRecord;
 import org.wildfly.prospero.api.ArtifactChange;
 import org.wildfly.prospero.api.ChannelChange;
 import org.wildfly.prospero.api.SavedState;
+import org.wildfly.prospero.api.exceptions.MetadataException;
 import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
 import org.wildfly.prospero.model.ManifestYamlSupport;
 import org.junit.Before;
@@ -60,9 +61,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
 import static org.junit.Assert.assertTrue;
 import static org.wildfly.prospero.api.FeatureChange.Type.CONFIG;
 import static org.wildfly.prospero.api.FeatureChange.Type.FEATURE;
@@ -650,6 +653,153 @@ public class GitStorageTest {
                 .isEmpty();
     }
 
+    @Test
+    public void listRevisionsInPages() throws Exception {
+        final GitStorage gitStorage = new GitStorage(base.getParent());
+        setArtifact(manifest, "org.test:test:1.2.3");
+        gitStorage.record();
+        setArtifact(manifest, "org.test:test:1.2.4");
+        gitStorage.recordChange(SavedState.Type.UPDATE);
+        setArtifact(manifest, "org.test:test:1.2.5");
+        gitStorage.recordChange(SavedState.Type.ROLLBACK);
+
+        final List<SavedState> revisions = gitStorage.getRevisions();
+        assertThat(revisions)
+                .map(SavedState::getType)
+                .containsExactly(SavedState.Type.ROLLBACK, SavedState.Type.UPDATE, SavedState.Type.INSTALL);
+        assertThat(gitStorage.getRevisions(1, 1))
+                .map(SavedState::getName)
+                .containsExactly(revisions.get(1).getName());
+        assertThat(gitStorage.getRevisions(2, 5))
+                .map(SavedState::getName)
+                .containsExactly(revisions.get(2).getName());
+        assertThat(gitStorage.getLatestRevision().get().getName()).isEqualTo(revisions.get(0).getName());
+    }
+
+    @Test
+    public void latestRevisionSkipsInternalRecords() throws Exception {
+        final GitStorage gitStorage = new GitStorage(base.getParent());
+        assertThat(gitStorage.getLatestRevision()).isEmpty();
+
+        setArtifact(manifest, "org.test:test:1.2.3");
+        gitStorage.record();
+        setArtifact(manifest, "org.test:test:1.2.4");
+        gitStorage.recordChange(SavedState.Type.INTERNAL_UPDATE);
+
+        assertEquals(SavedState.Type.INSTALL, gitStorage.getLatestRevision().get().getType());
+        assertThat(gitStorage.getRevisions()).hasSize(1);
+    }
+
+    @Test
+    public void revisionIndexIsUpdatedWithNewRecords() throws Exception {
+        final GitStorage gitStorage = new GitStorage(base.getParent());
+        setArtifact(manifest, "org.test:test:1.2.3");
+        gitStorage.record();
+        generateProsperoConfig(List.of(A_CHANNEL));
+        gitStorage.recordConfigChange();
+
+        final Path indexFile = base.resolve(".git").resolve(RevisionIndex.INDEX_FILE_NAME);
+        assertThat(Files.readAllLines(indexFile))
+                .hasSize(2)
+                .last().asString().endsWith(SavedState.Type.CONFIG_CHANGE.name());
+    }
+
+    @Test
+    public void revisionIndexIncludesCommitsRecordedOutsideOfStorage() throws Exception {
+        final GitStorage gitStorage = new GitStorage(base.getParent());
+        setArtifact(manifest, "org.test:test:1.2.3");
+        gitStorage.record();
+        assertThat(gitStorage.getRevisions()).hasSize(1);
+
+        try (Git git = Git.open(base.resolve(".git").toFile())) {
+            git.commit().setAllowEmpty(true).setMessage(SavedState.Type.UPDATE.name() + " external").call();
+        }
+
+        assertThat(gitStorage.getRevisions())
+                .map(SavedState::getMsg)
+                .containsExactly("external", "");
+    }
+
+    @Test
+    public void corruptedRevisionIndexIsRebuilt() throws Exception {
+        final GitStorage gitStorage = new GitStorage(base.getParent());
+        setArtifact(manifest, "org.test:test:1.2.3");
+        gitStorage.record();
+        setArtifact(manifest, "org.test:test:1.2.4");
+        gitStorage.recordChange(SavedState.Type.UPDATE);
+        final List<SavedState> expected = gitStorage.getRevisions();
+
+        final Path indexFile = base.resolve(".git").resolve(RevisionIndex.INDEX_FILE_NAME);
+        final List<String> lines = Files.readAllLines(indexFile);
+        Files.write(indexFile, List.of("corrupted", lines.get(1)));
+
+        assertThat(gitStorage.getRevisions())
+                .map(SavedState::getName)
+                .containsExactlyElementsOf(expected.stream().map(SavedState::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void changesAreReadFromRecordedRevisionNotWorkingCopy() throws Exception {
+        final GitStorage gitStorage = new GitStorage(base.getParent());
+        setArtifact(manifest, "org.test:test:1.2.3");
+        gitStorage.record();
+        setArtifact(manifest, "org.test:test:1.2.4");
+        gitStorage.record();
+
+        // not recorded change
+        setArtifact(manifest, "org.test:test:1.2.5");
+
+        final List<ArtifactChange> changes = gitStorage.getArtifactChanges(gitStorage.getRevisions().get(0));
+        assertEquals(1, changes.size());
+        assertEquals("1.2.3", changes.get(0).getOldVersion().get());
+        assertEquals("1.2.4", changes.get(0).getNewVersion().get());
+    }
+
+    @Test
+    public void changesOfUnknownRevisionThrowException() throws Exception {
+        final GitStorage gitStorage = new GitStorage(base.getParent());
+        setArtifact(manifest, "org.test:test:1.2.3");
+        gitStorage.record();
+
+        assertThrows(MetadataException.class, () -> gitStorage.getArtifactChanges(new SavedState("abcd1234")));
+    }
+
+    @Test
+    public void changesBetweenRevisions() throws Exception {
+        final GitStorage gitStorage = new GitStorage(base.getParent());
+        setArtifact(manifest, "org.test:test:1.2.3");
+        generateProsperoConfig(List.of(A_CHANNEL));
+        gitStorage.record();
+        setArtifact(manifest, "org.test:test:1.2.4");
+        gitStorage.record();
+        final Channel channel2 = new Channel("channel-2", "new", null,
+                List.of(new Repository("test", "http://test.te")),
+                new ChannelManifestCoordinate("foo", "baz"),
+                null, null);
+        generateProsperoConfig(List.of(A_CHANNEL, channel2));
+        gitStorage.recordConfigChange();
+        setArtifact(manifest, "org.test:test:1.2.5");
+        gitStorage.record();
+
+        final List<SavedState> revisions = gitStorage.getRevisions();
+        final SavedState from = revisions.get(3);
+        final SavedState to = revisions.get(0);
+
+        final List<ArtifactChange> artifactChanges = gitStorage.getArtifactChanges(from, to);
+        assertEquals(1, artifactChanges.size());
+        assertEquals("1.2.3", artifactChanges.get(0).getOldVersion().get());
+        assertEquals("1.2.5", artifactChanges.get(0).getNewVersion().get());
+
+        assertThat(gitStorage.getChannelChanges(from, to))
+                .map(compareAttr((c)->c.getName()))
+                .containsExactly("[]::channel-2");
+        // reversed range
+        assertThat(gitStorage.getChannelChanges(to, from))
+                .map(compareAttr((c)->c.getName()))
+                .containsExactly("channel-2::[]");
+        assertThat(gitStorage.getArtifactChanges(revisions.get(2), revisions.get(1))).isEmpty();
+    }
+
     private HashSet<String> getPathsInCommit() throws IOException, GitAPIException {
         final Git git = Git.open(base.resolve(".git").toFile());
         HashSet<String> paths = new HashSet<>();
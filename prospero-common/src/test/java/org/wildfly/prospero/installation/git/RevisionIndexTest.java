@@ -0,0 +1,122 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.installation.git;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertThrows;
+
+public class RevisionIndexTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+    private Path indexFile;
+    private RevisionIndex index;
+
+    @Before
+    public void setUp() throws Exception {
+        indexFile = temp.newFolder().toPath().resolve(RevisionIndex.INDEX_FILE_NAME);
+        index = new RevisionIndex(indexFile);
+    }
+
+    @Test
+    public void emptyIndex() throws Exception {
+        assertThat(index.getHeadId()).isEmpty();
+        assertThat(index.readAll()).isEmpty();
+    }
+
+    @Test
+    public void appendedEntriesAreReadLatestFirst() throws Exception {
+        index.append(List.of(entry(0), entry(1)));
+        index.append(List.of(entry(2)));
+
+        assertThat(index.getHeadId()).contains("commit-2");
+        assertThat(index.readAll())
+                .map(RevisionIndex.Entry::getCommitId)
+                .containsExactly("commit-2", "commit-1", "commit-0");
+    }
+
+    @Test
+    public void readEntriesSpanningMultipleChunks() throws Exception {
+        final List<RevisionIndex.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            entries.add(entry(i));
+        }
+        index.append(entries);
+
+        final List<RevisionIndex.Entry> read = index.readAll();
+        assertThat(read).hasSize(2000);
+        for (int i = 0; i < 2000; i++) {
+            final RevisionIndex.Entry entry = read.get(1999 - i);
+            assertThat(entry.getCommitId()).isEqualTo("commit-" + i);
+            assertThat(entry.getCommitTime()).isEqualTo(i);
+            assertThat(entry.getShortMessage()).isEqualTo("UPDATE message " + i);
+        }
+    }
+
+    @Test
+    public void stopVisitingEntries() throws Exception {
+        index.append(List.of(entry(0), entry(1), entry(2)));
+
+        final List<String> visited = new ArrayList<>();
+        index.visitFromLatest(entry -> {
+            visited.add(entry.getCommitId());
+            return visited.size() < 2;
+        });
+
+        assertThat(visited).containsExactly("commit-2", "commit-1");
+    }
+
+    @Test
+    public void rewriteReplacesEntries() throws Exception {
+        index.append(List.of(entry(0), entry(1)));
+        index.rewrite(List.of(entry(5)));
+
+        assertThat(index.readAll())
+                .map(RevisionIndex.Entry::getCommitId)
+                .containsExactly("commit-5");
+    }
+
+    @Test
+    public void entryWithEmptyMessage() throws Exception {
+        index.append(List.of(new RevisionIndex.Entry("commit-0", 1, "")));
+
+        assertThat(index.readAll().get(0).getShortMessage()).isEmpty();
+    }
+
+    @Test
+    public void invalidEntryThrowsException() throws Exception {
+        Files.writeString(indexFile, "invalid\n");
+
+        assertThrows(IOException.class, () -> index.getHeadId());
+    }
+
+    private static RevisionIndex.Entry entry(int i) {
+        return new RevisionIndex.Entry("commit-" + i, i, "UPDATE message " + i);
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.updates;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.wildfly.prospero.api.SavedState;
+import org.wildfly.prospero.installation.git.GitStorage;
+import org.wildfly.prospero.metadata.ProsperoMetadataUtils;
+import org.wildfly.prospero.test.MetadataTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ApplyJournalTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+    private Path installationDir;
+
+    @Before
+    public void setUp() throws Exception {
+        installationDir = temp.newFolder("installation").toPath();
+        writeFile("bin/standalone.sh", "script 1.0.0");
+        writeFile("modules/foo/foo.jar", "foo 1.0.0");
+        writeFile(".galleon/hashes/bin/hashes", "old hashes");
+    }
+
+    @Test
+    public void interruptedOperationIsRolledBack() throws Exception {
+        final ApplyJournal journal = ApplyJournal.begin(installationDir, "UPDATE");
+        journal.beforeWrite(Path.of("bin", "standalone.sh"));
+        writeFile("bin/standalone.sh", "script 1.0.1");
+        journal.delete(Path.of("modules", "foo", "foo.jar"));
+        journal.delete(Path.of("modules", "foo"));
+        journal.beforeWrite(Path.of("modules", "bar", "bar.jar"));
+        writeFile("modules/bar/bar.jar", "bar 1.0.0");
+        journal.beforeWrite(Path.of(".galleon"));
+        writeFile(".galleon/hashes/modules/hashes", "new hashes");
+        // the process dies before the operation is committed
+        journal.close();
+
+        assertTrue(ApplyJournal.recover(installationDir));
+
+        assertEquals("script 1.0.0", Files.readString(installationDir.resolve("bin/standalone.sh")));
+        assertEquals("foo 1.0.0", Files.readString(installationDir.resolve("modules/foo/foo.jar")));
+        assertEquals("old hashes", Files.readString(installationDir.resolve(".galleon/hashes/bin/hashes")));
+        assertThat(installationDir.resolve("modules/bar")).doesNotExist();
+        assertThat(installationDir.resolve(".galleon/hashes/modules")).doesNotExist();
+        assertFalse(ApplyJournal.exists(installationDir));
+    }
+
+    @Test
+    public void failedOperationIsRolledBack() throws Exception {
+        final ApplyJournal journal = ApplyJournal.begin(installationDir, "UPDATE");
+        journal.beforeWrite(Path.of("bin", "standalone.sh"));
+        writeFile("bin/standalone.sh", "script 1.0.1");
+        journal.beforeWrite(Path.of("modules", "bar", "bar.jar"));
+        writeFile("modules/bar/bar.jar", "bar 1.0.0");
+
+        journal.rollback();
+
+        assertEquals("script 1.0.0", Files.readString(installationDir.resolve("bin/standalone.sh")));
+        assertThat(installationDir.resolve("modules/bar")).doesNotExist();
+        assertFalse(ApplyJournal.exists(installationDir));
+    }
+
+    @Test
+    public void recordedFilesAreRolledBack() throws Exception {
+        final List<Path> files = List.of(Path.of("bin", "standalone.sh"), Path.of("bin", "domain.sh"),
+                Path.of("modules", "bar", "bar.jar"), Path.of("modules", "bar", "module.xml"));
+        final ApplyJournal journal = ApplyJournal.begin(installationDir, "UPDATE");
+        journal.record(files);
+        for (Path file : files) {
+            journal.beforeWrite(file);
+            writeFile(file.toString(), "updated " + file.getFileName());
+        }
+        journal.close();
+
+        assertTrue(ApplyJournal.recover(installationDir));
+
+        assertEquals("script 1.0.0", Files.readString(installationDir.resolve("bin/standalone.sh")));
+        assertThat(installationDir.resolve("bin/domain.sh")).doesNotExist();
+        assertThat(installationDir.resolve("modules/bar")).doesNotExist();
+        assertEquals("foo 1.0.0", Files.readString(installationDir.resolve("modules/foo/foo.jar")));
+    }
+
+    @Test
+    public void committedOperationIsKept() throws Exception {
+        final ApplyJournal journal = ApplyJournal.begin(installationDir, "UPDATE");
+        journal.beforeWrite(Path.of("bin", "standalone.sh"));
+        writeFile("bin/standalone.sh", "script 1.0.1");
+        journal.commit();
+
+        assertFalse(ApplyJournal.exists(installationDir));
+        assertFalse(ApplyJournal.recover(installationDir));
+        assertEquals("script 1.0.1", Files.readString(installationDir.resolve("bin/standalone.sh")));
+    }
+
+    @Test
+    public void fileWrittenTwiceIsRestoredFromFirstBackup() throws Exception {
+        final ApplyJournal journal = ApplyJournal.begin(installationDir, "UPDATE");
+        journal.beforeWrite(Path.of("bin", "standalone.sh"));
+        writeFile("bin/standalone.sh", "script 1.0.1");
+        journal.beforeWrite(Path.of("bin", "standalone.sh"));
+        writeFile("bin/standalone.sh", "script 1.0.2");
+        journal.close();
+
+        ApplyJournal.recover(installationDir);
+
+        assertEquals("script 1.0.0", Files.readString(installationDir.resolve("bin/standalone.sh")));
+    }
+
+    @Test
+    public void historyIsResetWhenOperationIsRolledBack() throws Exception {
+        MetadataTestUtils.createInstallationMetadata(installationDir).close();
+        final Path manifest = Path.of(ProsperoMetadataUtils.METADATA_DIR, ProsperoMetadataUtils.MANIFEST_FILE_NAME);
+        final String originalManifest = Files.readString(installationDir.resolve(manifest));
+        final String revision;
+        try (GitStorage git = new GitStorage(installationDir)) {
+            revision = git.getLatestRevision().get().getName();
+        }
+
+        final ApplyJournal journal = ApplyJournal.begin(installationDir, "UPDATE", revision);
+        journal.beforeWrite(manifest);
+        writeFile(manifest.toString(), "updated manifest");
+        try (GitStorage git = new GitStorage(installationDir)) {
+            git.recordChange(SavedState.Type.UPDATE);
+        }
+        // the process dies after the history is recorded, before the operation is committed
+        journal.close();
+
+        assertTrue(ApplyJournal.recover(installationDir));
+
+        assertEquals(originalManifest, Files.readString(installationDir.resolve(manifest)));
+        try (GitStorage git = new GitStorage(installationDir)) {
+            assertEquals(revision, git.getLatestRevision().get().getName());
+            assertEquals(1, git.getRevisions().size());
+        }
+    }
+
+    @Test
+    public void runningOperationIsNotRecovered() throws Exception {
+        try (ApplyJournal journal = ApplyJournal.begin(installationDir, "UPDATE")) {
+            journal.beforeWrite(Path.of("bin", "standalone.sh"));
+            writeFile("bin/standalone.sh", "script 1.0.1");
+
+            assertFalse(ApplyJournal.recover(installationDir));
+            assertEquals("script 1.0.1", Files.readString(installationDir.resolve("bin/standalone.sh")));
+        }
+    }
+
+    private void writeFile(String path, String content) throws Exception {
+        final Path file = installationDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+    }
+}
@@ -25,15 +25,29 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.wildfly.channel.ArtifactTransferException;
+import org.wildfly.channel.ChannelManifest;
 import org.wildfly.channel.ChannelSession;
+import org.wildfly.channel.Stream;
 import org.wildfly.channel.VersionResult;
+import org.wildfly.prospero.api.ArtifactChange;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atMost;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @SuppressWarnings("OptionalGetWithoutIsPresent")
@@ -109,4 +123,149 @@ public class UpdateFinderTest {
         assertEquals(Optional.empty(), updates.getArtifactUpdates().get(0).getNewVersion());
         assertEquals("1.0.0", updates.getArtifactUpdates().get(0).getOldVersion().get());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testConcurrentLookupsAreLimited() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        when(channelSession.findLatestMavenArtifactVersion(any(), any(), eq("jar"), eq(""), eq(null)))
+                .thenAnswer(inv -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(10);
+                    running.decrementAndGet();
+                    return new VersionResult("1.0.1", null);
+                });
+
+        final List<Artifact> artifacts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            artifacts.add(new DefaultArtifact("org.foo" + i, "bar", "jar", "1.0.0"));
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(10);
+        try (UpdateFinder finder = new UpdateFinder(channelSession, executor, 2)) {
+            final UpdateSet updates = finder.findUpdates(artifacts);
+
+            assertEquals(20, updates.getArtifactUpdates().size());
+            assertTrue("Expected at most 2 concurrent lookups, but was " + maxRunning.get(), maxRunning.get() <= 2);
+        }
+
+        // shared executor is not closed with the finder
+        assertFalse(executor.isShutdown());
+        executor.shutdown();
+    }
+
+    @Test
+    public void testArtifactsInSameGroupAreLookedUpConcurrently() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        when(channelSession.findLatestMavenArtifactVersion(eq("org.foo"), any(), eq("jar"), eq(""), eq(null)))
+                .thenAnswer(inv -> {
+                    maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    Thread.sleep(50);
+                    running.decrementAndGet();
+                    return new VersionResult("1.0.1", null);
+                });
+
+        final List<Artifact> artifacts = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            artifacts.add(new DefaultArtifact("org.foo", "bar" + i, "jar", "1.0.0"));
+        }
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (UpdateFinder finder = new UpdateFinder(channelSession, executor, 4)) {
+            final UpdateSet updates = finder.findUpdates(artifacts);
+
+            assertEquals(8, updates.getArtifactUpdates().size());
+            assertTrue("Expected concurrent lookups within a group, but was " + maxRunning.get(), maxRunning.get() > 1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFailureStopsRemainingLookups() throws Exception {
+        when(channelSession.findLatestMavenArtifactVersion(eq("org.foo"), any(), eq("jar"), eq(""), eq(null)))
+                .thenThrow(new RuntimeException("test failure"));
+
+        final List<Artifact> artifacts = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            artifacts.add(new DefaultArtifact("org.foo", "bar" + i, "jar", "1.0.0"));
+        }
+        try (UpdateFinder finder = new UpdateFinder(channelSession, 1)) {
+            finder.findUpdates(artifacts);
+            fail("Expected the lookup failure to be reported");
+        } catch (RuntimeException e) {
+            assertEquals("test failure", e.getCause().getMessage());
+        }
+
+        verify(channelSession, atMost(2)).findLatestMavenArtifactVersion(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testSameArtifactIsLookedUpOnce() throws Exception {
+        when(channelSession.findLatestMavenArtifactVersion("org.foo", "bar", "jar", "", null))
+                .thenReturn(new VersionResult("1.0.1", null));
+
+        try (UpdateFinder finder = new UpdateFinder(channelSession)) {
+            final UpdateSet updates = finder.findUpdates(Arrays.asList(
+                    new DefaultArtifact("org.foo", "bar", "jar", "1.0.0"),
+                    new DefaultArtifact("org.foo", "bar", "jar", "1.0.1")
+            ));
+
+            assertEquals(1, updates.getArtifactUpdates().size());
+            assertEquals("1.0.0", updates.getArtifactUpdates().get(0).getOldVersion().get());
+        }
+
+        verify(channelSession, times(1)).findLatestMavenArtifactVersion(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testUpdatesKeepArtifactOrder() throws Exception {
+        when(channelSession.findLatestMavenArtifactVersion(any(), any(), eq("jar"), eq(""), eq(null)))
+                .thenReturn(new VersionResult("1.0.1", null));
+
+        try (UpdateFinder finder = new UpdateFinder(channelSession)) {
+            final UpdateSet updates = finder.findUpdates(Arrays.asList(
+                    new DefaultArtifact("org.foo", "bar", "jar", "1.0.0"),
+                    new DefaultArtifact("org.baz", "bar", "jar", "1.0.0"),
+                    new DefaultArtifact("org.foo", "qux", "jar", "1.0.0")
+            ));
+
+            assertEquals(List.of("org.foo:bar", "org.baz:bar", "org.foo:qux"), updates.getArtifactUpdates().stream()
+                    .map(ArtifactChange::getArtifactName)
+                    .collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void testPinnedStreamsAreResolvedFromManifests() throws Exception {
+        final List<ChannelManifest> manifests = List.of(
+                new ChannelManifest("one", null, null, List.of(new Stream("org.foo", "bar", "1.0.1"))),
+                new ChannelManifest("two", null, null, List.of(new Stream("org.foo", "bar", "1.0.2")))
+        );
+
+        try (UpdateFinder finder = new UpdateFinder(channelSession, manifests, 1)) {
+            final UpdateSet updates = finder.findUpdates(List.of(new DefaultArtifact("org.foo", "bar", "jar", "1.0.0")));
+
+            assertEquals(1, updates.getArtifactUpdates().size());
+            assertEquals("1.0.2", updates.getArtifactUpdates().get(0).getNewVersion().get());
+        }
+
+        verify(channelSession, never()).findLatestMavenArtifactVersion(any(), any(), any(), any(), any());
+    }
+
+    @Test
+    public void testStreamsNotPinnedInAllManifestsAreQueried() throws Exception {
+        when(channelSession.findLatestMavenArtifactVersion("org.foo", "bar", "jar", "", null))
+                .thenReturn(new VersionResult("1.0.3", null));
+        final List<ChannelManifest> manifests = List.of(
+                new ChannelManifest("one", null, null, List.of(new Stream("org.foo", "bar", "1.0.1"))),
+                new ChannelManifest("two", null, null, List.of(new Stream("org.foo", "baz", "1.0.2")))
+        );
+
+        try (UpdateFinder finder = new UpdateFinder(channelSession, manifests, 1)) {
+            final UpdateSet updates = finder.findUpdates(List.of(new DefaultArtifact("org.foo", "bar", "jar", "1.0.0")));
+
+            assertEquals(1, updates.getArtifactUpdates().size());
+            assertEquals("1.0.3", updates.getArtifactUpdates().get(0).getNewVersion().get());
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.utils;
+
+import org.jboss.galleon.util.HashUtils;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class NioFileUtilsTest {
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void hashOfSmallFileMatchesGalleonHash() throws Exception {
+        final Path file = writeFile("small.jar", 1024);
+
+        assertArrayEquals(HashUtils.hashPath(file), NioFileUtils.hashPath(file));
+        assertEquals(HashUtils.hashFile(file), NioFileUtils.hashFile(file));
+    }
+
+    @Test
+    public void hashOfMappedFileMatchesGalleonHash() throws Exception {
+        final Path file = writeFile("large.jar", (int) NioFileUtils.MAP_THRESHOLD * 3 + 17);
+
+        assertArrayEquals(HashUtils.hashPath(file), NioFileUtils.hashPath(file));
+    }
+
+    @Test
+    public void hashOfDirectoryMatchesGalleonHash() throws Exception {
+        writeFile("dir/a.jar", 100);
+        writeFile("dir/sub/b.jar", 200);
+        final Path dir = temp.getRoot().toPath().resolve("dir");
+
+        assertArrayEquals(HashUtils.hashPath(dir), NioFileUtils.hashPath(dir));
+    }
+
+    @Test
+    public void copyAndHashReturnsHashOfCopiedContent() throws Exception {
+        final Path small = writeFile("small.jar", 1024);
+        final Path large = writeFile("large.jar", (int) NioFileUtils.MAP_THRESHOLD + 1);
+
+        final Path smallCopy = temp.getRoot().toPath().resolve("copy/small.jar");
+        final Path largeCopy = temp.getRoot().toPath().resolve("copy/large.jar");
+
+        assertEquals(HashUtils.hashFile(small), NioFileUtils.copyAndHash(small, smallCopy));
+        assertEquals(HashUtils.hashFile(large), NioFileUtils.copyAndHash(large, largeCopy));
+        assertThat(smallCopy).hasSameBinaryContentAs(small);
+        assertThat(largeCopy).hasSameBinaryContentAs(large);
+    }
+
+    @Test
+    public void copyReplacesExistingFile() throws Exception {
+        final Path source = writeFile("source.jar", 1024);
+        final Path target = writeFile("target.jar", 10);
+
+        NioFileUtils.copy(source, target);
+
+        assertThat(target).hasSameBinaryContentAs(source);
+    }
+
+    @Test
+    public void copyDoesNotWriteThroughLinkedTarget() throws Exception {
+        final Path source = writeFile("source.jar", 1024);
+        final Path shared = writeFile("shared.jar", 10);
+        final byte[] sharedContent = Files.readAllBytes(shared);
+        final Path target = temp.getRoot().toPath().resolve("target.jar");
+        Files.createLink(target, shared);
+
+        NioFileUtils.copy(source, target);
+
+        assertThat(target).hasSameBinaryContentAs(source);
+        assertArrayEquals(sharedContent, Files.readAllBytes(shared));
+    }
+
+    @Test
+    public void copyDirectorySkipsExistingFiles() throws Exception {
+        writeFile("source/a.jar", 100);
+        writeFile("source/sub/b.jar", 200);
+        final Path existing = writeFile("target/a.jar", 10);
+        final byte[] existingContent = Files.readAllBytes(existing);
+        final Path root = temp.getRoot().toPath();
+
+        NioFileUtils.copy(root.resolve("source"), root.resolve("target"), true);
+
+        assertArrayEquals(existingContent, Files.readAllBytes(existing));
+        assertThat(root.resolve("target/sub/b.jar")).hasSameBinaryContentAs(root.resolve("source/sub/b.jar"));
+    }
+
+    @Test
+    public void copyPreservesPermissions() throws Exception {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        final Path script = writeFile("standalone.sh", 100);
+        Files.setPosixFilePermissions(script, PosixFilePermissions.fromString("rwxr-x---"));
+        final Path target = temp.getRoot().toPath().resolve("bin/standalone.sh");
+
+        NioFileUtils.copy(script, target);
+
+        assertEquals(PosixFilePermissions.fromString("rwxr-x---"), Files.getPosixFilePermissions(target));
+    }
+
+    @Test
+    public void copyWithTimestampPreservesModificationTime() throws Exception {
+        final Path source = writeFile("hashes", 100);
+        final FileTime modified = FileTime.fromMillis(Files.getLastModifiedTime(source).toMillis() - 60_000);
+        Files.setLastModifiedTime(source, modified);
+        final Path target = temp.getRoot().toPath().resolve("copy/hashes");
+
+        NioFileUtils.copyWithTimestamp(source, target);
+
+        assertEquals(modified.toMillis(), Files.getLastModifiedTime(target).toMillis());
+    }
+
+    private Path writeFile(String path, int size) throws Exception {
+        final Path file = temp.getRoot().toPath().resolve(path);
+        Files.createDirectories(file.getParent());
+        final byte[] content = new byte[size];
+        new Random(size).nextBytes(content);
+        Files.write(file, content);
+        return file;
+    }
+}
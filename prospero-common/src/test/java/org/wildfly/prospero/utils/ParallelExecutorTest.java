@@ -0,0 +1,93 @@
+/*
+ * Copyright 2023 Red Hat, Inc. and/or its affiliates
+ * and other contributors as indicated by the @author tags.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.wildfly.prospero.utils;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class ParallelExecutorTest {
+
+    @Test
+    public void resultsAreReturnedInOrderOfItems() throws Exception {
+        final List<Integer> items = IntStream.range(0, 100).boxed().collect(Collectors.toList());
+
+        try (ParallelExecutor executor = new ParallelExecutor(4)) {
+            final List<String> results = executor.map(items, i -> "value-" + i);
+
+            assertThat(results).containsExactlyElementsOf(items.stream().map(i -> "value-" + i).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void duplicateItemsHaveTheirOwnResults() throws Exception {
+        final List<String> items = List.of("a", "b", "a", "a", "c");
+        final AtomicInteger counter = new AtomicInteger();
+
+        try (ParallelExecutor executor = new ParallelExecutor(4)) {
+            final List<String> results = executor.map(items, item -> item + "-" + counter.incrementAndGet());
+
+            assertEquals(items.size(), results.size());
+            for (int i = 0; i < items.size(); i++) {
+                assertThat(results.get(i)).startsWith(items.get(i) + "-");
+            }
+            assertThat(results).doesNotHaveDuplicates();
+        }
+    }
+
+    @Test
+    public void singleThreadedExecutorUsesCallingThread() throws Exception {
+        final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+
+        try (ParallelExecutor executor = new ParallelExecutor(1)) {
+            executor.forEach(List.of(1, 2, 3), i -> threads.add(Thread.currentThread()));
+        }
+
+        assertThat(threads).containsExactly(Thread.currentThread());
+    }
+
+    @Test
+    public void firstFailureIsRethrown() throws Exception {
+        final List<Integer> items = new ArrayList<>(IntStream.range(0, 20).boxed().collect(Collectors.toList()));
+
+        try (ParallelExecutor executor = new ParallelExecutor(4)) {
+            final IOException ex = assertThrows(IOException.class, () -> executor.forEach(items, i -> {
+                if (i % 5 == 3) {
+                    throw new IOException("failed " + i);
+                }
+            }));
+            assertEquals("failed 3", ex.getMessage());
+        }
+    }
+
+    @Test
+    public void parallelismHasToBePositive() {
+        assertThrows(IllegalArgumentException.class, () -> new ParallelExecutor(0));
+    }
+}
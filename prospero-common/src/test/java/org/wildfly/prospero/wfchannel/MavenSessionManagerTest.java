@@ -17,6 +17,9 @@
 
 package org.wildfly.prospero.wfchannel;
 
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.eclipse.aether.RepositorySystem;
+import org.eclipse.aether.transfer.AbstractTransferListener;
 import org.junit.Test;
 import org.wildfly.prospero.api.MavenOptions;
 
@@ -44,4 +47,69 @@ public class MavenSessionManagerTest {
 
         assertTrue(msm.getProvisioningRepo().toString() + " should start with  " + defaultTempPath, msm.getProvisioningRepo().startsWith(defaultTempPath));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void repositorySystemIsSharedByCopies() throws Exception {
+        final MavenSessionManager msm = new MavenSessionManager(MavenOptions.OFFLINE_NO_CACHE);
+        final MavenSessionManager copy = new MavenSessionManager(msm);
+
+        final RepositorySystem system = msm.getRepositorySystem();
+        assertSame(system, msm.getRepositorySystem());
+        assertSame(system, copy.getRepositorySystem());
+        assertNotSame(system, msm.newRepositorySystem());
+    }
+
+    @Test
+    public void sessionsOfSharedSystemReuseLocalRepositoryManager() throws Exception {
+        final MavenSessionManager msm = new MavenSessionManager(MavenOptions.OFFLINE_NO_CACHE);
+        final RepositorySystem system = msm.getRepositorySystem();
+
+        final DefaultRepositorySystemSession first = msm.newRepositorySystemSession(system);
+        final DefaultRepositorySystemSession second = msm.newRepositorySystemSession(system);
+        assertNotSame(first, second);
+        assertSame(first.getLocalRepositoryManager(), second.getLocalRepositoryManager());
+        assertTrue(second.isOffline());
+        assertEquals(msm.getProvisioningRepo().toFile(), second.getLocalRepository().getBasedir());
+
+        // configuring a session doesn't affect other sessions
+        first.setTransferListener(new AbstractTransferListener() {});
+        assertNull(msm.newRepositorySystemSession(system).getTransferListener());
+    }
+
+    @Test
+    public void sessionsAreConfiguredWithCurrentOfflineFlag() throws Exception {
+        final MavenSessionManager msm = new MavenSessionManager(MavenOptions.OFFLINE_NO_CACHE);
+        final RepositorySystem system = msm.getRepositorySystem();
+
+        final DefaultRepositorySystemSession offlineSession = msm.newRepositorySystemSession(system);
+        msm.setOffline(false);
+        final DefaultRepositorySystemSession onlineSession = msm.newRepositorySystemSession(system);
+
+        assertTrue(offlineSession.isOffline());
+        assertFalse(onlineSession.isOffline());
+    }
+
+    @Test
+    public void sessionsOfOtherSystemsAreNotPooled() throws Exception {
+        final MavenSessionManager msm = new MavenSessionManager(MavenOptions.OFFLINE_NO_CACHE);
+        final RepositorySystem system = msm.newRepositorySystem();
+
+        final DefaultRepositorySystemSession first = msm.newRepositorySystemSession(system);
+        final DefaultRepositorySystemSession second = msm.newRepositorySystemSession(system);
+        assertNotSame(first.getLocalRepositoryManager(), second.getLocalRepositoryManager());
+    }
+
+    @Test
+    public void sessionsAreConfiguredWithDownloadThreads() throws Exception {
+        final MavenSessionManager msm = new MavenSessionManager(MavenOptions.builder()
+                .setOffline(true)
+                .setNoLocalCache(true)
+                .setDownloadThreads(8)
+                .build());
+        final RepositorySystem system = msm.getRepositorySystem();
+
+        final DefaultRepositorySystemSession session = msm.newRepositorySystemSession(system);
+        assertEquals(8, session.getConfigProperties().get("aether.connector.basic.threads"));
+        assertEquals(true, session.getConfigProperties().get("aether.connector.http.reuseConnections"));
+    }
+}